@@ -0,0 +1,347 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A compact binary container for component logs, with a time index. The
+ * file consists of a header (magic number, version), the records (timestamp,
+ * length, UTF-8 text) in the order they were logged, and, once the log has
+ * been closed, an end marker (a record with negative length), an index of
+ * (timestamp, file offset) pairs, and a fixed-size trailer. {@link Reader}
+ * memory-maps the index, so locating an entry by timestamp is a binary
+ * search, and reads entry texts only when they are requested. A log without an index (e.g., from a component that
+ * crashed) is still readable; its index is rebuilt by scanning the records.
+ * <p>
+ * Text logs written by earlier versions can be converted with
+ * {@link #convert} or from the command line:
+ * <pre>java ade.ADEBinaryLog textlog [binarylog]</pre>
+ */
+public class ADEBinaryLog {
+
+    private final static String prg = "ADEBinaryLog";
+    /** The magic number at the start of every binary log ("ADEL"). */
+    public final static int MAGIC = 0x4144454C;
+    /** The magic number at the end of an indexed binary log ("ADEX"). */
+    public final static int INDEX_MAGIC = 0x41444558;
+    /** The format version. */
+    public final static short VERSION = 1;
+    /** The file name suffix used for binary logs. */
+    public final static String SUFFIX = ".adelog";
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static int HEADER_SIZE = 4 + 2;
+    private final static int RECORD_HEADER_SIZE = 8 + 4;
+    private final static int INDEX_ENTRY_SIZE = 8 + 8;
+    private final static int TRAILER_SIZE = 8 + 4 + 4;
+
+    /** Returns <tt>true</tt> if the file starts with the binary log magic
+     * number. */
+    public static boolean isBinaryLog(String fileName) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(fileName));
+            return in.readInt() == MAGIC;
+        } catch (IOException ioe) {
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                }
+            }
+        }
+    }
+
+    /** Writes a binary log. Not thread-safe; {@link ade.ADELogWriter
+     * ADELogWriter} only calls it from its writer thread. */
+    public static class Writer {
+
+        private final DataOutputStream out;
+        private long offset;
+        private long[] times = new long[1024];
+        private long[] offsets = new long[1024];
+        private int count = 0;
+
+        /** Creates the log file and writes the header.
+         * @throws IOException If the file cannot be created */
+        public Writer(String fileName) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(fileName), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            offset = HEADER_SIZE;
+        }
+
+        /** Appends an entry. */
+        public void write(long time, String text) throws IOException {
+            byte[] b = text.getBytes(UTF8);
+            if (count == times.length) {
+                long[] t = new long[count * 2];
+                long[] o = new long[count * 2];
+                System.arraycopy(times, 0, t, 0, count);
+                System.arraycopy(offsets, 0, o, 0, count);
+                times = t;
+                offsets = o;
+            }
+            times[count] = time;
+            offsets[count] = offset;
+            count++;
+            out.writeLong(time);
+            out.writeInt(b.length);
+            out.write(b);
+            offset += RECORD_HEADER_SIZE + b.length;
+        }
+
+        /** Pushes buffered records to the file. */
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /** Writes the index and trailer and closes the file. */
+        public void close() throws IOException {
+            // a record header with a negative length ends the records
+            out.writeLong(0);
+            out.writeInt(-1);
+            long indexOffset = offset + RECORD_HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                out.writeLong(times[i]);
+                out.writeLong(offsets[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(count);
+            out.writeInt(INDEX_MAGIC);
+            out.close();
+        }
+    }
+
+    /** Reads a binary log. Entries are numbered from 0 in the order they
+     * were logged. */
+    public static class Reader {
+
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        /** (time, offset) pairs, mapped from the file or rebuilt on open. */
+        private final ByteBuffer index;
+        private final int count;
+
+        /** Opens a binary log.
+         * @throws IOException If the file is not a binary log */
+        public Reader(String fileName) throws IOException {
+            file = new RandomAccessFile(fileName, "r");
+            channel = file.getChannel();
+            try {
+                if (file.length() < HEADER_SIZE || file.readInt() != MAGIC) {
+                    throw new IOException(fileName + " is not a binary ADE log.");
+                }
+                if (file.readShort() > VERSION) {
+                    throw new IOException(fileName + " has an unsupported log version.");
+                }
+                ByteBuffer idx = mapIndex();
+                if (idx == null) {
+                    idx = scanIndex();
+                }
+                index = idx;
+                count = index.capacity() / INDEX_ENTRY_SIZE;
+            } catch (IOException ioe) {
+                file.close();
+                throw ioe;
+            }
+        }
+
+        /** Maps the index written on close, or returns <tt>null</tt> if the
+         * log was not closed properly. */
+        private ByteBuffer mapIndex() throws IOException {
+            long len = file.length();
+            if (len < HEADER_SIZE + TRAILER_SIZE) {
+                return null;
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            channel.read(trailer, len - TRAILER_SIZE);
+            trailer.flip();
+            long indexOffset = trailer.getLong();
+            int n = trailer.getInt();
+            if (trailer.getInt() != INDEX_MAGIC
+                    || indexOffset + (long) n * INDEX_ENTRY_SIZE != len - TRAILER_SIZE) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+                    (long) n * INDEX_ENTRY_SIZE);
+        }
+
+        /** Rebuilds the index by walking the records; a truncated last
+         * record is ignored. */
+        private ByteBuffer scanIndex() throws IOException {
+            long len = file.length();
+            long pos = HEADER_SIZE;
+            ByteBuffer idx = ByteBuffer.allocate(1024 * INDEX_ENTRY_SIZE);
+            ByteBuffer rec = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            while (pos + RECORD_HEADER_SIZE <= len) {
+                rec.clear();
+                channel.read(rec, pos);
+                rec.flip();
+                long time = rec.getLong();
+                int size = rec.getInt();
+                if (size < 0 || pos + RECORD_HEADER_SIZE + size > len) {
+                    break;
+                }
+                if (!idx.hasRemaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(idx.capacity() * 2);
+                    idx.flip();
+                    bigger.put(idx);
+                    idx = bigger;
+                }
+                idx.putLong(time);
+                idx.putLong(pos);
+                pos += RECORD_HEADER_SIZE + size;
+            }
+            idx.flip();
+            return idx.slice();
+        }
+
+        /** The number of entries. */
+        public int size() {
+            return count;
+        }
+
+        /** The timestamp of entry <tt>i</tt>. */
+        public long getTime(int i) {
+            return index.getLong(i * INDEX_ENTRY_SIZE);
+        }
+
+        /** The text of entry <tt>i</tt>, read from the file. */
+        public String getContents(int i) throws IOException {
+            long pos = index.getLong(i * INDEX_ENTRY_SIZE + 8);
+            ByteBuffer rec = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            channel.read(rec, pos);
+            rec.flip();
+            rec.getLong();
+            ByteBuffer text = ByteBuffer.allocate(rec.getInt());
+            while (text.hasRemaining()) {
+                if (channel.read(text, pos + RECORD_HEADER_SIZE + text.position()) < 0) {
+                    throw new EOFException("Truncated log entry " + i);
+                }
+            }
+            return new String(text.array(), UTF8);
+        }
+
+        /** Returns the index of the first entry with a timestamp greater than
+         * <tt>time</tt>, or {@link #size} if there is none (binary search). */
+        public int firstIndexAfter(long time) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (getTime(mid) > time) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        /** Closes the file. */
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    /** Converts a text log (as read by {@link ade.ADELogHelper ADELogHelper})
+     * to a binary log.
+     * @param textLog The text log
+     * @param binaryLog The binary log to create
+     * @return The number of entries converted
+     * @throws IOException If a line cannot be parsed or the files cannot be
+     * accessed */
+    public static int convert(String textLog, String binaryLog)
+            throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(textLog));
+        Writer out = new Writer(binaryLog);
+        int n = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int sep = line.indexOf(ADELogHelper.TIME_STAMP_SEPARATOR);
+                if (sep < 0) {
+                    throw new IOException("Invalid log line: \"" + line + "\"");
+                }
+                try {
+                    out.write(Long.parseLong(line.substring(0, sep)),
+                            line.substring(sep + ADELogHelper.TIME_STAMP_SEPARATOR.length()));
+                } catch (NumberFormatException nfe) {
+                    throw new IOException("Could not parse stamp in line \"" + line + "\".");
+                }
+                n++;
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        return n;
+    }
+
+    /** Converts a text log from the command line. */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java ade.ADEBinaryLog textlog [binarylog]");
+            System.exit(ADEGlobals.ExitCode.ARG_PARSE.code());
+        }
+        String target = (args.length == 2 ? args[1] : args[0] + SUFFIX);
+        if (new File(target).exists()) {
+            System.err.println(prg + ": " + target + " already exists");
+            System.exit(ADEGlobals.ExitCode.ARG_PARSE.code());
+        }
+        try {
+            int n = convert(args[0], target);
+            System.out.println(prg + ": wrote " + n + " entries to " + target);
+        } catch (IOException ioe) {
+            System.err.println(prg + ": conversion failed:\n\t" + ioe);
+            System.exit(ADEGlobals.ExitCode.FILE_PARSE.code());
+        }
+    }
+}
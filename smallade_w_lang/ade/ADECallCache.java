@@ -0,0 +1,245 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * The results of remote getters that are marked as cacheable (see
+ * {@link ade.ADEMethodConditions#CacheTTL ADEMethodConditions}), shared by
+ * all {@link ade.ADERemoteCallTimer ADERemoteCallTimer}s in the JVM, and so
+ * by all pseudo-references to the same component. Entries are keyed by the
+ * remote object (RMI stubs of the same object are equal), the method and the
+ * arguments, and hold the pending or completed call, so that concurrent
+ * identical requests wait for the same call instead of making their own.
+ * <p>
+ * An entry is dropped when its time to live has passed, when the call fails,
+ * or when the version stamp of the target changes (see
+ * {@link ade.ADEComponentImpl#invalidateCachedCalls invalidateCachedCalls});
+ * the version is fetched by the heartbeat of a pseudo-reference to the target,
+ * so a change is noticed within one heartbeat period. Since callers may
+ * modify the results they get (as they could when every call returned a
+ * fresh copy), each of them gets its own {@link #copy copy}.
+ */
+final class ADECallCache {
+
+    /** The cache of the JVM. */
+    final static ADECallCache shared = new ADECallCache();
+    /** Beyond this many entries, expired ones are purged on insertion. */
+    final static int MAX_ENTRIES = 4096;
+    /** Marks a target whose version has not been fetched yet. */
+    private final static Long UNKNOWN = Long.valueOf(Long.MIN_VALUE);
+
+    /** A target, method and arguments. */
+    final static class Key {
+
+        final Object target;
+        final String method;
+        final Object[] args;
+        private final int hash;
+
+        Key(Object target, String method, Object[] args) {
+            this.target = target;
+            this.method = method;
+            this.args = args;
+            hash = (target.hashCode() * 31 + method.hashCode()) * 31
+                    + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash && method.equals(k.method)
+                    && target.equals(k.target) && Arrays.deepEquals(args, k.args);
+        }
+    }
+
+    private final static class Entry {
+
+        final Future<Object> value;
+        final long expires;
+
+        Entry(Future<Object> value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    private final ConcurrentHashMap<Object, Long> versions = new ConcurrentHashMap<Object, Long>();
+
+    /** Returns the live call for <tt>key</tt>, or <tt>null</tt>. */
+    Future<Object> get(Key key, long now) {
+        Entry e = entries.get(key);
+        if (e == null) {
+            return null;
+        }
+        if (e.expires <= now) {
+            entries.remove(key, e);
+            return null;
+        }
+        return e.value;
+    }
+
+    /**
+     * Stores <tt>call</tt> for <tt>key</tt> unless there already is a live
+     * call, and returns the call that is now cached (so the caller has to
+     * start <tt>call</tt> only if it is returned).
+     */
+    Future<Object> putIfAbsent(Key key, Future<Object> call, long expires, long now) {
+        if (entries.size() >= MAX_ENTRIES) {
+            purge(now);
+        }
+        versions.putIfAbsent(key.target, UNKNOWN);
+        Entry mine = new Entry(call, expires);
+        while (true) {
+            Entry e = entries.putIfAbsent(key, mine);
+            if (e == null) {
+                return call;
+            }
+            if (e.expires > now) {
+                return e.value;
+            }
+            if (entries.replace(key, e, mine)) {
+                return call;
+            }
+        }
+    }
+
+    /** Drops the entry for <tt>key</tt> if it still holds <tt>call</tt>. */
+    void remove(Key key, Future<Object> call) {
+        Entry e = entries.get(key);
+        if (e != null && e.value == call) {
+            entries.remove(key, e);
+        }
+    }
+
+    /** Whether results of calls to <tt>target</tt> have been cached. */
+    boolean holds(Object target) {
+        return versions.containsKey(target);
+    }
+
+    /**
+     * Records the version stamp of <tt>target</tt>, dropping its entries if
+     * the version changed.
+     */
+    void version(Object target, long v) {
+        Long old = versions.put(target, v);
+        if (old != null && !old.equals(UNKNOWN) && old.longValue() != v) {
+            dropEntries(target);
+        }
+    }
+
+    /** Forgets everything about <tt>target</tt> (e.g., when it is gone). */
+    void drop(Object target) {
+        versions.remove(target);
+        dropEntries(target);
+    }
+
+    private void dropEntries(Object target) {
+        for (Iterator<Key> it = entries.keySet().iterator(); it.hasNext();) {
+            if (it.next().target.equals(target)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of a cached result that the caller may modify. Immutable
+     * values are returned as they are, arrays of primitives are cloned, and
+     * anything else is copied through serialization (it came through RMI,
+     * so it is serializable).
+     *
+     * @throws IOException if the value cannot be copied
+     */
+    static Object copy(Object value) throws IOException {
+        if (value == null || value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum) {
+            // the boxed numbers of java.lang (and the other Number types in
+            // use, e.g. BigDecimal) are immutable
+            return value;
+        }
+        Class<?> c = value.getClass();
+        if (c.isArray() && c.getComponentType().isPrimitive()) {
+            int n = Array.getLength(value);
+            Object a = Array.newInstance(c.getComponentType(), n);
+            System.arraycopy(value, 0, a, 0, n);
+            return a;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bos);
+        out.writeObject(value);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException("Cannot copy cached " + c.getName(), cnfe);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Drops expired entries; if that is not enough, all completed ones. */
+    private void purge(long now) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            if (it.next().expires <= now) {
+                it.remove();
+            }
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+                if (it.next().value.isDone()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+}
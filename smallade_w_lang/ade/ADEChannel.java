@@ -0,0 +1,476 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A named data channel of an {@link ade.ADEComponentImpl ADEComponentImpl}.
+ * The producing component publishes a value once per update; every value gets
+ * the next sequence number of the channel and is pushed to all subscribers
+ * with a <tt>channelUpdate</tt> call, so that consumers no longer need to poll
+ * the producer. Each subscriber has its own delivery thread and a bounded
+ * queue: with a queue size of 1 (the default) a slow subscriber only ever gets
+ * the latest value, with larger queues the oldest values are dropped when the
+ * queue is full. Subscribers can tell from gaps in the sequence numbers how
+ * many values they missed.
+ * <p>
+ * Subscribers on the same host (same IP and temporary directory) are served
+ * through an {@link ade.ADESharedRing ADESharedRing} instead: the producer
+ * writes every value once into a memory-mapped file, and subscribers read it
+ * from there, so no RMI call is made per value. Values that do not fit into a
+ * slot of the ring are still pushed via RMI.
+ * <p>
+ * The producer side ({@link Subscriber}) and the consumer side
+ * ({@link Inbox}) are managed by <tt>ADEComponentImpl</tt>; publishing
+ * channels are listed with the {@link ade.ADERegistry registry}.
+ */
+public class ADEChannel {
+
+    /** A single value received on a channel. */
+    public static class Update {
+
+        /** The sequence number assigned by the producer. */
+        public final long seq;
+        /** The value. */
+        public final Object value;
+        /** The local time (in ms) at which the value was published or
+         * received. */
+        public final long time;
+
+        Update(long seq, Object value, long time) {
+            this.seq = seq;
+            this.value = value;
+            this.time = time;
+        }
+    }
+    /** Receives values read from a shared ring. */
+    interface Listener {
+
+        void channelUpdated(String publisher, String channel, long seq, Object value);
+    }
+    final String name;
+    private long seq = 0;
+    private Object latest = null;
+    private final HashMap<String, Subscriber> subscribers = new HashMap<String, Subscriber>(); // key on subscriber ID
+    private ADESharedRing ring = null;
+    private int localSubscribers = 0;
+    // whether the registry knows about this channel and when we last tried
+    boolean registered = false;
+    long lastRegistration = 0;
+
+    ADEChannel(String name) {
+        this.name = name;
+    }
+
+    /** Assigns the next sequence number to <tt>value</tt> and queues it for
+     * all subscribers.
+     * @return the sequence number of the value */
+    synchronized long publish(Object value) {
+        seq++;
+        latest = value;
+        if (!subscribers.isEmpty()) {
+            long now = System.currentTimeMillis();
+            boolean shared = (localSubscribers > 0 && ring.write(seq, now, value));
+            for (Subscriber s : subscribers.values()) {
+                if (!(shared && s.local)) {
+                    s.offer(seq, value, now);
+                }
+            }
+        }
+        return seq;
+    }
+
+    /** Returns the sequence number of the last published value (0 if nothing
+     * has been published yet). */
+    synchronized long getSequence() {
+        return seq;
+    }
+
+    /** Adds a subscriber, replacing (and stopping) an earlier subscription of
+     * the same component. The subscriber immediately receives the latest
+     * value, if any. */
+    synchronized void subscribe(Subscriber s) {
+        Subscriber old = subscribers.put(s.uid, s);
+        if (old != null) {
+            stopped(old);
+        }
+        if (s.local) {
+            localSubscribers++;
+        }
+        s.start();
+        if (seq > 0) {
+            s.offer(seq, latest, System.currentTimeMillis());
+        }
+    }
+
+    /** Removes the subscription of component <tt>uid</tt>.
+     * @return <tt>true</tt> if there was one */
+    synchronized boolean unsubscribe(String uid) {
+        Subscriber s = subscribers.remove(uid);
+        if (s != null) {
+            stopped(s);
+            return true;
+        }
+        return false;
+    }
+
+    /** Removes a subscriber whose delivery failed, unless it has been
+     * replaced in the meantime. */
+    synchronized void remove(Subscriber s) {
+        if (subscribers.get(s.uid) == s) {
+            subscribers.remove(s.uid);
+            stopped(s);
+        }
+    }
+
+    private void stopped(Subscriber s) {
+        if (s.local) {
+            localSubscribers--;
+        }
+        s.shutdown();
+    }
+
+    /** Returns the shared ring of this channel, creating it in
+     * <tt>dir</tt> if necessary.
+     * @param dir the temporary directory of the host
+     * @param owner the ID of the publishing component (part of the file name)
+     * @throws IOException if the ring file cannot be created */
+    synchronized ADESharedRing getRing(String dir, String owner)
+            throws IOException {
+        if (ring == null) {
+            String f = ("ade-" + owner + "-" + name + ".shm").replaceAll("[^A-Za-z0-9._-]", "_");
+            ring = ADESharedRing.create(new File(dir, f),
+                    ADEGlobals.DEF_SHM_SLOTS, ADEGlobals.DEF_SHM_SLOT_SIZE);
+        }
+        return ring;
+    }
+
+    /** Returns the IDs of the subscribed components. */
+    synchronized ArrayList<String> getSubscribers() {
+        return new ArrayList<String>(subscribers.keySet());
+    }
+
+    /** Stops all delivery threads and removes the shared ring. */
+    synchronized void close() {
+        for (Subscriber s : subscribers.values()) {
+            s.shutdown();
+        }
+        subscribers.clear();
+        localSubscribers = 0;
+        if (ring != null) {
+            ring.close();
+            ring = null;
+        }
+    }
+
+    /** The producer's view of one subscription: a bounded queue of values and
+     * the thread that pushes them to the subscriber. */
+    static class Subscriber extends Thread {
+
+        final String uid;
+        final boolean local;
+        private final ADEChannel channel;
+        private final ADEComponent ref;
+        private final ADERemoteCallTimer rct;
+        private final String owner;
+        private final int capacity;
+        private final ArrayDeque<Update> queue;
+        private boolean active = true;
+        private long dropped = 0;
+
+        /** @param channel the channel
+         * @param uid the subscriber's ID
+         * @param ref the subscriber's remote reference
+         * @param rct the call timer used for delivery
+         * @param owner the ID of the publishing component
+         * @param capacity the queue size (values less than 1 mean 1)
+         * @param local whether the subscriber reads the shared ring, so that
+         *        only values that did not fit into it are pushed */
+        Subscriber(ADEChannel channel, String uid, ADEComponent ref,
+                ADERemoteCallTimer rct, String owner, int capacity,
+                boolean local) {
+            super("ADEChannel " + channel.name + " -> " + uid);
+            setDaemon(true);
+            this.channel = channel;
+            this.uid = uid;
+            this.ref = ref;
+            this.rct = rct;
+            this.owner = owner;
+            this.local = local;
+            this.capacity = Math.max(capacity, 1);
+            queue = new ArrayDeque<Update>(this.capacity);
+        }
+
+        synchronized void offer(long seq, Object value, long time) {
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+                dropped++;
+            }
+            queue.addLast(new Update(seq, value, time));
+            notifyAll();
+        }
+
+        /** Returns the number of values dropped because the queue was
+         * full. */
+        synchronized long getDropped() {
+            return dropped;
+        }
+
+        synchronized void shutdown() {
+            active = false;
+            queue.clear();
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Update u;
+                    synchronized (this) {
+                        while (active && queue.isEmpty()) {
+                            try {
+                                wait();
+                            } catch (InterruptedException ie) {
+                            }
+                        }
+                        if (!active) {
+                            return;
+                        }
+                        u = queue.pollFirst();
+                    }
+                    try {
+                        rct.remoteCall("channelUpdate", ref, owner, owner,
+                                channel.name, u.seq, u.value);
+                    } catch (Exception e) {
+                        System.err.println(owner + ": dropping subscriber " + uid
+                                + " of channel " + channel.name + ":\n\t" + e);
+                        channel.remove(this);
+                        return;
+                    }
+                }
+            } finally {
+                rct.terminate();
+            }
+        }
+    }
+
+    /** The subscriber's view of one subscription: the latest value received
+     * and, for queue sizes greater than 1, the values not yet polled. Values
+     * are either pushed via {@link #receive receive} or, for co-located
+     * publishers, read from the shared ring whenever the inbox is accessed. */
+    static class Inbox {
+
+        final String publisher;
+        final String channel;
+        private final int capacity;
+        private ADESharedRing ring = null;
+        private Listener listener = null;
+        private final ArrayDeque<Update> queue;
+        private long seq = -1;
+        private Object latest = null;
+        private long time = 0;
+        private long missed = 0;
+        private boolean polled = false;
+        private long checked = 0;
+
+        Inbox(String publisher, String channel, int capacity) {
+            this.publisher = publisher;
+            this.channel = channel;
+            this.capacity = Math.max(capacity, 1);
+            queue = (this.capacity > 1 ? new ArrayDeque<Update>(this.capacity) : null);
+        }
+
+        /** Reads values from <tt>r</tt> from now on; <tt>l</tt> (if not
+         * <tt>null</tt>) is told about every value read. */
+        synchronized void attach(ADESharedRing r, Listener l) {
+            ring = r;
+            listener = l;
+        }
+
+        synchronized boolean isShared() {
+            return ring != null;
+        }
+
+        /** Takes over the values written to the shared ring since the last
+         * access.
+         * @return <tt>true</tt> if the ring had new values */
+        boolean sync() {
+            ArrayList<Update> got = null;
+            Listener l;
+            boolean fresh;
+            synchronized (this) {
+                if (ring == null) {
+                    return false;
+                }
+                l = listener;
+                long now = System.currentTimeMillis();
+                if (now - checked >= ADEGlobals.DEF_SHM_RECHECK) {
+                    checked = now;
+                    reattach();
+                }
+                long last = ring.getLastSeq();
+                fresh = (last > seq);
+                for (long s = Math.max(seq + 1, last - ring.getSlots() + 1); s <= last; s++) {
+                    byte[] data = ring.read(s);
+                    if (data == null || data == ADESharedRing.OVERSIZE) {
+                        // overwritten (counted below) or pushed via RMI
+                        continue;
+                    }
+                    Object value;
+                    try {
+                        value = ADESharedRing.decode(data);
+                    } catch (Exception e) {
+                        System.err.println("ADEChannel: cannot decode value of " + channel + ":\n\t" + e);
+                        continue;
+                    }
+                    store(s, value, ring.getReadTime());
+                    if (l != null) {
+                        if (got == null) {
+                            got = new ArrayList<Update>();
+                        }
+                        got.add(new Update(s, value, time));
+                    }
+                }
+            }
+            if (got != null) {
+                for (Update u : got) {
+                    l.channelUpdated(publisher, channel, u.seq, u.value);
+                }
+            }
+            return fresh;
+        }
+
+        /** Switches to a new ring file if the publisher has replaced the
+         * one read so far; its sequence numbers start over. */
+        private void reattach() {
+            long c = ADESharedRing.created(ring.file);
+            if (c < 0 || c == ring.getCreated()) {
+                return;
+            }
+            try {
+                ADESharedRing r = ADESharedRing.open(ring.file);
+                ring.close();
+                ring = r;
+                seq = -1;
+            } catch (IOException ioe) {
+                // not written completely yet, try again next time
+            }
+        }
+
+        synchronized void receive(long s, Object value) {
+            if (ring != null && s <= seq) {
+                // already read from the ring
+                return;
+            }
+            store(s, value, System.currentTimeMillis());
+        }
+
+        private void store(long s, Object value, long t) {
+            if (seq >= 0 && s > seq + 1) {
+                missed += s - seq - 1;
+            }
+            // a smaller sequence number means the producer was restarted
+            seq = s;
+            latest = value;
+            time = t;
+            polled = false;
+            if (queue != null) {
+                if (queue.size() >= capacity) {
+                    queue.pollFirst();
+                    missed++;
+                }
+                queue.addLast(new Update(s, value, time));
+            }
+        }
+
+        Object getLatest() {
+            sync();
+            synchronized (this) {
+                return latest;
+            }
+        }
+
+        long getSequence() {
+            sync();
+            synchronized (this) {
+                return seq;
+            }
+        }
+
+        /** Returns the time in ms since the last value was published
+         * (<tt>Long.MAX_VALUE</tt> if none has arrived). */
+        long getAge() {
+            sync();
+            synchronized (this) {
+                return (seq < 0 ? Long.MAX_VALUE : System.currentTimeMillis() - time);
+            }
+        }
+
+        long getMissed() {
+            sync();
+            synchronized (this) {
+                return missed;
+            }
+        }
+
+        /** Returns the oldest value not yet polled, or <tt>null</tt>; with a
+         * queue size of 1, the latest value if it has not been polled. */
+        Update poll() {
+            sync();
+            synchronized (this) {
+                if (queue != null) {
+                    return queue.pollFirst();
+                }
+                if (seq >= 0 && !polled) {
+                    polled = true;
+                    return new Update(seq, latest, time);
+                }
+                return null;
+            }
+        }
+
+        /** Stops reading the shared ring. */
+        synchronized void close() {
+            if (ring != null) {
+                ring.close();
+                ring = null;
+            }
+        }
+    }
+}
@@ -80,6 +80,7 @@ public interface ADEComponent extends Remote {
      * @return always returns <tt>true</tt>
      * @throws RemoteException if the remote call fails
      */
+    @ADEMethodConditions(Idempotent = true)
     public boolean isUp() throws RemoteException;
 
     /**
@@ -233,6 +234,49 @@ public interface ADEComponent extends Remote {
     public ADEComponentInfo requestComponentInfo(Object credentials)
             throws RemoteException, AccessControlException;
 
+    /**
+     * Return a snapshot of the metrics this component keeps about itself
+     * (see {@link ade.ADEMetrics#snapshot}).
+     *
+     * @param credentials confirming information
+     * @return the current metric values by name
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    public HashMap<String, Double> requestMetrics(Object credentials)
+            throws RemoteException, AccessControlException;
+
+    /**
+     * Return the version stamp of the cacheable results of this component;
+     * clients drop their cached results when it changes (see
+     * {@link ade.ADEMethodConditions#CacheTTL}).
+     *
+     * @param uid the client's identification string
+     * @return the version stamp
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the client is not connected
+     */
+    public long requestCacheVersion(String uid)
+            throws RemoteException, AccessControlException;
+
+    /**
+     * Invoke several remote methods of this component in one call (used by
+     * the batching mode of {@link ade.ADERemoteCallTimer ADERemoteCallTimer}).
+     * The methods are invoked in order; a method that fails yields an
+     * {@link ade.ADEException ADEException} in place of its result.
+     *
+     * @param credentials confirming information
+     * @param methods the names of the methods
+     * @param args the arguments of each method
+     * @return the results, in the order of the methods
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    public Object[] callBatch(Object credentials, String[] methods, Object[][] args)
+            throws RemoteException, AccessControlException;
+
     /**
      * The registry will call this method if a new component is joing and if the
      * notification has been turned
@@ -267,6 +311,7 @@ public interface ADEComponent extends Remote {
      * @throws RemoteException if the request fails
      * @throws AccessControlException if the user does not have adequate
      * permissions */
+    @ADEMethodConditions(Idempotent = true, CacheTTL = 10000)
     public HashMap<String,ADEMethodConditions> requestMethods(String uid, Object credentials, String componenttype)
             throws ADERequestMethodsException, RemoteException, AccessControlException;
 
@@ -286,6 +331,59 @@ public interface ADEComponent extends Remote {
     public void cancelNotification(final String uid, Object credentials, final ADEComponent requester, final ADENotification note)
     	throws AccessControlException, RemoteException;
 
+    /**
+     * subscribe to a data channel of the component; from then on, every value
+     * published on the channel is pushed to the requester via
+     * {@link #channelUpdate channelUpdate}
+     * @param uid the requesting component's ID
+     * @param credentials the requesting component's credentials
+     * @param requester the remote reference to the requester
+     * @param channel the name of the channel
+     * @param queuesize how many undelivered values to keep (1 to only deliver the latest)
+     * @return the sequence number of the latest value published on the channel (0 if none yet)
+     * @throws AccessControlException
+     * @throws RemoteException
+     */
+    public long requestChannel(String uid, Object credentials, ADEComponent requester, String channel, int queuesize)
+	throws AccessControlException, RemoteException;
+
+    /**
+     * subscribe to a data channel of the component through shared memory;
+     * only possible if the requester runs on the same host (and uses the same
+     * temporary directory) as the component
+     * @param uid the requesting component's ID
+     * @param credentials the requesting component's credentials
+     * @param requester the remote reference to the requester
+     * @param channel the name of the channel
+     * @param queuesize how many undelivered values to keep for values that are sent via RMI
+     * @param host the requester's host IP
+     * @param tmpdir the requester's temporary directory
+     * @return the path of the ring file to read, or null if the channel has to be requested with
+     *         {@link #requestChannel requestChannel}
+     * @throws AccessControlException
+     * @throws RemoteException
+     */
+    public String requestLocalChannel(String uid, Object credentials, ADEComponent requester, String channel, int queuesize,
+            String host, String tmpdir)
+	throws AccessControlException, RemoteException;
+
+    /** removes a channel subscription if it exists */
+    public void cancelChannel(String uid, Object credentials, String channel)
+	throws AccessControlException, RemoteException;
+
+    /**
+     * delivers a value published on a channel the component subscribed to
+     * @param uid the publishing component's ID
+     * @param credentials the publishing component's credentials
+     * @param channel the name of the channel
+     * @param seq the sequence number of the value
+     * @param value the value
+     * @throws AccessControlException if there is no such subscription
+     * @throws RemoteException
+     */
+    public void channelUpdate(String uid, Object credentials, String channel, long seq, Object value)
+	throws AccessControlException, RemoteException;
+
     /**
      * Returns the ID of the component
      */
@@ -40,7 +40,6 @@ import ade.gui.logview.ADELogPlaybackVis;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PipedInputStream;
@@ -58,6 +57,7 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.security.AccessControlException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -70,6 +70,7 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import utilities.Util;
 
 /**
@@ -139,11 +140,43 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
      * Whether to perform "local logging". Note that this is different than
      * maintaining state, as it simply logs arbitrary data with timestamps.
      */
-    private boolean locallogging = false;
+    private volatile boolean locallogging = false;
     /**
-     * The Writer used when "local logging" is active.
+     * The {@link ade.ADELogWriter ADELogWriter} used when "local logging" is
+     * active; entries are written to disk by its own thread.
      */
-    private FileWriter fwrLog = null;
+    private volatile ADELogWriter fwrLog = null;
+    /**
+     * The metrics this component keeps about itself (call latencies,
+     * heartbeat jitter, reaper sweeps, queue depths); see
+     * {@link ade.ADEMetrics ADEMetrics}.
+     */
+    final private ADEMetrics metrics = new ADEMetrics();
+    /**
+     * Whether {@link #call(Object,String,Object[]) call} adapts its timeout
+     * to the observed latencies (off unless a component turns it on).
+     */
+    private volatile boolean adaptiveTimeouts = false;
+    /**
+     * The version stamp of the results clients may cache (see
+     * {@link #invalidateCachedCalls}); starts from the time so that it
+     * changes when the component is restarted.
+     */
+    final private AtomicLong cacheVersion = new AtomicLong(System.currentTimeMillis());
+    /**
+     * The remote methods found for {@link #callBatch}, by method string.
+     */
+    final private ConcurrentHashMap<String, Method> batchMethods = new ConcurrentHashMap<String, Method>();
+    /**
+     * The method strings each client obtained through {@link #requestMethods},
+     * by client ID; {@link #callBatch} invokes only these for it.
+     */
+    final private ConcurrentHashMap<String, Set<String>> grantedMethods = new ConcurrentHashMap<String, Set<String>>();
+    /**
+     * The method strings of {@link ade.ADEComponent ADEComponent}, which is
+     * what the registry calls on its components.
+     */
+    private static Set<String> componentMethods = null;
     /**
      * Rudimentary state handling (saving, reloading). Note that this differs
      * from logging in that data will be periodically sent to the
@@ -311,6 +344,12 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
      *  stores for each calling component the component name as key plus
      */
     final private HashMap<ADEComponent, ArrayList<ADENotification>> notifications = new HashMap<ADEComponent, ArrayList<ADENotification>>(); // key on component RMI reference
+    /** the data channels this component publishes, see {@link ade.ADEChannel ADEChannel} */
+    final private ConcurrentHashMap<String, ADEChannel> channels = new ConcurrentHashMap<String, ADEChannel>(); // key on channel name
+    /** the values received on channels this component subscribed to */
+    final private ConcurrentHashMap<String, ADEChannel.Inbox> inboxes = new ConcurrentHashMap<String, ADEChannel.Inbox>(); // key on publisher ID and channel name
+    /** checks shared-memory inboxes for new values if {@link #channelUpdated} is overridden */
+    private Thread channelPoller = null;
     ConcurrentHashMap<String, Method> localMethodsFast = new ConcurrentHashMap<String, Method>();
 
     /** used to delay the start-up of the system until at least one other registry has checked in */
@@ -796,6 +835,240 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         }
     }
 
+    /**
+     * Returns a snapshot of the metrics this component keeps: remote call
+     * latencies, errors and timeouts per method and target, heartbeat jitter,
+     * reaper sweep times, queue depths and thread counts. The same callers as
+     * for {@link #requestComponentInfo} are allowed.
+     *
+     * @param credentials one of: <tt>this</tt>, the
+     * {@link ade.ADERegistry ADERegistry} with which this component is registered,
+     * any client that has a connection, or a locally defined security check
+     * (for subclasses)
+     * @return the current metric values by name
+     * @throws RemoteException Thrown if the request fails
+     * @throws AccessControlException Thrown if the credentials inadequate
+     */
+    @Override
+    final public HashMap<String, Double> requestMetrics(Object credentials)
+            throws RemoteException, AccessControlException {
+        if (credentials.equals(this)
+                || credentials.equals(ar)
+                || (credentials instanceof String && userMap.containsKey((String) credentials))
+                || localRequestComponentInfo(credentials)) {
+            return metrics.snapshot();
+        }
+        throw new AccessControlException(
+                "Metrics request failed based on " + credentials);
+    }
+
+    /**
+     * Returns the version stamp of the results of this component that
+     * clients may cache; connected clients only.
+     *
+     * @param uid the client's identification string
+     * @return the version stamp
+     * @throws RemoteException Thrown if the request fails
+     * @throws AccessControlException Thrown if the client is not connected
+     */
+    @Override
+    final public long requestCacheVersion(String uid)
+            throws RemoteException, AccessControlException {
+        if (!userMap.containsKey(uid)) {
+            throw new AccessControlException("Unknown user " + uid
+                    + " requesting cache version of " + myInfo.getKey());
+        }
+        return cacheVersion.get();
+    }
+
+    /**
+     * Invokes several remote methods of this component in one call. Only
+     * methods of the component's remote interfaces (those extending
+     * {@link ade.ADEComponent ADEComponent}) can be invoked, and the same
+     * callers as for {@link #requestComponentInfo} are allowed. A client
+     * can only invoke the methods it obtained through {@link #requestMethods},
+     * the registry only those of {@link ade.ADEComponent ADEComponent}.
+     *
+     * @param credentials one of: <tt>this</tt>, the
+     * {@link ade.ADERegistry ADERegistry} with which this component is registered,
+     * any client that has a connection, or a locally defined security check
+     * (for subclasses)
+     * @param methods the names of the methods
+     * @param args the arguments of each method
+     * @return the results, in the order of the methods; a method that fails
+     * yields an {@link ade.ADEException ADEException}
+     * @throws RemoteException Thrown if the request fails
+     * @throws AccessControlException Thrown if the credentials inadequate
+     */
+    @Override
+    final public Object[] callBatch(Object credentials, String[] methods, Object[][] args)
+            throws RemoteException, AccessControlException {
+        if (!(credentials.equals(this)
+                || credentials.equals(ar)
+                || (credentials instanceof String && userMap.containsKey((String) credentials))
+                || localRequestComponentInfo(credentials))) {
+            throw new AccessControlException(
+                    "Batch call failed based on " + credentials);
+        }
+        if (methods.length != args.length) {
+            throw new RemoteException("Batch of " + methods.length
+                    + " methods with " + args.length + " argument lists");
+        }
+        String uid = (credentials instanceof String ? (String) credentials : null);
+        // null for this component itself, which can invoke anything remote
+        Set<String> allowed = null;
+        if (credentials.equals(this)) {
+            allowed = null;
+        } else if (uid != null) {
+            allowed = grantedMethods.get(uid);
+            if (allowed == null) {
+                allowed = Collections.emptySet();
+            }
+        } else {
+            allowed = componentMethods();
+        }
+        Object[] results = new Object[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            Object[] a = (args[i] == null ? new Object[0] : args[i]);
+            try {
+                Method m = batchMethod(methods[i], a);
+                String ms = (m == null ? null : ADEGlobals.getMethodString(m));
+                if (m == null) {
+                    results[i] = new ADEException("Method "
+                            + ADEGlobals.getMethodString(methods[i], a) + " not found");
+                } else if (allowed != null && (!allowed.contains(ms)
+                        || (uid != null && !isAllowableMethod(uid, ms)))) {
+                    results[i] = new ADEException("Method " + ms
+                            + " not available to " + credentials);
+                } else {
+                    results[i] = m.invoke(this, a);
+                }
+            } catch (java.lang.reflect.InvocationTargetException ite) {
+                results[i] = new ADEException(methods[i] + " invocation failed", ite.getCause());
+            } catch (Exception e) {
+                results[i] = new ADEException(methods[i] + " invocation failed", e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the remote method (one declared in an interface extending
+     * {@link ade.ADEComponent ADEComponent}) with the given name that
+     * accepts the arguments, or <tt>null</tt>.
+     */
+    private Method batchMethod(String mn, Object[] args) {
+        String key = ADEGlobals.getMethodString(mn, args);
+        Method found = batchMethods.get(key);
+        if (found != null) {
+            return found;
+        }
+        for (Class k = getClass(); k != null; k = k.getSuperclass()) {
+            for (Class c : k.getInterfaces()) {
+                found = remoteMethod(c, mn, args);
+                if (found != null) {
+                    batchMethods.put(key, found);
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static synchronized Set<String> componentMethods() {
+        if (componentMethods == null) {
+            HashSet<String> ms = new HashSet<String>();
+            for (Method m : ADEComponent.class.getMethods()) {
+                ms.add(ADEGlobals.getMethodString(m));
+            }
+            componentMethods = Collections.unmodifiableSet(ms);
+        }
+        return componentMethods;
+    }
+
+    private static Method remoteMethod(Class iface, String mn, Object[] args) {
+        if (!ADEComponent.class.isAssignableFrom(iface)) {
+            return null;
+        }
+        for (Method m : iface.getMethods()) {
+            Class[] ps = m.getParameterTypes();
+            if (!m.getName().equals(mn) || ps.length != args.length) {
+                continue;
+            }
+            boolean fits = true;
+            for (int i = 0; i < ps.length && fits; i++) {
+                fits = (args[i] == null ? !ps[i].isPrimitive()
+                        : ADEGlobals.primitiveToObject(ps[i]).isInstance(args[i]));
+            }
+            if (fits) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells clients to drop the results of this component's cacheable
+     * methods (those with an {@link ade.ADEMethodConditions#CacheTTL
+     * CacheTTL}) that they hold, e.g., after a change of settings that such
+     * methods return. Clients notice within one heartbeat period; until then,
+     * the time to live of the cached results bounds their age.
+     */
+    final protected void invalidateCachedCalls() {
+        cacheVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns the metrics of this component, to which subclasses can add
+     * their own instruments.
+     */
+    final protected ADEMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Adds the gauges every component reports. */
+    private void addStandardGauges() {
+        final java.lang.management.ThreadMXBean threads =
+                java.lang.management.ManagementFactory.getThreadMXBean();
+        metrics.gauge("ade_threads", new ADEMetrics.Gauge() {
+
+            @Override
+            public double value() {
+                return threads.getThreadCount();
+            }
+        });
+        metrics.gauge("ade_heap_used_bytes", new ADEMetrics.Gauge() {
+
+            @Override
+            public double value() {
+                Runtime rt = Runtime.getRuntime();
+                return rt.totalMemory() - rt.freeMemory();
+            }
+        });
+        metrics.gauge("ade_clients", new ADEMetrics.Gauge() {
+
+            @Override
+            public double value() {
+                return userMap.size();
+            }
+        });
+        metrics.gauge("ade_heartbeats", new ADEMetrics.Gauge() {
+
+            @Override
+            public double value() {
+                return myheartbeats.size();
+            }
+        });
+        metrics.gauge("ade_log_pending", new ADEMetrics.Gauge() {
+
+            @Override
+            public double value() {
+                ADELogWriter w = fwrLog;
+                return (w == null ? 0 : w.getPending());
+            }
+        });
+    }
+
     /**
      * Returns host information about this component. All connected clients, all
      * registries, and requests that pass the overridden
@@ -891,6 +1164,7 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                 try {
                     note.rct = new ADERemoteCallTimer(ADEGlobals.DEF_HBPULSE, requester);
                     note.rct.setAllMethods(ADEGlobals.getADEComponentMethods());
+                    note.rct.setMetrics(metrics, uid);
                     HashMap<String, ADEMethodConditions> hm = 
                             (HashMap<String, ADEMethodConditions>) note.rct.remoteCall("requestMethods", requester, 
                                                                                      myID, myID,requester.getClass().getName());
@@ -1029,6 +1303,402 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         }            
     }
 
+
+    /**
+     * Publish a value on a data channel. The value gets the next sequence
+     * number of the channel and is pushed to all current subscribers by their
+     * delivery threads, so this call does not wait for the subscribers. The
+     * first publication on a channel lists it with the registry (see
+     * {@link #getChannelPublishers getChannelPublishers}). Values should not
+     * be modified after they have been published.
+     *
+     * @param channel the name of the channel
+     * @param value the value (must be serializable)
+     * @return the sequence number of the value
+     */
+    final protected long publish(String channel, Object value) {
+        ADEChannel c = getChannel(channel);
+        long seq = c.publish(value);
+        if (!c.registered && registered) {
+            registerChannel(c);
+        }
+        return seq;
+    }
+
+    /** List a channel with the registry in the background; failed attempts
+     * are repeated on a later publication, at most once per heartbeat
+     * period. */
+    private void registerChannel(final ADEChannel c) {
+        synchronized (c) {
+            long now = System.currentTimeMillis();
+            if (c.registered || now - c.lastRegistration < ADEGlobals.DEF_HBPULSE) {
+                return;
+            }
+            c.lastRegistration = now;
+        }
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    rctReg.remoteCall("registerChannel", ar, myID, myPassword, c.name, true);
+                    c.registered = true;
+                } catch (Exception e) {
+                    if (dbg > 3) {
+                        System.err.println(myID + ": could not register channel " + c.name + ":\n\t" + e);
+                    }
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Returns the IDs of the components that publish a data channel, as
+     * listed with the registry; <tt>null</tt> if the registry could not be
+     * asked.
+     *
+     * @param channel the name of the channel
+     */
+    final protected ArrayList<String> getChannelPublishers(String channel) {
+        // ensure this component is registered in the system
+        finishedInitialization(this);
+        try {
+            return (ArrayList<String>) rctReg.remoteCall("requestChannelPublishers",
+                    ar, myID, myPassword, channel);
+        } catch (ADEException ace) {
+            if (dbg > 5) {
+                System.err.println(myID + ": failed to get publishers of channel " + channel);
+                System.err.println(ace);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Subscribe to a data channel of the component given by "ref" (a heartbeat
+     * to the component has to be in place). Values published on the channel
+     * are then pushed to this component and can be obtained with
+     * {@link #getChannelValue getChannelValue} and
+     * {@link #pollChannel pollChannel}; {@link #channelUpdated channelUpdated}
+     * is called for each of them. Subscribing again replaces the earlier
+     * subscription. If the registry reports the publisher on the same host,
+     * the values are read from a shared-memory ring instead of being sent via
+     * RMI (unless disabled with <tt>--noshm</tt>).
+     *
+     * @param ref the <i>pseudo-reference</i> of the publishing component
+     * @param channel the name of the channel
+     * @param queuesize how many values to keep if they arrive faster than
+     *        they are polled (1 to only keep the latest)
+     * @return true if the subscription is in place, false otherwise
+     */
+    final protected boolean subscribeChannel(Object ref, String channel, int queuesize) {
+        if (ref == null || !(ref instanceof Heartbeat)) {
+            System.err.println(myID + ": cannot subscribe to channel " + channel + ", wrong type for remote reference!");
+            return false;
+        }
+        Heartbeat hb = (Heartbeat) ref;
+        String key = getRefID(hb) + "/" + channel;
+        // set up the inbox first so the first value is not rejected
+        ADEChannel.Inbox in = new ADEChannel.Inbox(getRefID(hb), channel, queuesize);
+        ADEChannel.Inbox old = inboxes.put(key, in);
+        if (old != null) {
+            old.close();
+        }
+        try {
+            if (myInfo.sharedMemory && myHost.hostip.equals(hb.toServHost)
+                    && subscribeLocalChannel(hb, in, channel, queuesize)) {
+                return true;
+            }
+            hb.rct.remoteCall("requestChannel", hb.toComponent, myID, myID, this, channel, queuesize);
+            return true;
+        } catch (Exception e) {
+            System.err.println(myID + ": could not subscribe to channel " + channel + " of " + getRefID(hb) + " due to: " + e);
+            if (old != null) {
+                inboxes.replace(key, in, old);
+            } else {
+                inboxes.remove(key, in);
+            }
+            return false;
+        }
+    }
+
+    /** Try to subscribe through shared memory; returns false if the
+     * publisher declines or its ring cannot be opened. */
+    private boolean subscribeLocalChannel(Heartbeat hb, ADEChannel.Inbox in, String channel, int queuesize) {
+        try {
+            String path = (String) hb.rct.remoteCall("requestLocalChannel", hb.toComponent,
+                    myID, myID, this, channel, queuesize, myHost.hostip, getTempDir());
+            if (path == null) {
+                return false;
+            }
+            boolean poll = overridesChannelUpdated();
+            in.attach(ADESharedRing.open(new File(path)), (poll ? channelListener : null));
+            if (poll) {
+                startChannelPoller();
+            }
+            if (dbg > 3) {
+                System.out.println(myID + ": reading channel " + channel + " of " + getRefID(hb) + " from " + path);
+            }
+            return true;
+        } catch (Exception e) {
+            if (dbg > 3) {
+                System.err.println(myID + ": no shared memory for channel " + channel + " of " + getRefID(hb) + ":\n\t" + e);
+            }
+            return false;
+        }
+    }
+
+    /** passes values read from shared memory on to {@link #channelUpdated} */
+    final private ADEChannel.Listener channelListener = new ADEChannel.Listener() {
+
+        @Override
+        public void channelUpdated(String publisher, String channel, long seq, Object value) {
+            ADEComponentImpl.this.channelUpdated(publisher, channel, seq, value);
+        }
+    };
+
+    /** whether a subclass implements {@link #channelUpdated}, in which case
+     * shared-memory inboxes have to be watched */
+    private boolean overridesChannelUpdated() {
+        for (Class<?> c = getClass(); c != ADEComponentImpl.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("channelUpdated", String.class, String.class, long.class, Object.class);
+                return true;
+            } catch (NoSuchMethodException nsme) {
+            }
+        }
+        return false;
+    }
+
+    private synchronized void startChannelPoller() {
+        if (channelPoller != null) {
+            return;
+        }
+        channelPoller = new Thread(myID + " channel poller") {
+
+            @Override
+            public void run() {
+                // poll quickly while values arrive, back off when idle
+                long pause = ADEGlobals.DEF_SHM_POLL;
+                while (myInfo.state != ADEGlobals.ComponentState.SHUTDOWN) {
+                    boolean fresh = false;
+                    for (ADEChannel.Inbox in : inboxes.values()) {
+                        fresh |= in.sync();
+                    }
+                    if (fresh) {
+                        pause = ADEGlobals.DEF_SHM_POLL;
+                    } else {
+                        pause = Math.min(pause * 2, ADEGlobals.DEF_SHM_POLL_IDLE);
+                    }
+                    try {
+                        sleep(pause);
+                    } catch (InterruptedException ie) {
+                    }
+                }
+            }
+        };
+        channelPoller.setDaemon(true);
+        channelPoller.start();
+    }
+
+    /**
+     * Cancel a subscription made with {@link #subscribeChannel subscribeChannel}.
+     *
+     * @param ref the <i>pseudo-reference</i> of the publishing component
+     * @param channel the name of the channel
+     */
+    final protected void unsubscribeChannel(Object ref, String channel) {
+        if (ref == null || !(ref instanceof Heartbeat)) {
+            return;
+        }
+        Heartbeat hb = (Heartbeat) ref;
+        ADEChannel.Inbox in = inboxes.remove(getRefID(hb) + "/" + channel);
+        if (in != null) {
+            in.close();
+        }
+        try {
+            hb.rct.remoteCall("cancelChannel", hb.toComponent, myID, myID, channel);
+        } catch (Exception e) {
+            if (dbg > 3) {
+                System.err.println(myID + ": could not cancel channel " + channel + " of " + getRefID(hb) + " due to: " + e);
+            }
+        }
+    }
+
+    /** Returns the inbox for a subscription, or <tt>null</tt>. */
+    private ADEChannel.Inbox getInbox(Object ref, String channel) {
+        return (ref instanceof Heartbeat ? inboxes.get(getRefID(ref) + "/" + channel) : null);
+    }
+
+    /**
+     * Returns the latest value received on a subscribed channel, or
+     * <tt>null</tt> if there is none (yet).
+     */
+    final protected Object getChannelValue(Object ref, String channel) {
+        ADEChannel.Inbox in = getInbox(ref, channel);
+        return (in == null ? null : in.getLatest());
+    }
+
+    /**
+     * Returns the sequence number of the latest value received on a
+     * subscribed channel, or -1 if there is none (yet).
+     */
+    final protected long getChannelSequence(Object ref, String channel) {
+        ADEChannel.Inbox in = getInbox(ref, channel);
+        return (in == null ? -1 : in.getSequence());
+    }
+
+    /**
+     * Returns the time in ms since the latest value arrived on a subscribed
+     * channel (<tt>Long.MAX_VALUE</tt> if none has), which allows subscribers
+     * to fall back on polling when a publisher has gone quiet.
+     */
+    final protected long getChannelAge(Object ref, String channel) {
+        ADEChannel.Inbox in = getInbox(ref, channel);
+        return (in == null ? Long.MAX_VALUE : in.getAge());
+    }
+
+    /**
+     * Returns the number of values of a subscribed channel that were not
+     * received or were dropped before they were polled, based on the
+     * sequence numbers.
+     */
+    final protected long getChannelMissed(Object ref, String channel) {
+        ADEChannel.Inbox in = getInbox(ref, channel);
+        return (in == null ? 0 : in.getMissed());
+    }
+
+    /**
+     * Returns the oldest value of a subscribed channel that has not been
+     * polled yet, or <tt>null</tt> if there is none.
+     */
+    final protected ADEChannel.Update pollChannel(Object ref, String channel) {
+        ADEChannel.Inbox in = getInbox(ref, channel);
+        return (in == null ? null : in.poll());
+    }
+
+    /**
+     * Called (in an RMI thread) for every value received on a subscribed
+     * channel, after it has been stored; components can override this to
+     * react to updates immediately instead of checking
+     * {@link #getChannelValue getChannelValue}.
+     *
+     * @param publisher the ID of the publishing component
+     * @param channel the name of the channel
+     * @param seq the sequence number of the value
+     * @param value the value
+     */
+    protected void channelUpdated(String publisher, String channel, long seq, Object value) {
+    }
+
+    /** subscribe a component to a data channel, see {@link ade.ADEChannel ADEChannel} */
+    @Override
+    public long requestChannel(final String uid, Object credentials, final ADEComponent requester, String channel, int queuesize)
+	throws AccessControlException, RemoteException {
+	// check if the user is registered
+        if (!userMap.containsKey(uid)) {
+            throw new AccessControlException("Authorization to subscribe to channel failed, user unkown.");
+        }
+        ADERemoteCallTimer rct;
+        try {
+            rct = new ADERemoteCallTimer(ADEGlobals.DEF_HBPULSE, requester);
+            rct.setAllMethods(ADEGlobals.getADEComponentMethods());
+            rct.setMetrics(metrics, uid);
+        } catch (ADEException ace) {
+            System.err.println(myID + ": ADERemoteCallTimer failed:\n\t" + ace);
+            throw new RemoteException("Failure to produce call timer in requestChannel");
+        }
+        ADEChannel c = getChannel(channel);
+        c.subscribe(new ADEChannel.Subscriber(c, uid, requester, rct, myID, queuesize, false));
+        return c.getSequence();
+    }
+
+    /** subscribe a component on the same host to a data channel through shared memory */
+    @Override
+    public String requestLocalChannel(final String uid, Object credentials, final ADEComponent requester, String channel, int queuesize,
+            String host, String tmpdir)
+	throws AccessControlException, RemoteException {
+        if (!userMap.containsKey(uid)) {
+            throw new AccessControlException("Authorization to subscribe to channel failed, user unkown.");
+        }
+        if (!myInfo.sharedMemory || !myHost.hostip.equals(host) || !getTempDir().equals(tmpdir)) {
+            return null;
+        }
+        ADEChannel c = getChannel(channel);
+        String path;
+        try {
+            path = c.getRing(getTempDir(), myID).file.getPath();
+        } catch (IOException ioe) {
+            System.err.println(myID + ": cannot create shared memory for channel " + channel + ":\n\t" + ioe);
+            return null;
+        }
+        ADERemoteCallTimer rct;
+        try {
+            rct = new ADERemoteCallTimer(ADEGlobals.DEF_HBPULSE, requester);
+            rct.setAllMethods(ADEGlobals.getADEComponentMethods());
+            rct.setMetrics(metrics, uid);
+        } catch (ADEException ace) {
+            System.err.println(myID + ": ADERemoteCallTimer failed:\n\t" + ace);
+            throw new RemoteException("Failure to produce call timer in requestLocalChannel");
+        }
+        c.subscribe(new ADEChannel.Subscriber(c, uid, requester, rct, myID, queuesize, true));
+        return path;
+    }
+
+    /** Returns the channel with the given name, creating it if necessary. */
+    private ADEChannel getChannel(String channel) {
+        ADEChannel c = channels.get(channel);
+        if (c == null) {
+            ADEChannel old = channels.putIfAbsent(channel, c = new ADEChannel(channel));
+            if (old != null) {
+                c = old;
+            }
+        }
+        return c;
+    }
+
+    /** Removes what is kept for a client whose heartbeat was lost, so that
+     * it does not pile up as clients come and go. */
+    private void clientRemoved(String uid) {
+        grantedMethods.remove(uid);
+        // local subscribers read the shared ring and are never pushed to,
+        // so a failed delivery would not notice that they are gone
+        for (ADEChannel c : channels.values()) {
+            c.unsubscribe(uid);
+        }
+        // the metrics of calls to it, unless they are also those of calls
+        // through our own heartbeat to it
+        synchronized (myheartbeats) {
+            if (myheartbeats.containsKey(uid)) {
+                return;
+            }
+        }
+        metrics.removeLabeled("target", uid);
+    }
+
+    /** removes a channel subscription if it exists */
+    @Override
+    public void cancelChannel(final String uid, Object credentials, String channel)
+	throws AccessControlException, RemoteException {
+        if (!userMap.containsKey(uid)) {
+            throw new AccessControlException("Authorization to cancel channel failed, user unkown.");
+        }
+        ADEChannel c = channels.get(channel);
+        if (c != null) {
+            c.unsubscribe(uid);
+        }
+    }
+
+    /** receives a value published on a subscribed channel */
+    @Override
+    public void channelUpdate(String uid, Object credentials, String channel, long seq, Object value)
+	throws AccessControlException, RemoteException {
+        ADEChannel.Inbox in = inboxes.get(uid + "/" + channel);
+        if (in == null) {
+            throw new AccessControlException("Not subscribed to channel " + channel + " of " + uid);
+        }
+        in.receive(seq, value);
+        channelUpdated(uid, channel, seq, value);
+    }
      
 //***********************************************************************************************************************
 
@@ -1195,6 +1865,17 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                 throw new ADERequestMethodsException(
                         "No methods for user to call.");
             }
+            if (!asRegistry) {
+                Set<String> granted = grantedMethods.get(uid);
+                if (granted == null) {
+                    granted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    Set<String> prev = grantedMethods.putIfAbsent(uid, granted);
+                    if (prev != null) {
+                        granted = prev;
+                    }
+                }
+                granted.addAll(retlist.keySet());
+            }
             return retlist;
         } catch (Exception e) {
             if (dbg > 7 || debugMeths) {
@@ -1737,6 +2418,7 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
 		Class aderegistryclass = Class.forName("ade.ADERegistry");
 		rctReg = new ADERemoteCallTimer(ADEGlobals.DEF_HBPULSE, aderegistryclass);
 		rctReg.setName(myID + "->ADERegistry");		
+		rctReg.setMetrics(metrics, "ADERegistry");
 		// registries have unlimited access to other registries
                 // TODO: only get the remote methods as the other ones don't matter!!!
 		if (this instanceof ADERegistryImpl) {
@@ -2014,6 +2696,17 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
 
         callLogging = myInfo.withcalllogging;
 
+        addStandardGauges();
+        if (myInfo.metricsPort >= 0) {
+            try {
+                int port = metrics.serve(myInfo.metricsPort);
+                System.out.println(myID + ": serving metrics on localhost:" + port);
+            } catch (IOException ioe) {
+                System.err.println(myID + ": cannot serve metrics on port "
+                        + myInfo.metricsPort + ": " + ioe);
+            }
+        }
+
         // if local logging was enabled on the command line, do it now
         if (myInfo.withlocallogging) {
             try {
@@ -2236,6 +2929,9 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                             "getComponentState", ar, myID, myPassword);
                     if (myInfo.adestate != null) {
                         loadState(myInfo.adestate);
+                        if (state == null) {
+                            state = myInfo.adestate;
+                        }
                     } else {
                         System.out.println(myID
                                 + ": no state returned for restore");
@@ -3047,9 +3743,20 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
             System.err.println(myID + ": problem stopping reaper:\n" + e);
         }
 
+        // stop delivering channel values and remove shared memory
+        for (ADEChannel c : channels.values()) {
+            c.close();
+        }
+        for (ADEChannel.Inbox in : inboxes.values()) {
+            in.close();
+        }
+
+        metrics.close();
+
         // get log file to flush properly.
         if (fwrLog != null) {
             System.out.println("Closing log file...");
+            locallogging = false;
             try {
                 fwrLog.close();
             } catch (IOException ioe) {
@@ -3336,13 +4043,28 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
 
     /**
      * Make a remote method call to an {@link ade.ADEComponent ADEComponent} to which
-     * this component is connected with the timeout specified by
-     * {@link ade.ADEGlobals#DEF_TIMEOUT_CALL}.
+     * this component is connected. The timeout is
+     * {@link ade.ADEGlobals#DEF_TIMEOUT_CALL}, unless adaptive timeouts are
+     * turned on (see {@link #setAdaptiveTimeouts}), in which case it is
+     * derived from the recent latencies of the method on that component (see
+     * {@link ade.ADERemoteCallTimer#remoteCallAdaptive remoteCallAdaptive}).
      */
     final protected Object call(Object ref, String mn, Object... args)
             throws ADEException, ADETimeoutException,
             ADEReferenceException {
-        return call(ADEGlobals.DEF_TIMEOUT_CALL, ref, mn, args);
+        return call(ADEGlobals.DEF_TIMEOUT_CALL, adaptiveTimeouts, ref, mn, args);
+    }
+
+    /**
+     * Turn adaptive timeouts for {@link #call(Object,String,Object[]) call}
+     * on or off (they are off by default). Only calls of methods marked
+     * {@link ade.ADEMethodConditions#Idempotent idempotent} get timeouts
+     * shorter than {@link ade.ADEGlobals#DEF_TIMEOUT_CALL}.
+     *
+     * @param on whether to adapt the timeouts to the observed latencies
+     */
+    final protected void setAdaptiveTimeouts(boolean on) {
+        adaptiveTimeouts = on;
     }
 
     /**
@@ -3386,6 +4108,12 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
     final protected Object call(int tout, Object ref, String mn, Object... args)
             throws ADEException, ADETimeoutException,
             ADEReferenceException {
+        return call(tout, false, ref, mn, args);
+    }
+
+    private Object call(int tout, boolean adaptive, Object ref, String mn, Object... args)
+            throws ADEException, ADETimeoutException,
+            ADEReferenceException {
         if (debugCall) {
             System.out.println(myID + "::call("
                     + ADEGlobals.getMethodString(mn, args) + ")");
@@ -3417,16 +4145,18 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         }
         Heartbeat hb = (Heartbeat) ref;
         long startT = System.currentTimeMillis();
+        String callDesc = null;
         if (callLogging && locallogging) {
-            String rargs = new String();
-            String cl;
+            // build the call description once for both CALL and COMPLETE
+            StringBuilder sb = new StringBuilder();
+            sb.append(hb.toServType).append(" ").append(mn).append(" ");
             for (Object a : args) {
-                rargs = rargs + " " + a.toString();
+                sb.append(" ").append(a);
             }
+            callDesc = sb.toString();
             try {
-                cl = logIt("CALL: " + hb.toServType + " " + mn + " " + rargs);
-                loggedCalls.add(cl + " CALL: " + hb.toServType + " " + mn + " "
-                        + rargs);
+                String cl = logIt("CALL: " + callDesc);
+                loggedCalls.add(cl + " CALL: " + callDesc);
             } catch (IOException e) {
                 System.err.println(myID + ": Exception logging:\n\t" + e);
             }
@@ -3438,7 +4168,11 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         Object returnobj = null;
         try {
             // make the call
-            returnobj = hb.rct.remoteCall(tout, mn, hb.toComponent, args);
+            if (adaptive) {
+                returnobj = hb.rct.remoteCallAdaptive(tout, mn, hb.toComponent, args);
+            } else {
+                returnobj = hb.rct.remoteCall(tout, mn, hb.toComponent, args);
+            }
             if (debugCall) {
                 System.out.println(myID + ": Leaving RemoteInfo::call("
                         + ADEGlobals.getMethodString(mn, args) + "): done");
@@ -3446,10 +4180,11 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                         + (System.currentTimeMillis() - startT) + "ms");
             }
         } catch (Exception e) {
-            // TODO: notify the registry that the component is
-            // unrechable, so that it does not have to wait for
-            // the heartbeat timeout for that component and can
-            // initiate recovery right away and at the same time
+            // notify the registry that the component is unreachable, so
+            // that it does not have to wait for the heartbeat timeout for
+            // that component and can initiate recovery right away
+            reportUnreachable(hb, e);
+            // TODO: at the same time
             // allow for "component swaping", which will let this
             // heartbeat connect to another availabl component of the
             // same type that meets all constraints (the parameter
@@ -3468,16 +4203,10 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
             canLogIt("ADE call exception in " + hb.toServType + "." + mn + ": " + e);
             throw new ADEException("Default call exception catch", e);
         }
-        if (callLogging && locallogging) {
-            String rargs = new String();
-            String cl;
-            for (Object a : args) {
-                rargs = rargs + " " + a.toString();
-            }
+        if (callDesc != null && locallogging) {
             try {
-                cl = logIt("COMPLETE: " + hb.toServType + " " + mn + " " + rargs);
-                loggedCalls.add(cl + " COMPLETE: " + hb.toServType + " " + mn + " "
-                        + rargs);
+                String cl = logIt("COMPLETE: " + callDesc);
+                loggedCalls.add(cl + " COMPLETE: " + callDesc);
             } catch (IOException e) {
                 System.err.println(myID + ": Exception logging:\n\t" + e);
             }
@@ -3485,6 +4214,33 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         return returnobj;
     }
 
+    /**
+     * Tells the registry about a failed call to a connected component if the
+     * failure suggests that the component is gone (a timeout or an RMI
+     * failure, rather than an exception thrown by the method itself). At most
+     * one report per heartbeat period is sent for each component.
+     */
+    private void reportUnreachable(Heartbeat hb, Exception e) {
+        boolean remote = (e instanceof ADETimeoutException);
+        for (Throwable t = e; t != null && !remote; t = t.getCause()) {
+            remote = (t instanceof RemoteException);
+        }
+        long now = System.currentTimeMillis();
+        if (!remote || ar == null || now - hb.lastReported < ADEGlobals.DEF_HBPULSE) {
+            return;
+        }
+        hb.lastReported = now;
+        try {
+            rctReg.remoteCallNonBlocking("reportComponentUnreachable", ar, myID,
+                    myPassword, getKey(hb.toServType, hb.toServName));
+        } catch (ADEException ace) {
+            if (dbg > 3) {
+                System.err.println(myID + ": cannot report " + hb.toServName
+                        + " unreachable: " + ace);
+            }
+        }
+    }
+
     /**
      * Return the ID of a pseudo-reference (generally, in <tt>type$name</tt>
      * format). A pseudo-reference's ID is useful for handling notification of
@@ -3628,6 +4384,7 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         private HashSet<String> ifaces; // Interfaces implemented
         private ADERemoteCallTimer rct; // RMI timer for component
         private String[][] constraints; // the constraints with which the component was obtained
+        private long lastReported = 0; // when the component was last reported unreachable
 
         /*
          * int period = ADEGlobals.DEF_HBPULSE; String type, name =
@@ -3732,6 +4489,7 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
 		    try {
 			rct = new ADERemoteCallTimer(ADEGlobals.DEF_HBPULSE, toComponent);
 			rct.setName(myID + "->" + getKey(toServType, toServName));
+			rct.setMetrics(metrics, getKey(toServType, toServName));
 			if (dbg > 5 || debugHB) {
 			    System.out.println(preface + "created component rct...");
 			}
@@ -4014,6 +4772,9 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         public void run() {
             long startTime =0, oldstarttime = 0;
             int workTime = 0;
+            boolean wasConnected = false;
+            ADEMetrics.Histogram jitter = metrics.histogram(ADEMetrics.key(
+                    "ade_heartbeat_jitter_ms", "target", getKey(toServType, toServName)));
 
             if (dbg > 8 || debugHB) {
                 System.out.println(preface + "hb to "
@@ -4022,6 +4783,11 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
             while (shouldRun) {
 		oldstarttime = startTime;
 		startTime = System.currentTimeMillis();
+                // how far the last cycle was off its period
+                if (wasConnected && pRefState == ADEGlobals.PRefState.CONNECTED) {
+                    jitter.record(Math.abs(startTime - oldstarttime - period));
+                }
+                wasConnected = (pRefState == ADEGlobals.PRefState.CONNECTED);
                 if (dbg > 8 || debugHB) {
                     StringBuilder sb = new StringBuilder(preface);
                     sb.append(" to ");
@@ -4090,8 +4856,20 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         //
         private void cleanup() {
             String key = getKey(toServType, toServName);
+            if (toComponent != null) {
+                ADECallCache.shared.drop(toComponent);
+            }
             toComponent = null;
             //myheartbeats.remove(key);
+            // drop the jitter and call metrics of this connection, unless it
+            // was replaced or the other component is also our client
+            Heartbeat current;
+            synchronized (myheartbeats) {
+                current = myheartbeats.get(key);
+            }
+            if ((current == null || current == this) && !userMap.containsKey(key)) {
+                metrics.removeLabeled("target", key);
+            }
         }
 
         private void sendHeartbeat() {
@@ -4107,6 +4885,15 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                 try {
                     ADEGlobals.ComponentState tst = (ADEGlobals.ComponentState) rct.remoteCall("updateConnection", toComponent, myID);
                     setServState(tst);
+                    // only needed if results of the component are cached
+                    if (ADECallCache.shared.holds(toComponent)) {
+                        try {
+                            ADECallCache.shared.version(toComponent,
+                                    (Long) rct.remoteCall("requestCacheVersion", toComponent, myID));
+                        } catch (ADEException ace) {
+                            ADECallCache.shared.drop(toComponent);
+                        }
+                    }
                     if (dbg > 8 || debugHB) {
                         System.out.println(preface + "updated to " + toState
                                 + "...");
@@ -4126,6 +4913,7 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                     }
                     pRefState = ADEGlobals.PRefState.LOST;
                     recState = ADEGlobals.RecoveryState.UNK;
+                    ADECallCache.shared.drop(toComponent);
                     componentDownReact(getKey(toServType, toServName), constraints);
                 }
             } else {
@@ -4676,8 +5464,14 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                 // write initial time stamp into file
                 try {
                     String ct = Long.toString(System.currentTimeMillis());
-                    fwrLog = new FileWriter(myHost.getADELogs() + myInfo.type
-                            + "_" + myInfo.name + "_" + ct);
+                    String fn = myHost.getADELogs() + myInfo.type
+                            + "_" + myInfo.name + "_" + ct;
+                    if (myInfo.logFormat == ADELogWriter.Format.BINARY) {
+                        fn += ADEBinaryLog.SUFFIX;
+                    }
+                    fwrLog = new ADELogWriter(fn, myInfo.logFormat,
+                            myInfo.logBufferSize, myInfo.logFlush,
+                            myInfo.logOverflow, myInfo.logFlushPeriod);
                     locallogging = true;
                     logIt(ADELogHelper.LOG_START_TIME_FLAG);
                 } catch (IOException e) {
@@ -4689,12 +5483,15 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                 // turn it off..
                 try {
                     logIt(ADELogHelper.LOG_END_TIME_FLAG + "\n");
+                    // stop new entries before the writer drains and closes
+                    locallogging = false;
                     fwrLog.close();
                 } catch (IOException e) {
                     throw new RemoteException(
                             "Problem closing log file on component " + myInfo.name);
+                } finally {
+                    locallogging = false;
                 }
-                locallogging = false;
             } else if (state && locallogging) {
                 // another component started logging, so mark time to synchronize
                 try {
@@ -4829,17 +5626,27 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
      * @throws IOException If writing failed or local logging is not enabled
      */
     final protected String logIt(Object o) throws IOException {
-        if (locallogging) {
-            String ct = Long.toString(System.currentTimeMillis());
-            fwrLog.write(ct + ADELogHelper.TIME_STAMP_SEPARATOR + o.toString()
-                    + System.getProperty("line.separator"));
-            fwrLog.flush();
-            return ct;
+        ADELogWriter w = fwrLog;
+        if (locallogging && w != null) {
+            long ct = System.currentTimeMillis();
+            w.write(ct, o.toString());
+            return Long.toString(ct);
         } else {
             throw new IOException("Local logging not enabled.");
         }
     }
 
+    /**
+     * Whether local logging is currently enabled. Components that assemble
+     * large log entries can check this first to avoid building strings that
+     * would only be discarded.
+     *
+     * @return <tt>true</tt> if {@link #logIt} will write to the log
+     */
+    final protected boolean isLocalLogging() {
+        return locallogging;
+    }
+
     /**
      * Logs an object if possible (does not throw exceptions).
      *
@@ -4905,7 +5712,9 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
      * Turns the state maintenance mechanism on. Note that <i>tags</i>, used to
      * access storage slots, must be either explicitly added to the created
      * {@link ade.ADEState ADEState} object (using the {@link #addTag} method)
-     * or implicitly as part of the {@link #saveState} method.
+     * or implicitly as part of the {@link #saveState} method. The whole state
+     * is sent to the registry once; after that, each cycle only sends the
+     * tags whose values changed (see {@link ade.ADEState#takeDelta}), if any.
      *
      * @param period The amount of time (in ms) between saves
      */
@@ -4927,14 +5736,31 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                 if (state == null) {
                     state = new ADEState();
                 }
+                // only the changes are sent, unless the registry has lost
+                // track (or a previous send failed)
+                boolean full = true;
                 while (maintainState) {
                     saveState(state);
                     try {
-                        rctReg.remoteCall("setComponentState", ar, myID,
-                                myPassword, state);
+                        if (full) {
+                            rctReg.remoteCall("setComponentState", ar, myID,
+                                    myPassword, state.takeSnapshot());
+                            full = false;
+                        } else {
+                            ADEState.Delta d = state.takeDelta();
+                            if (d != null) {
+                                Long v = (Long) rctReg.remoteCall("setComponentStateDelta",
+                                        ar, myID, myPassword, d);
+                                if (v.longValue() != d.getVersion()) {
+                                    rctReg.remoteCall("setComponentState", ar, myID,
+                                            myPassword, state.takeSnapshot());
+                                }
+                            }
+                        }
                     } catch (ADEException ace) {
                         System.err.println(myID + ": could not send state:\n"
                                 + ace);
+                        full = true;
                     }
                     try {
                         Thread.sleep(cycle);
@@ -5040,9 +5866,11 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
             long timecomp, lasttime;
 
 	    long starttime = 0, oldstarttime = 0;
+            ADEMetrics.Histogram sweep = metrics.histogram("ade_reaper_sweep_ms");
             while (shouldReap) {
 		oldstarttime = starttime;
 		starttime = System.currentTimeMillis();
+                long sweepstart = System.nanoTime();
                 users = userMap.keySet();
                 if (users != null) {
                     it = users.iterator();
@@ -5080,6 +5908,7 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                                 // then remove...
                                 it.remove();
                                 myInfo.removeClient(user);
+                                clientRemoved(user);
                             }
                             if (dbg > 4) {
                                 System.out.println(myID
@@ -5100,6 +5929,7 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                         }
                     }
                 }
+                sweep.recordNanos(System.nanoTime() - sweepstart);
                 synchronized (this) {
                     try {
 			//TODO: should reduce REAPER wait to account for work load in the above while loop to make period as closely as possible
@@ -5386,6 +6216,12 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
         System.out.println("     --uilogging            <Redirected stdout/stderr to a file for access on-demand via GUI>");
         System.out.println("     --logging              <Start local logging>");
         System.out.println("     --calllogging          <Start local logging including ADE calls>");
+        System.out.println("     --logbuffer            <<#> of log entries buffered for the log writer thread>");
+        System.out.println("     --logflush             <<sync|batch|periodic> [period in ms] when log entries are flushed>");
+        System.out.println("     --logoverflow          <<block|drop> what to do when the log buffer is full>");
+        System.out.println("     --logformat            <<text|binary> format of the local log (binary logs are indexed)>");
+        System.out.println("     --noshm                <Send channel values via RMI even to components on the same host>");
+        System.out.println("     --metricsport          <<port> serve the metrics as text on localhost (0 for any port)>");
         System.out.println("     --playback [filename]  <Start in log playback (ie: NOT live) mode>");
         System.out.println("");
         System.out.println(additionalUsageInfo());
@@ -5748,6 +6584,52 @@ abstract public class ADEComponentImpl extends UnicastRemoteObject implements
                         me.withlocallogging = true; // turn on local logging
                     } else if (arg.equalsIgnoreCase("--calllogging")) {
                         me.withcalllogging = true; // turn on call logging
+                    } else if (arg.equalsIgnoreCase("--logbuffer")) {
+                        try {
+                            me.logBufferSize = Integer.parseInt(arglist.remove());
+                        } catch (NumberFormatException nfe) {
+                            System.err.println("Expected number of log entries for --logbuffer");
+                            usage();
+                            System.exit(ADEGlobals.ExitCode.ARG_PARSE.code());
+                        }
+                    } else if (arg.equalsIgnoreCase("--logflush")) {
+                        try {
+                            me.logFlush = ADELogWriter.FlushPolicy.parse(arglist.remove());
+                            if ((tmp = arglist.peek()) != null
+                                    && !tmp.startsWith("-")) {
+                                me.logFlushPeriod = Long.parseLong(arglist.remove());
+                            }
+                        } catch (IllegalArgumentException iae) {
+                            System.err.println("Expected sync, batch or periodic [period] for --logflush");
+                            usage();
+                            System.exit(ADEGlobals.ExitCode.ARG_PARSE.code());
+                        }
+                    } else if (arg.equalsIgnoreCase("--logformat")) {
+                        try {
+                            me.logFormat = ADELogWriter.Format.parse(arglist.remove());
+                        } catch (IllegalArgumentException iae) {
+                            System.err.println("Expected text or binary for --logformat");
+                            usage();
+                            System.exit(ADEGlobals.ExitCode.ARG_PARSE.code());
+                        }
+                    } else if (arg.equalsIgnoreCase("--noshm")) {
+                        me.sharedMemory = false; // channel values always via RMI
+                    } else if (arg.equalsIgnoreCase("--metricsport")) {
+                        try {
+                            me.metricsPort = Integer.parseInt(arglist.remove());
+                        } catch (NumberFormatException nfe) {
+                            System.err.println("Expected port number for --metricsport");
+                            usage();
+                            System.exit(ADEGlobals.ExitCode.ARG_PARSE.code());
+                        }
+                    } else if (arg.equalsIgnoreCase("--logoverflow")) {
+                        try {
+                            me.logOverflow = ADELogWriter.OverflowPolicy.parse(arglist.remove());
+                        } catch (IllegalArgumentException iae) {
+                            System.err.println("Expected block or drop for --logoverflow");
+                            usage();
+                            System.exit(ADEGlobals.ExitCode.ARG_PARSE.code());
+                        }
                     } else if (arg.equalsIgnoreCase("--playback")) {
                         try {
                             this.openPlaybackLogFile(this, arglist.remove());
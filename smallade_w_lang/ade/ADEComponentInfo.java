@@ -64,10 +64,18 @@ final public class ADEComponentInfo implements Serializable, Cloneable {
     boolean ignoreconfig = false;      // don't do configfile (eg, on restart)
     int dbg = 0;                       // debugging level
     boolean maintainState = false;     // whether to maintain state
-    ADEState adestate = null;          // the state object
+    ADEState adestate = null;          // the state object (snapshot)
+    transient ArrayList<ADEState.Delta> adedeltas = null; // state changes since the snapshot
     boolean killForCtrlc = false;      // halt uncleanly
     boolean withlocallogging = false;  // whether to use local logging
     boolean withcalllogging = false;   // whether to use call logging
+    int logBufferSize = ADEGlobals.DEF_LOG_BUFFER; // entries buffered for the log writer
+    ADELogWriter.FlushPolicy logFlush = ADELogWriter.FlushPolicy.BATCH; // when log entries are flushed
+    ADELogWriter.OverflowPolicy logOverflow = ADELogWriter.OverflowPolicy.BLOCK; // full log buffer handling
+    long logFlushPeriod = ADEGlobals.DEF_LOG_FLUSH_PERIOD; // flush period for PERIODIC
+    ADELogWriter.Format logFormat = ADELogWriter.Format.TEXT; // on-disk format of the local log
+    boolean sharedMemory = true;       // whether co-located channel subscribers use shared memory
+    int metricsPort = -1;              // local port for the metrics text, -1 if not served
     public boolean guiRequested = false; // whether --GUI was requested on the commandline
     boolean persistentGUI = false;     // whether --GUI-requested windows can be closed 
     //                                         persistent = ignore close operations.
@@ -634,6 +642,7 @@ final public class ADEComponentInfo implements Serializable, Cloneable {
      * configfile       configuration file (optional)<br>
      * onlyonhosts      list of hosts this component can/is allowed to run on<br>
      * devices          list of devices host must supply<br>
+     * requiredclients  component types (or type$name keys) that must be ready before this one is started<br>
      * credentials      additional permissions<br>
      * ENDCOMPONENT<br></tt>
      * <p>
@@ -739,6 +748,10 @@ final public class ADEComponentInfo implements Serializable, Cloneable {
                             while (s.hasMoreTokens()) {
                                 requiredDevices.add(s.nextToken());
                             }
+                        } else if (data.equals("requiredclients")) {
+                            while (s.hasMoreTokens()) {
+                                requiredClients.add(s.nextToken());
+                            }
                         } else if (data.equals("debug")) {
                             dbg = Integer.parseInt(s.nextToken());
                         } else if (data.equals("ctrlc")) {
@@ -852,6 +865,7 @@ final public class ADEComponentInfo implements Serializable, Cloneable {
         pw.println("# restarts        number of recovery attempts (default=0)");
         pw.println("# onlyonhosts     IPs on which component may execute (space delimited)");
         pw.println("# devices         devices required (space delimited; host must supply listed devices)");
+        pw.println("# requiredclients component types that must be ready before this one starts (space delimited)");
         pw.println("# configfile      configuration file (optional)");
         pw.println("# credentials     additional permissions");
         pw.println("# debug           debugging level");
@@ -949,6 +963,7 @@ final public class ADEComponentInfo implements Serializable, Cloneable {
         trimAndPrintLine(pw, "restarts " + numrestarts);
         trimAndPrintLine(pw, "onlyonhosts " + ADEGlobals.setToStr(onlyonhosts));
         trimAndPrintLine(pw, "devices " + ADEGlobals.setToStr(requiredDevices));
+        trimAndPrintLine(pw, "requiredclients " + ADEGlobals.setToStr(requiredClients));
         trimAndPrintLine(pw, "configfile " + stringOrEmptyString(configfile));
         trimAndPrintLine(pw, "credentials " + stringOrEmptyString(credentials));
         trimAndPrintLine(pw, "debug " + dbg);
@@ -291,6 +291,16 @@ public class ADEGlobals implements Serializable {
     public final static int DEF_TIMEOUT_CALL = 3000;
     /** Timeout value (in ms) for short remote calls. */
     public final static int DEF_TIMEOUT_SHORT = 750;
+    /** Adaptive remote call timeouts are this multiple of the 99th
+     * percentile of the recent call latencies. */
+    public final static int DEF_TIMEOUT_FACTOR = 4;
+    /** Lower bound (in ms) for adaptive remote call timeouts. */
+    public final static int DEF_TIMEOUT_FLOOR = 500;
+    /** Upper bound (in ms) for adaptive remote call timeouts. */
+    public final static int DEF_TIMEOUT_CEILING = 10000;
+    /** How long (in ms) a registry collects fan-out calls to the same
+     * component into one batch. */
+    public final static int DEF_BATCH_WINDOW = 2;
     /** Wait period for heartbeat creation before re-try. */
     public final static int DEF_HEARTBEAT_CREATION_WAIT = 200;
     /** Number of times an ADEComponent should be restarted. */
@@ -301,6 +311,50 @@ public class ADEGlobals implements Serializable {
     public final static String DEF_CAPS = "Capability string not defined.";
     /** Access rights to all components. */
     public final static String ALL_ACCESS = "any";
+    // logging defaults
+    /** Number of entries buffered for the local log writer thread. */
+    public final static int DEF_LOG_BUFFER = 4096;
+    /** Flush period (in ms) for periodically flushed local logs. */
+    public final static int DEF_LOG_FLUSH_PERIOD = 1000;
+    /** Number of slots in the shared-memory ring of a channel. */
+    public final static int DEF_SHM_SLOTS = 16;
+    /** Size (in bytes) of a slot in the shared-memory ring of a channel;
+     * larger values are sent via RMI. */
+    public final static int DEF_SHM_SLOT_SIZE = 65536;
+    /** How often (in ms) shared-memory channels are checked for new values
+     * when a component reacts to channel updates and values are arriving. */
+    public final static int DEF_SHM_POLL = 1;
+    /** The longest time (in ms) between checks of shared-memory channels;
+     * while no new values arrive, the poll period doubles up to this. */
+    public final static int DEF_SHM_POLL_IDLE = 50;
+    /** How often (in ms) a shared-memory subscriber checks whether the
+     * publisher has replaced its ring file (e.g., after a restart). */
+    public final static int DEF_SHM_RECHECK = 1000;
+    /** Time limit (in ms) for a command run through a persistent remote
+     * shell session; a session whose command exceeds it is restarted. */
+    public final static int DEF_RSESSION_TIMEOUT = 30000;
+    /** Number of state deltas the registry keeps for a component before
+     * folding the oldest into its snapshot of the component's state. */
+    public final static int DEF_STATE_HISTORY = 16;
+    /** Number of records appended to a registry journal after which it is
+     * compacted. */
+    public final static int DEF_JOURNAL_COMPACT = 1000;
+    /** Time (in ms) a component restored from a registry journal has to
+     * re-register before the registry drops it. */
+    public final static int DEF_JOURNAL_GRACE = 30000;
+    /** The longest time (in ms) a registry holds a system view status request
+     * while waiting for a change. */
+    public final static int DEF_GUI_LONGPOLL = 10000;
+    /** How often (in ms) a registry asks other registries for changes while
+     * a system view waits for the status of the entire system. */
+    public final static int DEF_GUI_REMOTE_CHECK = 1000;
+    /** The number of components of a configuration file a registry starts
+     * at the same time. */
+    public final static int DEF_STARTUP_PARALLEL = 8;
+    /** Time (in ms) a component started from a configuration file has to
+     * become ready before the components depending on it are started
+     * anyway. */
+    public final static int DEF_STARTUP_TIMEOUT = 60000;
 
     /** The default extension for implementations of component interfaces */
     public final static String componentimpl = "Impl";
@@ -1111,7 +1165,14 @@ public class ADEGlobals implements Serializable {
         m.add("setLocalLogging(java.lang.Object,java.lang.Boolean)");
         m.add("getLoggedCalls()");
         m.add("requestComponentInfo(java.lang.Object)");
+        m.add("requestMetrics(java.lang.Object)");
+        m.add("requestCacheVersion(java.lang.String)");
+        m.add("callBatch(java.lang.Object,[Ljava.lang.String;,[[Ljava.lang.Object;)");
         m.add("requestNotification(java.lang.String,java.lang.Object,ade.ADEComponent,ade.ADENotification)");
+        m.add("requestChannel(java.lang.String,java.lang.Object,ade.ADEComponent,java.lang.String,java.lang.Integer)");
+        m.add("requestLocalChannel(java.lang.String,java.lang.Object,ade.ADEComponent,java.lang.String,java.lang.Integer,java.lang.String,java.lang.String)");
+        m.add("cancelChannel(java.lang.String,java.lang.Object,java.lang.String)");
+        m.add("channelUpdate(java.lang.String,java.lang.Object,java.lang.String,java.lang.Long,java.lang.Object)");
         return(m);
     }
 
@@ -1131,7 +1192,13 @@ public class ADEGlobals implements Serializable {
         m.add("registerComponent(ade.ADEComponentInfo,java.lang.String,java.lang.Boolean)");
         m.add("deregisterComponent(java.lang.String,java.lang.String)");
         m.add("setRecoveryMultiplier(java.lang.String,java.lang.String,java.lang.Integer)");
+        m.add("reportComponentUnreachable(java.lang.String,java.lang.String,java.lang.String)");
         m.add("setADEComponentLogging(java.lang.String,java.lang.String,java.lang.Boolean,ade.ADERegistry)");
+        m.add("registerChannel(java.lang.String,java.lang.String,java.lang.String,java.lang.Boolean)");
+        m.add("requestChannelPublishers(java.lang.String,java.lang.String,java.lang.String)");
+        m.add("getComponentState(java.lang.String,java.lang.String)");
+        m.add("setComponentState(java.lang.String,java.lang.String,ade.ADEState)");
+        m.add("setComponentStateDelta(java.lang.String,java.lang.String,ade.ADEState$Delta)");
         return m;
     }
 }
@@ -571,7 +571,7 @@ final public class ADEHostInfo implements Serializable, Cloneable {
         }
         // create requisite data structures
         devices = new HashSet<String>();
-        components = new HashSet<String>();
+        components = Collections.synchronizedSet(new HashSet<String>()); // components start in parallel
         // note that some elements must be filled at execution time
         shell = new String[shellargs.length + 2];
         shell[0] = shellcmd;
@@ -41,6 +41,9 @@ import java.io.StringReader;
 /**
  * Superclass for gathering information about hosts. Subclassed according to
  * appropriate operating system, due to platform dependent shell scripts.
+ * Statistics of the host the JVM runs on are read in-process with the shared
+ * {@link ade.ADEProcSampler ADEProcSampler} where possible (see
+ * {@link #local}); the scripts are only used for remote hosts.
  */
 public abstract class ADEHostStatus {
 
@@ -66,6 +69,8 @@ public abstract class ADEHostStatus {
     protected String ip;
     protected String tmpdirLocal;
     protected String tmpdirRemote;
+    // whether the host is this one and can be sampled through /proc
+    protected boolean local = false;
     // information to pick up; bandwidth? #users? other?
     private boolean available = false;
     private int numcpus;
@@ -130,6 +135,14 @@ public abstract class ADEHostStatus {
         return available;
     }
 
+    /**
+     * Whether this is the local host, whose statistics are sampled in-process
+     * instead of by running scripts.
+     */
+    public boolean isLocal() {
+        return local;
+    }
+
     /**
      * Get the period (in ms) for repeated execution.
      */
@@ -167,6 +180,9 @@ public abstract class ADEHostStatus {
      * subclass.
      */
     public boolean createScripts() throws IOException {
+        if (local) {
+            return true;
+        }
         if (!createdProbeScript) {
             try {
                 probeScript = createProbeScript();
@@ -196,6 +212,9 @@ public abstract class ADEHostStatus {
      * Remove the probe and stats gathering scripts from both hosts.
      */
     public void removeScripts() throws IOException {
+        if (local) {
+            return;
+        }
         removeLocalScripts();
         removeRemoteScripts();
     }
@@ -234,6 +253,18 @@ public abstract class ADEHostStatus {
     public void probeHost() throws IOException, NumberFormatException {
         String results;
 
+        if (local) {
+            try {
+                ADEProcSampler.Sample s = ADEProcSampler.getInstance().sample();
+                numcpus = s.cpus;
+                memmb = (int) s.memTotal;
+                available = true;
+            } catch (IOException ioe) {
+                available = false;
+                throw ioe;
+            }
+            return;
+        }
         if (!copiedProbeScript) {
             // see if the host exists by trying to copy the probe script
             if (debug) {
@@ -299,6 +330,19 @@ public abstract class ADEHostStatus {
     public void getHostStats() throws IOException {
         String results;
 
+        if (local) {
+            // the same quantities the stats script reports for remote hosts,
+            // so that hosts can be compared
+            try {
+                ADEProcSampler.Sample s = ADEProcSampler.getInstance().sample();
+                avgcpuload = s.loadAvg / s.cpus;
+                memavail = (int) s.memFree;
+            } catch (IOException ioe) {
+                available = false;
+                throw ioe;
+            }
+            return;
+        }
         if (!copiedGatherScript) {
             if (debug) {
                 System.out.println(prg + ": copying stats script to " + ip);
@@ -56,6 +56,8 @@ public class ADEHostStatusLinux extends ADEHostStatus {
             tmpdirLocal += tohost.filesep;
         }
         tmpdirRemote = tohost.scratch;
+        // no scripts needed for this host
+        local = ADEProcSampler.isAvailable() && ADEProcSampler.isLocalHost(ip);
     }
 
     /**
@@ -423,8 +423,14 @@ final public class ADELocalProcessStarter {
             startProcess(backgroundit);
         } else {
             sb = new StringBuilder();
-            cmd = new String[myHost.ssh.length];
-            System.arraycopy(myHost.ssh, 0, cmd, 0, myHost.ssh.length);
+            // open the channel over the connection of a persistent session
+            // to the host, if one is up
+            String[] shared = ADERemoteSession.sharedOptions(myHost.ssh[0],
+                    tohost.sshusername, tohost.hostip);
+            cmd = new String[myHost.ssh.length + shared.length];
+            cmd[0] = myHost.ssh[0];
+            System.arraycopy(shared, 0, cmd, 1, shared.length);
+            System.arraycopy(myHost.ssh, 1, cmd, 1 + shared.length, myHost.ssh.length - 1);
             // fill in username@host
             sb.append(tohost.sshusername);
             sb.append("@");
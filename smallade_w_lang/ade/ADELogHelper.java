@@ -48,6 +48,7 @@ public class ADELogHelper {
     public static final String LOG_END_TIME_FLAG = "END TIME";
     public static final String LOG_SYNC_TIME_FLAG = "SYNC TIME";
     public static final String TIME_STAMP_SEPARATOR = " ";
+    public static final String LINE_SEPARATOR = System.getProperty("line.separator");
     private String logFileName;
     private boolean run;
     private int positionTime;
@@ -60,6 +61,10 @@ public class ADELogHelper {
     //    because some components cannot be serialized).
     ArrayList<Integer> times;
     ArrayList<String> texts = new ArrayList<String>();
+    // for binary logs, entries are read on demand instead of being kept in
+    //    times/texts; binLogStart is the time stamp of the first entry
+    private ADEBinaryLog.Reader binLog;
+    private long binLogStart;
 
     public ADELogHelper() {
         this.credentialsID = UUID.randomUUID();
@@ -98,10 +103,23 @@ public class ADELogHelper {
             throw new IOException("No file selected");
         }
 
-        this.logFileName = logFileName;
-
+        if (binLog != null) {
+            binLog.close();
+            binLog = null;
+        }
         times = new ArrayList<Integer>();
         texts = new ArrayList<String>();
+
+        if (ADEBinaryLog.isBinaryLog(logFileName)) {
+            binLog = new ADEBinaryLog.Reader(logFileName);
+            binLogStart = (binLog.size() > 0 ? binLog.getTime(0) : 0);
+            this.logFileName = logFileName;
+            positionTime = 0;
+            positionIndex = 0;
+            return;
+        }
+        this.logFileName = logFileName;
+
         ArrayList<Long> tempTimes = new ArrayList<Long>();
 
         Scanner in = new Scanner(new File(logFileName));
@@ -147,6 +165,9 @@ public class ADELogHelper {
     }
 
     public int maxPlaybackPosition() {
+        if (binLog != null) {
+            return (binLog.size() > 0 ? getTime(binLog.size() - 1) : 0);
+        }
         if (times.size() > 0) {
             return times.get(times.size() - 1);
         } else {
@@ -157,15 +178,23 @@ public class ADELogHelper {
     public void setPlaybackPosition(int position) {
         this.positionTime = position;
 
-        // search through the times to find the first index greater than the position
-        for (int i = 0; i < this.times.size(); i++) {
-            if (times.get(i) > position) {
-                this.positionIndex = i;
-                return;
+        // binary search for the first index greater than the position; if
+        // there is none, the index is essentially out of bounds
+        if (binLog != null) {
+            this.positionIndex = binLog.firstIndexAfter(binLogStart + position);
+            return;
+        }
+        int lo = 0;
+        int hi = times.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times.get(mid) > position) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
             }
         }
-        // if searched all the way, and found nothing, then must be essentially out of bounds
-        this.positionIndex = this.times.size();
+        this.positionIndex = lo;
     }
 
     public int getPlaybackLineIndex() {
@@ -173,6 +202,17 @@ public class ADELogHelper {
     }
 
     public String getContents(int index) {
+        if (binLog != null) {
+            if (playbackIndexWithinBounds(index)) {
+                try {
+                    return binLog.getContents(index);
+                } catch (IOException ioe) {
+                    System.err.println("Could not read log entry " + index
+                            + " from " + logFileName + ": " + ioe);
+                }
+            }
+            return "";
+        }
         if (this.times.size() > index) {
             return this.texts.get(index);
         } else {
@@ -182,6 +222,12 @@ public class ADELogHelper {
     }
 
     public int getTime(int index) {
+        if (binLog != null) {
+            if (playbackIndexWithinBounds(index)) {
+                return (int) (binLog.getTime(index) - binLogStart);
+            }
+            return maxPlaybackPosition();
+        }
         if (this.times.size() > index) {
             return this.times.get(index);
         } else {
@@ -198,7 +244,8 @@ public class ADELogHelper {
     }
 
     public boolean playbackIndexWithinBounds(int index) {
-        return ((index >= 0) && (index < this.times.size()));
+        int size = (binLog != null ? binLog.size() : this.times.size());
+        return ((index >= 0) && (index < size));
     }
 
     public void advancePlaybackTime(int elapsedAlready) {
@@ -0,0 +1,401 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the local log of an {@link ade.ADEComponentImpl ADEComponentImpl}.
+ * Entries are placed in a bounded ring buffer by the logging thread and
+ * written to disk by a dedicated writer thread, which drains everything that
+ * has accumulated and writes it with a single flush ("group commit"). The
+ * default on-disk format is the text format read by
+ * {@link ade.ADELogHelper ADELogHelper}: one entry per line, a millisecond
+ * timestamp, the {@link ade.ADELogHelper#TIME_STAMP_SEPARATOR separator}, and
+ * the entry. Alternatively, entries can be written to an indexed
+ * {@link ade.ADEBinaryLog ADEBinaryLog}.
+ */
+public class ADELogWriter {
+
+    private final static String prg = "ADELogWriter";
+
+    /** When entries written by the writer thread are flushed to disk. */
+    static public enum FlushPolicy {
+
+        /** Write and flush on the calling thread (the old behavior). */
+        SYNC,
+        /** Flush once after each batch drained from the buffer. */
+        BATCH,
+        /** Flush at most once per flush period (and on close). */
+        PERIODIC;
+
+        /** Returns the policy for a command-line string (case ignored). */
+        public static FlushPolicy parse(String s) {
+            return FlushPolicy.valueOf(s.toUpperCase());
+        }
+    }
+
+    /** What a logging thread does when the ring buffer is full. */
+    static public enum OverflowPolicy {
+
+        /** Wait until the writer has made room (back-pressure). */
+        BLOCK,
+        /** Discard the entry; the number of discarded entries is logged as
+         * soon as there is room again. */
+        DROP;
+
+        /** Returns the policy for a command-line string (case ignored). */
+        public static OverflowPolicy parse(String s) {
+            return OverflowPolicy.valueOf(s.toUpperCase());
+        }
+    }
+
+    /** The on-disk format of the log. */
+    static public enum Format {
+
+        /** One timestamped line per entry. */
+        TEXT,
+        /** An {@link ade.ADEBinaryLog ADEBinaryLog} with a time index. */
+        BINARY;
+
+        /** Returns the format for a command-line string (case ignored). */
+        public static Format parse(String s) {
+            return Format.valueOf(s.toUpperCase());
+        }
+    }
+
+    /** Where the writer thread puts entries. */
+    private interface Sink {
+
+        void write(long time, String text) throws IOException;
+
+        void flush() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /** Writes the text format. */
+    private static class TextSink implements Sink {
+
+        private final Writer w;
+
+        TextSink(Writer w) {
+            this.w = new BufferedWriter(w);
+        }
+
+        @Override
+        public void write(long time, String text) throws IOException {
+            w.write(Long.toString(time));
+            w.write(ADELogHelper.TIME_STAMP_SEPARATOR);
+            w.write(text);
+            w.write(ADELogHelper.LINE_SEPARATOR);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            w.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            w.close();
+        }
+    }
+
+    /** Writes the binary format. */
+    private static class BinarySink implements Sink {
+
+        private final ADEBinaryLog.Writer w;
+
+        BinarySink(String fileName) throws IOException {
+            w = new ADEBinaryLog.Writer(fileName);
+        }
+
+        @Override
+        public void write(long time, String text) throws IOException {
+            w.write(time, text);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            w.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            w.close();
+        }
+    }
+
+    /** A single timestamped log entry. */
+    private static class Entry {
+
+        final long time;
+        final String text;
+
+        Entry(long time, String text) {
+            this.time = time;
+            this.text = text;
+        }
+    }
+    /** Marks the end of the log in the buffer. */
+    private static final Entry EOF = new Entry(0, null);
+    private final Sink out;
+    private final ArrayBlockingQueue<Entry> buffer;
+    private final FlushPolicy flush;
+    private final OverflowPolicy overflow;
+    private final long flushPeriod;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong droppedTotal = new AtomicLong();
+    private final Thread writer;
+    /** Guards <tt>closed</tt> and every enqueue, so that nothing is queued
+     * after the end of the log; writers waiting for room wait on it. */
+    private final Object lock = new Object();
+    private volatile boolean closed = false;
+    private volatile IOException failure = null;
+
+    /** Opens a log file with the default buffer size and policies.
+     * @param fileName The log file
+     * @throws IOException If the file cannot be created */
+    public ADELogWriter(String fileName) throws IOException {
+        this(fileName, ADEGlobals.DEF_LOG_BUFFER, FlushPolicy.BATCH,
+                OverflowPolicy.BLOCK, ADEGlobals.DEF_LOG_FLUSH_PERIOD);
+    }
+
+    /** Opens a log file.
+     * @param fileName The log file
+     * @param size The number of entries the ring buffer holds
+     * @param flush The {@link FlushPolicy}
+     * @param overflow The {@link OverflowPolicy}
+     * @param flushPeriod The flush period (in ms) for
+     * {@link FlushPolicy#PERIODIC}
+     * @throws IOException If the file cannot be created */
+    public ADELogWriter(String fileName, int size, FlushPolicy flush,
+            OverflowPolicy overflow, long flushPeriod) throws IOException {
+        this(fileName, Format.TEXT, size, flush, overflow, flushPeriod);
+    }
+
+    /** Opens a log file in the given format.
+     * @param format The {@link Format}
+     * @see #ADELogWriter(String, int, FlushPolicy, OverflowPolicy, long) */
+    public ADELogWriter(String fileName, Format format, int size,
+            FlushPolicy flush, OverflowPolicy overflow, long flushPeriod)
+            throws IOException {
+        this((format == Format.BINARY ? new BinarySink(fileName)
+                : new TextSink(new FileWriter(fileName))),
+                size, flush, overflow, flushPeriod);
+    }
+
+    /** Creates a text log writer on top of an arbitrary <tt>Writer</tt>.
+     * @see #ADELogWriter(String, int, FlushPolicy, OverflowPolicy, long) */
+    ADELogWriter(Writer w, int size, FlushPolicy flush,
+            OverflowPolicy overflow, long flushPeriod) {
+        this(new TextSink(w), size, flush, overflow, flushPeriod);
+    }
+
+    private ADELogWriter(Sink out, int size, FlushPolicy flush,
+            OverflowPolicy overflow, long flushPeriod) {
+        this.out = out;
+        this.flush = flush;
+        this.overflow = overflow;
+        this.flushPeriod = (flushPeriod > 0 ? flushPeriod : ADEGlobals.DEF_LOG_FLUSH_PERIOD);
+        if (flush == FlushPolicy.SYNC) {
+            buffer = null;
+            writer = null;
+        } else {
+            buffer = new ArrayBlockingQueue<Entry>(Math.max(size, 2));
+            writer = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, prg);
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /** Logs a string with the given timestamp. Depending on the
+     * {@link OverflowPolicy}, this blocks or drops the entry if the buffer is
+     * full.
+     * @param time The timestamp
+     * @param text The entry
+     * @throws IOException If the log is closed or the writer thread failed */
+    public void write(long time, String text) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (buffer == null) {
+            synchronized (out) {
+                if (closed) {
+                    throw new IOException("Log is closed.");
+                }
+                out.write(time, text);
+                out.flush();
+            }
+            return;
+        }
+        Entry e = new Entry(time, text);
+        synchronized (lock) {
+            while (true) {
+                if (closed) {
+                    throw new IOException("Log is closed.");
+                }
+                if (buffer.offer(e)) {
+                    return;
+                }
+                if (overflow == OverflowPolicy.DROP) {
+                    dropped.incrementAndGet();
+                    droppedTotal.incrementAndGet();
+                    return;
+                }
+                try {
+                    // woken when the writer thread has made room or the log
+                    // is closed
+                    lock.wait(flushPeriod);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while logging.");
+                }
+            }
+        }
+    }
+
+    /** Returns the number of entries waiting for the writer thread. */
+    public int getPending() {
+        return (buffer == null ? 0 : buffer.size());
+    }
+
+    /** Returns the number of entries discarded because the buffer was full. */
+    public long getDropped() {
+        return droppedTotal.get();
+    }
+
+    /** Writes all pending entries, stops the writer thread, and closes the
+     * file. Further writes, including those waiting for room in the buffer,
+     * throw an <tt>IOException</tt>.
+     * @throws IOException If flushing or closing the file failed */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            // no entry can be queued after this, so EOF is the last one
+            // drained
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    buffer.put(EOF);
+                    writer.join();
+                    break;
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (out) {
+            out.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** The writer thread: drains the buffer in batches until the end of the
+     * log has been reached. */
+    private void drain() {
+        ArrayList<Entry> batch = new ArrayList<Entry>();
+        long lastFlush = System.currentTimeMillis();
+        boolean eof = false;
+        while (!eof) {
+            try {
+                Entry first = buffer.poll(flushPeriod, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch);
+                    if (overflow == OverflowPolicy.BLOCK) {
+                        synchronized (lock) {
+                            lock.notifyAll();
+                        }
+                    }
+                }
+                synchronized (out) {
+                    long last = 0;
+                    for (Entry e : batch) {
+                        if (e == EOF) {
+                            eof = true;
+                            break;
+                        }
+                        out.write(e.time, e.text);
+                        last = e.time;
+                    }
+                    long d = dropped.getAndSet(0);
+                    if (d > 0) {
+                        out.write(Math.max(last, System.currentTimeMillis()),
+                                "LOG DROPPED " + d);
+                    }
+                    long now = System.currentTimeMillis();
+                    if (eof || (flush == FlushPolicy.BATCH && !batch.isEmpty())
+                            || now - lastFlush >= flushPeriod) {
+                        out.flush();
+                        lastFlush = now;
+                    }
+                }
+            } catch (InterruptedException ie) {
+                // only close() ends the writer
+            } catch (IOException ioe) {
+                if (failure == null) {
+                    failure = ioe;
+                    System.err.println(prg + ": error writing log:\n\t" + ioe);
+                }
+                eof = batch.contains(EOF);
+            }
+            batch.clear();
+        }
+    }
+}
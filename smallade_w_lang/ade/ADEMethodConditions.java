@@ -47,6 +47,14 @@ public @interface ADEMethodConditions {
     String[] Postconditions() default {};
 
     String[] Failureconditions() default {};
+
+    // whether the method can be called twice without harm (e.g., a getter),
+    // so that slow calls can be hedged with a second one
+    boolean Idempotent() default false;
+
+    // how long (in ms) the result of a call may be reused by the callers in
+    // a JVM (0 means no caching); see ADECallCache
+    long CacheTTL() default 0;
 }
 /**
  * usage:
@@ -0,0 +1,400 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics a component keeps about itself: counters, latency histograms
+ * and gauges, identified by a name with optional labels (e.g.,
+ * <tt>ade_call_ms{method="getPose",target="com.Sim$sim"}</tt>, see
+ * {@link #key}). Recording is lock-free; instruments are looked up once and
+ * then kept by the code that records into them. Metrics can be read
+ * remotely as a flat map ({@link ade.ADEComponent#requestMetrics
+ * requestMetrics}) or, if the component was started with
+ * <tt>--metricsport</tt>, as plain text over HTTP on the loopback interface
+ * (in the Prometheus text format, so that a local scraper can collect them).
+ */
+final public class ADEMetrics {
+
+    private final static String prg = "ADEMetrics";
+    /** The upper bounds (in ms) of the histogram buckets; the last bucket is
+     * unbounded. */
+    public final static double[] BOUNDS = {
+        0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    /** A monotonically increasing count. */
+    final static public class Counter {
+
+        private final AtomicLong count = new AtomicLong();
+
+        public void inc() {
+            count.incrementAndGet();
+        }
+
+        public void add(long n) {
+            count.addAndGet(n);
+        }
+
+        public long get() {
+            return count.get();
+        }
+    }
+
+    /** A distribution of durations (in ms) over fixed buckets. */
+    final static public class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /** Records a duration given in nanoseconds. */
+        public void recordNanos(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            double ms = nanos / 1e6;
+            int i = 0;
+            while (i < BOUNDS.length && ms > BOUNDS[i]) {
+                i++;
+            }
+            buckets.incrementAndGet(i);
+            count.incrementAndGet();
+            sumNanos.addAndGet(nanos);
+            long m;
+            while (nanos > (m = maxNanos.get()) && !maxNanos.compareAndSet(m, nanos)) {
+            }
+        }
+
+        /** Records a duration given in milliseconds. */
+        public void record(long ms) {
+            recordNanos(ms * 1000000L);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        /** The sum of all durations (in ms). */
+        public double getSum() {
+            return sumNanos.get() / 1e6;
+        }
+
+        /** The longest duration (in ms). */
+        public double getMax() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /** Estimates a quantile (0 to 1) as the upper bound of the bucket it
+         * falls into (or the maximum, for the last bucket). */
+        public double quantile(double q) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * n), seen = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(BOUNDS[i], getMax());
+                }
+            }
+            return getMax();
+        }
+    }
+
+    /** A value read when the metrics are. */
+    public interface Gauge {
+
+        double value();
+    }
+    // the instruments, by key
+    private final ConcurrentHashMap<String, Object> metrics = new ConcurrentHashMap<String, Object>();
+    private ServerSocket http = null;
+
+    /**
+     * Returns the key of a metric with labels, e.g.
+     * <tt>key("ade_call_ms", "method", "getPose")</tt> gives
+     * <tt>ade_call_ms{method="getPose"}</tt>.
+     * @param name the metric name
+     * @param labels label names and values, alternating
+     */
+    public static String key(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String v = String.valueOf(labels[i + 1]);
+            for (int c = 0; c < v.length(); c++) {
+                char ch = v.charAt(c);
+                if (ch == '"' || ch == '\\') {
+                    sb.append('\\');
+                } else if (ch == '\n') {
+                    sb.append("\\n");
+                    continue;
+                }
+                sb.append(ch);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /** Returns (creating it if needed) the counter with the given key. */
+    public Counter counter(String key) {
+        Object m = metrics.get(key);
+        if (m == null) {
+            Object n = new Counter();
+            m = metrics.putIfAbsent(key, n);
+            if (m == null) {
+                m = n;
+            }
+        }
+        return (Counter) m;
+    }
+
+    /** Returns (creating it if needed) the histogram with the given key. */
+    public Histogram histogram(String key) {
+        Object m = metrics.get(key);
+        if (m == null) {
+            Object n = new Histogram();
+            m = metrics.putIfAbsent(key, n);
+            if (m == null) {
+                m = n;
+            }
+        }
+        return (Histogram) m;
+    }
+
+    /** Registers (or replaces) a gauge. */
+    public void gauge(String key, Gauge g) {
+        metrics.put(key, g);
+    }
+
+    /** Removes a metric (e.g., of a connection that was closed). */
+    public void remove(String key) {
+        metrics.remove(key);
+    }
+
+    /**
+     * Removes all metrics that have a label with the given value, e.g., all
+     * metrics of a <tt>target</tt> that has gone away.
+     * @param label the label name
+     * @param value the label value
+     * @return the number of metrics removed
+     */
+    public int removeLabeled(String label, String value) {
+        String k = key("", label, value);
+        String l = k.substring(1, k.length() - 1);
+        int n = 0;
+        for (String key : metrics.keySet()) {
+            if (hasLabel(key, l) && metrics.remove(key) != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** Whether a key has the given <tt>name="value"</tt> label. */
+    private static boolean hasLabel(String key, String l) {
+        int i = key.indexOf('{');
+        while (i >= 0 && (i = key.indexOf(l, i)) >= 0) {
+            char before = key.charAt(i - 1), after = key.charAt(i + l.length());
+            if ((before == '{' || before == ',') && (after == '}' || after == ',')) {
+                return true;
+            }
+            i += l.length();
+        }
+        return false;
+    }
+
+    /**
+     * Returns all metrics as a flat map. Histograms are reported as
+     * <tt>_count</tt>, <tt>_sum</tt>, <tt>_max</tt>, <tt>_p50</tt>,
+     * <tt>_p90</tt> and <tt>_p99</tt> entries (in ms), with the suffix added
+     * to the metric name.
+     */
+    public HashMap<String, Double> snapshot() {
+        HashMap<String, Double> s = new HashMap<String, Double>();
+        for (Map.Entry<String, Object> e : metrics.entrySet()) {
+            String k = e.getKey();
+            Object m = e.getValue();
+            if (m instanceof Counter) {
+                s.put(k, (double) ((Counter) m).get());
+            } else if (m instanceof Gauge) {
+                s.put(k, gaugeValue((Gauge) m));
+            } else {
+                Histogram h = (Histogram) m;
+                s.put(suffix(k, "_count"), (double) h.getCount());
+                s.put(suffix(k, "_sum"), h.getSum());
+                s.put(suffix(k, "_max"), h.getMax());
+                s.put(suffix(k, "_p50"), h.quantile(0.5));
+                s.put(suffix(k, "_p90"), h.quantile(0.9));
+                s.put(suffix(k, "_p99"), h.quantile(0.99));
+            }
+        }
+        return s;
+    }
+
+    /** Returns all metrics in the Prometheus text exposition format. */
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> e : new TreeMap<String, Object>(metrics).entrySet()) {
+            String k = e.getKey();
+            Object m = e.getValue();
+            if (m instanceof Counter) {
+                sb.append(k).append(' ').append(((Counter) m).get()).append('\n');
+            } else if (m instanceof Gauge) {
+                sb.append(k).append(' ').append(gaugeValue((Gauge) m)).append('\n');
+            } else {
+                Histogram h = (Histogram) m;
+                long seen = 0;
+                for (int i = 0; i <= BOUNDS.length; i++) {
+                    seen += h.buckets.get(i);
+                    String le = (i < BOUNDS.length ? Double.toString(BOUNDS[i]) : "+Inf");
+                    sb.append(label(suffix(k, "_bucket"), "le", le)).append(' ').append(seen).append('\n');
+                }
+                sb.append(suffix(k, "_sum")).append(' ').append(h.getSum()).append('\n');
+                sb.append(suffix(k, "_count")).append(' ').append(h.getCount()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double gaugeValue(Gauge g) {
+        try {
+            return g.value();
+        } catch (RuntimeException re) {
+            return Double.NaN;
+        }
+    }
+
+    /** Adds a suffix to the name part of a key. */
+    private static String suffix(String key, String suffix) {
+        int b = key.indexOf('{');
+        return (b < 0 ? key + suffix : key.substring(0, b) + suffix + key.substring(b));
+    }
+
+    /** Adds a label to a key. */
+    private static String label(String key, String label, String value) {
+        String l = label + "=\"" + value + "\"";
+        int b = key.indexOf('{');
+        return (b < 0 ? key + "{" + l + "}" : key.substring(0, key.length() - 1) + "," + l + "}");
+    }
+
+    /**
+     * Serves {@link #toText} over HTTP on the loopback interface. Every
+     * request, whatever its path, gets the current metrics.
+     * @param port the port (0 for any free port)
+     * @return the port actually used
+     * @throws IOException if the port cannot be opened
+     */
+    public synchronized int serve(int port) throws IOException {
+        if (http != null) {
+            return http.getLocalPort();
+        }
+        final ServerSocket ss = new ServerSocket(port, 8, InetAddress.getByName("127.0.0.1"));
+        http = ss;
+        Thread t = new Thread(prg + " http " + ss.getLocalPort()) {
+            @Override
+            public void run() {
+                while (!ss.isClosed()) {
+                    try {
+                        Socket s = ss.accept();
+                        try {
+                            s.setSoTimeout(2000);
+                            respond(s);
+                        } finally {
+                            s.close();
+                        }
+                    } catch (IOException ioe) {
+                        if (!ss.isClosed()) {
+                            System.err.println(prg + ": metrics request failed: " + ioe);
+                        }
+                    }
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+        return ss.getLocalPort();
+    }
+
+    private void respond(Socket s) throws IOException {
+        // read the request head (we do not care what was asked for)
+        InputStream in = s.getInputStream();
+        int c, last = 0, n = 0;
+        while ((c = in.read()) >= 0 && n++ < 8192) {
+            if (c == '\n' && last == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                last = c;
+            }
+        }
+        byte[] body = toText().getBytes("UTF-8");
+        OutputStream out = s.getOutputStream();
+        out.write(("HTTP/1.0 200 OK\r\nContent-Type: text/plain; version=0.0.4\r\n"
+                + "Content-Length: " + body.length + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+        out.write(body);
+        out.flush();
+    }
+
+    /** Stops serving metrics over HTTP. */
+    public synchronized void close() {
+        if (http != null) {
+            try {
+                http.close();
+            } catch (IOException ioe) {
+            }
+            http = null;
+        }
+    }
+}
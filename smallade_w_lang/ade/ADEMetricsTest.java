@@ -0,0 +1,112 @@
+package ade;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the counters, histograms and label handling of {@link ADEMetrics}.
+ */
+public class ADEMetricsTest {
+
+    @Test
+    public void keysQuoteLabelValues() {
+        assertEquals("ade_calls", ADEMetrics.key("ade_calls"));
+        assertEquals("ade_call_ms{method=\"getPose\",target=\"com.Sim$sim\"}",
+                ADEMetrics.key("ade_call_ms", "method", "getPose", "target", "com.Sim$sim"));
+        assertEquals("m{v=\"a\\\"b\\\\c\\n\"}", ADEMetrics.key("m", "v", "a\"b\\c\n"));
+    }
+
+    @Test
+    public void countersAreSharedByKey() {
+        ADEMetrics m = new ADEMetrics();
+        ADEMetrics.Counter c = m.counter("ade_calls_total");
+        assertSame(c, m.counter("ade_calls_total"));
+        c.inc();
+        c.add(41);
+        assertEquals(42, c.get());
+        assertEquals(42.0, m.snapshot().get("ade_calls_total"), 0);
+        assertTrue(m.toText().contains("ade_calls_total 42\n"));
+    }
+
+    @Test
+    public void histogramsBucketDurations() {
+        ADEMetrics.Histogram h = new ADEMetrics().histogram("h");
+        assertEquals(0, h.quantile(0.5), 0);
+        for (int i = 0; i < 98; i++) {
+            h.record(3);
+        }
+        h.record(400);
+        h.recordNanos(20000000000L);
+        assertEquals(100, h.getCount());
+        assertEquals(98 * 3 + 400 + 20000, h.getSum(), 1e-6);
+        assertEquals(20000, h.getMax(), 1e-6);
+        // quantiles are the upper bounds of their buckets
+        assertEquals(5, h.quantile(0.5), 0);
+        assertEquals(500, h.quantile(0.99), 0);
+        assertEquals(20000, h.quantile(1), 0);
+        // negative durations count as 0
+        h.recordNanos(-5);
+        assertEquals(101, h.getCount());
+    }
+
+    @Test
+    public void histogramsAreExposedCumulatively() {
+        ADEMetrics m = new ADEMetrics();
+        ADEMetrics.Histogram h = m.histogram(ADEMetrics.key("ade_call_ms", "method", "f"));
+        h.record(1);
+        h.record(50);
+        String text = m.toText();
+        assertTrue(text.contains("ade_call_ms_bucket{method=\"f\",le=\"1.0\"} 1\n"));
+        assertTrue(text.contains("ade_call_ms_bucket{method=\"f\",le=\"50.0\"} 2\n"));
+        assertTrue(text.contains("ade_call_ms_bucket{method=\"f\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("ade_call_ms_count{method=\"f\"} 2\n"));
+        HashMap<String, Double> s = m.snapshot();
+        assertEquals(2.0, s.get("ade_call_ms_count{method=\"f\"}"), 0);
+        assertEquals(50.0, s.get("ade_call_ms_max{method=\"f\"}"), 0);
+    }
+
+    @Test
+    public void gaugesAreReadWhenExposed() {
+        ADEMetrics m = new ADEMetrics();
+        final int[] v = {1};
+        m.gauge("g", new ADEMetrics.Gauge() {
+            @Override
+            public double value() {
+                return v[0];
+            }
+        });
+        v[0] = 7;
+        assertEquals(7.0, m.snapshot().get("g"), 0);
+        m.gauge("bad", new ADEMetrics.Gauge() {
+            @Override
+            public double value() {
+                throw new IllegalStateException();
+            }
+        });
+        assertTrue(Double.isNaN(m.snapshot().get("bad")));
+    }
+
+    @Test
+    public void removeLabeledDropsOnlyThatTarget() {
+        ADEMetrics m = new ADEMetrics();
+        m.counter(ADEMetrics.key("ade_call_errors_total", "method", "f", "target", "a$1")).inc();
+        m.histogram(ADEMetrics.key("ade_heartbeat_jitter_ms", "target", "a$1")).record(1);
+        m.counter(ADEMetrics.key("ade_call_errors_total", "method", "f", "target", "a$10")).inc();
+        m.counter(ADEMetrics.key("ade_call_errors_total", "method", "target=\"a$1\"", "target", "b")).inc();
+        m.counter("ade_threads").inc();
+        assertEquals(2, m.removeLabeled("target", "a$1"));
+        HashMap<String, Double> s = m.snapshot();
+        assertFalse(s.containsKey(ADEMetrics.key("ade_call_errors_total", "method", "f", "target", "a$1")));
+        assertFalse(s.containsKey(ADEMetrics.key("ade_heartbeat_jitter_ms_count", "target", "a$1")));
+        assertTrue(s.containsKey(ADEMetrics.key("ade_call_errors_total", "method", "f", "target", "a$10")));
+        assertTrue(s.containsKey(ADEMetrics.key("ade_call_errors_total", "method", "target=\"a$1\"", "target", "b")));
+        assertTrue(s.containsKey("ade_threads"));
+        assertEquals(0, m.removeLabeled("target", "a$1"));
+    }
+}
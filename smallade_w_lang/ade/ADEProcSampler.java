@@ -0,0 +1,293 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.HashSet;
+
+/**
+ * Samples CPU and memory statistics of the local host from <tt>/proc</tt>
+ * without forking a process. One sampler is shared by everything in the JVM
+ * ({@link #getInstance}); it keeps <tt>/proc/stat</tt>,
+ * <tt>/proc/meminfo</tt> and <tt>/proc/loadavg</tt> open and re-reads them with positioned reads into a
+ * reused buffer. Samples requested less than {@link #MIN_PERIOD} ms apart
+ * are shared. Since every consumer samples at its own rate, CPU load is
+ * computed from two samples by the consumer ({@link Sample#cpuLoad}), which
+ * keeps its own previous sample.
+ */
+final public class ADEProcSampler {
+
+    private final static String prg = "ADEProcSampler";
+    private final static String STAT = "/proc/stat";
+    private final static String MEMINFO = "/proc/meminfo";
+    private final static String LOADAVG = "/proc/loadavg";
+    /** Samples requested less than this many ms apart are shared. */
+    public final static long MIN_PERIOD = 100;
+    private static ADEProcSampler instance = null;
+    private static HashSet<String> localAddresses = null;
+
+    /** One reading of the host statistics. */
+    static public class Sample {
+
+        /** When the sample was taken (in ms). */
+        public final long time;
+        /** Total CPU time (in jiffies, summed over all CPUs). */
+        public final long total;
+        /** Idle CPU time, including time waiting for I/O. */
+        public final long idle;
+        /** The number of CPUs. */
+        public final int cpus;
+        /** Total memory (in kB). */
+        public final long memTotal;
+        /** Free memory (in kB). */
+        public final long memFree;
+        /** Memory available for new processes (in kB); the free memory on
+         * kernels that do not report it. */
+        public final long memAvailable;
+        /** The 1 minute load average (not divided by the number of CPUs). */
+        public final double loadAvg;
+
+        Sample(long time, long total, long idle, int cpus, long memTotal,
+                long memFree, long memAvailable, double loadAvg) {
+            this.time = time;
+            this.total = total;
+            this.idle = idle;
+            this.cpus = cpus;
+            this.memTotal = memTotal;
+            this.memFree = memFree;
+            this.memAvailable = memAvailable;
+            this.loadAvg = loadAvg;
+        }
+
+        /** Returns the fraction of CPU time (0 to 1, averaged over all CPUs)
+         * spent busy since <tt>prev</tt>, or 0 if no time has passed. */
+        public double cpuLoad(Sample prev) {
+            if (prev == null || total <= prev.total) {
+                return 0.0;
+            }
+            double busy = (total - prev.total) - (idle - prev.idle);
+            return Math.max(0.0, Math.min(1.0, busy / (total - prev.total)));
+        }
+    }
+    private final RandomAccessFile stat;
+    private final RandomAccessFile meminfo;
+    private final RandomAccessFile loadavg;
+    private ByteBuffer buf = ByteBuffer.allocate(16384);
+    private Sample last = null;
+
+    private ADEProcSampler() throws IOException {
+        stat = new RandomAccessFile(STAT, "r");
+        try {
+            meminfo = new RandomAccessFile(MEMINFO, "r");
+            try {
+                loadavg = new RandomAccessFile(LOADAVG, "r");
+            } catch (IOException ioe) {
+                meminfo.close();
+                throw ioe;
+            }
+        } catch (IOException ioe) {
+            stat.close();
+            throw ioe;
+        }
+    }
+
+    /** Whether this host has the <tt>/proc</tt> files the sampler reads. */
+    public static boolean isAvailable() {
+        return new File(STAT).canRead() && new File(MEMINFO).canRead()
+                && new File(LOADAVG).canRead();
+    }
+
+    /** Returns the shared sampler.
+     * @throws IOException if the <tt>/proc</tt> files cannot be opened */
+    public static synchronized ADEProcSampler getInstance() throws IOException {
+        if (instance == null) {
+            instance = new ADEProcSampler();
+        }
+        return instance;
+    }
+
+    /** Whether <tt>host</tt> (a name or IP address) refers to the host this
+     * JVM runs on. */
+    public static synchronized boolean isLocalHost(String host) {
+        if (localAddresses == null) {
+            localAddresses = new HashSet<String>();
+            localAddresses.add("localhost");
+            try {
+                InetAddress lh = InetAddress.getLocalHost();
+                localAddresses.add(lh.getHostName());
+                localAddresses.add(lh.getHostAddress());
+            } catch (IOException ioe) {
+            }
+            try {
+                Enumeration<NetworkInterface> nis = NetworkInterface.getNetworkInterfaces();
+                while (nis != null && nis.hasMoreElements()) {
+                    Enumeration<InetAddress> as = nis.nextElement().getInetAddresses();
+                    while (as.hasMoreElements()) {
+                        localAddresses.add(as.nextElement().getHostAddress());
+                    }
+                }
+            } catch (IOException ioe) {
+                System.err.println(prg + ": cannot list network interfaces: " + ioe);
+            }
+        }
+        return (host != null && localAddresses.contains(host));
+    }
+
+    /** Returns a current sample (shared if the last one is less than
+     * {@link #MIN_PERIOD} ms old).
+     * @throws IOException if the <tt>/proc</tt> files cannot be read */
+    public synchronized Sample sample() throws IOException {
+        long now = System.currentTimeMillis();
+        if (last != null && now - last.time < MIN_PERIOD) {
+            return last;
+        }
+        // /proc/stat: the aggregate "cpu" line and one "cpuN" line per CPU
+        int n = read(stat.getChannel());
+        byte[] b = buf.array();
+        long total = 0, idle = 0;
+        int cpus = 0;
+        for (int i = 0; i < n; i = nextLine(b, i, n)) {
+            if (n - i < 4 || b[i] != 'c' || b[i + 1] != 'p' || b[i + 2] != 'u') {
+                // the cpu lines come first
+                if (cpus > 0 || total > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b[i + 3] == ' ') {
+                // user nice system idle iowait irq softirq steal (guest time
+                // is already included in user)
+                int p = i + 3;
+                for (int f = 0; f < 8; f++) {
+                    while (p < n && b[p] == ' ') {
+                        p++;
+                    }
+                    long v = 0;
+                    while (p < n && b[p] >= '0' && b[p] <= '9') {
+                        v = v * 10 + (b[p++] - '0');
+                    }
+                    total += v;
+                    if (f == 3 || f == 4) {
+                        idle += v;
+                    }
+                }
+            } else {
+                cpus++;
+            }
+        }
+        // /proc/meminfo: "Name:   value kB" lines
+        n = read(meminfo.getChannel());
+        b = buf.array();
+        long memTotal = 0, memFree = 0, memAvailable = -1;
+        for (int i = 0; i < n; i = nextLine(b, i, n)) {
+            if (startsWith(b, i, n, "MemTotal:")) {
+                memTotal = value(b, i, n);
+            } else if (startsWith(b, i, n, "MemFree:")) {
+                memFree = value(b, i, n);
+            } else if (startsWith(b, i, n, "MemAvailable:")) {
+                memAvailable = value(b, i, n);
+            }
+        }
+        // /proc/loadavg: "1min 5min 15min running/total lastpid"
+        n = read(loadavg.getChannel());
+        b = buf.array();
+        int e = 0;
+        while (e < n && b[e] != ' ' && b[e] != '\n') {
+            e++;
+        }
+        double load;
+        try {
+            load = Double.parseDouble(new String(b, 0, e, "US-ASCII"));
+        } catch (NumberFormatException nfe) {
+            throw new IOException("cannot parse " + LOADAVG);
+        }
+        last = new Sample(now, total, idle, Math.max(cpus, 1), memTotal,
+                memFree, (memAvailable < 0 ? memFree : memAvailable), load);
+        return last;
+    }
+
+    /** Reads a whole <tt>/proc</tt> file into the buffer, growing it if
+     * needed, and returns the number of bytes read. */
+    private int read(FileChannel fc) throws IOException {
+        while (true) {
+            buf.clear();
+            long pos = 0;
+            int r;
+            while (buf.hasRemaining() && (r = fc.read(buf, pos)) > 0) {
+                pos += r;
+            }
+            if (buf.hasRemaining()) {
+                return buf.position();
+            }
+            buf = ByteBuffer.allocate(buf.capacity() * 2);
+        }
+    }
+
+    private static int nextLine(byte[] b, int i, int n) {
+        while (i < n && b[i] != '\n') {
+            i++;
+        }
+        return i + 1;
+    }
+
+    private static boolean startsWith(byte[] b, int i, int n, String s) {
+        if (n - i < s.length()) {
+            return false;
+        }
+        for (int k = 0; k < s.length(); k++) {
+            if (b[i + k] != s.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the first number on the line starting at <tt>i</tt>. */
+    private static long value(byte[] b, int i, int n) {
+        while (i < n && b[i] != '\n' && (b[i] < '0' || b[i] > '9')) {
+            i++;
+        }
+        long v = 0;
+        while (i < n && b[i] >= '0' && b[i] <= '9') {
+            v = v * 10 + (b[i++] - '0');
+        }
+        return v;
+    }
+}
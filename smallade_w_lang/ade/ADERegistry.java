@@ -39,6 +39,7 @@ import ade.gui.InfoRequestSpecs;
 import ade.gui.SystemViewAccess;
 import ade.gui.SystemViewComponentInfo;
 import ade.gui.SystemViewStatusData;
+import ade.gui.SystemViewStatusDelta;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.security.AccessControlException;
@@ -421,6 +422,52 @@ public interface ADERegistry extends ADEComponent {
     public void setRecoveryMultiplier(String sid, String spw, int mult)
             throws RemoteException, AccessControlException;
 
+    /**
+     * Report that a call to an {@link ade.ADEComponent ADEComponent} failed in
+     * a way that suggests that it is gone (e.g., a timeout or an RMI failure),
+     * so that recovery does not have to wait for the reaper.
+     *
+     * @param sid the reporting component's identification string
+     * @param spw the reporting component's password
+     * @param key the key (type and name) of the unreachable component
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    public void reportComponentUnreachable(String sid, String spw, String key)
+            throws RemoteException, AccessControlException;
+
+    /**
+     * Record that an {@link ade.ADEComponent ADEComponent} publishes (or no
+     * longer publishes) the data channel <tt>channel</tt>; see
+     * {@link ade.ADEChannel ADEChannel}.
+     *
+     * @param sid the component's identification string
+     * @param spw the component's password
+     * @param channel the name of the channel
+     * @param on whether the component publishes the channel
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    public void registerChannel(String sid, String spw, String channel, boolean on)
+            throws RemoteException, AccessControlException;
+
+    /**
+     * Returns the IDs of the {@link ade.ADEComponent ADEComponent}s registered
+     * with this registry that publish the data channel <tt>channel</tt>.
+     *
+     * @param uid the name of the user
+     * @param upw the password for the user
+     * @param channel the name of the channel
+     * @return an {@link java.util.ArrayList ArrayList} of component IDs
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    public ArrayList<String> requestChannelPublishers(String uid, String upw, String channel)
+            throws RemoteException, AccessControlException;
+
     /* * * * * * * * * * * * * *
      * Administrator Interface *
      * * * * * * * * * * * * * */
@@ -745,6 +792,22 @@ public interface ADERegistry extends ADEComponent {
     public void setComponentState(String sid, String spw, ADEState state)
             throws AccessControlException, RemoteException;
 
+    /**
+     * Stores the changes to an <tt>ADEComponent</tt>'s state since the last
+     * version the registry has.
+     *
+     * @param sid The ID of the component making the request
+     * @param spw The component's password
+     * @param delta The changes, as returned by {@link ade.ADEState#takeDelta}
+     * @return The version of the state the registry now has; if it is not the
+     * version of <tt>delta</tt>, the delta did not apply and the whole state
+     * has to be sent with {@link #setComponentState}
+     * @throws AccessControlException If the user is unrecognized
+     * @throws RemoteException If another error occurs
+     */
+    public long setComponentStateDelta(String sid, String spw, ADEState.Delta delta)
+            throws AccessControlException, RemoteException;
+
 
     /**
      * Obtain an {@link java.util.ArrayList ArrayList} of {@link
@@ -823,6 +886,28 @@ public interface ADERegistry extends ADEComponent {
     public SystemViewStatusData guiGetRegistryStatus(SystemViewAccess accessKey,
             InfoRequestSpecs requestSpecs, boolean entireSystem) throws RemoteException;
 
+    /**
+     * gets the changes to the status returned by guiGetRegistryStatus since a
+     * version the GUI already has. If nothing changed, the registry holds the
+     * request for up to waitMs milliseconds (at most
+     * ADEGlobals.DEF_GUI_LONGPOLL), returning as soon as something does, so
+     * that a GUI calling this in a loop gets changes pushed to it without
+     * polling for them.
+     *
+     * @param accessKey
+     * @param requestSpecs: what information the GUI wants to know
+     * @param entireSystem: as for guiGetRegistryStatus
+     * @param sinceVersion: the version of the last delta the GUI applied, or
+     * 0 for a full snapshot
+     * @param waitMs: how long to wait for a change
+     * @return the changes, with the new version; a full snapshot if
+     * sinceVersion is 0 or too old
+     * @throws RemoteException
+     */
+    public SystemViewStatusDelta guiGetRegistryStatusDelta(SystemViewAccess accessKey,
+            InfoRequestSpecs requestSpecs, boolean entireSystem,
+            long sinceVersion, int waitMs) throws RemoteException;
+
     /**
      * gets status for a PARTICULAR COMPONENT, to be displayed by the GUI.
      *
@@ -39,7 +39,9 @@ import ade.gui.ADEGuiVisualizationSpecs;
 import ade.gui.InfoRequestSpecs;
 import ade.gui.SystemViewAccess;
 import ade.gui.SystemViewComponentInfo;
+import ade.gui.SystemViewFeed;
 import ade.gui.SystemViewStatusData;
+import ade.gui.SystemViewStatusDelta;
 import ade.gui.sysview.ADESystemView;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
@@ -74,12 +76,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.lang.reflect.Method;
@@ -124,9 +128,11 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
     private boolean debugRequestConnection = false; // for debugging the request of connections
     private boolean debugTimes = false;
     /**
-     * The hosts known to this registry.
+     * The hosts known to this registry. Concurrent, since the components of
+     * a configuration are started in parallel (see {@link ade.ADEStartupPlan
+     * ADEStartupPlan}).
      */
-    final private HashMap<String, ADEHostInfo> knownhosts = new HashMap<String, ADEHostInfo>();// key on IP
+    final private Map<String, ADEHostInfo> knownhosts = new ConcurrentHashMap<String, ADEHostInfo>();// key on IP
     /**
      * The map of components that are currently registered with this registry. Note
      * that components in this hash should also be in the componentTypes and
@@ -159,6 +165,7 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
      * A map of the components that were registered but have been "reaped".
      */
     final private Map<String, ADEComponentInfo> inrecovery = Collections.synchronizedMap(new HashMap<String, ADEComponentInfo>()); // key on type+name
+    final private Set<String> probing = Collections.synchronizedSet(new HashSet<String>()); // components reported unreachable being checked
     /**
      * The updates coming from a component (this method of updating will be removed
      * in the future).
@@ -173,11 +180,39 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
      * joining
      */
     final private HashMap<ADEComponent, String[][]> notifications = new HashMap<ADEComponent, String[][]>(); // key on component RMI reference
+    /**
+     * The data channels published by registered components.
+     */
+    final private Map<String, HashSet<String>> channels = Collections.synchronizedMap(new HashMap<String, HashSet<String>>()); // key on channel name
     // TODO: use the isAdmin field in ADEUser to eliminate the adminDB
     /**
      * The recognized administrators.
      */
     final private Map<String, ADEUser> adminDB = Collections.synchronizedMap(new HashMap<String, ADEUser>()); // key on uid
+    /**
+     * Components rebuilt from the journal that have not re-registered since
+     * the registry was restarted.
+     */
+    final private Map<String, ADEComponentInfo> restored = Collections.synchronizedMap(new HashMap<String, ADEComponentInfo>()); // key on type+name
+    private ADERegistryJournal journal;   // the registration journal (if any)
+    private String journalfile;           // set with --journal
+    private volatile ADEStartupPlan startup; // the configuration being started (if any)
+    /**
+     * Versioned views of the status reported to the system view GUI, for the
+     * local components and for the entire system, so that GUIs only get what
+     * changed (see {@link #guiGetRegistryStatusDelta}).
+     */
+    final private SystemViewFeed guiLocalFeed = new SystemViewFeed();
+    final private SystemViewFeed guiSystemFeed = new SystemViewFeed();
+    final private Object guiLock = new Object();
+    private boolean guiDirty = true;      // local status changed (guarded by guiLock)
+    // the last known status of other registries' components, and the
+    //     version each of them reported
+    final private HashMap<ADERegistry, SystemViewStatusData> guiRemote = new HashMap<ADERegistry, SystemViewStatusData>();
+    final private HashMap<ADERegistry, Long> guiRemoteVersion = new HashMap<ADERegistry, Long>();
+    private long guiRemoteChecked = 0;
+    private HashMap<String, SystemViewComponentInfo> guiLocal = new HashMap<String, SystemViewComponentInfo>();
+    private long guiLocalInSystem = 0;    // local version in the system feed
     private RegistryReaper myReaper;      // maintains connections
     private ADERemoteCallTimer rctReg;    // obtained from superclass
     private ADERemoteCallTimer rctServ;   // obtained from superclass
@@ -267,6 +302,126 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
 	// create the call timers once and for all here
 	ensureRCTServ();
 	ensureRCTReg();
+        rctServ.setMetrics(getMetrics(), "components");
+        rctServ.setBatching(ADEGlobals.DEF_BATCH_WINDOW, this);
+        rctReg.setMetrics(getMetrics(), "registries");
+        getMetrics().gauge("ade_registry_components", new ADEMetrics.Gauge() {
+
+            @Override
+            public double value() {
+                return components.size();
+            }
+        });
+        getMetrics().gauge("ade_registry_pending_updates", new ADEMetrics.Gauge() {
+
+            @Override
+            public double value() {
+                return pendingupdates.size();
+            }
+        });
+        // rebuild the tables from the journal of the previous run (if any)
+        openJournal();
+    }
+
+    /**
+     * Opens the journal given with <tt>--journal</tt> and puts the components
+     * it lists back into the tables, so that they can be found right away. The
+     * components are then checked in parallel; the ones that are gone, or that
+     * have not re-registered (which they do on losing the old registry) within
+     * {@link ade.ADEGlobals#DEF_JOURNAL_GRACE} ms, are dropped again.
+     */
+    private void openJournal() {
+        if (journalfile == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        journal = new ADERegistryJournal(new File(journalfile));
+        LinkedHashMap<String, ADERegistryJournal.Entry> entries;
+        try {
+            entries = journal.open();
+        } catch (IOException ioe) {
+            System.err.println(myID + ": cannot open journal " + journalfile + ":\n" + ioe);
+            journal = null;
+            return;
+        }
+        for (ADERegistryJournal.Entry e : entries.values()) {
+            ADEComponentInfo si = e.info;
+            String key = si.getKey();
+            if (si.isregistry || si.as == null || components.containsKey(key)) {
+                continue;
+            }
+            si.setConnectsCurrent(0);
+            components.put(key, si);
+            handleInterfaces(si, true);
+            if (e.password != null) {
+                synchronized (userDB) {
+                    userDB.put(key, new ADEUser(key, e.password, si.userAccess));
+                }
+            }
+            restored.put(key, si);
+        }
+        guiChanged();
+        journal.compact(components);
+        System.out.println(myID + ": restored " + restored.size() + " components from "
+                + journalfile + " in " + (System.currentTimeMillis() - start) + " ms");
+        if (restored.isEmpty()) {
+            return;
+        }
+        new Thread() {
+            @Override
+            public void run() {
+                ADEComponentInfo[] infos;
+                synchronized (restored) {
+                    infos = restored.values().toArray(new ADEComponentInfo[0]);
+                }
+                Object[] refs = new Object[infos.length];
+                for (int i = 0; i < infos.length; i++) {
+                    refs[i] = infos[i].as;
+                }
+                try {
+                    Object[] ups = rctServ.remoteCallConcurrent("isUp", refs);
+                    for (int i = 0; i < infos.length; i++) {
+                        if (!(ups[i] instanceof Boolean)) {
+                            System.out.println(myID + ": restored " + infos[i].getKey() + " is gone");
+                            dropRestored(infos[i]);
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println(myID + ": could not check restored components:\n" + e);
+                }
+                try {
+                    Thread.sleep(ADEGlobals.DEF_JOURNAL_GRACE);
+                } catch (InterruptedException ignore) {
+                }
+                synchronized (restored) {
+                    infos = restored.values().toArray(new ADEComponentInfo[0]);
+                }
+                for (ADEComponentInfo si : infos) {
+                    System.out.println(myID + ": restored " + si.getKey() + " did not re-register");
+                    dropRestored(si);
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Removes a component restored from the journal, unless it re-registered
+     * in the meantime.
+     */
+    private void dropRestored(ADEComponentInfo si) {
+        if (restored.remove(si.getKey()) == si) {
+            deregisterComponent(si);
+            removeComponent(si);
+        }
+    }
+
+    /**
+     * Rewrites the journal once enough records have been appended.
+     */
+    private void checkJournal() {
+        if (journal != null && journal.needsCompaction()) {
+            journal.compact(components);
+        }
     }
 
     // sets up the remote call timer for the registry, which allows is to call any infrastructure method in components
@@ -1388,9 +1543,15 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         else {
             name = si.name;
 	    String testkey = getKey(type, name); 
+            // a component restored from the journal re-registers under its
+            // old key after losing the previous registry instance
+            boolean rejoin = (!si.isregistry && restored.remove(testkey) != null);
+            if (rejoin) {
+                System.out.println(myID + ": " + testkey + " re-registered after restart");
+            }
 	    // MS: FIXED: this should only be done for components, registries will be registered multiple times!!!
-	    if ((si.isregistry && (components.containsKey(testkey) || inrecovery.containsKey(testkey))) || 
-		(!si.isregistry && isUsed(testkey))) {
+	    if (!rejoin && ((si.isregistry && (components.containsKey(testkey) || inrecovery.containsKey(testkey))) || 
+		(!si.isregistry && isUsed(testkey)))) {
 		System.out.println(myID + ": REJECTED (component already registered/key already in use.)");
 		throw new RemoteException(getKey(type, name) + " already exists!");
 	    }
@@ -1426,6 +1587,11 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         }
         components.put(key, si);
         //}
+        guiChanged();
+        ADEStartupPlan plan = startup;
+        if (plan != null) {
+            plan.registered(si);
+        }
 
         // the component type lookup (storing the components in a nameMap
         // makes returning all components of a specific type easier, in
@@ -1455,6 +1621,10 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
                 System.out.println(myID + ": Added " + key + " to user database");
             }
         }
+        if (journal != null && !si.isregistry) {
+            journal.register(si, passwd);
+            checkJournal();
+        }
         if (verbose || debugRegistration) {
             System.out.println(myID + ": >>>>>>>>> Registered: " + si.toString());
         }
@@ -1887,6 +2057,9 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         synchronized (pendingupdates) {
             pendingupdates.remove(sKey);
         }
+        if (journal != null) {
+            journal.remove(sKey);
+        }
     }
 
     /**
@@ -2173,8 +2346,19 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
             System.out.println(myID + ": got update from " + uID + "...");
         }
 	// MS: added the update of the clients and the components in the ACI
+        if (amsi.clients != null && !amsi.clients.equals(aci.clients)) {
+            if (journal != null) {
+                journal.clients(aci.getKey(), amsi.clients);
+                checkJournal();
+            }
+            guiChanged();
+        }
 	aci.clients = amsi.clients;
 	aci.components = amsi.components;
+        ADEStartupPlan plan = startup;
+        if (plan != null) {
+            plan.heartbeat(aci.getKey());
+        }
         aci.setConnectsCurrent(conns);
         aci.setState(amsi.state); // set this right away (don't wait for reaper)
         pendingupdates.put(amsi.id, amsi);
@@ -2221,6 +2405,138 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         s.setRecoveryMultiplier(mult);
     }
 
+    /**
+     * Report that a call to an {@link ade.ADEComponent ADEComponent} failed in
+     * a way that suggests that it is gone. If the component is registered
+     * here, it is checked right away (in a separate thread) and, if it does
+     * not answer, recovered as if the reaper had found it down. Reports about
+     * components registered elsewhere, or already being checked or
+     * recovered, are ignored.
+     *
+     * @param sid the reporting component's identification string
+     * @param spw the reporting component's password
+     * @param key the key (type and name) of the unreachable component
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    @Override
+    public void reportComponentUnreachable(final String sid, String spw, final String key)
+            throws RemoteException, AccessControlException {
+        if (verifyUser(sid, spw) == null) {
+            throw new AccessControlException("Invalid component name or password");
+        }
+        final ADEComponentInfo s = heartbeats.get(key);
+        if (s == null || inrecovery.containsKey(key) || !probing.add(key)) {
+            return;
+        }
+        new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    boolean stillUp = false;
+                    try {
+                        stillUp = (Boolean) rctReg.remoteCall(ADEGlobals.DEF_RECOVERYTIMEOUT, "isUp", s.as);
+                    } catch (Exception e) {
+                        // not answering; recover
+                    }
+                    if (!stillUp) {
+                        System.out.println(myID + ": " + key + " reported unreachable by " + sid);
+                        startRecovery(s);
+                    } else if (debugReaper || dbg > 2) {
+                        System.out.println(myID + ": " + key + " reported unreachable by " + sid + ", but still there");
+                    }
+                } finally {
+                    probing.remove(key);
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Marks a component as down and starts a {@link RecoveryThread} for it,
+     * unless its recovery has already started.
+     *
+     * @return <tt>true</tt> if recovery was started
+     */
+    private boolean startRecovery(ADEComponentInfo s) {
+        String key = s.getKey();
+        s.setRecoveryState(ADEGlobals.RecoveryState.DOWN);
+        synchronized (inrecovery) {
+            if (inrecovery.containsKey(key)) {
+                return false;
+            }
+            inrecovery.put(key, s);
+        }
+        heartbeats.remove(key);
+        new RecoveryThread(this, s).start();
+        return true;
+    }
+
+    /**
+     * Record that an {@link ade.ADEComponent ADEComponent} publishes (or no
+     * longer publishes) a data channel.
+     *
+     * @param sid the component's identification string
+     * @param spw the component's password
+     * @param channel the name of the channel
+     * @param on whether the component publishes the channel
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    @Override
+    public void registerChannel(String sid, String spw, String channel, boolean on)
+            throws RemoteException, AccessControlException {
+        if (!components.containsKey(sid)) {
+            debugPrint("UNKNOWN component " + sid + " trying to register channel " + channel);
+            throw new RemoteException("Unknown (or disconnected) component:" + sid);
+        }
+        if (verifyUser(sid, spw) == null) {
+            throw new AccessControlException("Invalid component name or password");
+        }
+        synchronized (channels) {
+            HashSet<String> publishers = channels.get(channel);
+            if (on) {
+                if (publishers == null) {
+                    publishers = new HashSet<String>();
+                    channels.put(channel, publishers);
+                }
+                publishers.add(sid);
+            } else if (publishers != null) {
+                publishers.remove(sid);
+                if (publishers.isEmpty()) {
+                    channels.remove(channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs of the registered components that publish a data
+     * channel.
+     *
+     * @param uid the name of the user
+     * @param upw the password for the user
+     * @param channel the name of the channel
+     * @return an {@link java.util.ArrayList ArrayList} of component IDs
+     * @throws RemoteException if the request fails
+     * @throws AccessControlException if the user does not have adequate
+     * permissions
+     */
+    @Override
+    public ArrayList<String> requestChannelPublishers(String uid, String upw, String channel)
+            throws RemoteException, AccessControlException {
+        if (verifyUser(uid, upw) == null) {
+            throw new AccessControlException("Invalid user name or password");
+        }
+        synchronized (channels) {
+            HashSet<String> publishers = channels.get(channel);
+            return (publishers == null ? new ArrayList<String>() : new ArrayList<String>(publishers));
+        }
+    }
+
     /**
      * Add a user and the types of {@link ade.ADEComponent ADEComponent} to which the
      * user is allowed access to the user database.
@@ -3000,7 +3316,14 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
             }
             ADEComponentInfo asi = components.get(sid);
             if (asi != null) {
-                asi.adestate = state;
+                synchronized (asi) {
+                    asi.adestate = state;
+                    asi.adedeltas = null;
+                }
+                if (journal != null) {
+                    journal.state(sid, state);
+                    checkJournal();
+                }
             } else {
                 System.err.println(myID + ": missing state info for " + sid);
             }
@@ -3009,6 +3332,65 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         }
     }
 
+    /**
+     * Stores the changes to an <tt>ADEComponent</tt>'s state. The registry
+     * keeps the last full state it received as a snapshot and the deltas
+     * since then; once there are more than {@link
+     * ade.ADEGlobals#DEF_STATE_HISTORY} deltas, the oldest is folded into the
+     * snapshot.
+     *
+     * @param sid The ID of the component making the request
+     * @param spw The component's password
+     * @param delta The changes
+     * @return The version of the state the registry now has (which is not
+     * the version of <tt>delta</tt> if it did not apply)
+     * @throws AccessControlException If the user is unrecognized
+     * @throws RemoteException If another error occurs
+     */
+    @Override
+    public long setComponentStateDelta(String sid, String spw, ADEState.Delta delta)
+            throws AccessControlException, RemoteException {
+        if (!components.containsKey(sid)) {
+            System.out.println(myID + ": UNKNOWN " + sid + " trying to set state");
+            throw new RemoteException("Unknown (or disconnected) component:" + sid);
+        }
+
+        if (verifyUser(sid, spw) != null) {
+            if (dbg > 5) {
+                System.out.println(myID + ": COMPONENT " + sid + " setting state " + delta);
+            }
+            ADEComponentInfo asi = components.get(sid);
+            if (asi == null) {
+                System.err.println(myID + ": missing state info for " + sid);
+                return -1;
+            }
+            synchronized (asi) {
+                if (asi.adestate == null) {
+                    return -1;
+                }
+                if (asi.adedeltas == null) {
+                    asi.adedeltas = new ArrayList<ADEState.Delta>();
+                }
+                long current = (asi.adedeltas.isEmpty() ? asi.adestate.getVersion()
+                        : asi.adedeltas.get(asi.adedeltas.size() - 1).getVersion());
+                if (delta.getBase() != current) {
+                    return current;
+                }
+                asi.adedeltas.add(delta);
+                if (asi.adedeltas.size() > ADEGlobals.DEF_STATE_HISTORY) {
+                    asi.adestate.apply(asi.adedeltas.remove(0));
+                }
+            }
+            if (journal != null) {
+                journal.delta(sid, delta);
+                checkJournal();
+            }
+            return delta.getVersion();
+        } else {
+            throw new AccessControlException("Invalid component name or password");
+        }
+    }
+
     /**
      * Retrieves an <tt>ADEComponent</tt>'s state.
      *
@@ -3032,8 +3414,17 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
             }
             ADEComponentInfo asi = components.get(sid);
             if (asi != null) {
-                // might be null, we don't care
-                return asi.adestate;
+                // might be null, we don't care; otherwise bring the snapshot
+                // up to date
+                synchronized (asi) {
+                    if (asi.adestate != null && asi.adedeltas != null) {
+                        for (ADEState.Delta d : asi.adedeltas) {
+                            asi.adestate.apply(d);
+                        }
+                        asi.adedeltas.clear();
+                    }
+                    return (asi.adestate != null ? asi.adestate.copy() : null);
+                }
             } else {
                 System.err.println(myID + ": missing info for " + sid);
             }
@@ -3094,6 +3485,11 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
                     System.err.println(myID + ": Problem shutting down components:\n" + e);
                 }
             }
+            // the components are gone, so there is nothing to restore
+            if (journal != null) {
+                journal.compact(new HashMap<String, ADEComponentInfo>());
+                journal.close();
+            }
         }
         // deregister from other registries
         if (!registries.isEmpty()) {
@@ -3601,6 +3997,20 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         //synchronized(components) {
         components.remove(sKey);
         //}
+        if (journal != null) {
+            journal.remove(sKey);
+        }
+        guiChanged();
+        // . Remove the component from the channel directory
+        synchronized (channels) {
+            Iterator<HashSet<String>> it = channels.values().iterator();
+            while (it.hasNext()) {
+                HashSet<String> publishers = it.next();
+                if (publishers.remove(sKey) && publishers.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
         if (debugRegistration) {
             System.out.println(myID + ": <<<<<<< removed " + sKey + " from components");
         }
@@ -3707,6 +4117,7 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
             Thread recover;
             long startTime,startTime2;
             int workTime, workTime2;
+            ADEMetrics.Histogram sweep = getMetrics().histogram("ade_registry_sweep_ms");
 
             // the registry does the bookkeeping required to maintain data
             // integrity. it is also responsible for restarting failed components
@@ -3846,17 +4257,11 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
                                 }
                                 continue;
                             }
-                            s.setRecoveryState(ADEGlobals.RecoveryState.DOWN);
-                            if (!inrecovery.containsKey(s.getKey())) {
-                                // TODO: keep a reference to thread for interruption?
-                                recover = new RecoveryThread(mycomponent, s);
-                                //recoveryStarted.put(s, recover);
-                                inrecovery.put(s.getKey(), s);
-                                heartbeats.remove(s.getKey());
-                                recover.start();
+                            // TODO: keep a reference to thread for interruption?
+                            if (startRecovery(s)) {
                                 if (debugReaper || debugging || dbg > 2) {
-                                    System.out.println(myID + ": Started " + recover
-                                            + " to recover " + s.getKey() + "...");
+                                    System.out.println(myID + ": Started recovery of "
+                                            + s.getKey() + "...");
                                 }
                             } else {
                                 if (debugReaper || debugging || dbg > 2) {
@@ -3971,6 +4376,7 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
                 // done; get the end time so we can sleep appropriately
                 workTime = (int) (System.currentTimeMillis() - startTime);
                 workTime2 = (int) (System.currentTimeMillis() - startTime2);
+                sweep.record(workTime2);
                 if (debugReaper || debugging) {
                     System.out.println(myID + ": overall reaper cycle took " + workTime + "ms");
                     System.out.println(myID + ": reaper cycle for components took " + workTime2 + "ms");
@@ -4124,7 +4530,7 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
 
     // =======================================================================
     // this function effectively reads in an ADE configuration file and starts
-    // up the components in sequence
+    // up the components (in parallel, see ADEStartupPlan)
     private void checkConfigFile() {
         try {
             final ADEComponentInfo myInfo = requestComponentInfo(this);
@@ -4165,7 +4571,7 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         }
     }
 
-    private void startUpADE(ADEComponentInfo myInfo, File configurationfile)
+    private void startUpADE(final ADEComponentInfo myInfo, File configurationfile)
             throws ParseException {
         // want to sleep for a couple ms to guarantee the constructor finishes
         try {
@@ -4175,7 +4581,35 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         if (debugging) {
             System.out.println("Starting ADE configuration...");
         }
-        // now load the initialization data
+        ADEStartupPlan plan = new ADEStartupPlan(new ADEStartupPlan.Launcher() {
+            @Override
+            public boolean start(ADEComponentInfo si) throws Exception {
+                return attemptStartComponent(myInfo, si);
+            }
+
+            @Override
+            public boolean isReady(String key) throws Exception {
+                ADEComponentInfo si = components.get(key);
+                return (si != null && (Boolean) rctServ.remoteCall("servicesReady", si.as, ADERegistryImpl.this));
+            }
+        }, myID);
+        readConfig(plan, configurationfile);
+        if (plan.size() > 0) {
+            startup = plan;
+            try {
+                plan.run();
+            } finally {
+                startup = null;
+            }
+        }
+    }
+
+    /**
+     * Adds the components of a configuration file (and of the files it
+     * loads) to a startup plan.
+     */
+    private void readConfig(ADEStartupPlan plan, File configurationfile)
+            throws ParseException {
         try {
             FileReader fr = new FileReader(configurationfile);
             BufferedReader br = new BufferedReader(fr);
@@ -4210,15 +4644,7 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
                                     if (dbg > 1 || verbose) {
                                         System.out.println("Starting " + regComponent);
                                     }
-                                    if (!attemptStartComponent(myInfo, regComponent)) {
-                                        if (verbose || debugging) {
-                                            System.out.println("...........Could not start component " + regComponent);
-                                        }
-                                    } else {
-                                        if (verbose || debugging) {
-                                            System.out.println("...........Started " + regComponent);
-                                        }
-                                    }
+                                    plan.add(regComponent);
                                 }
                             } catch (Exception pe) {
                                 System.err.println("Exception caught while trying to parse config file.  Exception: " + pe);
@@ -4227,27 +4653,30 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
                             }
                         } // check for comments and simply skip
                         else if (str.startsWith("#")) {
-                        } // check for pause and execute
+                        } // a pause ends a stage: what follows waits until the
+                        // components before it are ready, and then the given
+                        // time (in ms) to let them settle
                         else if (str.startsWith("pause")) {
                             StringTokenizer s = new StringTokenizer(str);
                             s.nextToken();
+                            long p = 0;
                             while (s.hasMoreTokens()) {
                                 try {
-                                    int p = Integer.parseInt(s.nextToken());
-                                    Thread.sleep(p);
+                                    p += Integer.parseInt(s.nextToken());
                                 } catch (NumberFormatException nfe) {
                                     if (debugging) {
                                         System.err.println("Parsing format exception");
                                     }
                                 }
                             }
+                            plan.pause(p);
                         } // MS: this will recursively load component configuration files
                         // seperated by spaces
                         else if (str.startsWith("LOADCOMPONENTCONFIGS")) {
                             StringTokenizer s = new StringTokenizer(str);
                             s.nextToken();
                             while (s.hasMoreTokens()) {
-                                startUpADE(myInfo, new File(s.nextToken()));
+                                readConfig(plan, new File(s.nextToken()));
                             }
                         }
                     } else {
@@ -4393,6 +4822,7 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         sb.append("     -s -S --shutdown       <shutdown by other registries allowed>\n");
         sb.append("     -p -P --permission     <user name and password for registry admin>\n");
         sb.append("     -k -K --knownhosts     <[file] that contains information about available hosts>\n");
+        sb.append("     --journal              <[file] journaling registrations for a fast restart>\n");
         return sb.toString();
     }
 
@@ -4439,6 +4869,15 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
                     System.err.println(e);
                     System.err.println(prg + ": Using default host(s)");
                 }
+            } else if (args[i].equals("--journal")) {
+                try {
+                    journalfile = args[++i];
+                    found = true;
+                } catch (Exception e) {
+                    System.err.println(prg + ": Exception with journal parameter");
+                    System.err.println(e);
+                    System.err.println(prg + ": Not journaling");
+                }
             } else if (args[i].equalsIgnoreCase("-s")
                     || args[i].equals("--shutdown")) {
                 allowshutdownbyregistries = true;
@@ -4534,6 +4973,152 @@ public final class ADERegistryImpl extends ADEComponentImpl implements ADERegist
         return data;
     }
 
+    @Override
+    public SystemViewStatusDelta guiGetRegistryStatusDelta(
+            SystemViewAccess accessKey, InfoRequestSpecs requestSpecs,
+            boolean entireSystem, long sinceVersion, int waitMs)
+            throws RemoteException {
+        SystemViewFeed feed = (entireSystem ? guiSystemFeed : guiLocalFeed);
+        long end = System.currentTimeMillis() + Math.min(waitMs, ADEGlobals.DEF_GUI_LONGPOLL);
+        while (true) {
+            guiRefreshFeeds(accessKey, entireSystem);
+            long left = end - System.currentTimeMillis();
+            if (feed.getVersion() != sinceVersion || left <= 0) {
+                return feed.since(sinceVersion, requestSpecs);
+            }
+            if (entireSystem && !registries.isEmpty()) {
+                // other registries do not tell us about their changes
+                left = Math.min(left, ADEGlobals.DEF_GUI_REMOTE_CHECK);
+            }
+            synchronized (guiLock) {
+                if (!guiDirty) {
+                    try {
+                        guiLock.wait(left);
+                    } catch (InterruptedException ie) {
+                        return feed.since(sinceVersion, requestSpecs);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the status reported to the system view GUI as changed and wakes
+     * up the GUIs waiting in {@link #guiGetRegistryStatusDelta}.
+     */
+    private void guiChanged() {
+        synchronized (guiLock) {
+            guiDirty = true;
+            guiLock.notifyAll();
+        }
+    }
+
+    /**
+     * Brings the GUI status feeds up to date: the local one if a component
+     * came, went or changed its clients, and the system one if, in addition,
+     * it is time to ask the other registries for their changes.
+     */
+    private void guiRefreshFeeds(SystemViewAccess accessKey, boolean entireSystem)
+            throws RemoteException {
+        synchronized (guiRemote) {
+            boolean local;
+            synchronized (guiLock) {
+                local = guiDirty;
+                guiDirty = false;
+            }
+            if (local) {
+                HashMap<String, SystemViewComponentInfo> status = new HashMap<String, SystemViewComponentInfo>();
+                synchronized (components) {
+                    for (ADEComponentInfo info : components.values()) {
+                        status.put(getKey(info.type, info.name),
+                                guiConvertToSystemViewComponentInfo(info, guiAllSpecs()));
+                    }
+                }
+                guiLocal = status;
+                guiFeedUpdated(guiLocalFeed.update(guiLocal));
+            }
+            if (!entireSystem) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            boolean remote = (now - guiRemoteChecked >= ADEGlobals.DEF_GUI_REMOTE_CHECK);
+            if (!remote && guiLocalInSystem == guiLocalFeed.getVersion()) {
+                return;
+            }
+            if (remote) {
+                guiRemoteChecked = now;
+                guiCheckRegistries(accessKey);
+            }
+            HashMap<String, SystemViewComponentInfo> status = new HashMap<String, SystemViewComponentInfo>(guiLocal);
+            status.put(this.getID(), guiConvertToSystemViewComponentInfo(
+                    this.requestComponentInfo(this), guiAllSpecs()));
+            for (SystemViewStatusData data : guiRemote.values()) {
+                status.putAll(data.componentIDtoInfoMap);
+            }
+            guiLocalInSystem = guiLocalFeed.getVersion();
+            guiFeedUpdated(guiSystemFeed.update(status));
+        }
+    }
+
+    /**
+     * Gets the changes of the other registries' components since we last
+     * asked (or all of them, from registries that predate status deltas).
+     */
+    private void guiCheckRegistries(SystemViewAccess accessKey) {
+        HashMap<ADERegistry, ADEComponentInfo> regs;
+        synchronized (registries) {
+            regs = new HashMap<ADERegistry, ADEComponentInfo>(registries);
+        }
+        guiRemote.keySet().retainAll(regs.keySet());
+        guiRemoteVersion.keySet().retainAll(regs.keySet());
+        for (Entry<ADERegistry, ADEComponentInfo> reg : regs.entrySet()) {
+            SystemViewStatusData data = guiRemote.get(reg.getKey());
+            Long since = guiRemoteVersion.get(reg.getKey());
+            try {
+                SystemViewStatusDelta delta = (SystemViewStatusDelta) rctReg.remoteCall(
+                        "guiGetRegistryStatusDelta", reg.getKey(), accessKey,
+                        guiAllSpecs(), false, (since == null ? 0L : since), 0);
+                if (data == null) {
+                    data = new SystemViewStatusData();
+                    guiRemote.put(reg.getKey(), data);
+                }
+                delta.applyTo(data);
+                guiRemoteVersion.put(reg.getKey(), delta.version);
+            } catch (Exception e) {
+                try {
+                    guiRemote.put(reg.getKey(), (SystemViewStatusData) rctReg.remoteCall(
+                            "guiGetRegistryStatus", reg.getKey(), accessKey, guiAllSpecs(), false));
+                    guiRemoteVersion.remove(reg.getKey());
+                } catch (Exception e2) {
+                    System.out.println("Could not get GUI information from registry " + reg.getValue().name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wakes up the GUIs waiting for the feeds if one of them changed.
+     */
+    private void guiFeedUpdated(boolean changed) {
+        if (changed) {
+            synchronized (guiLock) {
+                guiLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The feeds keep all information; requests are restricted when answered.
+     */
+    private static InfoRequestSpecs guiAllSpecs() {
+        InfoRequestSpecs specs = new InfoRequestSpecs();
+        specs.host = true;
+        specs.registryName = true;
+        specs.startDirectory = true;
+        specs.clients = true;
+        return specs;
+    }
+
     @Override
     public SystemViewComponentInfo guiGetComponentStatus(SystemViewAccess accessKey,
             String componentID, InfoRequestSpecs requestSpecs, boolean searchEntireSystem)
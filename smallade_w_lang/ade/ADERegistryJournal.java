@@ -0,0 +1,365 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the components registered with an
+ * {@link ade.ADERegistryImpl ADERegistryImpl}, from which a restarted
+ * registry rebuilds its tables instead of waiting for every component to go
+ * through recovery. Records are written for registrations (the
+ * {@link ade.ADEComponentInfo ADEComponentInfo}, including its remote
+ * reference, and the component's password), removals, changes of a
+ * component's clients, and state snapshots and deltas.
+ * <p>
+ * Each record is its length, a CRC32 of its contents, and the contents (the
+ * operation, the component key, and the serialized payload). Records are
+ * flushed to the operating system as they are written, so they survive a
+ * crash of the registry's JVM; a torn record at the end of the file is
+ * detected by its length or checksum and cut off when the journal is
+ * opened. An intact record that cannot be deserialized (e.g., after a
+ * change of the classes it holds) is skipped. Once {@link ade.ADEGlobals#DEF_JOURNAL_COMPACT} records have been
+ * appended, {@link #needsCompaction} asks the registry to rewrite the
+ * journal with one record per live component ({@link #compact}).
+ * <p>
+ * Since the journal holds the components' passwords, it is only readable by
+ * its owner.
+ */
+final class ADERegistryJournal {
+
+    private final static String prg = "ADERegistryJournal";
+
+    /** The kinds of records. */
+    static enum Op {
+
+        REGISTER, REMOVE, CLIENTS, STATE, DELTA
+    }
+
+    /** A component as rebuilt from the journal. */
+    static class Entry {
+
+        final ADEComponentInfo info;
+        final String password;
+
+        Entry(ADEComponentInfo info, String password) {
+            this.info = info;
+            this.password = password;
+        }
+    }
+    private final File file;
+    private FileOutputStream fos = null;
+    private DataOutputStream out = null;
+    // the passwords of the journaled components, needed for compaction
+    private final HashMap<String, String> passwords = new HashMap<String, String>();
+    private int appended = 0;
+    private final CRC32 crc = new CRC32();
+
+    ADERegistryJournal(File file) {
+        this.file = file;
+    }
+
+    /** Returns the journal file. */
+    File getFile() {
+        return file;
+    }
+
+    /** Reads the journal, cuts off a torn record at its end, and opens it for
+     * appending.
+     * @return the components in the journal, by key, in registration order
+     * @throws IOException if the journal cannot be read or opened */
+    synchronized LinkedHashMap<String, Entry> open() throws IOException {
+        LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+        long good = 0;
+        int records = 0;
+        if (file.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                while (true) {
+                    int len = in.readInt();
+                    int sum = in.readInt();
+                    if (len <= 0 || len > file.length()) {
+                        break;
+                    }
+                    byte[] data = new byte[len];
+                    in.readFully(data);
+                    crc.reset();
+                    crc.update(data, 0, len);
+                    if ((int) crc.getValue() != sum) {
+                        break;
+                    }
+                    try {
+                        replay(data, entries);
+                    } catch (Exception e) {
+                        // intact but unreadable, e.g., written by another
+                        // version of a class
+                        System.err.println(prg + ": skipping record in " + file + ": " + e);
+                    }
+                    good += 8 + len;
+                    records++;
+                }
+            } catch (EOFException eofe) {
+                // end of the journal, possibly in the middle of a record
+            } finally {
+                in.close();
+            }
+            if (good < file.length()) {
+                System.err.println(prg + ": cutting off " + (file.length() - good)
+                        + " bytes of torn records at the end of " + file);
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(good);
+                } finally {
+                    raf.close();
+                }
+            }
+        }
+        passwords.clear();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            passwords.put(e.getKey(), e.getValue().password);
+        }
+        appended = records;
+        openForAppend();
+        return entries;
+    }
+
+    private void openForAppend() throws IOException {
+        boolean created = !file.exists();
+        fos = new FileOutputStream(file, true);
+        if (created) {
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(fos));
+    }
+
+    /** Applies one record to the entries being rebuilt. */
+    private static void replay(byte[] data, Map<String, Entry> entries)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+        Op op = Op.values()[ois.readByte()];
+        String key = ois.readUTF();
+        Entry e = entries.get(key);
+        switch (op) {
+            case REGISTER:
+                ADEComponentInfo info = (ADEComponentInfo) ois.readObject();
+                String pw = (ois.readBoolean() ? ois.readUTF() : null);
+                entries.remove(key);
+                entries.put(key, new Entry(info, pw));
+                break;
+            case REMOVE:
+                entries.remove(key);
+                break;
+            case CLIENTS:
+                @SuppressWarnings("unchecked")
+                HashSet<String> clients = (HashSet<String>) ois.readObject();
+                if (e != null) {
+                    e.info.clients = clients;
+                }
+                break;
+            case STATE:
+                ADEState state = (ADEState) ois.readObject();
+                if (e != null) {
+                    e.info.adestate = state;
+                }
+                break;
+            case DELTA:
+                ADEState.Delta delta = (ADEState.Delta) ois.readObject();
+                if (e != null && e.info.adestate != null) {
+                    e.info.adestate.apply(delta);
+                }
+                break;
+        }
+        ois.close();
+    }
+
+    /** Appends a record; errors are reported but do not fail the
+     * registry's operation. */
+    private void append(Op op, String key, Object payload, String password) {
+        if (out == null) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeByte(op.ordinal());
+            oos.writeUTF(key);
+            if (payload != null) {
+                oos.writeObject(payload);
+            }
+            if (op == Op.REGISTER) {
+                oos.writeBoolean(password != null);
+                if (password != null) {
+                    oos.writeUTF(password);
+                }
+            }
+            oos.close();
+            byte[] data = bos.toByteArray();
+            crc.reset();
+            crc.update(data, 0, data.length);
+            out.writeInt(data.length);
+            out.writeInt((int) crc.getValue());
+            out.write(data);
+            out.flush();
+            appended++;
+        } catch (Exception e) {
+            // e.g., a collection of the component info changed while it was
+            // serialized; the next compaction writes it again
+            System.err.println(prg + ": could not journal " + op + " of " + key + ": " + e);
+        }
+    }
+
+    /** Journals the registration of a component. */
+    synchronized void register(ADEComponentInfo info, String password) {
+        passwords.put(info.getKey(), password);
+        append(Op.REGISTER, info.getKey(), info, password);
+    }
+
+    /** Journals the removal of a component. */
+    synchronized void remove(String key) {
+        if (passwords.containsKey(key)) {
+            passwords.remove(key);
+            append(Op.REMOVE, key, null, null);
+        }
+    }
+
+    /** Journals a change of a component's clients. */
+    synchronized void clients(String key, HashSet<String> clients) {
+        if (passwords.containsKey(key)) {
+            append(Op.CLIENTS, key, clients, null);
+        }
+    }
+
+    /** Journals a full state of a component. */
+    synchronized void state(String key, ADEState state) {
+        if (passwords.containsKey(key)) {
+            append(Op.STATE, key, state, null);
+        }
+    }
+
+    /** Journals a state delta of a component. */
+    synchronized void delta(String key, ADEState.Delta delta) {
+        if (passwords.containsKey(key)) {
+            append(Op.DELTA, key, delta, null);
+        }
+    }
+
+    /** Whether enough records were appended that the journal should be
+     * compacted. */
+    synchronized boolean needsCompaction() {
+        return (out != null && appended > ADEGlobals.DEF_JOURNAL_COMPACT);
+    }
+
+    /** Rewrites the journal with one registration record (and the pending
+     * state deltas) per journaled component that is still live. The new
+     * journal is written next to the old one and synced to disk before it
+     * replaces it.
+     * @param live the registry's current component information, by key */
+    synchronized void compact(Map<String, ADEComponentInfo> live) {
+        if (out == null) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            out.close();
+            out = null;
+            fos = new FileOutputStream(tmp);
+            tmp.setReadable(false, false);
+            tmp.setReadable(true, true);
+            out = new DataOutputStream(new BufferedOutputStream(fos));
+            appended = 0;
+            for (String key : new ArrayList<String>(passwords.keySet())) {
+                ADEComponentInfo info = live.get(key);
+                if (info == null) {
+                    passwords.remove(key);
+                    continue;
+                }
+                synchronized (info) {
+                    append(Op.REGISTER, key, info, passwords.get(key));
+                    if (info.adedeltas != null) {
+                        for (ADEState.Delta d : info.adedeltas) {
+                            append(Op.DELTA, key, d, null);
+                        }
+                    }
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("cannot replace " + file);
+            }
+        } catch (IOException ioe) {
+            System.err.println(prg + ": could not compact " + file + ": " + ioe);
+            tmp.delete();
+        }
+        try {
+            openForAppend();
+        } catch (IOException ioe) {
+            System.err.println(prg + ": cannot reopen " + file + "; journaling stopped: " + ioe);
+            out = null;
+        }
+    }
+
+    /** Closes the journal. */
+    synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ioe) {
+            }
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ade;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that an {@link ADERegistryJournal} recovers from records it cannot
+ * read.
+ */
+public class ADERegistryJournalTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("ade-journaltest", ".jnl");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static ADEComponentInfo info(String name) {
+        ADEComponentInfo si = new ADEComponentInfo();
+        si.type = "test.T";
+        si.name = name;
+        return si;
+    }
+
+    /** Appends a record with the given contents and checksum. */
+    private void appendRaw(byte[] data, int sum) throws Exception {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true));
+        out.writeInt(data.length);
+        out.writeInt(sum);
+        out.write(data);
+        out.close();
+    }
+
+    @Test
+    public void skipsUnreadableRecordsAndCutsTornOnes() throws Exception {
+        ADERegistryJournal j = new ADERegistryJournal(file);
+        j.open();
+        j.register(info("a"), "pw");
+        j.close();
+        // an intact record whose payload does not deserialize
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeByte(ADERegistryJournal.Op.REGISTER.ordinal());
+        oos.writeUTF("test.T$b");
+        oos.flush();
+        bos.write(new byte[]{1, 2, 3, 4});
+        byte[] bad = bos.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bad, 0, bad.length);
+        appendRaw(bad, (int) crc.getValue());
+        long intact = file.length();
+        // followed by one with a wrong checksum
+        appendRaw(new byte[]{5, 6, 7}, 0);
+
+        j = new ADERegistryJournal(file);
+        LinkedHashMap<String, ADERegistryJournal.Entry> entries = j.open();
+        assertEquals(1, entries.size());
+        assertEquals("pw", entries.get("test.T$a").password);
+        assertEquals(intact, file.length());
+        // and the journal is still written
+        j.register(info("c"), null);
+        j.close();
+        entries = new ADERegistryJournal(file).open();
+        assertEquals(2, entries.size());
+        assertTrue(entries.containsKey("test.T$c"));
+    }
+}
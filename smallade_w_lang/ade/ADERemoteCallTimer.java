@@ -33,9 +33,13 @@
  */
 package ade;
 
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.security.AccessControlException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -113,6 +117,99 @@ public class ADERemoteCallTimer {
     private Boolean resultGuard = new Boolean(false);
     private ConcurrentHashMap<Thread, ArrayList<Callable>> multCallers;
     private ConcurrentHashMap<Thread, List<Future<Object>>> multResults;
+    private volatile ADEMetrics metrics = null; // where call statistics go (if anywhere)
+    private String metricsTarget = null;        // the target label for them
+    // adaptive timeouts (see remoteCallAdaptive)
+    private int adaptiveFactor = ADEGlobals.DEF_TIMEOUT_FACTOR;
+    private int adaptiveFloor = ADEGlobals.DEF_TIMEOUT_FLOOR;
+    private int adaptiveCeiling = ADEGlobals.DEF_TIMEOUT_CEILING;
+    // batching mode (see setBatching)
+    private volatile int batchWindow = 0;
+    private Object batchCredentials = null;
+    private final HashMap<Object, ArrayList<BatchOp>> openBatches = new HashMap<Object, ArrayList<BatchOp>>();
+    private ScheduledExecutorService batchTimer = null;
+    private static Method callBatch = null;
+    /** The number of recent latencies kept per method. */
+    private final static int WINDOW = 64;
+    /** The number of latencies needed before timeouts are adapted. */
+    private final static int MIN_SAMPLES = 16;
+
+    /**
+     * The most recent latencies of one method, from which the adaptive
+     * timeout and the hedging delay are derived. Since a timer is used for a
+     * single remote object (or type), this tracks the latency per target and
+     * method. Percentiles are recomputed by sorting a copy of the window,
+     * which is done at most every eighth sample once the window is full.
+     */
+    private static class LatencyWindow {
+
+        private final long[] samples = new long[WINDOW];
+        private final long[] sorted = new long[WINDOW];
+        private int count = 0; // valid samples
+        private int next = 0;  // where the next sample goes
+        private int fresh = 0; // samples since sorting
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            if (count < WINDOW) {
+                count++;
+            }
+            fresh++;
+        }
+
+        /** Returns the <tt>q</tt> quantile (in ns), or -1 if there are not
+         * yet {@link #MIN_SAMPLES} samples. */
+        synchronized long quantile(double q) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            if (fresh > 0 && (fresh >= 8 || count < WINDOW)) {
+                System.arraycopy(samples, 0, sorted, 0, count);
+                java.util.Arrays.sort(sorted, 0, count);
+                fresh = 0;
+            }
+            return sorted[Math.min(count - 1, (int) (q * count))];
+        }
+    }
+
+    /**
+     * A call waiting in a batch, and its result (the returned value or an
+     * <tt>ADEException</tt>).
+     */
+    private static class BatchOp {
+
+        final MethodInfo mi;
+        final Object[] args;
+        private boolean done = false;
+        private Object result = null;
+
+        BatchOp(MethodInfo mi, Object[] args) {
+            this.mi = mi;
+            this.args = args;
+        }
+
+        synchronized void complete(Object r) {
+            if (!done) {
+                result = r;
+                done = true;
+                notifyAll();
+            }
+        }
+
+        /** Waits for the result until <tt>deadline</tt> (0 waits
+         * indefinitely); returns <tt>this</tt> if there is none by then. */
+        synchronized Object await(long deadline) throws InterruptedException {
+            while (!done) {
+                long left = (deadline == 0 ? 0 : deadline - System.currentTimeMillis());
+                if (deadline != 0 && left <= 0) {
+                    return this;
+                }
+                wait(left);
+            }
+            return result;
+        }
+    }
 
     /**
      * Makes storing (and re-locating) remote methods easier.
@@ -160,6 +257,26 @@ public class ADERemoteCallTimer {
          * The original method condition are obtained from the interface
          */
         public ADEMethodConditions mc;
+        /**
+         * Whether the method may be hedged (see {@link ADEMethodConditions}).
+         */
+        public boolean idempotent = false;
+        /**
+         * How long results may be cached (see {@link ADECallCache}).
+         */
+        public long cacheTTL = 0;
+        /**
+         * The recent latencies of successful calls.
+         */
+        final LatencyWindow window = new LatencyWindow();
+        /**
+         * Call statistics (looked up on first use, see {@link #setMetrics}).
+         */
+        volatile ADEMetrics.Histogram latency; // set last
+        ADEMetrics.Counter errors;
+        ADEMetrics.Counter timeouts;
+        ADEMetrics.Counter hedges;
+        ADEMetrics.Counter cacheHits;
 
         /**
          * Constructor that reflectively obtains all {@link
@@ -251,14 +368,17 @@ public class ADERemoteCallTimer {
                     throw new ADEException("Method " + key + " not found");
                 }
             }
-            // now get whatever annotations are available
-            for (Annotation annotation : toinvoke.getAnnotations()) {
+            // now get whatever annotations are available (from the remote
+            // interface, since a stub's methods have none)
+            for (Annotation annotation : annotationsOf(toinvoke)) {
                 if (annotation instanceof ADEMethodConditions) {
                     // store it locally and also extract the individual conditions
                     mc = (ADEMethodConditions) annotation;
                     preconditions = mc.Preconditions();
                     postconditions = mc.Postconditions();
                     failureconditions = mc.Failureconditions();
+                    idempotent = mc.Idempotent();
+                    cacheTTL = mc.CacheTTL();
                     if (debug) {
                         System.out.println("Annotations too, nice!");
                     }
@@ -365,16 +485,26 @@ public class ADERemoteCallTimer {
             if (debug) {
                 System.out.println(myRCTName + ".RemoteCaller: " + mi.key);
             }
+            MethodInfo m = mi;
+            long start = System.nanoTime();
             try {
-                obj = mi.toinvoke.invoke(robj, rargs);
+                obj = m.toinvoke.invoke(robj, rargs);
             } catch (Throwable e) {
                 if (debug) {
                     System.err.println(myRCTName + " caught " + e);
                     //e.printStackTrace();
                 }
+                if (metrics != null) {
+                    instruments(m).errors.inc();
+                }
                 // MS: free the caller...
                 freeCallers.add(this);
-                throw new ADEException(mi.remoteMethodName + " invocation failed", e);
+                throw new ADEException(m.remoteMethodName + " invocation failed", e);
+            }
+            long nanos = System.nanoTime() - start;
+            m.window.add(nanos);
+            if (metrics != null) {
+                instruments(m).latency.recordNanos(nanos);
             }
             freeCallers.add(this);
             return obj;
@@ -433,6 +563,11 @@ public class ADERemoteCallTimer {
         try {
             singExeService.shutdown();
             multExeService.shutdown();
+            synchronized (openBatches) {
+                if (batchTimer != null) {
+                    batchTimer.shutdown();
+                }
+            }
         } catch (Exception e) {
             System.err.println(myRCTName + " encountered during disposal:\n" + e);
         }
@@ -552,6 +687,49 @@ public class ADERemoteCallTimer {
         }
     }
 
+    /**
+     * Record the latency, errors and timeouts of the calls made through this
+     * timer. Metrics are kept per method, with the given target label
+     * (<tt>ade_call_ms</tt>, <tt>ade_call_errors_total</tt> and
+     * <tt>ade_call_timeouts_total</tt>).
+     *
+     * @param m The metrics (<tt>null</tt> to stop recording)
+     * @param target The target label (e.g., the key of the remote component)
+     */
+    public void setMetrics(ADEMetrics m, String target) {
+        synchronized (timeGuard) {
+            metricsTarget = target;
+            for (MethodInfo mi : remoteMethodsFast.values()) {
+                mi.latency = null;
+            }
+            for (List<MethodInfo> l : remoteMethods.values()) {
+                for (MethodInfo mi : l) {
+                    mi.latency = null;
+                }
+            }
+            metrics = m;
+        }
+    }
+
+    /**
+     * Returns a method's instruments, looking them up if needed.
+     */
+    private MethodInfo instruments(MethodInfo mi) {
+        if (mi.latency == null) {
+            ADEMetrics m = metrics;
+            String method = mi.remoteMethodName, target = metricsTarget;
+            if (m == null) {
+                m = new ADEMetrics(); // recording was just turned off
+            }
+            mi.errors = m.counter(ADEMetrics.key("ade_call_errors_total", "method", method, "target", target));
+            mi.timeouts = m.counter(ADEMetrics.key("ade_call_timeouts_total", "method", method, "target", target));
+            mi.hedges = m.counter(ADEMetrics.key("ade_call_hedges_total", "method", method, "target", target));
+            mi.cacheHits = m.counter(ADEMetrics.key("ade_call_cache_hits_total", "method", method, "target", target));
+            mi.latency = m.histogram(ADEMetrics.key("ade_call_ms", "method", method, "target", target));
+        }
+        return mi;
+    }
+
     /**
      * Invoke method <tt>mn</tt> for the remote object instance <tt>robj</tt>
      * with parameters <tt>args</tt> using the assigned timeout. Note that all
@@ -572,6 +750,8 @@ public class ADERemoteCallTimer {
         if (captureTimes) {
             start = System.currentTimeMillis();
         }
+        // the caller goes back to the free list when done, so keep the method
+        MethodInfo timed = (obj instanceof RemoteCaller ? ((RemoteCaller) obj).mi : null);
 
         if (debug) {
             System.out.println(myRCTName + ": in remoteCall on Callable...");
@@ -597,6 +777,9 @@ public class ADERemoteCallTimer {
                 return singExeService.submit(obj).get(to, TimeUnit.MILLISECONDS);
             }
         } catch (TimeoutException te) {
+            if (metrics != null && timed != null) {
+                instruments(timed).timeouts.inc();
+            }
             throw new ADETimeoutException("No completion in " + to + "ms");
         } catch (RejectedExecutionException ree) {
             throw new ADEException("Rejected Execution", ree);
@@ -666,12 +849,420 @@ public class ADERemoteCallTimer {
     public Object remoteCall(int to, String mn, Object robj, Object... args)
             throws ADETimeoutException, ADEException {
         try {
+            if (to >= 0) {
+                MethodInfo mi = getMethodInfo(mn, args);
+                if (mi != null && mi.cacheTTL > 0) {
+                    return cachedCall(to, mi, robj, args);
+                }
+            }
             return remoteCall(to, getRemoteCaller(mn, robj, args));
         } catch (ADERequestMethodsException rme) {
             throw new ADEException("Method " + mn + " not accessible for user", rme);
         }
     }
 
+    /**
+     * Set how {@link #remoteCallAdaptive} derives timeouts: <tt>factor</tt>
+     * times the 99th percentile of the recent latencies of the method, but at
+     * least <tt>floor</tt> and at most <tt>ceiling</tt> ms. Methods that are
+     * not idempotent never get less than the timeout given with the call.
+     *
+     * @param factor The multiple of the 99th percentile
+     * @param floor The shortest timeout (in ms)
+     * @param ceiling The longest timeout (in ms)
+     * @throws IllegalArgumentException if the bounds are not positive and
+     * ordered
+     */
+    public void setAdaptiveTimeout(int factor, int floor, int ceiling) {
+        if (factor < 1 || floor < 1 || ceiling < floor) {
+            throw new IllegalArgumentException("Bad adaptive timeout " + factor
+                    + "x [" + floor + "," + ceiling + "]");
+        }
+        synchronized (timeGuard) {
+            adaptiveFactor = factor;
+            adaptiveFloor = floor;
+            adaptiveCeiling = ceiling;
+        }
+    }
+
+    /**
+     * Turn batching of {@link #remoteCallConcurrent} on or off. With batching
+     * on, the calls to a remote object that are made within <tt>window</tt>
+     * ms of each other (e.g., by repeated fan-outs to the same group) are
+     * sent together in one {@link ade.ADEComponent#callBatch callBatch} call,
+     * and identical calls of {@link ADEMethodConditions#Idempotent idempotent}
+     * methods in the same batch are made only once. If a remote object does
+     * not accept the credentials, the calls are made one by one. Batching is
+     * only done for {@link ade.ADEComponent ADEComponent}s.
+     *
+     * @param window How long (in ms) calls are collected; 0 turns batching
+     * off
+     * @param credentials The credentials passed to <tt>callBatch</tt>
+     */
+    public void setBatching(int window, Object credentials) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Negative batching window");
+        }
+        synchronized (openBatches) {
+            batchCredentials = credentials;
+            batchWindow = window;
+        }
+    }
+
+    /**
+     * Queues the calls of a fan-out in the open batches of their targets and
+     * waits for the results.
+     */
+    private Object[] remoteCallBatched(int to, String mn, Object[] robjs, Object[] args)
+            throws ADEException, ADERequestMethodsException {
+        for (Object robj : robjs) {
+            validateParams(mn, robj);
+        }
+        MethodInfo mi = getMethodInfo(mn, args);
+        if (mi == null) {
+            throw new ADERequestMethodsException("Access to method info for " + mn + " not allowed.");
+        }
+        BatchOp[] ops = new BatchOp[robjs.length];
+        for (int i = 0; i < robjs.length; i++) {
+            ops[i] = enqueue(robjs[i], mi, args);
+        }
+        long deadline = (to == 0 ? 0 : System.currentTimeMillis() + to);
+        Object[] returnValues = new Object[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            try {
+                returnValues[i] = ops[i].await(deadline);
+                if (returnValues[i] == ops[i]) {
+                    if (metrics != null) {
+                        instruments(mi).timeouts.inc();
+                    }
+                    returnValues[i] = new ADETimeoutException("No completion in " + to + "ms");
+                }
+            } catch (InterruptedException ie) {
+                returnValues[i] = new ADEException("Get interupted", ie);
+            }
+        }
+        return returnValues;
+    }
+
+    /**
+     * Adds a call to the open batch of <tt>robj</tt> (starting one if
+     * needed) and returns it, or the identical call already in the batch.
+     */
+    private BatchOp enqueue(final Object robj, MethodInfo mi, Object[] args) {
+        synchronized (openBatches) {
+            ArrayList<BatchOp> batch = openBatches.get(robj);
+            if (batch == null) {
+                final ArrayList<BatchOp> b = batch = new ArrayList<BatchOp>();
+                openBatches.put(robj, batch);
+                if (batchTimer == null) {
+                    batchTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, myRCTName + " batches");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                }
+                batchTimer.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        flush(robj, b);
+                    }
+                }, batchWindow, TimeUnit.MILLISECONDS);
+            } else if (mi.idempotent) {
+                for (BatchOp op : batch) {
+                    if (op.mi == mi && Arrays.deepEquals(op.args, args)) {
+                        return op;
+                    }
+                }
+            }
+            BatchOp op = new BatchOp(mi, args);
+            batch.add(op);
+            return op;
+        }
+    }
+
+    /** Closes a batch and sends it off. */
+    private void flush(final Object robj, final ArrayList<BatchOp> batch) {
+        synchronized (openBatches) {
+            if (openBatches.get(robj) == batch) {
+                openBatches.remove(robj);
+            }
+        }
+        try {
+            multExeService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    sendBatch(robj, batch);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            for (BatchOp op : batch) {
+                op.complete(new ADEException("Rejected Execution", ree));
+            }
+        }
+    }
+
+    /** Makes the calls of a batch, in one remote call if there are several. */
+    private void sendBatch(Object robj, ArrayList<BatchOp> batch) {
+        if (batch.size() > 1) {
+            String[] names = new String[batch.size()];
+            Object[][] args = new Object[batch.size()][];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = batch.get(i).mi.remoteMethodName;
+                args[i] = batch.get(i).args;
+            }
+            Throwable failure = null;
+            try {
+                if (callBatch == null) {
+                    callBatch = ADEComponent.class.getMethod("callBatch",
+                            Object.class, String[].class, Object[][].class);
+                }
+                Object[] results = (Object[]) callBatch.invoke(robj, batchCredentials, names, args);
+                for (int i = 0; i < names.length; i++) {
+                    Object r = results[i];
+                    batch.get(i).complete(r instanceof ADEException
+                            ? new ADEException("Execution exception", (ADEException) r) : r);
+                }
+                return;
+            } catch (InvocationTargetException ite) {
+                failure = ite.getCause();
+            } catch (Exception e) {
+                failure = e;
+            }
+            if (!(failure instanceof AccessControlException)) {
+                for (BatchOp op : batch) {
+                    op.complete(new ADEException("Execution exception", failure));
+                }
+                return;
+            }
+            // not allowed to batch; make the calls one by one
+        }
+        for (BatchOp op : batch) {
+            try {
+                op.complete(getRemoteCallers(op.mi, new Object[]{robj}, op.args).get(0).call());
+            } catch (Exception e) {
+                op.complete(new ADEException("Execution exception", e));
+            }
+        }
+    }
+
+    /**
+     * Returns the timeout (in ms) that {@link #remoteCallAdaptive} currently
+     * uses for a method.
+     *
+     * @param to The timeout used until enough latencies are known
+     * @param mn The name of the method
+     * @param args The parameters for the method
+     * @throws ADERequestMethodsException if the method is not accessible
+     */
+    public int getAdaptiveTimeout(int to, String mn, Object... args)
+            throws ADERequestMethodsException {
+        MethodInfo mi = getMethodInfo(mn, args);
+        return (mi == null ? to : adaptiveTimeout(mi, to));
+    }
+
+    private int adaptiveTimeout(MethodInfo mi, int to) {
+        long p99 = mi.window.quantile(0.99);
+        if (p99 < 0 || (!mi.idempotent && to <= 0)) {
+            return to;
+        }
+        long t = (adaptiveFactor * p99 + 999999) / 1000000;
+        // a call that cannot safely be given up on early (e.g., a blocking
+        // motion or speech call) is only given more time
+        int floor = (mi.idempotent ? adaptiveFloor : Math.max(adaptiveFloor, to));
+        return (int) Math.max(floor, Math.min(adaptiveCeiling, t));
+    }
+
+    /**
+     * Invoke method <tt>mn</tt> for the remote object instance <tt>robj</tt>
+     * with a timeout derived from the recent latencies of the method (see
+     * {@link #setAdaptiveTimeout}), so that slow but responsive targets are
+     * given more time and unresponsive fast ones are given up on early (only
+     * for idempotent methods: others never get less than <tt>to</tt>). Until
+     * enough latencies are known, <tt>to</tt> is used. If the method is
+     * marked {@link ADEMethodConditions#Idempotent idempotent}, a second call
+     * is made when the first one takes longer than twice the 95th percentile
+     * (so that few calls are hedged while the target behaves), and whichever
+     * result arrives first is returned.
+     *
+     * @param to The timeout (in ms) used until enough latencies are known
+     * @param mn The name of the method to invoke
+     * @param robj The remote object
+     * @param args The parameter array for method <tt>mn</tt>
+     * @return The value returned by method <tt>mn</tt> as an <tt>Object</tt>
+     * (<tt>null</tt> if the return type is <tt>void</tt>)
+     * @throws ADETimeoutException if the remote call times out
+     * @throws ADEException Superclass wrapper exception
+     */
+    public Object remoteCallAdaptive(int to, String mn, Object robj, Object... args)
+            throws ADETimeoutException, ADEException {
+        RemoteCaller rc;
+        try {
+            MethodInfo mi = getMethodInfo(mn, args);
+            if (mi != null && mi.cacheTTL > 0) {
+                return cachedCall(adaptiveTimeout(mi, to), mi, robj, args);
+            }
+            rc = getRemoteCaller(mn, robj, args);
+        } catch (ADERequestMethodsException rme) {
+            throw new ADEException("Method " + mn + " not accessible for user", rme);
+        }
+        MethodInfo mi = rc.mi;
+        if (mi == null) {
+            return remoteCall(to, rc);
+        }
+        int timeout = adaptiveTimeout(mi, to);
+        long hedge = (mi.idempotent ? mi.window.quantile(0.95) : -1);
+        hedge = (hedge < 0 ? -1 : 2 * hedge / 1000000);
+        if (hedge < 0 || hedge >= timeout / 2) {
+            return remoteCall(timeout, rc);
+        }
+        return remoteCallHedged(timeout, Math.max(hedge, 1), rc, robj, args);
+    }
+
+    /**
+     * Returns the cached result of a call, waiting for the pending call if
+     * there is one, or makes the call and caches it (see
+     * {@link ADECallCache}). Failed calls are not cached.
+     */
+    private Object cachedCall(int to, final MethodInfo mi, final Object robj,
+            final Object[] args) throws ADETimeoutException, ADEException {
+        validateParams(mi.remoteMethodName, robj);
+        ADECallCache cache = ADECallCache.shared;
+        ADECallCache.Key key = new ADECallCache.Key(robj, mi.key, args);
+        long now = System.currentTimeMillis();
+        Future<Object> f = cache.get(key, now);
+        if (f == null) {
+            FutureTask<Object> call = new FutureTask<Object>(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    return getRemoteCallers(mi, new Object[]{robj}, args).get(0).call();
+                }
+            });
+            f = cache.putIfAbsent(key, call, now + mi.cacheTTL, now);
+            if (f == call) {
+                try {
+                    singExeService.execute(call);
+                } catch (RejectedExecutionException ree) {
+                    cache.remove(key, call);
+                    throw new ADEException("Rejected Execution", ree);
+                }
+            } else if (metrics != null) {
+                instruments(mi).cacheHits.inc();
+            }
+        } else if (metrics != null) {
+            instruments(mi).cacheHits.inc();
+        }
+        try {
+            return ADECallCache.copy(to == 0 ? f.get() : f.get(to, TimeUnit.MILLISECONDS));
+        } catch (IOException ioe) {
+            throw new ADEException("Cannot copy cached result of " + mi.remoteMethodName, ioe);
+        } catch (TimeoutException te) {
+            if (metrics != null) {
+                instruments(mi).timeouts.inc();
+            }
+            throw new ADETimeoutException("No completion in " + to + "ms");
+        } catch (ExecutionException ee) {
+            cache.remove(key, f);
+            Throwable cause = ee.getCause();
+            throw new ADEException("Execution exception", (cause != null ? cause : ee));
+        } catch (CancellationException ce) {
+            cache.remove(key, f);
+            throw new ADEException("Call cancelled", ce);
+        } catch (InterruptedException ie) {
+            throw new ADEException("Interrupted", ie);
+        }
+    }
+
+    /**
+     * Returns the annotations of a remote method, looking them up in the
+     * interfaces of its class if it has none itself (as is the case for the
+     * methods of RMI stubs).
+     */
+    private static Annotation[] annotationsOf(Method m) {
+        Annotation[] as = m.getAnnotations();
+        if (as.length > 0) {
+            return as;
+        }
+        ArrayList<Class> todo = new ArrayList<Class>();
+        todo.add(m.getDeclaringClass());
+        for (int i = 0; i < todo.size(); i++) {
+            for (Class c : todo.get(i).getInterfaces()) {
+                try {
+                    as = c.getMethod(m.getName(), m.getParameterTypes()).getAnnotations();
+                    if (as.length > 0) {
+                        return as;
+                    }
+                } catch (NoSuchMethodException nsme) {
+                    continue;
+                }
+                todo.add(c);
+            }
+        }
+        return as;
+    }
+
+    /**
+     * Makes the call of <tt>rc</tt>, and another one if there is no result
+     * after <tt>hedge</tt> ms; returns the first result, or throws the last
+     * failure if both calls fail.
+     */
+    private Object remoteCallHedged(int to, long hedge, RemoteCaller rc,
+            Object robj, Object[] args) throws ADETimeoutException, ADEException {
+        MethodInfo mi = rc.mi;
+        long deadline = System.currentTimeMillis() + to;
+        CompletionService<Object> cs = new ExecutorCompletionService<Object>(singExeService);
+        ArrayList<Future<Object>> pending = new ArrayList<Future<Object>>(2);
+        Throwable failure = null;
+        try {
+            pending.add(cs.submit(rc));
+            Future<Object> done = cs.poll(hedge, TimeUnit.MILLISECONDS);
+            if (done == null) {
+                pending.add(cs.submit(getRemoteCallers(mi, new Object[]{robj}, args).get(0)));
+                if (metrics != null) {
+                    instruments(mi).hedges.inc();
+                }
+            }
+            while (done != null || !pending.isEmpty()) {
+                if (done == null) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0 || (done = cs.poll(left, TimeUnit.MILLISECONDS)) == null) {
+                        break;
+                    }
+                }
+                pending.remove(done);
+                try {
+                    return done.get();
+                } catch (ExecutionException ee) {
+                    failure = (ee.getCause() != null ? ee.getCause() : ee);
+                }
+                done = null;
+            }
+        } catch (RejectedExecutionException ree) {
+            throw new ADEException("Rejected Execution", ree);
+        } catch (InterruptedException ie) {
+            throw new ADEException("Interrupted", ie);
+        } finally {
+            // the calls still out are left to complete (or dropped if they
+            // have not started)
+            for (Future<Object> f : pending) {
+                f.cancel(false);
+            }
+        }
+        if (pending.isEmpty()) {
+            throw new ADEException("Execution exception", failure);
+        }
+        if (metrics != null) {
+            instruments(mi).timeouts.inc();
+        }
+        throw new ADETimeoutException("No completion in " + to + "ms");
+    }
+
     /**
      * Invoke method <tt>mn</tt> on a group of remote objects using the already
      * specified timeout value. For more information, see the other
@@ -737,6 +1328,9 @@ public class ADERemoteCallTimer {
         if (robjs.length < 1) {
             throw new ADEException("No remote objects for method " + mn);
         }
+        if (batchWindow > 0 && ADEComponent.class.isAssignableFrom(remoteObjectType)) {
+            return remoteCallBatched(to, mn, robjs, args);
+        }
         MethodInfo minfo = null;
         ArrayList<Callable> calls;
         Object[] returnValues;
@@ -799,6 +1393,10 @@ public class ADERemoteCallTimer {
                 try {
                     returnValues[i] = fut.get();
                 } catch (CancellationException ce) {
+                    // invokeAll cancels the calls that did not complete in time
+                    if (metrics != null) {
+                        instruments(minfo).timeouts.inc();
+                    }
                     returnValues[i] = new ADEException("Call cancelled", ce);
                 } catch (ExecutionException ee) {
                     returnValues[i] = new ADEException("Execution exception", ee);
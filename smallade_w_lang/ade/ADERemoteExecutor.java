@@ -57,6 +57,14 @@ method that takes the command to execute on the remote host.</li>
 total and returned as the result of the {@link #execute} method.</li>
 </ul>
 <p>
+By default, commands are run through the {@link ade.ADERemoteSession
+ADERemoteSession} shared by all executors for the same host and login, so
+that repeated commands (e.g., periodic host checks) reuse one long-lived
+shell rather than each starting <tt>ssh</tt>; standard error is then merged
+into the output. If the session cannot be established, the executor falls
+back to one process per command (see {@link #setPersistent}). Copies use the
+session's connection when the remote shell is OpenSSH's.
+<p>
 <quote><tt>
 ADERemoteExecutor ahostexe;<br>
 String[] sshcmd = new String[]{"/usr/bin/ssh", "-X -A -n"}<br>
@@ -99,6 +107,8 @@ final public class ADERemoteExecutor {
     private BufferedReader br1 = null, br2 = null;
     private StringBuffer tempbuf = new StringBuffer();
     private StringBuffer outstr = new StringBuffer();
+    private boolean persistent = true;   // run commands through a session
+    private ADERemoteSession session = null;
 
     // disable construction with no parameters
     private ADERemoteExecutor() {
@@ -242,6 +252,7 @@ final public class ADERemoteExecutor {
         tempbuf.append(toHost);
         ssharr[ssharr.length - 2] = tempbuf.toString();
         ssharr[ssharr.length - 1] = tmpcmd;
+        session = null;
     }
 
     /** Set the ssh argument string.
@@ -317,6 +328,19 @@ final public class ADERemoteExecutor {
         createSCPCmdArray(true);
     }
 
+    /** Set whether commands are run through the shared persistent session
+     * to the host (the default) or each in a process of its own.
+     * @param b <tt>true</tt> to use the session */
+    public void setPersistent(boolean b) {
+        persistent = b;
+    }
+
+    /** Returns whether commands are run through the shared persistent
+     * session to the host. */
+    public boolean isPersistent() {
+        return persistent;
+    }
+
     /** Used to monitor the state of the local process.
      * @return <tt>true</tt> if the process is running, <tt>false</tt>
      * otherwise */
@@ -364,12 +388,54 @@ final public class ADERemoteExecutor {
         if (ssharr[ssharr.length - 1].equals("")) {
             throw new NullPointerException("Empty command");
         }
+        if (persistent) {
+            ADERemoteSession s = getSession();
+            try {
+                ADERemoteSession.Result res = s.execute(ssharr[ssharr.length - 1]);
+                exit = res.exit;
+                return res.output;
+            } catch (IOException ioe) {
+                if (s.getCompleted() > 0) {
+                    // the session worked before, so the command is at fault
+                    exit = -1;
+                    throw ioe;
+                }
+                System.err.println(prg + ": no persistent session to " + toHost
+                        + ", starting a process per command:\n\t" + ioe.getMessage());
+                persistent = false;
+            }
+        }
         synchronized (this) {
             retstr = runcmd(ssharr);
         }
         return retstr;
     }
 
+    /** Returns the shared session for the current ssh settings. */
+    private synchronized ADERemoteSession getSession() {
+        if (session == null) {
+            String[] args = new String[ssharr.length - 3];
+            System.arraycopy(ssharr, 1, args, 0, args.length);
+            session = ADERemoteSession.getSession(
+                    ADERemoteSession.sshCommand(cmdssh, args, user, toHost));
+        }
+        return session;
+    }
+
+    /** Returns the scp command line with the options to use the connection
+     * of a running session, if there is one. */
+    private String[] sharedSCP() {
+        String[] opts = ADERemoteSession.sharedOptions(cmdscp, user, toHost);
+        if (opts.length == 0) {
+            return scparr;
+        }
+        String[] cmd = new String[scparr.length + opts.length];
+        cmd[0] = scparr[0];
+        System.arraycopy(opts, 0, cmd, 1, opts.length);
+        System.arraycopy(scparr, 1, cmd, 1 + opts.length, scparr.length - 1);
+        return cmd;
+    }
+
     public String copyFileFromRemote(String src, String dest)
             throws IOException {
         String retstr;
@@ -392,7 +458,7 @@ final public class ADERemoteExecutor {
         scparr[scparr.length - 1] = dest;
         //String[] tmparr = new String[]{cmdscp, argscp +" "+ tempbuf.toString()};
         synchronized (this) {
-            retstr = runcmd(scparr);
+            retstr = runcmd(sharedSCP());
             //retstr = runcmd(tmparr);
         }
         if (debug) {
@@ -425,7 +491,7 @@ final public class ADERemoteExecutor {
         scparr[scparr.length - 1] = tempbuf.toString();
         //tmparr[3] = tempbuf.toString();
         synchronized (this) {
-            retstr = runcmd(scparr);
+            retstr = runcmd(sharedSCP());
             //retstr = runcmd(tmparr);
         }
         if (debug) {
@@ -0,0 +1,509 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * A long-lived shell on a (usually remote) host that runs short commands
+ * without starting a new process, and with it a new <tt>ssh</tt> connection,
+ * for each of them. The session is started with an arbitrary command line
+ * whose standard input is read by a shell, typically <tt>ssh user@host
+ * /bin/sh</tt> as built by {@link #sshCommand}; for testing, a local
+ * <tt>/bin/sh</tt> can stand in for the remote host.
+ * <p>
+ * Commands are written to the shell as soon as they are submitted and run
+ * in order, each in its own subshell with standard input from
+ * <tt>/dev/null</tt> and standard error merged into standard output (so a
+ * command cannot change the directory or environment of later ones, and a
+ * syntax error does not end the session). Each command's output is framed by
+ * a marker line carrying its exit code, which the single reader thread uses
+ * to hand the output to the waiting caller. Several threads can therefore
+ * share a session; their commands are queued. If a command exceeds its time
+ * limit, only that command fails: while it is still waiting for its turn,
+ * its output is skipped when it arrives; once it runs, the shell is
+ * restarted and the commands queued behind it are sent to the new one. If
+ * the shell dies, the commands still queued fail with an
+ * <tt>IOException</tt>, and the next command restarts it.
+ * <p>
+ * Sessions for the same command line are shared in the JVM through
+ * {@link #getSession}. When the session runs over OpenSSH, it also acts as a
+ * connection master, and other <tt>ssh</tt>/<tt>scp</tt> invocations to the
+ * same host (e.g., remote component starts) can use {@link #sharedOptions}
+ * to open their channels over its connection rather than a new one.
+ */
+final public class ADERemoteSession {
+
+    private final static String prg = "ADERemoteSession";
+    private final static HashMap<String, ADERemoteSession> sessions =
+            new HashMap<String, ADERemoteSession>();
+    private final static Random random = new Random();
+    /** How long (in s) an idle shared ssh connection is kept open. */
+    public final static int PERSIST = 600;
+    // how much of the shell's own error output is kept for error messages
+    private final static int MAX_ERRORS = 2048;
+    private final String[] command;
+    private final String key;
+    private final String nonce;
+    private Process proc = null;
+    private Writer in = null;
+    private final ArrayDeque<Request> pending = new ArrayDeque<Request>();
+    private final StringBuffer errors = new StringBuffer();
+    private long submitted = 0;
+    private long completed = 0;
+    private int starts = 0;
+    private boolean closed = false;
+
+    /** The output and exit code of a command. */
+    static public class Result {
+
+        /** Standard output and error of the command, one line per
+         * <tt>\n</tt>. */
+        public final String output;
+        /** The exit code of the command. */
+        public final int exit;
+
+        Result(String output, int exit) {
+            this.output = output;
+            this.exit = exit;
+        }
+    }
+
+    /** A submitted command waiting for its marker line. */
+    private static class Request {
+
+        final String marker;
+        final String cmd;
+        final StringBuilder out = new StringBuilder();
+        Result result = null;
+        IOException failure = null;
+        boolean done = false;
+        // given up by its caller; its output is discarded
+        boolean abandoned = false;
+
+        Request(String marker, String cmd) {
+            this.marker = marker;
+            this.cmd = cmd;
+        }
+    }
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+
+            @Override
+            public void run() {
+                closeAll();
+            }
+        });
+    }
+
+    /** Creates a session that runs the shell with the given command line;
+     * the shell is started by the first command.
+     * @param command the command line, e.g. as returned by
+     * {@link #sshCommand}, or just <tt>/bin/sh</tt> */
+    public ADERemoteSession(String... command) {
+        if (command == null || command.length == 0) {
+            throw new NullPointerException("Null command");
+        }
+        this.command = command.clone();
+        key = key(command);
+        synchronized (random) {
+            nonce = "ADE-" + Long.toHexString(random.nextLong() & Long.MAX_VALUE);
+        }
+    }
+
+    /** Returns the session shared in this JVM for the given command line,
+     * creating it if necessary. */
+    public static ADERemoteSession getSession(String... command) {
+        String k = key(command);
+        synchronized (sessions) {
+            ADERemoteSession s = sessions.get(k);
+            if (s == null || s.closed) {
+                s = new ADERemoteSession(command);
+                sessions.put(k, s);
+            }
+            return s;
+        }
+    }
+
+    /** Closes all shared sessions. */
+    public static void closeAll() {
+        ArrayList<ADERemoteSession> all;
+        synchronized (sessions) {
+            all = new ArrayList<ADERemoteSession>(sessions.values());
+            sessions.clear();
+        }
+        for (ADERemoteSession s : all) {
+            s.close();
+        }
+    }
+
+    private static String key(String[] command) {
+        StringBuilder sb = new StringBuilder();
+        for (String c : command) {
+            sb.append(c);
+            sb.append('\0');
+        }
+        return sb.toString();
+    }
+
+    /** Whether <tt>cmd</tt> is OpenSSH's client, which supports connection
+     * sharing. */
+    private static boolean isSSH(String cmd) {
+        return new File(cmd).getName().equals("ssh");
+    }
+
+    /** The control socket through which connections of this user to
+     * <tt>user@host</tt> are shared. */
+    private static String controlPath(String user, String host) {
+        return System.getProperty("java.io.tmpdir") + File.separator
+                + "ade-ssh-" + System.getProperty("user.name") + "-" + user + "@" + host;
+    }
+
+    /** Builds the command line for a session to <tt>user@host</tt>. Options
+     * that would keep the shell from reading its input (<tt>-n</tt>) are
+     * dropped. For OpenSSH, the session shares a connection master for the
+     * host; the master runs in the background (<tt>ControlPersist</tt>), so
+     * that restarting the session does not cut the channels of others using
+     * the connection, and exits once it has been idle for
+     * {@link #PERSIST} seconds.
+     * @param ssh the remote shell command (usually <tt>ssh</tt>)
+     * @param args its arguments (may be <tt>null</tt>)
+     * @param user the login name
+     * @param host the host */
+    public static String[] sshCommand(String ssh, String[] args, String user,
+            String host) {
+        ArrayList<String> cmd = new ArrayList<String>();
+        cmd.add(ssh);
+        if (args != null) {
+            for (String a : args) {
+                if (a != null && !a.equals("") && !a.equals("-n")) {
+                    cmd.add(a);
+                }
+            }
+        }
+        if (isSSH(ssh)) {
+            cmd.add("-o");
+            cmd.add("ControlMaster=auto");
+            cmd.add("-o");
+            cmd.add("ControlPath=" + controlPath(user, host));
+            cmd.add("-o");
+            cmd.add("ControlPersist=" + PERSIST);
+        }
+        cmd.add(user + "@" + host);
+        cmd.add("/bin/sh");
+        return cmd.toArray(new String[cmd.size()]);
+    }
+
+    /** Returns the options that let another invocation of <tt>ssh</tt> or
+     * <tt>scp</tt> to <tt>user@host</tt> use the connection of a running
+     * shared session, or an empty array if there is none (or the command is
+     * not OpenSSH's). Without a master, such an invocation still connects on
+     * its own. */
+    public static String[] sharedOptions(String ssh, String user, String host) {
+        if (!new File(ssh).getName().matches("s(sh|cp)")) {
+            return new String[0];
+        }
+        String path = controlPath(user, host);
+        boolean live = false;
+        synchronized (sessions) {
+            for (ADERemoteSession s : sessions.values()) {
+                if (s.isAlive() && s.key.contains("ControlPath=" + path + "\0")) {
+                    live = true;
+                    break;
+                }
+            }
+        }
+        if (!live || !new File(path).exists()) {
+            return new String[0];
+        }
+        return new String[]{"-o", "ControlPath=" + path};
+    }
+
+    /** Whether the shell is currently running. */
+    public synchronized boolean isAlive() {
+        return proc != null;
+    }
+
+    /** Returns the number of commands that have completed. */
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /** Returns the number of commands submitted but not completed. */
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    /** Returns how often the shell has been started. */
+    public synchronized int getStarts() {
+        return starts;
+    }
+
+    /** Runs a command with the default time limit
+     * ({@link ade.ADEGlobals#DEF_RSESSION_TIMEOUT}). */
+    public Result execute(String cmd) throws IOException {
+        return execute(cmd, ADEGlobals.DEF_RSESSION_TIMEOUT);
+    }
+
+    /** Runs a command in the session, starting the shell if necessary, and
+     * waits for its output.
+     * @param cmd the command (any text the shell accepts, including several
+     * lines)
+     * @param timeout the time limit in ms (0 for none)
+     * @return the output and exit code
+     * @throws IOException if the shell cannot be started, dies, or the
+     * command exceeds the time limit */
+    public Result execute(String cmd, long timeout) throws IOException {
+        if (cmd == null) {
+            throw new NullPointerException("Null command");
+        }
+        Request r;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException(prg + ": session closed");
+            }
+            if (proc == null) {
+                start();
+            }
+            r = new Request(nonce + "-" + (++submitted), cmd);
+            send(r);
+            long deadline = System.currentTimeMillis() + timeout;
+            while (!r.done) {
+                long left = deadline - System.currentTimeMillis();
+                if (timeout > 0 && left <= 0) {
+                    abandon(r, "command timed out after " + timeout + " ms");
+                    break;
+                }
+                try {
+                    wait(timeout > 0 ? left : 0);
+                } catch (InterruptedException ie) {
+                    abandon(r, "interrupted");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (r.failure != null) {
+            throw r.failure;
+        }
+        return r.result;
+    }
+
+    /** Ends the shell and fails the commands still queued. */
+    public void close() {
+        Process p;
+        synchronized (this) {
+            closed = true;
+            p = proc;
+        }
+        if (p != null) {
+            died(p, "session closed");
+        }
+    }
+
+    /** Queues a command and writes it to the shell. */
+    private void send(Request r) {
+        Process p = proc;
+        pending.addLast(r);
+        try {
+            in.write("( eval '");
+            in.write(r.cmd.replace("'", "'\\''"));
+            in.write("' ) </dev/null 2>&1; printf '\\n%s %d\\n' ");
+            in.write(r.marker);
+            in.write(" $?\n");
+            in.flush();
+        } catch (IOException ioe) {
+            died(p, ioe.toString());
+        }
+    }
+
+    /** Fails a command whose caller stopped waiting for it. A command that
+     * has not started yet stays queued, so that its output is recognized
+     * and skipped; the running command is stopped by restarting the shell,
+     * and the commands behind it are sent to the new one. */
+    private void abandon(Request r, String reason) {
+        r.failure = new IOException(message(reason));
+        r.done = true;
+        if (pending.peekFirst() != r) {
+            r.abandoned = true;
+            return;
+        }
+        pending.removeFirst();
+        ArrayList<Request> rest = new ArrayList<Request>(pending);
+        pending.clear();
+        if (proc != null) {
+            died(proc, reason);
+        }
+        for (Request q : rest) {
+            if (q.abandoned) {
+                continue;
+            }
+            if (closed || proc == null) {
+                try {
+                    if (closed) {
+                        throw new IOException(message("session closed"));
+                    }
+                    start();
+                } catch (IOException ioe) {
+                    q.failure = ioe;
+                    q.done = true;
+                    continue;
+                }
+            }
+            send(q);
+        }
+        notifyAll();
+    }
+
+    private String message(String reason) {
+        String msg = prg + ": " + command[command.length > 1 ? command.length - 2 : 0]
+                + ": " + reason;
+        synchronized (errors) {
+            msg += errors;
+        }
+        return msg;
+    }
+
+    /** Starts the shell and the threads reading its output. */
+    private void start() throws IOException {
+        final Process p = new ProcessBuilder(command).start();
+        proc = p;
+        in = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
+        starts++;
+        errors.setLength(0);
+        Thread out = new Thread(prg + "-out") {
+
+            @Override
+            public void run() {
+                String reason = "shell exited";
+                try {
+                    BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        received(p, line);
+                    }
+                } catch (IOException ioe) {
+                    reason = ioe.toString();
+                }
+                died(p, reason);
+            }
+        };
+        out.setDaemon(true);
+        out.start();
+        Thread err = new Thread(prg + "-err") {
+
+            @Override
+            public void run() {
+                try {
+                    BufferedReader br = new BufferedReader(new InputStreamReader(p.getErrorStream()));
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        synchronized (errors) {
+                            if (errors.length() + line.length() < MAX_ERRORS) {
+                                errors.append("\n\t");
+                                errors.append(line);
+                            }
+                        }
+                    }
+                } catch (IOException ignore) {
+                }
+            }
+        };
+        err.setDaemon(true);
+        err.start();
+    }
+
+    /** Hands a line of output to the oldest pending command. */
+    private synchronized void received(Process p, String line) {
+        Request r = pending.peekFirst();
+        if (p != proc || r == null) {
+            // output outside any command (e.g., from a login script)
+            return;
+        }
+        if (line.startsWith(r.marker) && line.length() > r.marker.length()
+                && line.charAt(r.marker.length()) == ' ') {
+            int exit;
+            try {
+                exit = Integer.parseInt(line.substring(r.marker.length() + 1).trim());
+            } catch (NumberFormatException nfe) {
+                exit = -1;
+            }
+            // the marker is preceded by a newline, so that it starts a line
+            // of its own; drop it again
+            StringBuilder out = r.out;
+            int n = out.length();
+            if (n == 1 || (n > 1 && out.charAt(n - 2) == '\n')) {
+                out.setLength(n - 1);
+            }
+            pending.removeFirst();
+            if (!r.abandoned) {
+                r.result = new Result(out.toString(), exit);
+                r.done = true;
+                completed++;
+                notifyAll();
+            }
+        } else if (!r.abandoned) {
+            r.out.append(line);
+            r.out.append('\n');
+        }
+    }
+
+    /** Kills the shell (if it is still the current one) and fails all
+     * pending commands. */
+    private synchronized void died(Process p, String reason) {
+        if (p != proc) {
+            return;
+        }
+        proc = null;
+        in = null;
+        p.destroy();
+        String msg = message(reason);
+        for (Request r : pending) {
+            r.failure = new IOException(msg);
+            r.done = true;
+        }
+        pending.clear();
+        notifyAll();
+    }
+}
@@ -0,0 +1,120 @@
+package ade;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives an {@link ADERemoteSession} with a local <tt>/bin/sh</tt> standing in
+ * for the remote host.
+ */
+public class ADERemoteSessionTest {
+
+    private ADERemoteSession session;
+
+    @Before
+    public void setUp() {
+        session = new ADERemoteSession("/bin/sh");
+    }
+
+    @After
+    public void tearDown() {
+        session.close();
+    }
+
+    /** Runs a command on another thread, keeping its result or failure. */
+    private static class Caller extends Thread {
+
+        private final ADERemoteSession session;
+        private final String cmd;
+        private final long timeout;
+        ADERemoteSession.Result result;
+        IOException failure;
+
+        Caller(ADERemoteSession session, String cmd, long timeout) {
+            this.session = session;
+            this.cmd = cmd;
+            this.timeout = timeout;
+            start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = session.execute(cmd, timeout);
+            } catch (IOException ioe) {
+                failure = ioe;
+            }
+        }
+    }
+
+    @Test
+    public void runsCommandsInOneShell() throws Exception {
+        ADERemoteSession.Result r = session.execute("echo 'it''s'; echo two", 5000);
+        assertEquals("its\ntwo\n", r.output);
+        assertEquals(0, r.exit);
+        r = session.execute("cd /; echo oops >&2; exit 3", 5000);
+        assertEquals("oops\n", r.output);
+        assertEquals(3, r.exit);
+        // the cd ran in a subshell of its own
+        assertEquals(session.execute("pwd", 5000).output,
+                session.execute("pwd", 5000).output);
+        assertEquals(1, session.getStarts());
+        assertEquals(4, session.getCompleted());
+    }
+
+    @Test
+    public void timeoutOfRunningCommandKeepsQueuedOnes() throws Exception {
+        Caller slow = new Caller(session, "sleep 10", 500);
+        Thread.sleep(100);
+        Caller next = new Caller(session, "echo next", 5000);
+        slow.join();
+        next.join();
+        assertTrue(slow.failure != null);
+        assertTrue(slow.failure.getMessage().contains("timed out"));
+        assertEquals("next\n", next.result.output);
+        // the shell was restarted to stop the slow command
+        assertEquals(2, session.getStarts());
+        assertEquals(0, session.getPending());
+    }
+
+    @Test
+    public void timeoutOfQueuedCommandSkipsItsOutput() throws Exception {
+        Caller first = new Caller(session, "sleep 1; echo first", 5000);
+        Thread.sleep(100);
+        Caller skipped = new Caller(session, "echo skipped", 200);
+        skipped.join();
+        assertTrue(skipped.failure != null);
+        Caller last = new Caller(session, "echo last", 5000);
+        first.join();
+        last.join();
+        assertEquals("first\n", first.result.output);
+        assertEquals("last\n", last.result.output);
+        assertEquals(1, session.getStarts());
+    }
+
+    @Test
+    public void restartsAfterShellDies() throws Exception {
+        try {
+            session.execute("kill -9 $$", 5000);
+            fail("shell should have died");
+        } catch (IOException expected) {
+        }
+        assertTrue(!session.isAlive());
+        assertEquals("again\n", session.execute("echo again", 5000).output);
+        assertEquals(2, session.getStarts());
+    }
+
+    @Test(expected = IOException.class)
+    public void closedSessionRejectsCommands() throws Exception {
+        session.execute("true", 5000);
+        session.close();
+        session.execute("true", 5000);
+    }
+}
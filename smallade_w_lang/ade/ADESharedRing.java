@@ -0,0 +1,303 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped ring of fixed-size slots in a file under the host's
+ * temporary directory, through which an {@link ade.ADEChannel ADEChannel}
+ * hands values to subscribers on the same host without an RMI call. The
+ * publishing component is the only writer; subscribers map the file
+ * read-only and pick up values by sequence number (value <tt>seq</tt> lives
+ * in slot <tt>seq % slots</tt>).
+ * <p>
+ * File layout: a header of {@link #HEADER} bytes (magic, number of slots, slot
+ * size, creation time, last written sequence number), followed by the slots.
+ * Each slot holds the sequence number, the publication time, the length and
+ * the CRC32 of the serialized value, and the value. Since readers cannot lock
+ * out the writer, a slot is first invalidated, then filled, then stamped with
+ * its sequence number; a reader only accepts a value if the sequence number
+ * is the same before and after copying it and the checksum matches, so a
+ * concurrently overwritten slot is reported as missing rather than torn.
+ * Values larger than a slot are marked as {@link #OVERSIZE} and must be
+ * delivered by other means.
+ * <p>
+ * A restarted writer does not reuse the file, which readers may still have
+ * mapped (shrinking it under them would crash them); it deletes it and
+ * creates a new one with a different creation time, which readers check for
+ * to re-attach.
+ */
+final class ADESharedRing {
+
+    /** "ADER" */
+    final static int MAGIC = 0x41444552;
+    /** The size of the file header. */
+    final static int HEADER = 64;
+    /** The per-slot header: seq, time, length, CRC. */
+    private final static int SLOT_HEADER = 24;
+    /** Returned by {@link #read} for values that did not fit into a slot. */
+    final static byte[] OVERSIZE = new byte[0];
+    private final static int OFF_SLOTS = 4;
+    private final static int OFF_SLOTSIZE = 8;
+    private final static int OFF_CREATED = 16;
+    private final static int OFF_LAST = 24;
+    final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buf;
+    private final int slots;
+    private final int slotSize;
+    private final boolean writer;
+    private final long created;
+    private final CRC32 crc = new CRC32();
+    // reused by the writer to serialize values
+    private final ByteArrayOutputStream bytes;
+    private long time = 0;
+
+    private ADESharedRing(File file, RandomAccessFile raf, MappedByteBuffer buf,
+            int slots, int slotSize, boolean writer) {
+        this.file = file;
+        this.raf = raf;
+        this.buf = buf;
+        this.slots = slots;
+        this.slotSize = slotSize;
+        this.writer = writer;
+        created = buf.getLong(OFF_CREATED);
+        bytes = (writer ? new ByteArrayOutputStream(slotSize) : null);
+    }
+
+    /** Creates a ring file for writing, replacing any existing one.
+     * @param file the file
+     * @param slots the number of slots
+     * @param slotSize the size of a slot in bytes, including the slot header
+     * @throws IOException if the file cannot be created or mapped */
+    static ADESharedRing create(File file, int slots, int slotSize)
+            throws IOException {
+        long size = HEADER + (long) slots * slotSize;
+        long now = System.currentTimeMillis();
+        if (file.exists()) {
+            if (created(file) == now) {
+                now++;
+            }
+            if (!file.delete()) {
+                throw new IOException("cannot replace " + file);
+            }
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (int i = 0; i < slots; i++) {
+                buf.putLong(HEADER + i * slotSize, -1);
+            }
+            buf.putLong(OFF_LAST, 0);
+            buf.putInt(OFF_SLOTS, slots);
+            buf.putInt(OFF_SLOTSIZE, slotSize);
+            buf.putLong(OFF_CREATED, now);
+            buf.putInt(0, MAGIC);
+            file.deleteOnExit();
+            return new ADESharedRing(file, raf, buf, slots, slotSize, true);
+        } catch (IOException ioe) {
+            raf.close();
+            throw ioe;
+        }
+    }
+
+    /** Opens an existing ring file for reading.
+     * @throws IOException if the file cannot be mapped or is not a ring */
+    static ADESharedRing open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER) {
+                throw new IOException(file + " is not a shared ring");
+            }
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            int slots = buf.getInt(OFF_SLOTS);
+            int slotSize = buf.getInt(OFF_SLOTSIZE);
+            if (buf.getInt(0) != MAGIC || slots <= 0 || slotSize <= SLOT_HEADER
+                    || raf.length() < HEADER + (long) slots * slotSize) {
+                throw new IOException(file + " is not a shared ring");
+            }
+            return new ADESharedRing(file, raf, buf, slots, slotSize, false);
+        } catch (IOException ioe) {
+            raf.close();
+            throw ioe;
+        }
+    }
+
+    /** Returns the creation time stamp of the ring file at <tt>file</tt>, or
+     * -1 if there is none (yet). */
+    static long created(File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                if (raf.length() < HEADER) {
+                    return -1;
+                }
+                raf.seek(OFF_CREATED);
+                long c = raf.readLong();
+                return (c > 0 ? c : -1);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException ioe) {
+            return -1;
+        }
+    }
+
+    /** Returns the creation time stamp of this ring. */
+    long getCreated() {
+        return created;
+    }
+
+    /** Returns the number of slots. */
+    int getSlots() {
+        return slots;
+    }
+
+    /** Returns the sequence number of the last value written. */
+    long getLastSeq() {
+        return buf.getLong(OFF_LAST);
+    }
+
+    /** Serializes and writes a value.
+     * @return <tt>true</tt> if the value was written, <tt>false</tt> if it was
+     * too large (in which case the slot is marked {@link #OVERSIZE}) or could
+     * not be serialized */
+    synchronized boolean write(long seq, long t, Object value) {
+        bytes.reset();
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(value);
+            oos.close();
+        } catch (IOException ioe) {
+            System.err.println("ADESharedRing: cannot serialize value for " + file + ":\n\t" + ioe);
+            return false;
+        }
+        return write(seq, t, bytes.toByteArray(), bytes.size());
+    }
+
+    /** Writes an already serialized value. */
+    synchronized boolean write(long seq, long t, byte[] data, int len) {
+        int slot = HEADER + (int) (seq % slots) * slotSize;
+        buf.putLong(slot, -1);
+        boolean fits = (len <= slotSize - SLOT_HEADER);
+        if (fits) {
+            crc.reset();
+            crc.update(data, 0, len);
+            ByteBuffer b = buf.duplicate();
+            b.position(slot + SLOT_HEADER);
+            b.put(data, 0, len);
+            buf.putInt(slot + 16, len);
+            buf.putInt(slot + 20, (int) crc.getValue());
+        } else {
+            buf.putInt(slot + 16, -1);
+        }
+        buf.putLong(slot + 8, t);
+        buf.putLong(slot, seq);
+        buf.putLong(OFF_LAST, seq);
+        return fits;
+    }
+
+    /** Reads the value with sequence number <tt>seq</tt>.
+     * @return the serialized value, {@link #OVERSIZE}, or <tt>null</tt> if the
+     * slot no longer (or not yet) holds that value */
+    synchronized byte[] read(long seq) {
+        int slot = HEADER + (int) (seq % slots) * slotSize;
+        if (buf.getLong(slot) != seq) {
+            return null;
+        }
+        int len = buf.getInt(slot + 16);
+        int sum = buf.getInt(slot + 20);
+        long t = buf.getLong(slot + 8);
+        if (len > slotSize - SLOT_HEADER) {
+            return null;
+        }
+        byte[] data = (len < 0 ? OVERSIZE : new byte[len]);
+        if (len > 0) {
+            ByteBuffer b = buf.duplicate();
+            b.position(slot + SLOT_HEADER);
+            b.get(data);
+        }
+        if (buf.getLong(slot) != seq) {
+            return null;
+        }
+        if (len > 0) {
+            crc.reset();
+            crc.update(data, 0, len);
+            if ((int) crc.getValue() != sum) {
+                return null;
+            }
+        }
+        time = t;
+        return data;
+    }
+
+    /** Returns the publication time of the value last returned by
+     * {@link #read}. */
+    synchronized long getReadTime() {
+        return time;
+    }
+
+    /** Deserializes a value returned by {@link #read}. */
+    static Object decode(byte[] data) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    /** Unmaps the file (as far as Java allows) and, for the writer, deletes
+     * it. */
+    synchronized void close() {
+        try {
+            raf.close();
+        } catch (IOException ioe) {
+        }
+        if (writer) {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ade;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that readers of an {@link ADESharedRing} survive the writer
+ * replacing the ring file, as it does when its component is restarted.
+ */
+public class ADESharedRingTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("ade-ringtest", ".shm");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void restartedWriterReplacesTheFile() throws Exception {
+        ADESharedRing w = ADESharedRing.create(file, 4, 256);
+        w.write(1, 10, "old");
+        ADESharedRing r = ADESharedRing.open(file);
+        ADESharedRing w2 = ADESharedRing.create(file, 4, 256);
+        // the old mapping is still readable and unchanged
+        assertEquals("old", ADESharedRing.decode(r.read(1)));
+        assertTrue(w2.getCreated() != r.getCreated());
+        assertEquals(w2.getCreated(), ADESharedRing.created(file));
+        r.close();
+        w2.close();
+        assertFalse(file.exists());
+        assertEquals(-1, ADESharedRing.created(file));
+    }
+
+    @Test
+    public void inboxReattachesToTheNewFile() throws Exception {
+        ADESharedRing w = ADESharedRing.create(file, 4, 256);
+        for (int i = 1; i <= 5; i++) {
+            w.write(i, i, "old" + i);
+        }
+        ADEChannel.Inbox in = new ADEChannel.Inbox("pub", "c", 1);
+        in.attach(ADESharedRing.open(file), null);
+        assertEquals("old5", in.getLatest());
+        ADESharedRing w2 = ADESharedRing.create(file, 4, 256);
+        w2.write(1, 100, "new1");
+        Thread.sleep(ADEGlobals.DEF_SHM_RECHECK + 100);
+        // the new sequence numbers are below the old ones
+        assertEquals("new1", in.getLatest());
+        assertEquals(1, in.getSequence());
+        in.close();
+        w2.close();
+    }
+}
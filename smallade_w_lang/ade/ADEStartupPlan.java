@@ -0,0 +1,467 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Starts the components of a configuration file in parallel, in the order
+ * given by their dependencies. A component's dependencies are the
+ * <tt>requiredclients</tt> of its configuration entry (types, or
+ * <tt>type$name</tt> keys) that match other components of the same
+ * configuration; a component is started as soon as all its dependencies are
+ * ready, i.e., have registered and report {@link
+ * ade.ADEComponent#servicesReady servicesReady}. Readiness is not polled:
+ * the registry reports registrations ({@link #registered}) and heartbeats
+ * ({@link #heartbeat}), and a component that is registered but not yet ready
+ * is asked again on its next heartbeat. A <tt>pause</tt> line in the
+ * configuration ends a stage: the components after it are started once
+ * everything before it is ready and the time given with the pause (in ms)
+ * has passed.
+ * <p>
+ * Components that cannot be started, or do not become ready within
+ * {@link ade.ADEGlobals#DEF_STARTUP_TIMEOUT} ms, do not hold up the
+ * components depending on them (which are started anyway, as they were when
+ * configurations were started in sequence). When everything is up, the
+ * time each component took to start, register and become ready is printed.
+ */
+final class ADEStartupPlan {
+
+    private final static String prg = "ADEStartupPlan";
+
+    /** What the plan needs from the registry. */
+    interface Launcher {
+
+        /** Starts the process of a component; returns <tt>false</tt> if it
+         * could not be started. */
+        boolean start(ADEComponentInfo si) throws Exception;
+
+        /** Whether the registered component with the given key is ready. */
+        boolean isReady(String key) throws Exception;
+    }
+
+    /** A component of the configuration. */
+    private final static class Node {
+
+        final ADEComponentInfo info;
+        final int stage;
+        final ArrayList<Node> dependents = new ArrayList<Node>();
+        int waiting = 0;          // dependencies that are not ready yet
+        String key = null;        // the key the component registered with
+        long queued = 0;          // when starting it was queued
+        long launched = 0;        // when the process was started
+        long started = 0;         // when starting it returned
+        long registered = 0;      // when the component registered
+        long ready = 0;           // when it reported ready
+        boolean checking = false; // a readiness check is under way
+        String problem = null;    // why it did not come up
+
+        Node(ADEComponentInfo info, int stage) {
+            this.info = info;
+            this.stage = stage;
+        }
+
+        boolean isDone() {
+            return ready > 0 || problem != null;
+        }
+    }
+    private final Launcher launcher;
+    private final String myID;
+    private final ArrayList<Node> nodes = new ArrayList<Node>();
+    private final HashMap<String, Node> byKey = new HashMap<String, Node>();
+    private int stages = 1;
+    // the time (in ms) to wait before starting each stage
+    private final ArrayList<Long> delays = new ArrayList<Long>();
+    private ExecutorService pool;
+    private long begin;
+
+    ADEStartupPlan(Launcher launcher, String myID) {
+        this.launcher = launcher;
+        this.myID = myID;
+        delays.add(0L);
+    }
+
+    /** Adds a component to the current stage. */
+    synchronized void add(ADEComponentInfo si) {
+        nodes.add(new Node(si, stages - 1));
+    }
+
+    /** Ends the current stage (for a <tt>pause</tt> line).
+     * @param ms the time to wait before starting the next stage, once the
+     * current one is ready */
+    synchronized void pause(long ms) {
+        if (!nodes.isEmpty() && nodes.get(nodes.size() - 1).stage == stages - 1) {
+            stages++;
+            delays.add(0L);
+        }
+        delays.set(stages - 1, delays.get(stages - 1) + Math.max(ms, 0));
+    }
+
+    /** The number of components in the plan. */
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Starts all components and returns when they are ready (or have failed
+     * or timed out).
+     */
+    void run() {
+        begin = System.currentTimeMillis();
+        pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(ADEGlobals.DEF_STARTUP_PARALLEL, nodes.size())),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, prg);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try {
+            for (int stage = 0; stage < stages; stage++) {
+                long delay = delays.get(stage);
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                runStage(stage);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.print(report());
+    }
+
+    private void runStage(int stage) {
+        ArrayList<Node> roots = new ArrayList<Node>();
+        synchronized (this) {
+            ArrayList<Node> members = new ArrayList<Node>();
+            for (Node n : nodes) {
+                if (n.stage == stage) {
+                    members.add(n);
+                }
+            }
+            for (Node n : members) {
+                for (String req : n.info.requiredClients) {
+                    for (Node d : members) {
+                        if (d != n && matches(d.info, req) && !d.dependents.contains(n)) {
+                            d.dependents.add(n);
+                            n.waiting++;
+                        }
+                    }
+                }
+            }
+            breakCycles(members);
+            for (Node n : members) {
+                if (n.waiting == 0) {
+                    roots.add(n);
+                }
+            }
+        }
+        for (Node n : roots) {
+            launch(n);
+        }
+        // wait for the stage, giving up on components that take too long
+        synchronized (this) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                long next = Long.MAX_VALUE;
+                boolean done = true;
+                for (Node n : nodes) {
+                    if (n.stage != stage || n.isDone()) {
+                        continue;
+                    }
+                    done = false;
+                    if (n.launched > 0) {
+                        long deadline = n.launched + ADEGlobals.DEF_STARTUP_TIMEOUT;
+                        if (deadline <= now) {
+                            fail(n, "not ready after " + ADEGlobals.DEF_STARTUP_TIMEOUT + " ms");
+                        } else {
+                            next = Math.min(next, deadline);
+                        }
+                    }
+                }
+                if (done) {
+                    return;
+                }
+                try {
+                    wait(next == Long.MAX_VALUE ? ADEGlobals.DEF_STARTUP_TIMEOUT : Math.max(1, next - now));
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether a requirement (a type, an interface the type implements, or a
+     * <tt>type$name</tt> key) is met by a component.
+     */
+    private static boolean matches(ADEComponentInfo si, String req) {
+        if (req == null) {
+            return false;
+        }
+        if (req.indexOf('$') >= 0) {
+            return req.equals(si.getKey());
+        }
+        if (req.equals(si.type)) {
+            return true;
+        }
+        try {
+            ClassLoader cl = ADEStartupPlan.class.getClassLoader();
+            return Class.forName(req, false, cl).isAssignableFrom(Class.forName(si.type, false, cl));
+        } catch (Throwable t) {
+            // the registry may not have the component classes
+            return false;
+        }
+    }
+
+    /**
+     * Components that require each other (directly or through others) do not
+     * wait for each other; they still wait for their other dependencies, and
+     * components that merely depend on them still wait for them.
+     */
+    private void breakCycles(ArrayList<Node> members) {
+        Cycles c = new Cycles();
+        for (Node n : members) {
+            if (!c.index.containsKey(n)) {
+                c.visit(n);
+            }
+        }
+        for (ArrayList<Node> cycle : c.found) {
+            StringBuilder names = new StringBuilder();
+            for (Node n : cycle) {
+                names.append(names.length() == 0 ? "" : ", ").append(label(n));
+            }
+            System.err.println(myID + ": circular requiredclients among " + names
+                    + "; starting them without waiting for each other");
+            for (Node d : cycle) {
+                for (Node n : cycle) {
+                    if (d.dependents.remove(n)) {
+                        n.waiting--;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Finds the strongly connected components of the dependency graph with
+     * more than one component (Tarjan). */
+    private static final class Cycles {
+
+        final HashMap<Node, Integer> index = new HashMap<Node, Integer>();
+        final HashMap<Node, Integer> low = new HashMap<Node, Integer>();
+        final ArrayList<Node> stack = new ArrayList<Node>();
+        final ArrayList<ArrayList<Node>> found = new ArrayList<ArrayList<Node>>();
+
+        void visit(Node n) {
+            int i = index.size();
+            index.put(n, i);
+            low.put(n, i);
+            stack.add(n);
+            for (Node d : n.dependents) {
+                if (!index.containsKey(d)) {
+                    visit(d);
+                    low.put(n, Math.min(low.get(n), low.get(d)));
+                } else if (stack.contains(d)) {
+                    low.put(n, Math.min(low.get(n), index.get(d)));
+                }
+            }
+            if (low.get(n) == i) {
+                ArrayList<Node> scc = new ArrayList<Node>();
+                Node m;
+                do {
+                    m = stack.remove(stack.size() - 1);
+                    scc.add(m);
+                } while (m != n);
+                if (scc.size() > 1) {
+                    found.add(scc);
+                }
+            }
+        }
+    }
+
+    private void launch(final Node n) {
+        synchronized (this) {
+            n.queued = System.currentTimeMillis();
+        }
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the startup deadline counts from here, not from when the
+                // start was queued behind others
+                synchronized (ADEStartupPlan.this) {
+                    n.launched = System.currentTimeMillis();
+                    ADEStartupPlan.this.notifyAll();
+                }
+                boolean ok;
+                try {
+                    ok = launcher.start(n.info);
+                } catch (Exception e) {
+                    System.err.println(myID + ": could not start " + label(n) + ": " + e);
+                    ok = false;
+                }
+                synchronized (ADEStartupPlan.this) {
+                    n.started = System.currentTimeMillis();
+                    if (!ok) {
+                        fail(n, "could not be started");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Called by the registry when a component registers; if it is one of the
+     * plan's, checks whether it is ready.
+     */
+    void registered(ADEComponentInfo si) {
+        Node found = null;
+        synchronized (this) {
+            if (byKey.containsKey(si.getKey())) {
+                return;
+            }
+            for (Node n : nodes) {
+                if (n.queued > 0 && n.key == null && !n.isDone()
+                        && (n.info.name == null ? n.info.type.equals(si.type)
+                        : n.info.getKey().equals(si.getKey()))) {
+                    found = n;
+                    break;
+                }
+            }
+            if (found == null) {
+                return;
+            }
+            found.key = si.getKey();
+            found.registered = System.currentTimeMillis();
+            byKey.put(found.key, found);
+        }
+        check(found);
+    }
+
+    /**
+     * Called by the registry on a component's heartbeat; asks a registered
+     * component of the plan that is not ready yet again.
+     */
+    void heartbeat(String key) {
+        Node n;
+        synchronized (this) {
+            n = byKey.get(key);
+            if (n == null) {
+                return;
+            }
+        }
+        check(n);
+    }
+
+    private void check(final Node n) {
+        synchronized (this) {
+            if (n.checking || n.isDone() || pool == null || pool.isShutdown()) {
+                return;
+            }
+            n.checking = true;
+        }
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean ready = false;
+                try {
+                    ready = launcher.isReady(n.key);
+                } catch (Exception e) {
+                    // ask again on the next heartbeat
+                }
+                synchronized (ADEStartupPlan.this) {
+                    n.checking = false;
+                    if (ready && !n.isDone()) {
+                        n.ready = System.currentTimeMillis();
+                        release(n);
+                    }
+                }
+            }
+        });
+    }
+
+    /** Gives up on a component (must hold the lock). */
+    private void fail(Node n, String problem) {
+        if (n.isDone()) {
+            return;
+        }
+        n.problem = problem;
+        System.err.println(myID + ": " + label(n) + " " + problem);
+        release(n);
+    }
+
+    /** Starts the dependents that no longer wait (must hold the lock). */
+    private void release(Node n) {
+        for (Node d : n.dependents) {
+            if (--d.waiting == 0 && d.queued == 0) {
+                launch(d);
+            }
+        }
+        notifyAll();
+    }
+
+    private static String label(Node n) {
+        return (n.info.name == null ? n.info.type : n.info.getKey());
+    }
+
+    /** The per-component startup times. */
+    synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(myID).append(": started ").append(nodes.size())
+                .append(" components in ").append(System.currentTimeMillis() - begin)
+                .append(" ms\n");
+        for (Node n : nodes) {
+            sb.append("\t").append(n.key != null ? n.key : label(n));
+            sb.append(": queued ").append(n.queued - begin);
+            sb.append(" ms, waited ").append(n.launched > 0 ? (n.launched - n.queued) + " ms" : "-");
+            sb.append(", start ").append(n.started > 0 ? (n.started - n.launched) + " ms" : "-");
+            sb.append(", registered ").append(n.registered > 0 ? (n.registered - n.launched) + " ms" : "-");
+            sb.append(", ready ").append(n.ready > 0 ? (n.ready - n.launched) + " ms" : "-");
+            if (n.problem != null) {
+                sb.append(" (").append(n.problem).append(")");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package ade;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs an {@link ADEStartupPlan} with a launcher that registers components
+ * as soon as they are started.
+ */
+public class ADEStartupPlanTest {
+
+    /** Keeps the start times; <tt>slow</tt> takes a while to become ready. */
+    private static class Launcher implements ADEStartupPlan.Launcher {
+
+        final HashMap<String, Long> started = new HashMap<String, Long>();
+        final String slow;
+        ADEStartupPlan plan;
+
+        Launcher(String slow) {
+            this.slow = slow;
+        }
+
+        @Override
+        public boolean start(ADEComponentInfo si) {
+            synchronized (started) {
+                started.put(si.name, System.currentTimeMillis());
+            }
+            plan.registered(si);
+            return true;
+        }
+
+        @Override
+        public boolean isReady(String key) throws Exception {
+            if (key.endsWith("$" + slow)) {
+                Thread.sleep(300);
+            }
+            return true;
+        }
+    }
+
+    private static ADEComponentInfo info(String name, String... requires) {
+        ADEComponentInfo si = new ADEComponentInfo();
+        si.type = "test.T" + name;
+        si.name = name;
+        for (String r : requires) {
+            si.requiredClients.add("test.T" + r + "$" + r);
+        }
+        return si;
+    }
+
+    private static Launcher run(String slow, ADEComponentInfo... infos) {
+        Launcher l = new Launcher(slow);
+        ADEStartupPlan plan = new ADEStartupPlan(l, "test");
+        l.plan = plan;
+        for (ADEComponentInfo si : infos) {
+            plan.add(si);
+        }
+        plan.run();
+        return l;
+    }
+
+    @Test
+    public void dependentsWaitForReadiness() {
+        Launcher l = run("A", info("A"), info("B", "A"), info("C", "B"));
+        assertEquals(3, l.started.size());
+        assertTrue(l.started.get("B") - l.started.get("A") >= 250);
+        assertTrue(l.started.get("C") >= l.started.get("B"));
+    }
+
+    @Test
+    public void onlyCycleMembersStopWaiting() {
+        // A and B require each other, C requires A, and A requires D
+        Launcher l = run("D", info("A", "B", "D"), info("B", "A"), info("C", "A"), info("D"));
+        assertEquals(4, l.started.size());
+        assertTrue(l.started.get("B") < l.started.get("D") + 250);
+        // A still waits for D, and C for A
+        assertTrue(l.started.get("A") - l.started.get("D") >= 250);
+        assertTrue(l.started.get("C") >= l.started.get("A"));
+    }
+}
@@ -10,7 +10,15 @@
  */
 package ade;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Set;
 import java.util.Map;
@@ -46,6 +54,57 @@ public class ADEState implements Serializable {
      * is saved. The key is the name of a field, while the value is the value
      * (stored as an object). */
     private ConcurrentHashMap<String, Object> state;
+    /** The version, incremented each time changes are taken for shipping
+     * (see {@link #takeDelta}). */
+    private long version = 0;
+    /** Tags set or removed since changes were last taken. */
+    private transient HashSet<String> dirty;
+    /** Digests of the serialized values as last taken, by tag. */
+    private transient HashMap<String, byte[]> shipped;
+
+    /** The changes between two versions of a state: the tags whose values
+     * changed (with their new values) and the tags that were removed. A delta
+     * applies to the state at version {@link #getBase} and brings it to
+     * version {@link #getVersion}. */
+    static public class Delta implements Serializable {
+
+        private static final long serialVersionUID = 7526472295622776147L;
+        private final long base;
+        private final long version;
+        private final long timestamp;
+        private final HashMap<String, Object> changed;
+        private final HashSet<String> removed;
+
+        Delta(long base, long version, long timestamp,
+                HashMap<String, Object> changed, HashSet<String> removed) {
+            this.base = base;
+            this.version = version;
+            this.timestamp = timestamp;
+            this.changed = changed;
+            this.removed = removed;
+        }
+
+        /** Returns the version the delta applies to. */
+        public long getBase() {
+            return base;
+        }
+
+        /** Returns the version the delta produces. */
+        public long getVersion() {
+            return version;
+        }
+
+        /** Returns the number of changed and removed tags. */
+        public int size() {
+            return changed.size() + removed.size();
+        }
+
+        @Override
+        public String toString() {
+            return "ADEState.Delta[" + base + "->" + version + ": changed "
+                    + changed.keySet() + ", removed " + removed + "]";
+        }
+    }
 
     /** Constructor. */
     public ADEState() {
@@ -60,10 +119,30 @@ public class ADEState implements Serializable {
     public void setValue(String tag, Object obj) {
         // TODO: should probably enforce each object's serializability
         if (tag != null && obj != null) {
-            state.put(tag, obj);
+            Object old = state.put(tag, obj);
+            // an equal but distinct value cannot have changed; the same
+            // (possibly mutated) object has to be checked when shipping
+            if (old == null || old == obj || !old.equals(obj)) {
+                synchronized (this) {
+                    dirty().add(tag);
+                }
+            }
         }
     }
 
+    /** Removes the named <tt>tag</tt> and its value.
+     * @param tag The name of the slot
+     * @return The value that was removed (or <tt>null</tt>) */
+    public Object removeValue(String tag) {
+        Object old = (tag != null ? state.remove(tag) : null);
+        if (old != null) {
+            synchronized (this) {
+                dirty().add(tag);
+            }
+        }
+        return old;
+    }
+
     /** Returns the value associated with the specified tag (which may be
      * <tt>null</tt>).
      * @return The <tt>Object</tt> associated with the specified tag; if
@@ -85,6 +164,113 @@ public class ADEState implements Serializable {
         timestamp = System.currentTimeMillis();
     }
 
+    /** Returns the version (the number of times changes were taken). */
+    public final synchronized long getVersion() {
+        return version;
+    }
+
+    private HashSet<String> dirty() {
+        if (dirty == null) {
+            dirty = new HashSet<String>();
+        }
+        return dirty;
+    }
+
+    /** Returns the changes since the last call of this method (or of
+     * {@link #takeSnapshot}) and advances the version, or returns
+     * <tt>null</tt> if nothing changed. Only tags set or removed in between
+     * are considered, and of those only the ones whose serialized value
+     * differs from the one last taken, so that re-setting a slot to the same
+     * value in every {@link ade.ADEComponentImpl#saveState saveState} does not
+     * ship it again.
+     * @return The delta, or <tt>null</tt> */
+    public synchronized Delta takeDelta() {
+        if (shipped == null) {
+            shipped = new HashMap<String, byte[]>();
+        }
+        HashMap<String, Object> changed = new HashMap<String, Object>();
+        HashSet<String> removed = new HashSet<String>();
+        for (String tag : dirty()) {
+            Object value = state.get(tag);
+            if (value == null) {
+                if (shipped.remove(tag) != null) {
+                    removed.add(tag);
+                }
+                continue;
+            }
+            byte[] d = digest(value);
+            byte[] last = shipped.get(tag);
+            if (d == null || last == null || !Arrays.equals(d, last)) {
+                changed.put(tag, value);
+                shipped.put(tag, d);
+            }
+        }
+        dirty.clear();
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+        long base = version++;
+        setTimestamp();
+        return new Delta(base, version, timestamp, changed, removed);
+    }
+
+    /** Takes the whole state for shipping, as if all of it had changed, and
+     * advances the version. Used when the receiver of the deltas has lost
+     * track.
+     * @return This state */
+    public synchronized ADEState takeSnapshot() {
+        shipped = new HashMap<String, byte[]>();
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            shipped.put(entry.getKey(), digest(entry.getValue()));
+        }
+        dirty().clear();
+        version++;
+        setTimestamp();
+        return this;
+    }
+
+    /** Applies a delta taken from another state.
+     * @param d The delta
+     * @return <tt>true</tt> if applied, <tt>false</tt> if the delta does not
+     * apply to this state's version */
+    public synchronized boolean apply(Delta d) {
+        if (d.base != version) {
+            return false;
+        }
+        for (String tag : d.removed) {
+            state.remove(tag);
+        }
+        state.putAll(d.changed);
+        version = d.version;
+        timestamp = d.timestamp;
+        return true;
+    }
+
+    /** Returns a copy of this state (sharing the values). */
+    public synchronized ADEState copy() {
+        ADEState s = new ADEState();
+        s.state.putAll(state);
+        s.version = version;
+        s.timestamp = timestamp;
+        return s;
+    }
+
+    /** Returns an MD5 digest of the serialized value, or <tt>null</tt> if it
+     * cannot be serialized (in which case it is always shipped). */
+    private static byte[] digest(Object value) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+            oos.close();
+            return MessageDigest.getInstance("MD5").digest(bos.toByteArray());
+        } catch (IOException ioe) {
+            return null;
+        } catch (NoSuchAlgorithmException nsae) {
+            return null;
+        }
+    }
+
     /** Return the contents of the state HashMap in string form. Items will
      * appear, one to a line, in the format <tt>key[tab]value</tt>, where
      * <tt>value</tt> is simply a call to the object's <tt>toString</tt>
@@ -0,0 +1,18 @@
+package ade;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+        ADEMetricsTest.class,
+        ADERegistryJournalTest.class,
+        ADERemoteSessionTest.class,
+        ADESharedRingTest.class,
+        ADEStartupPlanTest.class
+})
+
+
+public class ADETestSuite {
+    // class is empty, is a holder for annotations
+}
@@ -0,0 +1,172 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ *
+ * Copyright 1997-2013 Matthias Scheutz and the HRILab Development Team
+ * All rights reserved.  For information or questions, please contact
+ * the director of the HRILab, Matthias Scheutz, at mscheutz@gmail.com
+ *
+ * Redistribution and use of all files of the ADE package, in source and
+ * binary forms with or without modification, are permitted provided that
+ * (1) they retain the above copyright notice, this list of conditions
+ * and the following disclaimer, and (2) redistributions in binary form
+ * reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT HOLDER OR ANY
+ * OF THE CONTRIBUTORS TO THE ADE PROJECT BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+
+ * Note: This license is equivalent to the FreeBSD license.
+ */
+package ade;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for the hand-written wire format of high-rate payloads (laser
+ * scans, percepts) that cross components via RMI. Such classes implement
+ * {@link java.io.Externalizable Externalizable} and use these methods in
+ * <tt>writeExternal</tt>/<tt>readExternal</tt>, so that no per-field
+ * reflection is done and primitive arrays are written as one block of bytes.
+ * The byte buffers used for encoding and decoding are kept per thread and
+ * reused, so steady-state traffic does not allocate scratch space.
+ * <p>
+ * Arrays and strings may be <tt>null</tt>; a length of -1 marks a
+ * <tt>null</tt> value on the wire.
+ */
+final public class ADEWire {
+
+    /** The per-thread scratch buffer, grown as needed. */
+    private static final ThreadLocal<ByteBuffer> scratch = new ThreadLocal<ByteBuffer>() {
+
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(8192);
+        }
+    };
+
+    private ADEWire() {
+    }
+
+    /** Returns the calling thread's scratch buffer, cleared and large
+     * enough for <tt>size</tt> bytes. */
+    private static ByteBuffer scratch(int size) {
+        ByteBuffer b = scratch.get();
+        if (b.capacity() < size) {
+            b = ByteBuffer.allocate(Math.max(size, b.capacity() * 2));
+            scratch.set(b);
+        }
+        b.clear();
+        return b;
+    }
+
+    /** Reads <tt>size</tt> bytes into the scratch buffer. */
+    private static ByteBuffer readBlock(ObjectInput in, int size)
+            throws IOException {
+        ByteBuffer b = scratch(size);
+        in.readFully(b.array(), 0, size);
+        b.limit(size);
+        return b;
+    }
+
+    /** Writes a <tt>double</tt> array as its length and one block. */
+    public static void writeDoubles(ObjectOutput out, double[] a)
+            throws IOException {
+        if (a == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(a.length);
+        ByteBuffer b = scratch(a.length * 8);
+        b.asDoubleBuffer().put(a);
+        out.write(b.array(), 0, a.length * 8);
+    }
+
+    /** Reads an array written by {@link #writeDoubles}. */
+    public static double[] readDoubles(ObjectInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        double[] a = new double[n];
+        readBlock(in, n * 8).asDoubleBuffer().get(a);
+        return a;
+    }
+
+    /** Writes a <tt>float</tt> array as its length and one block. */
+    public static void writeFloats(ObjectOutput out, float[] a)
+            throws IOException {
+        if (a == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(a.length);
+        ByteBuffer b = scratch(a.length * 4);
+        b.asFloatBuffer().put(a);
+        out.write(b.array(), 0, a.length * 4);
+    }
+
+    /** Reads an array written by {@link #writeFloats}. */
+    public static float[] readFloats(ObjectInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        float[] a = new float[n];
+        readBlock(in, n * 4).asFloatBuffer().get(a);
+        return a;
+    }
+
+    /** Writes a <tt>short</tt> array as its length and one block. */
+    public static void writeShorts(ObjectOutput out, short[] a)
+            throws IOException {
+        if (a == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(a.length);
+        ByteBuffer b = scratch(a.length * 2);
+        b.asShortBuffer().put(a);
+        out.write(b.array(), 0, a.length * 2);
+    }
+
+    /** Reads an array written by {@link #writeShorts}. */
+    public static short[] readShorts(ObjectInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        short[] a = new short[n];
+        readBlock(in, n * 2).asShortBuffer().get(a);
+        return a;
+    }
+
+    /** Writes a possibly <tt>null</tt> string. */
+    public static void writeString(ObjectOutput out, String s)
+            throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    /** Reads a string written by {@link #writeString}. */
+    public static String readString(ObjectInput in) throws IOException {
+        return (in.readBoolean() ? in.readUTF() : null);
+    }
+}
@@ -63,6 +63,39 @@ public class Connection {
     return ref != null && (pausingThread == null || pausingThread == Thread.currentThread());
   }
 
+  /**
+   * Subscribes to a data channel of the connected component, see
+   * ADEComponentImpl's subscribeChannel.
+   *
+   * @param channel The name of the channel.
+   * @param queueSize How many values to keep (1 to only keep the latest).
+   * @return True iff the subscription is in place.
+   */
+  public boolean subscribe(String channel, int queueSize) {
+    if (!isReady()) {
+      return false;
+    }
+    return impl.subscribeChannel(ref, channel, queueSize);
+  }
+
+  /**
+   * Returns the latest value pushed on a subscribed channel, provided it is
+   * not older than maxAge ms.
+   *
+   * @param <T> The type of the channel's values.
+   * @param channel The name of the channel.
+   * @param type The type of the channel's values.
+   * @param maxAge The maximum age of the value in ms.
+   * @return The value, or null if there is no recent value of that type.
+   */
+  public <T> T latest(String channel, Class<T> type, long maxAge) {
+    if (ref == null || impl.getChannelAge(ref, channel) > maxAge) {
+      return null;
+    }
+    Object res = impl.getChannelValue(ref, channel);
+    return (type.isInstance(res) ? type.cast(res) : null);
+  }
+
   /**
    * Call is a wrapper for ADEComponentImpl's call, it adds two things, 1) a more
    * OO interaction style and 2) Lots of error handling.
@@ -397,6 +397,16 @@ public abstract class ADEGuiPanel extends JPanel {
         return myComponentName;
     }
 
+    /**
+     * whether the visualization is currently on screen (its frame is visible
+     * and not iconified). Visualizations that fetch data on a thread of their
+     * own can check this to stop fetching while nobody is looking.
+     */
+    public final boolean isVisualizationVisible() {
+        VisibilityDeterminer determiner = this.visibilityDeterminer;
+        return (determiner != null && determiner.isVisible());
+    }
+
     void setVisibilityDeterminer(
             VisibilityDeterminer visibilityDeterminer) {
         this.visibilityDeterminer = visibilityDeterminer;
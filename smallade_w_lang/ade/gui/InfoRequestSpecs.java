@@ -26,4 +26,20 @@ public class InfoRequestSpecs implements Serializable {
     public boolean registryName;
     public boolean startDirectory;
     public boolean clients; // other components that this component makes calls to.
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof InfoRequestSpecs)) {
+            return false;
+        }
+        InfoRequestSpecs s = (InfoRequestSpecs) o;
+        return host == s.host && registryName == s.registryName
+                && startDirectory == s.startDirectory && clients == s.clients;
+    }
+
+    @Override
+    public int hashCode() {
+        return (host ? 1 : 0) | (registryName ? 2 : 0)
+                | (startDirectory ? 4 : 0) | (clients ? 8 : 0);
+    }
 }
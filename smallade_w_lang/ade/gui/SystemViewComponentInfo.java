@@ -33,4 +33,49 @@ public class SystemViewComponentInfo implements Serializable {
     public String getComponentID() {
         return Util.getKey(this.type, this.name);
     }
+
+    /**
+     * returns a copy that holds only the information asked for in
+     * requestSpecs (or everything, if requestSpecs is null). The clients set
+     * is copied, too.
+     */
+    public SystemViewComponentInfo copy(InfoRequestSpecs requestSpecs) {
+        SystemViewComponentInfo c = new SystemViewComponentInfo();
+        c.name = name;
+        c.type = type;
+        if (requestSpecs == null || requestSpecs.host) {
+            c.host = host;
+        }
+        if (requestSpecs == null || requestSpecs.registryName) {
+            c.registryName = registryName;
+        }
+        if (requestSpecs == null || requestSpecs.startDirectory) {
+            c.startDirectory = startDirectory;
+        }
+        if ((requestSpecs == null || requestSpecs.clients) && clients != null) {
+            c.clients = new HashSet<String>(clients);
+        }
+        return c;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SystemViewComponentInfo)) {
+            return false;
+        }
+        SystemViewComponentInfo i = (SystemViewComponentInfo) o;
+        return same(name, i.name) && same(type, i.type) && same(host, i.host)
+                && same(registryName, i.registryName)
+                && same(startDirectory, i.startDirectory)
+                && same(clients, i.clients);
+    }
+
+    @Override
+    public int hashCode() {
+        return getComponentID().hashCode();
+    }
+
+    private static boolean same(Object a, Object b) {
+        return (a == null ? b == null : a.equals(b));
+    }
 }
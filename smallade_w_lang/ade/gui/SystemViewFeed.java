@@ -0,0 +1,127 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ * 
+ * Copyright 1997-2013 Matthias Scheutz
+ * All rights reserved. Do not copy and use without permission.
+ * For questions contact Matthias Scheutz at mscheutz@gmail.com
+ */
+package ade.gui;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * a versioned copy of the status a registry reports to the SystemView GUI.
+ * The registry hands it the current status with update(), which compares it
+ * with the previous one and stamps every added, changed or removed component
+ * with a new version; since() then returns only what changed after the
+ * version a GUI already has. Removed components are remembered (up to
+ * MAX_TOMBSTONES of them); a GUI that asks for a version older than the
+ * oldest one still remembered gets a full snapshot instead.
+ */
+public class SystemViewFeed {
+
+    // how many removed components are remembered
+    public static final int MAX_TOMBSTONES = 256;
+    private final HashMap<String, SystemViewComponentInfo> view =
+            new HashMap<String, SystemViewComponentInfo>();
+    // component ID -> version of its last change, oldest first (including
+    //     removed components)
+    private final LinkedHashMap<String, Long> changedAt = new LinkedHashMap<String, Long>();
+    private int tombstones = 0;
+    private long version = 0;
+    // deltas can only be computed from this version on
+    private long floor = 0;
+
+    public SystemViewFeed() {
+        // start at a time-based version, so that a GUI holding a version
+        //     from before a registry restart gets a full snapshot
+        version = floor = System.currentTimeMillis();
+    }
+
+    /** the current version */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * compares the current status with the last one; returns true if anything
+     * changed.
+     */
+    public synchronized boolean update(Map<String, SystemViewComponentInfo> current) {
+        long next = version + 1;
+        boolean changed = false;
+        for (Map.Entry<String, SystemViewComponentInfo> e : current.entrySet()) {
+            SystemViewComponentInfo old = view.get(e.getKey());
+            if (old == null || !old.equals(e.getValue())) {
+                view.put(e.getKey(), e.getValue().copy(null));
+                stamp(e.getKey(), next, old == null && changedAt.containsKey(e.getKey()));
+                changed = true;
+            }
+        }
+        Iterator<String> it = view.keySet().iterator();
+        while (it.hasNext()) {
+            String id = it.next();
+            if (!current.containsKey(id)) {
+                it.remove();
+                stamp(id, next, false);
+                tombstones++;
+                changed = true;
+            }
+        }
+        // forget the oldest removals; whoever is behind them gets a snapshot
+        it = changedAt.keySet().iterator();
+        while (tombstones > MAX_TOMBSTONES && it.hasNext()) {
+            String id = it.next();
+            if (!view.containsKey(id)) {
+                floor = changedAt.get(id);
+                it.remove();
+                tombstones--;
+            }
+        }
+        if (changed) {
+            version = next;
+        }
+        return changed;
+    }
+
+    private void stamp(String id, long v, boolean revived) {
+        changedAt.remove(id);
+        changedAt.put(id, v);
+        if (revived) {
+            tombstones--;
+        }
+    }
+
+    /**
+     * returns the changes after version since, restricted to the information
+     * asked for in requestSpecs. Returns a full snapshot if since is 0 or not
+     * a version this feed can compute a delta from.
+     */
+    public synchronized SystemViewStatusDelta since(long since, InfoRequestSpecs requestSpecs) {
+        SystemViewStatusDelta delta = new SystemViewStatusDelta();
+        delta.version = version;
+        if (since < floor || since > version) {
+            delta.full = true;
+            for (Map.Entry<String, SystemViewComponentInfo> e : view.entrySet()) {
+                delta.changed.put(e.getKey(), e.getValue().copy(requestSpecs));
+            }
+            return delta;
+        }
+        for (Map.Entry<String, Long> e : changedAt.entrySet()) {
+            if (e.getValue() > since) {
+                SystemViewComponentInfo info = view.get(e.getKey());
+                if (info == null) {
+                    delta.removed.add(e.getKey());
+                } else {
+                    delta.changed.put(e.getKey(), info.copy(requestSpecs));
+                }
+            }
+        }
+        return delta;
+    }
+}
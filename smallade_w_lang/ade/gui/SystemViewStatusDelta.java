@@ -0,0 +1,50 @@
+/**
+ * Agent Development Environment (ADE)
+ *
+ * @version 1.0
+ * 
+ * Copyright 1997-2013 Matthias Scheutz
+ * All rights reserved. Do not copy and use without permission.
+ * For questions contact Matthias Scheutz at mscheutz@gmail.com
+ */
+package ade.gui;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * the changes to a registry's status since a version the GUI already has (see
+ * ADERegistry.guiGetRegistryStatusDelta). A "full" delta replaces whatever
+ * the GUI had, and is sent on the first request, or if the registry can no
+ * longer tell what changed since the requested version.
+ */
+public class SystemViewStatusDelta implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    // the version of the status after applying this delta
+    public long version;
+    // true if the delta is a complete snapshot
+    public boolean full;
+    // components that were added or changed since the requested version
+    public HashMap<String, SystemViewComponentInfo> changed =
+            new HashMap<String, SystemViewComponentInfo>();
+    // IDs of components that went away since the requested version
+    public HashSet<String> removed = new HashSet<String>();
+
+    /** true if the delta carries no changes */
+    public boolean isEmpty() {
+        return !full && changed.isEmpty() && removed.isEmpty();
+    }
+
+    /** applies the changes to a status the GUI keeps */
+    public void applyTo(SystemViewStatusData data) {
+        if (full) {
+            data.componentIDtoInfoMap.clear();
+        }
+        for (String id : removed) {
+            data.componentIDtoInfoMap.remove(id);
+        }
+        data.componentIDtoInfoMap.putAll(changed);
+    }
+}
@@ -10,11 +10,13 @@
  */
 package ade.gui.sysview;
 
+import ade.ADEGlobals;
 import ade.gui.ADEGuiCallHelper;
 import ade.gui.ADEGuiPanel;
 import ade.gui.InfoRequestSpecs;
 import ade.gui.SystemViewAccess;
 import ade.gui.SystemViewStatusData;
+import ade.gui.SystemViewStatusDelta;
 import ade.gui.sysview.graph.ComponentGraphWindow;
 import ade.gui.sysview.menu.MenuBar;
 import ade.gui.sysview.table.ComponentTableWindow;
@@ -33,6 +35,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JDesktopPane;
 import javax.swing.JInternalFrame;
+import javax.swing.SwingUtilities;
 import prefuse.Display;
 import utilities.Pair;
 
@@ -62,6 +65,18 @@ public class ADESystemView extends ADEGuiPanel {
     //    well want to keep their information on record.
     public HashMap<Pair<OtherWindowType, String>, JInternalFrame> otherWindows =
             new HashMap<Pair<OtherWindowType, String>, JInternalFrame>();
+    // the registry status, kept up to date by the status thread, which asks
+    //     the registry for changes (the registry holds the request until
+    //     there are some).  statusVersion counts the changes applied, so that
+    //     the windows are only redrawn when there is something new.
+    private static final int STATUS_WAIT = 5000;
+    private static final int STATUS_IDLE = 500;
+    private final SystemViewStatusData status = new SystemViewStatusData();
+    private long statusVersion = 0;
+    private long shownVersion = -1;
+    private boolean shownTable = false;
+    private boolean shownGraph = false;
+    private Thread statusThread;
 
     public ADESystemView(ADEGuiCallHelper guiCallHelper,
             String registryName, SystemViewAccess registryAccessKey) {
@@ -158,38 +173,106 @@ public class ADESystemView extends ADEGuiPanel {
 
         this.componentGraph.setSize(graphSizeWidth, graphSizeHeight);
 
+        startStatusThread();
     }
 
-    @Override
-    public void refreshGui() {
-        try {
-            boolean showingTable = windowIsShowing(this.componentTable);
-            boolean showingGraph = windowIsShowing(this.componentGraph);
-
-            InfoRequestSpecs statusRequestSpecs = new InfoRequestSpecs();
-            statusRequestSpecs.host = (showingTable);
-            statusRequestSpecs.registryName = (showingTable || showingGraph);
-            statusRequestSpecs.clients = (showingGraph);
-
-            SystemViewStatusData newStatus = (SystemViewStatusData) callComponent(
-                    "guiGetRegistryStatus", registryAccessKey, statusRequestSpecs, true);
-
-
-            if (showingTable) {
-                componentTable.refreshGUI(newStatus);
-            }
-            if (showingGraph) {
-                componentGraph.refreshGUI(newStatus);
+    private synchronized void startStatusThread() {
+        if (statusThread != null) {
+            return;
+        }
+        statusThread = new Thread("SystemView status " + registryName) {
+            @Override
+            public void run() {
+                followRegistryStatus();
             }
+        };
+        statusThread.setDaemon(true);
+        statusThread.start();
+    }
 
+    /**
+     * applies the registry's status changes as they come in, for as long as
+     * the system view is open. While it is hidden or iconified, the registry
+     * is not asked at all.
+     */
+    private void followRegistryStatus() {
+        // the table and graph between them need the host, registry and clients
+        InfoRequestSpecs statusRequestSpecs = new InfoRequestSpecs();
+        statusRequestSpecs.host = true;
+        statusRequestSpecs.registryName = true;
+        statusRequestSpecs.clients = true;
+
+        long registryVersion = 0;
+        while (statusThread == Thread.currentThread()) {
+            try {
+                if (!isVisualizationVisible()) {
+                    if (findParentFrame() != null && !isDisplayable()) {
+                        break; // the window was closed
+                    }
+                    Thread.sleep(STATUS_IDLE);
+                    continue;
+                }
+                SystemViewStatusDelta delta = (SystemViewStatusDelta) callComponent(
+                        "guiGetRegistryStatusDelta", registryAccessKey,
+                        statusRequestSpecs, true, registryVersion, STATUS_WAIT);
+                registryVersion = delta.version;
+                if (!delta.isEmpty()) {
+                    synchronized (status) {
+                        delta.applyTo(status);
+                        statusVersion++;
+                    }
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            refreshGui();
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                System.err.println("Could not obtain registry status info for " + registryName
+                        + ".  If the problem persists, this will not end well.");
+                e.printStackTrace();
+                registryVersion = 0; // start over with a full snapshot
+                try {
+                    Thread.sleep(ADEGlobals.DEF_GUI_REMOTE_CHECK);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
 
-            visualizationManager.removeVisualizationsForNoLongerListedComponents(newStatus);
+    @Override
+    public void refreshGui() {
+        boolean showingTable = windowIsShowing(this.componentTable);
+        boolean showingGraph = windowIsShowing(this.componentGraph);
+
+        // only redraw if the status changed, or a window came back into view
+        SystemViewStatusData newStatus = new SystemViewStatusData();
+        synchronized (status) {
+            if (statusVersion == 0
+                    || (statusVersion == shownVersion
+                    && (shownTable || !showingTable) && (shownGraph || !showingGraph))) {
+                shownTable = showingTable;
+                shownGraph = showingGraph;
+                return;
+            }
+            newStatus.componentIDtoInfoMap.putAll(status.componentIDtoInfoMap);
+            shownVersion = statusVersion;
+        }
+        shownTable = showingTable;
+        shownGraph = showingGraph;
 
-        } catch (Exception e) {
-            System.err.println("Could not obtain registry status info for " + registryName
-                    + ".  If the problem persists, this will not end well.");
-            e.printStackTrace();
+        if (showingTable) {
+            componentTable.refreshGUI(newStatus);
+        }
+        if (showingGraph) {
+            componentGraph.refreshGUI(newStatus);
         }
+
+        visualizationManager.removeVisualizationsForNoLongerListedComponents(newStatus);
     }
 
     private boolean windowIsShowing(JInternalFrame window) {
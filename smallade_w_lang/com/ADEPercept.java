@@ -13,17 +13,22 @@
 
 package com;
 
+import ade.ADEWire;
 import java.awt.Color;
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.UUID;
 
 /**
  * <code>ADEPercept</code> is a container for the perceptual information
- * typically needed by users.
+ * typically needed by users.  Percept lists are sent at perception rate, so
+ * the class writes its own compact wire format (see {@link ade.ADEWire}).
  */
-public class ADEPercept implements Serializable
+public class ADEPercept implements Externalizable
 {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     /** The object's name */
     public String name;
@@ -59,6 +64,12 @@ public class ADEPercept implements Serializable
     /** Unique ID **/
     public UUID id;
 
+    /**
+     * Empty constructor, required for deserialization.
+     */
+    public ADEPercept() {
+    }
+
     /**
      * Base constructor for ADEPercepts.
      * @param n name
@@ -129,6 +140,53 @@ public class ADEPercept implements Serializable
         open = o;
     }
 
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ADEWire.writeString(out, name);
+        ADEWire.writeString(out, type);
+        ADEWire.writeString(out, color);
+        out.writeBoolean(colorObject != null);
+        if (colorObject != null) {
+            out.writeInt(colorObject.getRGB());
+        }
+        ADEWire.writeString(out, inside);
+        out.writeBoolean(open);
+        out.writeBoolean(filled);
+        out.writeDouble(heading);
+        out.writeDouble(distance);
+        out.writeDouble(sim_x);
+        out.writeDouble(sim_y);
+        out.writeDouble(sim_px);
+        out.writeDouble(sim_py);
+        out.writeDouble(sim_w);
+        out.writeDouble(sim_h);
+        out.writeLong(time);
+        out.writeBoolean(id != null);
+        if (id != null) {
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+        }
+    }
+
+    public void readExternal(ObjectInput in) throws IOException {
+        name = ADEWire.readString(in);
+        type = ADEWire.readString(in);
+        color = ADEWire.readString(in);
+        colorObject = (in.readBoolean() ? new Color(in.readInt(), true) : null);
+        inside = ADEWire.readString(in);
+        open = in.readBoolean();
+        filled = in.readBoolean();
+        heading = in.readDouble();
+        distance = in.readDouble();
+        sim_x = in.readDouble();
+        sim_y = in.readDouble();
+        sim_px = in.readDouble();
+        sim_py = in.readDouble();
+        sim_w = in.readDouble();
+        sim_h = in.readDouble();
+        time = in.readLong();
+        id = (in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null);
+    }
+
     public String toString() {
         StringBuilder s = new StringBuilder("ADEPercept ");
         s.append("name: ");
@@ -1,9 +1,21 @@
 package com;
 
-import java.io.Serializable;
+import ade.ADEWire;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * A laser scan. Scans are sent at sensor rate, so the class writes its own
+ * compact wire format (see {@link ade.ADEWire}) instead of relying on
+ * default serialization.
+ *
+ * @author Jeremiah Via <jeremiah.via@gmail.com>
+ */
+public class LaserScan implements Externalizable {
+    private static final long serialVersionUID = 2L;
 
-/** @author Jeremiah Via <jeremiah.via@gmail.com> */
-public class LaserScan implements Serializable {
     public double angleMin;
     public double angleMax;
     public double angleIncrement;
@@ -15,4 +27,24 @@ public class LaserScan implements Serializable {
         return String.format("Angles: [%f, %f, %f], Ranges: [%f, %f, %s]",
                 angleMin, angleIncrement, angleMax, rangeMin, rangeMax, ranges);
     }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeDouble(angleMin);
+        out.writeDouble(angleMax);
+        out.writeDouble(angleIncrement);
+        out.writeDouble(rangeMin);
+        out.writeDouble(rangeMax);
+        ADEWire.writeDoubles(out, ranges);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        angleMin = in.readDouble();
+        angleMax = in.readDouble();
+        angleIncrement = in.readDouble();
+        rangeMin = in.readDouble();
+        rangeMax = in.readDouble();
+        ranges = ADEWire.readDoubles(in);
+    }
 }
@@ -36,6 +36,19 @@ class ActionBinding implements Cloneable, Serializable {
     public final boolean bLocal;
     /** Return variable? */
     public final boolean bReturn;
+    /** The last numeric conversion of the (deep) value, see getConverted */
+    private transient Conversion conversion;
+
+    /** A value converted to another type, and the value it was made from. */
+    private static final class Conversion {
+        final Object from;
+        final Object value;
+
+        Conversion(Object from, Object value) {
+            this.from = from;
+            this.value = value;
+        }
+    }
 
     /**
      * A new unbound variable
@@ -173,6 +186,31 @@ class ActionBinding implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * Get the conversion of a value last stored with
+     * <code>setConverted</code>, if it was made from that very value.
+     * @param from the (deep) value that was converted
+     * @param type the type of the conversion
+     * @return the converted value, or null if there is none
+     */
+    Object getConverted(Object from, Class<?> type) {
+        Conversion c = conversion;
+        if (c != null && c.from == from && type.isInstance(c.value)) {
+            return c.value;
+        }
+        return null;
+    }
+
+    /**
+     * Keep the conversion of a value next to the binding, which stays
+     * bound to the original value.
+     * @param from the (deep) value that was converted
+     * @param value the converted value
+     */
+    void setConverted(Object from, Object value) {
+        conversion = new Conversion(from, value);
+    }
+
     @Override
     public Object clone() {
         try {
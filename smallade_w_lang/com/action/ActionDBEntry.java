@@ -22,6 +22,9 @@ import org.apache.commons.logging.Log;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.String.format;
 import static utilities.Util.*;
@@ -32,14 +35,84 @@ import static utilities.Util.*;
  */
 public class ActionDBEntry implements Cloneable, Serializable {
     private static Log log = LogFactory.getLog(ActionDBEntry.class);
-    protected static final HashMap<String,ActionDBEntry> actionDB = new HashMap<String,ActionDBEntry>();
+    // Entries are looked up by every interpreter on every cycle, so the maps
+    // below are concurrent and reads take no lock; changes go through
+    // register() and retractFact(), which bump dbVersion
+    protected static final ConcurrentHashMap<String,ActionDBEntry> actionDB = new ConcurrentHashMap<String,ActionDBEntry>();
+    // Interned type names and their ids, for isA(); names are interned in
+    // lower case, and the other spellings they are looked up by are added as
+    // aliases
+    private static final ConcurrentHashMap<String,Integer> typeIds = new ConcurrentHashMap<String,Integer>();
+    private static int typeCount = 0;
+    // ids of types that are checked on every cycle
+    static final int T_PRIMITIVE = typeId("primitive");
+    static final int T_MOTION_PRIMITIVE = typeId("motionPrimitive");
+    static final int T_VISION_PRIMITIVE = typeId("visionPrimitive");
+    static final int T_SPEECH_PROD_PRIMITIVE = typeId("speechProdPrimitive");
+    static final int T_SPEECH_REC_PRIMITIVE = typeId("speechRecPrimitive");
+    static final int T_MISC_PRIMITIVE = typeId("miscPrimitive");
+    static final int T_DOUBLE = typeId("double");
+    static final int T_LONG = typeId("long");
+    static final int T_INTEGER = typeId("integer");
+
+    /**
+     * How the interpreter executes an entry (see getCategory()).
+     */
+    enum Category {
+        MOTION, VISION, SPEECH_PROD, SPEECH_REC, MISC, PRIMITIVE, SCRIPT
+    }
     // function name returns hashmap of name,value pairs
-    protected static HashMap<String,HashMap<String,Object>> functionDB = new HashMap<String,HashMap<String,Object>>();
-    protected static HashMap<String,ArrayList<Pair<Predicate,ActionDBEntry>>> postcondDB = new HashMap<String,ArrayList<Pair<Predicate,ActionDBEntry>>>();
-    private static HashMap<String,Integer> dictionary = new HashMap<String,Integer>();
+    protected static final ConcurrentHashMap<String,ConcurrentHashMap<String,Object>> functionDB = new ConcurrentHashMap<String,ConcurrentHashMap<String,Object>>();
+    // postconditions and the actions that achieve them
+    protected static final PredicateIndex<ActionDBEntry> postcondDB = new PredicateIndex<ActionDBEntry>(false);
+    private static final ConcurrentHashMap<String,AtomicLong> dictionary = new ConcurrentHashMap<String,AtomicLong>();
     protected static ActionDBParser adbp;
-    private static long idCounter = 0;
-    private static int funcIndex = 0; // a "gensym" value for new names
+    private static final AtomicLong idCounter = new AtomicLong();
+    private static final AtomicInteger funcIndex = new AtomicInteger(); // a "gensym" value for new names
+    // incremented whenever an entry is replaced or removed, which makes the
+    // action references resolved by compile() stale
+    static final AtomicInteger dbVersion = new AtomicInteger();
+
+    // Opcodes of script events; anything that is not a control statement is
+    // an OP_ACTION (see compile())
+    static final int OP_ACTION = 0;
+    static final int OP_IF = 1;
+    static final int OP_THEN = 2;
+    static final int OP_ELSE = 3;
+    static final int OP_ELSEIF = 4;
+    static final int OP_ENDIF = 5;
+    static final int OP_WHILE = 6;
+    static final int OP_DO = 7;
+    static final int OP_ENDWHILE = 8;
+    static final int OP_NOT = 9;
+    static final int OP_ENDNOT = 10;
+    static final int OP_WITH = 11;
+    static final int OP_ENDWITH = 12;
+    static final int OP_CHOOSE = 13;
+    static final int OP_ENDCHOOSE = 14;
+    static final int OP_ACHIEVE = 15;
+    static final int OP_AND = 16;
+    static final int OP_OR = 17;
+    static final int OP_RETURN = 18;
+    static final int OP_ENDRETURN = 19;
+    private static final String[] opNames = {null, "if", "then", "else",
+        "elseif", "endif", "while", "do", "endwhile", "not", "endnot", "with",
+        "endwith", "choose", "endchoose", "achieve", "and", "or", "return",
+        "endreturn"};
+    private static final HashMap<String,Integer> opcodes = new HashMap<String,Integer>();
+    // the closing opcode of each block statement, OP_ACTION for the others
+    private static final int[] closers = new int[opNames.length];
+    static {
+        for (int op = 1; op < opNames.length; op++) {
+            opcodes.put(opNames[op], op);
+        }
+        closers[OP_IF] = OP_ENDIF;
+        closers[OP_WHILE] = OP_ENDWHILE;
+        closers[OP_NOT] = OP_ENDNOT;
+        closers[OP_WITH] = OP_ENDWITH;
+        closers[OP_CHOOSE] = OP_ENDCHOOSE;
+        closers[OP_RETURN] = OP_ENDRETURN;
+    }
 
     protected ArrayList<Pair<Predicate, ActionDBEntry>> transferPostconds = new ArrayList<Pair<Predicate, ActionDBEntry>>();
     private HashMap<String,ActionBinding> bindingList = new HashMap<String,ActionBinding>();
@@ -51,6 +124,10 @@ public class ActionDBEntry implements Cloneable, Serializable {
     protected transient ArrayList<PlannerElement> plannerProblem = new ArrayList<PlannerElement>();
 
     protected String type; // External type (for isA, etc.)
+    // ids of this type and all its supertypes, and the resulting category;
+    // computed on first use, and shared by clones
+    private transient BitSet ancestors = null;
+    private transient Category category = null;
     private Object value; // Value stored if fact
     private String description = null; // description...
 
@@ -70,6 +147,13 @@ public class ActionDBEntry implements Cloneable, Serializable {
     private transient boolean status = true;
     // Script events with args
     private ArrayList<ArrayList<String>> eventSpecs = new ArrayList<ArrayList<String>>();
+    // The compiled script: the opcode of each event, the index of the
+    // closing event of each block statement, and the entry of each action
+    // event.  The arrays are never modified once built, so clones share them.
+    private int[] ops = new int[0];
+    private int[] match = null;
+    private transient ActionDBEntry[] refs = null;
+    private transient int refsVersion;
     // conditions that need to hold at the start of the action
     private ArrayList<Predicate> startConditions = new ArrayList<Predicate>();
     // conditions that need to hold throughout the action
@@ -78,16 +162,26 @@ public class ActionDBEntry implements Cloneable, Serializable {
     private ArrayList<Predicate> effects = new ArrayList<Predicate>();
     // effects that are presumed to hold only if this action succeeds
     private ArrayList<Predicate> successEffects = new ArrayList<Predicate>();
+    // whether this action is proscribed, as of the given proscription version
+    private transient int proscribedVersion = -1;
+    private transient boolean proscribed;
     private int pc; // Program counter (0 <= pc <= eventSpecs.size())
     private Stack<Integer> jumppc = new Stack<Integer>();
 
     // arguments field is filled in when the action is invoked
     private HashMap<String,ActionBinding> arguments = new HashMap<String,ActionBinding>();
+    // argument names as given by the interpreter (mostly string literals,
+    // e.g., "?actionID"), mapped to the lower-case keys of arguments, so
+    // looking up an argument doesn't make a new string each time
+    private static final ConcurrentHashMap<String,String> argKeys = new ConcurrentHashMap<String,String>();
+    private static final int MAX_ARG_KEYS = 4096;
     protected ArrayList<ActionBinding> roles = new ArrayList<ActionBinding>();
     //private ArrayList<String> precond = new ArrayList<String>();
     // PWS: original postcond list, need to unify with effects lists?
     //private ArrayList<Predicate> postcond = new ArrayList<Predicate>();
     protected transient ArrayList<ActionResourceLock> resourceLocks;
+    // names of the resourceLocks, to find them again after deserialization
+    private ArrayList<String> lockNames = new ArrayList<String>();
     protected transient ArrayList<ActionResourceLock> heldLocks;
     private transient String lockOwnerDescription;
 
@@ -109,7 +203,7 @@ public class ActionDBEntry implements Cloneable, Serializable {
     public ActionDBEntry(String type, ActionDBEntry supertype) {
         this.type = type;
         superType = supertype;
-        id = idCounter++;
+        id = idCounter.getAndIncrement();
         resourceLocks = new ArrayList<ActionResourceLock>();
         heldLocks = new ArrayList<ActionResourceLock>();
 
@@ -117,9 +211,8 @@ public class ActionDBEntry implements Cloneable, Serializable {
         if (superType == null)
             return;
 
-        synchronized(actionDB) {
-            actionDB.put(type, this);
-        }
+        typeId(type);
+        register(type, this);
         superType.subTypes.add(this);
     }
     /**
@@ -150,18 +243,15 @@ public class ActionDBEntry implements Cloneable, Serializable {
         resourceLocks = new ArrayList<ActionResourceLock>();
         heldLocks = new ArrayList<ActionResourceLock>();
 
-        synchronized(actionDB) {
-            superType = actionDB.get(supertype);
-        }
-        id = idCounter++;
+        superType = lookup(supertype);
+        id = idCounter.getAndIncrement();
 
         // Not sure how to handle this, except not adding it to the DB
         if (superType == null)
             return;
 
-        synchronized(actionDB) {
-            actionDB.put(type, this);
-        }
+        typeId(type);
+        register(type, this);
         superType.subTypes.add(this);
     }
 
@@ -172,11 +262,10 @@ public class ActionDBEntry implements Cloneable, Serializable {
     /*
     public ActionDBEntry(String type) {
         Type = type;
-        id = idCounter++;
+        id = idCounter.getAndIncrement();
 
-        synchronized(actionDB) {
-            actionDB.put(type, this);
-        }
+        typeId(type);
+        register(type, this);
     }
     */
 
@@ -188,15 +277,15 @@ public class ActionDBEntry implements Cloneable, Serializable {
         resourceLocks = new ArrayList<ActionResourceLock>();
         heldLocks = new ArrayList<ActionResourceLock>();
 
-        adbp = new ActionDBParser(dbfilename);
+        adbp = ActionDBParser.forFile(dbfilename);
         this.type = adbp.getRootName();
-        id = idCounter++;
+        id = idCounter.getAndIncrement();
         //System.out.println("Adding " + Type + " (" + DBKind + ")");
 
-        synchronized(actionDB) {
-            actionDB.put(this.type, this);
-        }
+        typeId(this.type);
+        register(this.type, this);
         adbp.ParseNode(this);
+        compileScripts();
         for (String e:adbp.getExecs())
             execs.add(e);
         for (Predicate e:adbp.getGoals())
@@ -222,9 +311,10 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * @param dbfilename the name of the file to be added
      */
     protected void mergeDB(String dbfilename, boolean printAPI) {
-        ActionDBParser newadbp = new ActionDBParser(dbfilename);
+        ActionDBParser newadbp = ActionDBParser.forFile(dbfilename);
 
         newadbp.ParseNode(this);
+        compileScripts();
         for (String e:newadbp.getExecs())
             execs.add(e);
         for (Predicate e:newadbp.getGoals())
@@ -251,12 +341,64 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * @return the requested entry, if found, null otherwise
      */
     public static ActionDBEntry lookup(String type) {
-        ActionDBEntry value = null;
-        synchronized(actionDB) {
-            value = actionDB.get(type);
+        // the DB map does not take null keys
+        if (type == null)
+            return null;
+        return actionDB.get(type);
+    }
+
+    /**
+     * Add an entry to the DB, replacing any entry of the same type.
+     * @param type the type of the entry
+     * @param entry the entry
+     */
+    static void register(String type, ActionDBEntry entry) {
+        if (actionDB.put(type, entry) != null)
+            dbVersion.incrementAndGet();
+    }
+
+    /**
+     * Add the entries of a deserialized DB (see ActionDBSnapshot) to the
+     * DB.
+     * @param entries the entries, by type
+     */
+    static void registerAll(Map<String,ActionDBEntry> entries) {
+        long maxId = -1;
+        for (Map.Entry<String,ActionDBEntry> e : entries.entrySet()) {
+            ActionDBEntry entry = e.getValue();
+            typeId(entry.type);
+            register(e.getKey(), entry);
+            maxId = Math.max(maxId, entry.id);
+        }
+        // new entries must not reuse the restored ids
+        while (true) {
+            long next = idCounter.get();
+            if (next > maxId || idCounter.compareAndSet(next, maxId + 1))
+                break;
         }
+    }
 
-        return value;
+    /**
+     * Reset the transient fields, which are not sent along when an entry is
+     * serialized (e.g., to another goal manager or to a DB snapshot).
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        eventStatus = true;
+        status = true;
+        proscribedVersion = -1;
+        plannerDomain = new ArrayList<PlannerElement>();
+        plannerProblem = new ArrayList<PlannerElement>();
+        heldLocks = new ArrayList<ActionResourceLock>();
+        resourceLocks = new ArrayList<ActionResourceLock>();
+        if (lockNames == null) {
+            lockNames = new ArrayList<String>();
+        }
+        for (String lockName : lockNames) {
+            ActionResourceLock lock = GoalManagerImpl.getLock(lockName);
+            if (lock != null)
+                resourceLocks.add(lock);
+        }
     }
 
     /**
@@ -267,7 +409,7 @@ public class ActionDBEntry implements Cloneable, Serializable {
     protected static boolean checkforPost(Predicate cond) {
         boolean post = false;
         String pname = cond.getName();
-        ArrayList<Pair<Predicate,ActionDBEntry>> map = postcondDB.get(pname);
+        List<Pair<Predicate,ActionDBEntry>> map = postcondDB.candidates(cond);
 
         if (map != null) {
             //log.debug("found "+map.size()+" entries for "+pname+" in postcondDB");
@@ -293,7 +435,7 @@ public class ActionDBEntry implements Cloneable, Serializable {
     @ActionCodeNote("lookup post needs to be updated when new postconds are implemented")
     protected static ActionDBEntry lookupPost(Predicate cond) {
         String pname = cond.getName();
-        ArrayList<Pair<Predicate,ActionDBEntry>> map = postcondDB.get(pname);
+        List<Pair<Predicate,ActionDBEntry>> map = postcondDB.candidates(cond);
         ActionDBEntry entry = null;
         ActionDBEntry tmpentry;
         double utility = -Double.MAX_VALUE;
@@ -304,21 +446,10 @@ public class ActionDBEntry implements Cloneable, Serializable {
             //log.debug("entries: "+map);
             // at least one predicate with that name exists, check them
             for (Pair<Predicate,ActionDBEntry> e:map) {
-                boolean badState = false;
                 if (predicateMatch(cond, e.car())) {
                     tmpentry = e.cdr();
                     // check for badaction/badstate
-                    if (GoalManagerImpl.badAction(tmpentry)) {
-                        continue;
-                    }
-                    ArrayList<Predicate> postconds = tmpentry.getPostconds();
-                    for (Predicate post : postconds) {
-                        if (GoalManagerImpl.badState(post)) {
-                            badState = true;
-                            break;
-                        }
-                    }
-                    if (badState) {
+                    if (tmpentry.isProscribed()) {
                         continue;
                     }
                     tmputility = tmpentry.getBenefit() - tmpentry.getCost();
@@ -402,15 +533,15 @@ public class ActionDBEntry implements Cloneable, Serializable {
         String testtype; // test type
         String temptype; // template type
         ActionDBEntry testentry; // test db entry
-        ActionDBEntry tempentry; // template db entry
 
         //System.out.println("matching "+test+" and "+template);
         testtype = test.getType();
         temptype = template.getType();
-        // get the db entry for these types
+        // get the db entry for the test type; the template type need not be
+        // looked up, as isA() fails for a type that is not in the DB just
+        // like the string comparison would
         testentry = lookup(testtype);
-        tempentry = lookup(temptype);
-        if (testentry == null || tempentry == null) {
+        if (testentry == null) {
             // unknown type specified, fall back on string comparison
             if (! testtype.equals(temptype)) {
                 return false;
@@ -434,11 +565,13 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * @param v the value mapped to n(a)
      */
     protected void addFunction(String n, String a, String v) {
-        HashMap<String,Object> funcvals = functionDB.get(n.toLowerCase());
+        ConcurrentHashMap<String,Object> funcvals = functionDB.get(n.toLowerCase());
         if (funcvals == null) {
             //System.out.println("No mapping found for " + n);
-            funcvals = new HashMap<String,Object>();
-            functionDB.put(n, funcvals);
+            funcvals = new ConcurrentHashMap<String,Object>();
+            ConcurrentHashMap<String,Object> prev = functionDB.putIfAbsent(n.toLowerCase(), funcvals);
+            if (prev != null)
+                funcvals = prev;
         }
         funcvals.put(a.toLowerCase(), v.toLowerCase());
     }
@@ -455,10 +588,10 @@ public class ActionDBEntry implements Cloneable, Serializable {
         String arg = "";
         String fn = func.getName();
         ArrayList<Symbol> args = func.getArgs();
-        HashMap<String,Object> funcvals = functionDB.get(fn.toLowerCase());
+        ConcurrentHashMap<String,Object> funcvals = functionDB.get(fn.toLowerCase());
         if (funcvals == null) {
             log.warn("No mapping found for " + fn);
-            return (fn + (funcIndex++));
+            return (fn + funcIndex.getAndIncrement());
         }
         // This is a little stupid (for now): instead of dealing with
         // variable numbers of args, I construct a single string with all
@@ -474,7 +607,7 @@ public class ActionDBEntry implements Cloneable, Serializable {
         Object value = funcvals.get(arg.toLowerCase());
         if (value == null) {
             log.warn("No mapping found for " + fn + " " + arg);
-            return (fn + (funcIndex++));
+            return (fn + funcIndex.getAndIncrement());
         }
         return value;
     }
@@ -499,15 +632,15 @@ public class ActionDBEntry implements Cloneable, Serializable {
             // The variable at pos is bound to the variable "name" in the
             // caller's context (if available)
             //newBinding = caller.arguments.get(spec.substring(1).toLowerCase());
-            newBinding = caller.arguments.get(spec.toLowerCase());
+            newBinding = caller.arguments.get(argKey(spec));
             if (newBinding != null) {
                 value = newBinding.getBinding();
             } else if (tmp.isA("number")) {
-                if (tmp.isA("long")) {
+                if (tmp.isA(T_LONG)) {
                     value = new Long(0);
-                } else if (tmp.isA("integer")) {
+                } else if (tmp.isA(T_INTEGER)) {
                     value = new Integer(0);
-                } else if (tmp.isA("double")) {
+                } else if (tmp.isA(T_DOUBLE)) {
                     value = new Double(0.0);
                 }
             } else {
@@ -517,11 +650,11 @@ public class ActionDBEntry implements Cloneable, Serializable {
             }
         } else if (spec.charAt(0) == '!') { // the old way, leaving for now
             if (tmp.isA("number")) {
-                if (tmp.isA("long")) {
+                if (tmp.isA(T_LONG)) {
                     value = new Long(0);
-                } else if (tmp.isA("integer")) {
+                } else if (tmp.isA(T_INTEGER)) {
                     value = new Integer(0);
-                } else if (tmp.isA("double")) {
+                } else if (tmp.isA(T_DOUBLE)) {
                     value = new Double(0.0);
                 }
             } else {
@@ -534,11 +667,11 @@ public class ActionDBEntry implements Cloneable, Serializable {
                 // leaving the problem, error messages later on will be informative
             }
             try {
-                if (tmp.isA("long")) {
+                if (tmp.isA(T_LONG)) {
                     value = new Long(spec);
-                } else if (tmp.isA("integer")) {
+                } else if (tmp.isA(T_INTEGER)) {
                     value = new Integer(spec);
-                } else if (tmp.isA("double")) {
+                } else if (tmp.isA(T_DOUBLE)) {
                     value = new Double(spec);
                 } else {
                     //System.out.println("Found generic number, creating Double");
@@ -595,7 +728,7 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * @param val the value to which the argument should be bound
      */
     protected void setArgument(String bname, Object val) {
-        ActionBinding target = arguments.get(bname.toLowerCase());
+        ActionBinding target = arguments.get(argKey(bname));
         String type;
         ActionDBEntry typeEntry;
 
@@ -608,19 +741,19 @@ public class ActionDBEntry implements Cloneable, Serializable {
             type = target.getBindingTypeDeep();
             //System.out.println("!! setArgument got target of type: " + target.bType + ", " );
             typeEntry = lookup(type);
-            if (typeEntry.isA("double")) {
+            if (typeEntry.isA(T_DOUBLE)) {
                 if (Double.class.isInstance(val))
                     target.bindDeep(val);
                 else
                     target.bindDeep(new Double(val.toString()));
-            } else if (typeEntry.isA("long")) {
+            } else if (typeEntry.isA(T_LONG)) {
                 if (Double.class.isInstance(val))
                     target.bindDeep(new Long(((Double)val).longValue()));
                 else if (Long.class.isInstance(val))
                     target.bindDeep(val);
                 else
                     target.bindDeep(new Long(val.toString()));
-            } else if (typeEntry.isA("integer")) {
+            } else if (typeEntry.isA(T_INTEGER)) {
                 if (Double.class.isInstance(val))
                     target.bindDeep(new Integer(((Double)val).intValue()));
                 else
@@ -633,6 +766,22 @@ public class ActionDBEntry implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * Get the key under which an argument is stored.
+     * @param name the argument's name (case is ignored)
+     * @return the lower-case name
+     */
+    private static String argKey(String name) {
+        String key = argKeys.get(name);
+        if (key == null) {
+            key = name.toLowerCase();
+            // names made up at run time are not kept
+            if (argKeys.size() < MAX_ARG_KEYS)
+                argKeys.putIfAbsent(name, key);
+        }
+        return key;
+    }
+
     /**
      * Inherit the argument list of the calling entity
      */
@@ -645,7 +794,10 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * Retrieve the (deep) value of an argument
      * @param bname the argument's name
      * @return the deep binding associated with that name in the current
-     * context
+     * context.  A numeric argument bound to a value of another type (e.g., a
+     * string from the caller) is converted; the conversion is kept next to
+     * the binding, which is left as it is, so later reads don't parse it
+     * again.
      */
     protected Object getArgument(String bname) {
         ActionBinding target;
@@ -653,22 +805,41 @@ public class ActionDBEntry implements Cloneable, Serializable {
         String type;
         ActionDBEntry typeEntry;
 
-        target = arguments.get(bname.toLowerCase());
+        target = arguments.get(argKey(bname));
         if (target == null) {
             return null;
         }
         value = target.getBindingDeep();
         type  = target.getBindingTypeDeep();
         typeEntry = lookup(type);
-        if (typeEntry.isA("double")) {
-            if (! Double.class.isInstance(value))
-                return new Double(value.toString());
-        } else if (typeEntry.isA("long")) {
-            if (! Long.class.isInstance(value))
-                return new Long(value.toString());
-        } else if (typeEntry.isA("integer")) {
-            if (! Integer.class.isInstance(value))
-                return new Integer(value.toString());
+        Object converted;
+        if (typeEntry.isA(T_DOUBLE)) {
+            if (! Double.class.isInstance(value)) {
+                converted = target.getConverted(value, Double.class);
+                if (converted == null) {
+                    converted = Double.valueOf(value.toString());
+                    target.setConverted(value, converted);
+                }
+                return converted;
+            }
+        } else if (typeEntry.isA(T_LONG)) {
+            if (! Long.class.isInstance(value)) {
+                converted = target.getConverted(value, Long.class);
+                if (converted == null) {
+                    converted = Long.valueOf(value.toString());
+                    target.setConverted(value, converted);
+                }
+                return converted;
+            }
+        } else if (typeEntry.isA(T_INTEGER)) {
+            if (! Integer.class.isInstance(value)) {
+                converted = target.getConverted(value, Integer.class);
+                if (converted == null) {
+                    converted = Integer.valueOf(value.toString());
+                    target.setConverted(value, converted);
+                }
+                return converted;
+            }
         }
         return value;
     }
@@ -682,7 +853,7 @@ public class ActionDBEntry implements Cloneable, Serializable {
         ActionBinding target;
         String value;
 
-        target = arguments.get(sname.toLowerCase());
+        target = arguments.get(argKey(sname));
         if (target == null) {
             return null;
         }
@@ -933,17 +1104,11 @@ public class ActionDBEntry implements Cloneable, Serializable {
     protected static void addTransferredPostcondToDB(Pair<Predicate,ActionDBEntry> p){
         String pname = p.car().getName();
         log.info("Adding transferred postcond to DB: "+ pname);
-        ArrayList<Pair<Predicate,ActionDBEntry>> map = postcondDB.get(pname);
-
-        if (map == null) {
+        if (postcondDB.candidates(p.car()) == null) {
             log.debug("never seen this effect before");
-            // this effect hasn't been seen before, add it so this action
-            // can be looked up by postcondition
-            map = new ArrayList<Pair<Predicate,ActionDBEntry>>();
-            postcondDB.put(pname, map);
         }
         log.debug("adding to map");
-        map.add(p);
+        postcondDB.add(p);
     }
 
     /**
@@ -953,36 +1118,21 @@ public class ActionDBEntry implements Cloneable, Serializable {
     protected void addPostcondToDB(Predicate post, boolean override) {
         String pname = post.getName();
 
-        ArrayList<Pair<Predicate,ActionDBEntry>> map = postcondDB.get(pname);
-
-        if (map == null) {
+        if (postcondDB.candidates(post) == null) {
             // this effect hasn't been seen before, add it so this action
             // can be looked up by postcondition
-            map = new ArrayList<Pair<Predicate,ActionDBEntry>>();
             log.debug("putting postcond into DB: "+pname);
-            postcondDB.put(pname, map);
         } else {
             if (! checkforPost(post)) {
                 if (override) {
                     // override the existing actions with this effect
-                    ArrayList<Integer> rem = new ArrayList<Integer>();
-                    // get indices for all matching pairs
-                    for (int i = 0; i < map.size(); i++) {
-                        if (predicateMatch(post, map.get(i).car())) {
-                            rem.add(i);
-                        }
-                    }
-                    // step backward through list of matches and remove them
-                    for (int i = rem.size(); i > 0; i--) {
-                        int p = rem.get(i-1);
-                        map.remove(p);
-                    }
+                    postcondDB.removeMatching(post);
                 } else {
                     log.warn("Duplicate postcondition, not adding "+post);
                 }
             }
         }
-        map.add(new Pair<Predicate,ActionDBEntry>(post, this));
+        postcondDB.add(post, this);
 
     }
 
@@ -1009,6 +1159,7 @@ public class ActionDBEntry implements Cloneable, Serializable {
     protected void addEffect(Predicate post) {
         log.debug("addEffect adbe ID: "+id);
         effects.add(post);
+        proscribedVersion = -1;
     }
 
     /**
@@ -1017,6 +1168,30 @@ public class ActionDBEntry implements Cloneable, Serializable {
      */
     protected void addSuccessEffect(Predicate post) {
         successEffects.add(post);
+        proscribedVersion = -1;
+    }
+
+    /**
+     * Check whether the action is forbidden, or leads to a forbidden state.
+     * The result is cached until the proscriptions change.
+     * @return true if the action is proscribed
+     */
+    protected boolean isProscribed() {
+        int version = GoalManagerImpl.getProscriptionVersion();
+        if (proscribedVersion != version) {
+            boolean bad = GoalManagerImpl.badAction(this);
+            if (!bad) {
+                for (Predicate post : getPostconds()) {
+                    if (GoalManagerImpl.badState(post)) {
+                        bad = true;
+                        break;
+                    }
+                }
+            }
+            proscribed = bad;
+            proscribedVersion = version;
+        }
+        return proscribed;
     }
 
     /**
@@ -1239,9 +1414,10 @@ public class ActionDBEntry implements Cloneable, Serializable {
         while (lockTok.hasMoreTokens()) {
             lockName = lockTok.nextToken();
             lock = GoalManagerImpl.getLock(lockName);
-            if (lock != null)
+            if (lock != null) {
                 resourceLocks.add(lock);
-            else
+                lockNames.add(lockName);
+            } else
                 log.warn("Unrecognized resource lock: " + lockName);
         }
     }
@@ -1423,11 +1599,24 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * @param eSpec the event to be executed
      */
     protected ActionDBEntry addEvent(ArrayList<String> eSpec) {
+        return addEvent(eSpec, null);
+    }
+
+    /**
+     * Add a new event to a script
+     * @param eSpec the event specification
+     * @param proto the DB entry of the event, if already known (e.g., from
+     * {@link #getEventRef}); looked up by name if null
+     * @return the new event
+     */
+    protected ActionDBEntry addEvent(ArrayList<String> eSpec, ActionDBEntry proto) {
         // if(eSpec.get(0).equals("getWirelessStatus"))
         //     System.out.println("adding event: "+eSpec);
-        log.trace(format("[addEvent] Adding event according to specification: %s", eSpec));
-        String command = eSpec.get(0).toLowerCase(), bname;
-        ActionDBEntry newEvent = ActionDBEntry.lookup(command);
+        if (log.isTraceEnabled())
+            log.trace(format("[addEvent] Adding event according to specification: %s", eSpec));
+        ActionDBEntry newEvent = proto;
+        if (newEvent == null)
+            newEvent = ActionDBEntry.lookup(eSpec.get(0).toLowerCase());
 
         if (newEvent == null) {
             log.error("[addEvent] Error adding task " + eSpec.get(0));
@@ -1488,7 +1677,23 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * and its parameters)
      */
     protected void addEventSpec(ArrayList<String> eventSpec) {
+        addEventSpec(eventSpec, opcode(eventSpec.get(0)));
+    }
+
+    /**
+     * Add a new script event specification whose opcode is already known
+     * (e.g., when copying events from another script)
+     * @param eventSpec the event to be added to the (ordered) eventSpecs list
+     * @param op the opcode of the event
+     */
+    protected void addEventSpec(ArrayList<String> eventSpec, int op) {
+        int n = eventSpecs.size();
+        int[] newOps = Arrays.copyOf(ops, n + 1);
+        newOps[n] = op;
         eventSpecs.add(eventSpec);
+        ops = newOps;
+        match = null;
+        refs = null;
     }
 
     /**
@@ -1532,7 +1737,101 @@ public class ActionDBEntry implements Cloneable, Serializable {
             }
             newEventSpec.add(token);
         }
-        eventSpecs.add(newEventSpec);
+        addEventSpec(newEventSpec);
+    }
+
+    /**
+     * Get the opcode of a script event
+     * @param name the first token of the event specification
+     * @return the opcode of a control statement, or OP_ACTION
+     */
+    static int opcode(String name) {
+        Integer op = opcodes.get(name);
+        return (op == null) ? OP_ACTION : op;
+    }
+
+    /**
+     * Get the bit of an opcode in a set of opcodes (see
+     * {@link #getEventSpec(int, int, int)})
+     * @param op the opcode
+     * @return the bit
+     */
+    static int opBit(int op) {
+        return 1 << op;
+    }
+
+    /**
+     * Compile the script, so that the interpreter does not have to scan and
+     * look up events by name: find the closing event of each block
+     * statement, and look up the DB entry of each action event whose name is
+     * not a variable.
+     */
+    protected void compile() {
+        int n = eventSpecs.size();
+        int[] m = new int[n];
+        ActionDBEntry[] r = new ActionDBEntry[n];
+        int version = dbVersion.get();
+        for (int i = 0; i < n; i++) {
+            int op = ops[i];
+            if (op == OP_ACTION) {
+                String name = eventSpecs.get(i).get(0);
+                if (name.charAt(0) != '?' && name.charAt(0) != '!')
+                    r[i] = lookup(name.toLowerCase());
+                continue;
+            }
+            int closer = closers[op];
+            if (closer == OP_ACTION)
+                continue;
+            // blocks of the same kind nest; an unclosed block runs to the end
+            int depth = 0, j;
+            for (j = i + 1; j < n; j++) {
+                if (ops[j] == op) {
+                    depth++;
+                } else if (ops[j] == closer) {
+                    if (depth == 0)
+                        break;
+                    depth--;
+                }
+            }
+            m[i] = Math.min(j, n - 1);
+        }
+        match = m;
+        refs = r;
+        refsVersion = version;
+    }
+
+    /**
+     * Compile all scripts in the DB (see {@link #compile}).
+     */
+    static void compileScripts() {
+        for (ActionDBEntry e : actionDB.values()) {
+            if (!e.eventSpecs.isEmpty())
+                e.compile();
+        }
+    }
+
+    /**
+     * Get the opcode of the event last returned by getEventSpec.
+     * @return the opcode
+     */
+    protected int getEventOp() {
+        return ops[pc - 1];
+    }
+
+    /**
+     * Get the DB entry of the event last returned by getEventSpec, as
+     * resolved when the script was compiled.
+     * @return the entry, or null if it has to be looked up by name (e.g.,
+     * because the name is bound at runtime, or the DB has changed since)
+     */
+    protected ActionDBEntry getEventRef() {
+        if (refs == null || refsVersion != dbVersion.get()) {
+            compile();
+        }
+        ActionDBEntry ref = refs[pc - 1];
+        if (ref != null && !ref.type.equalsIgnoreCase(eventSpecs.get(pc - 1).get(0)))
+            return null;
+        return ref;
     }
 
     /**
@@ -1574,6 +1873,49 @@ public class ActionDBEntry implements Cloneable, Serializable {
         return null;
     }
 
+    /**
+     * Get the next script event specification from a script whose opcode is
+     * in a set, skipping nested blocks
+     * @param opSet the opcodes to search for (an or of opBit()s)
+     * @param start the opcode of a block statement (e.g., OP_IF)
+     * @param end the closing opcode of the block (e.g., OP_ENDIF); blocks
+     * are matched as compiled, so this must be the closer of start
+     * @return the spec of the next event, or null if there is none
+     */
+    protected ArrayList<String> getEventSpec(int opSet, int start, int end) {
+        if (match == null) {
+            compile();
+        }
+        int n = eventSpecs.size();
+        while (pc < n) {
+            int i = pc++;
+            if (ops[i] == start) {
+                // skip to the end of the nested block
+                pc = match[i] + 1;
+            } else if ((opSet & opBit(ops[i])) != 0) {
+                return eventSpecs.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the next script event specification from a script whose opcode is
+     * in a set
+     * @param opSet the opcodes to search for (an or of opBit()s)
+     * @return the spec of the next event, or null if there is none
+     */
+    protected ArrayList<String> getEventSpec(int opSet) {
+        int n = eventSpecs.size();
+        while (pc < n) {
+            int i = pc++;
+            if ((opSet & opBit(ops[i])) != 0) {
+                return eventSpecs.get(i);
+            }
+        }
+        return null;
+    }
+
     /**
      * Get the next script event specification from a script that matches
      * @param enames a list of event names to search for (e.g., for else,
@@ -1709,9 +2051,8 @@ public class ActionDBEntry implements Cloneable, Serializable {
         }
         if (fact.isA("fact")) {
             //System.out.println("Removing fact: " + fname);
-            synchronized(actionDB) {
-                actionDB.remove(fname);
-            }
+            // facts are never script events, so compiled scripts stay valid
+            actionDB.remove(fname);
         }
         return true;
     }
@@ -1722,12 +2063,100 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * @return true if it is, false if it isn't
      */
     protected boolean isA(String type) {
-        if (this.type.equalsIgnoreCase(type))
-            return(true);
-        else if (superType != null)
-            return(superType.isA(type));
-        else
-            return(false);
+        BitSet a = ancestors();
+        if (type == null)
+            return false;
+        int tid = findTypeId(type);
+        return (tid >= 0) && a.get(tid);
+    }
+
+    /**
+     * Check whether this can be categorized as an interned type
+     * @param tid the id of the type (see typeId())
+     * @return true if it is, false if it isn't
+     */
+    protected boolean isA(int tid) {
+        return ancestors().get(tid);
+    }
+
+    /**
+     * Get the ids of this type and all its supertypes.
+     * @return the ids
+     */
+    private BitSet ancestors() {
+        BitSet a = ancestors;
+        if (a == null) {
+            a = new BitSet();
+            for (ActionDBEntry e = this; e != null; e = e.superType)
+                a.set(typeId(e.type));
+            ancestors = a;
+        }
+        return a;
+    }
+
+    /**
+     * Get the category of the entry, i.e., which kind of primitive it is,
+     * if any.
+     * @return the category
+     */
+    Category getCategory() {
+        Category c = category;
+        if (c == null) {
+            if (isA(T_MOTION_PRIMITIVE))
+                c = Category.MOTION;
+            else if (isA(T_VISION_PRIMITIVE))
+                c = Category.VISION;
+            else if (isA(T_SPEECH_PROD_PRIMITIVE))
+                c = Category.SPEECH_PROD;
+            else if (isA(T_SPEECH_REC_PRIMITIVE))
+                c = Category.SPEECH_REC;
+            else if (isA(T_MISC_PRIMITIVE))
+                c = Category.MISC;
+            else if (!isA(T_PRIMITIVE))
+                c = Category.SCRIPT;
+            else
+                c = Category.PRIMITIVE;
+            category = c;
+        }
+        return c;
+    }
+
+    /**
+     * Intern a type name.
+     * @param name the name (case is ignored)
+     * @return the id of the type
+     */
+    static int typeId(String name) {
+        Integer tid = typeIds.get(name);
+        if (tid == null) {
+            String lc = name.toLowerCase();
+            synchronized(typeIds) {
+                tid = typeIds.get(lc);
+                if (tid == null) {
+                    tid = typeCount++;
+                    typeIds.put(lc, tid);
+                }
+            }
+            if (!lc.equals(name))
+                typeIds.putIfAbsent(name, tid);
+        }
+        return tid;
+    }
+
+    /**
+     * Get the id of a type name without interning it.
+     * @param name the name (case is ignored)
+     * @return the id, or -1 if no entry has (had) that type
+     */
+    private static int findTypeId(String name) {
+        Integer tid = typeIds.get(name);
+        if (tid == null) {
+            tid = typeIds.get(name.toLowerCase());
+            if (tid == null)
+                return -1;
+            typeIds.putIfAbsent(name, tid);
+        }
+        return tid;
     }
 
     /**
@@ -2012,20 +2441,18 @@ public class ActionDBEntry implements Cloneable, Serializable {
      * @return the newly generated symbol
      */
     protected static String genSym(String prefix) {
-        Integer index = dictionary.remove(prefix);
-        String newSym;
-
+        AtomicLong index = dictionary.get(prefix);
         if (index == null) {
-            index = new Integer(0);
+            AtomicLong prev = dictionary.putIfAbsent(prefix, index = new AtomicLong());
+            if (prev != null)
+                index = prev;
         }
-        newSym = prefix + (index.intValue() + 1);
-        dictionary.put(prefix, new Integer(index.intValue() + 1));
-        return newSym;
+        return prefix + index.incrementAndGet();
     }
 
     protected Predicate getPredDesc() {
         Predicate desc;
-        ArrayList<Symbol> args = new ArrayList<Symbol>();
+        ArrayList<Symbol> args = new ArrayList<Symbol>(roles.size());
         for (ActionBinding b:roles) {
             String bname = b.bName;
             String btype = b.getBindingTypeDeep();
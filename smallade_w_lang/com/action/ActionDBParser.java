@@ -31,6 +31,8 @@ import java.io.*;
 import java.security.*;
 import java.security.spec.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.w3c.dom.*;
 
@@ -69,6 +71,8 @@ final class ActionDBParser{
     private static HashMap<String,Variable> varmap = new HashMap<String,Variable>();
     private static HashMap<String,Constant> constmap = new HashMap<String,Constant>();
     private long nodeTransferID;
+    // parsers of files being read ahead by preload(), by file name
+    private static final ConcurrentHashMap<String,Future<ActionDBParser>> pending = new ConcurrentHashMap<String,Future<ActionDBParser>>();
 
     /**
      * Create a new parser and parse the file.  This is primarily for the use
@@ -94,7 +98,7 @@ final class ActionDBParser{
 
         String oldfile = filename;
         boolean parsed;
-        if (filename.indexOf(".xml") > 0)
+        if (!isCrypt(filename))
             parsed = parsePlain(filename);
         else
             parsed = parseCrypt(filename);
@@ -104,6 +108,112 @@ final class ActionDBParser{
             System.err.println("---Didn't find " + oldfile);
     }
 
+    /**
+     * Start reading several database files at once, each in its own thread.
+     * Only the XML is read; entries are still created, in order, by
+     * <code>ParseNode</code>, since later files may refer to (or override)
+     * entries of earlier ones.  The parsers are picked up by
+     * <code>forFile</code>.
+     * @param filenames the database files to be parsed
+     */
+    static void preload(List<String> filenames) {
+        int threads = Math.min(filenames.size(), Runtime.getRuntime().availableProcessors());
+        if (threads < 1) {
+            return;
+        }
+        final AtomicInteger count = new AtomicInteger();
+        ExecutorService readers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ActionDBParser-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (final String filename : filenames) {
+            if (pending.containsKey(filename)) {
+                continue;
+            }
+            pending.put(filename, readers.submit(new Callable<ActionDBParser>() {
+                @Override
+                public ActionDBParser call() {
+                    return new ActionDBParser(filename);
+                }
+            }));
+        }
+        readers.shutdown();
+    }
+
+    /**
+     * Get a parser for the database file, waiting for it if the file is
+     * being read by <code>preload</code>.
+     * @param filename the database file to be parsed
+     * @return the parser
+     */
+    static ActionDBParser forFile(String filename) {
+        Future<ActionDBParser> f = pending.remove(filename);
+        if (f != null) {
+            try {
+                return f.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ee) {
+                log.error("Error reading " + filename, ee.getCause());
+            }
+        }
+        return new ActionDBParser(filename);
+    }
+
+    /**
+     * Open a database file, looking for it on the classpath (with leading
+     * directories removed one at a time) if it is not found in the file
+     * system.  This is the same search the parse methods do.
+     * @param filename the database file
+     * @return the (undecrypted) contents, or null if not found
+     */
+    static InputStream open(String filename) throws IOException {
+        File file = new File(filename);
+        if (file.exists()) {
+            return new FileInputStream(file);
+        }
+        InputStream is;
+        String newfile;
+        while ((is = ActionDBParser.class.getResourceAsStream(filename)) == null) {
+            newfile = filename;
+            filename = filename.substring(filename.indexOf('/') + 1);
+            if (filename.equals(newfile)) {
+                return null;
+            }
+        }
+        return is;
+    }
+
+    /**
+     * Check whether a database file is encrypted (i.e., not XML).
+     * @param filename the database file
+     * @return true if encrypted
+     */
+    static boolean isCrypt(String filename) {
+        return filename.indexOf(".xml") <= 0;
+    }
+
+    /**
+     * Get the constants known to the parser.  These are shared by all the
+     * files parsed, so they are saved with a DB snapshot.
+     * @return a copy of the constants, by name
+     */
+    static HashMap<String,Constant> getConstants() {
+        return new HashMap<String,Constant>(constmap);
+    }
+
+    /**
+     * Add to the constants known to the parser (e.g., from a DB snapshot).
+     * @param constants the constants, by name
+     */
+    static void addConstants(Map<String,Constant> constants) {
+        constmap.putAll(constants);
+    }
+
     public boolean parsePlain(String filename) {
         File file = new File(filename);
         InputStream is = null;
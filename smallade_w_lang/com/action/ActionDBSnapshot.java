@@ -0,0 +1,199 @@
+/**
+ * ADE 1.0
+ * Copyright 1997-2012 HRILab (http://hrilab.org/)
+ *
+ * All rights reserved.  Do not copy and use without permission.
+ * For questions contact Matthias Scheutz at mscheutz@cs.tufts.edu
+ *
+ * ActionDBSnapshot.java
+ */
+
+package com.action;
+
+import com.*;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>ActionDBSnapshot</code> is the action database as loaded from a set
+ * of DB files, saved in binary form together with the SHA-256 digests of the
+ * files.  When the goal manager is restarted with the same files, unchanged,
+ * the DB is read from the snapshot instead of parsing the XML again.
+ * Snapshots are never made of encrypted DB files, since they would hold the
+ * contents in the clear.
+ */
+final class ActionDBSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static Log log = LogFactory.getLog(ActionDBSnapshot.class);
+
+    private final ArrayList<String> files;
+    private final ArrayList<String> digests;
+    private final ActionDBEntry root;
+    private final HashMap<String,ActionDBEntry> entries;
+    private final HashMap<String,ConcurrentHashMap<String,Object>> functions;
+    private final List<Pair<Predicate,ActionDBEntry>> postconds;
+    private final ArrayList<PlannerElement> plannerDomain;
+    private final ArrayList<PlannerElement> plannerProblem;
+    private final HashMap<String,Constant> constants;
+
+    private ActionDBSnapshot(List<String> files, ArrayList<String> digests, ActionDBEntry root) {
+        this.files = new ArrayList<String>(files);
+        this.digests = digests;
+        this.root = root;
+        entries = new HashMap<String,ActionDBEntry>(ActionDBEntry.actionDB);
+        functions = new HashMap<String,ConcurrentHashMap<String,Object>>(ActionDBEntry.functionDB);
+        postconds = ActionDBEntry.postcondDB.entries();
+        plannerDomain = new ArrayList<PlannerElement>(root.getPlannerDomainElements());
+        plannerProblem = new ArrayList<PlannerElement>(root.getPlannerProblemElements());
+        constants = ActionDBParser.getConstants();
+    }
+
+    /**
+     * Get the digests of the DB files.
+     * @param files the DB files
+     * @return the digests (as hex strings), or null if a file cannot be read
+     * or is encrypted
+     */
+    private static ArrayList<String> digest(List<String> files) {
+        ArrayList<String> digests = new ArrayList<String>(files.size());
+        byte[] buf = new byte[8192];
+        for (String f : files) {
+            if (ActionDBParser.isCrypt(f)) {
+                return null;
+            }
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException nsae) {
+                log.error("Cannot check DB snapshot: " + nsae);
+                return null;
+            }
+            InputStream is = null;
+            try {
+                is = ActionDBParser.open(f);
+                if (is == null) {
+                    return null;
+                }
+                DigestInputStream in = new DigestInputStream(new BufferedInputStream(is), md);
+                while (in.read(buf) >= 0) {
+                }
+            } catch (IOException ioe) {
+                log.warn("Cannot read " + f + ": " + ioe);
+                return null;
+            } finally {
+                if (is != null) {
+                    try {
+                        is.close();
+                    } catch (IOException ioe) {
+                    }
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            digests.add(sb.toString());
+        }
+        return digests;
+    }
+
+    /**
+     * Load the DB from a snapshot, if there is one for the files as they are
+     * now.
+     * @param snapshot the snapshot file
+     * @param files the DB files, in the order they are loaded
+     * @return the root of the DB, or null if the snapshot is missing or
+     * stale (the DB is unchanged)
+     */
+    static ActionDBEntry load(String snapshot, List<String> files) {
+        File sf = new File(snapshot);
+        if (!sf.exists()) {
+            return null;
+        }
+        ArrayList<String> digests = digest(files);
+        if (digests == null) {
+            return null;
+        }
+        ActionDBSnapshot s;
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(sf)));
+            s = (ActionDBSnapshot)in.readObject();
+        } catch (Exception e) {
+            // including snapshots written by other versions of the classes
+            log.info("Ignoring DB snapshot " + snapshot + ": " + e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                }
+            }
+        }
+        if (!s.files.equals(files) || !s.digests.equals(digests)) {
+            log.info("DB snapshot " + snapshot + " is out of date");
+            return null;
+        }
+        ActionDBEntry.registerAll(s.entries);
+        ActionDBEntry.functionDB.putAll(s.functions);
+        for (Pair<Predicate,ActionDBEntry> p : s.postconds) {
+            ActionDBEntry.postcondDB.add(p);
+        }
+        ActionDBParser.addConstants(s.constants);
+        s.root.plannerDomain.addAll(s.plannerDomain);
+        s.root.plannerProblem.addAll(s.plannerProblem);
+        log.info("Loaded DB from snapshot " + snapshot + ". Domain size: " + s.plannerDomain.size()
+                + ", Problem size: " + s.plannerProblem.size());
+        return s.root;
+    }
+
+    /**
+     * Save the DB, just loaded from the files, to a snapshot.  Failures are
+     * logged, but are otherwise harmless.
+     * @param snapshot the snapshot file
+     * @param files the DB files, in the order they were loaded
+     * @param root the root of the DB
+     */
+    static void save(String snapshot, List<String> files, ActionDBEntry root) {
+        ArrayList<String> digests = digest(files);
+        if (digests == null) {
+            return;
+        }
+        File sf = new File(snapshot);
+        File tmp = new File(snapshot + ".tmp");
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeObject(new ActionDBSnapshot(files, digests, root));
+            out.close();
+            out = null;
+            if (!tmp.renameTo(sf) && (!sf.delete() || !tmp.renameTo(sf))) {
+                throw new IOException("cannot rename " + tmp);
+            }
+            log.info("Saved DB snapshot " + snapshot);
+        } catch (IOException ioe) {
+            log.warn("Cannot save DB snapshot " + snapshot + ": " + ioe);
+            tmp.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ioe) {
+                }
+                tmp.delete();
+            }
+        }
+    }
+}
+
+// vi:ai:smarttab:expandtab:ts=8 sw=4
@@ -0,0 +1,210 @@
+/**
+ * ADE 1.0
+ * Copyright 1997-2012 HRILab (http://hrilab.org/)
+ *
+ * All rights reserved.  Do not copy and use without permission.
+ * For questions contact Matthias Scheutz at mscheutz@cs.tufts.edu
+ *
+ * ActionEventLog.java
+ */
+
+package com.action;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <code>ActionEventLog</code> keeps the most recent <code>ActionEvent</code>s
+ * in a ring buffer of fixed capacity, indexed by the name of the state and by
+ * the goal the event satisfies.  When the buffer is full, the oldest event is
+ * written to the log and dropped.  Listeners are notified of each new event
+ * as it is added.
+ */
+final class ActionEventLog {
+    private static Log log = LogFactory.getLog(ActionEventLog.class);
+
+    /**
+     * Receives the events added to the log.
+     */
+    interface Listener {
+        /**
+         * Called (in the thread that added it) after an event is added.
+         * @param e the event
+         */
+        void eventAdded(ActionEvent e);
+    }
+
+    private ActionEvent[] ring;
+    private int first = 0;
+    private int size = 0;
+    private final HashMap<String,ArrayDeque<ActionEvent>> byName = new HashMap<String,ArrayDeque<ActionEvent>>();
+    private final HashMap<Long,ArrayDeque<ActionEvent>> byGoal = new HashMap<Long,ArrayDeque<ActionEvent>>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Create an event log.
+     * @param capacity the number of events kept
+     */
+    ActionEventLog(int capacity) {
+        ring = new ActionEvent[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add an event, dropping the oldest one if the log is full, and notify
+     * the listeners.
+     * @param e the event
+     */
+    void add(ActionEvent e) {
+        synchronized (this) {
+            if (size == ring.length) {
+                evict();
+            }
+            ring[(first + size) % ring.length] = e;
+            size++;
+            index(byName, e.getState().getName().toLowerCase(), e);
+            if (e.getGoal() != null) {
+                index(byGoal, e.getGoal().getGoalId(), e);
+            }
+        }
+        for (Listener l : listeners) {
+            try {
+                l.eventAdded(e);
+            } catch (RuntimeException re) {
+                log.error("Event listener failed", re);
+            }
+        }
+    }
+
+    private static <K> void index(HashMap<K,ArrayDeque<ActionEvent>> idx, K key, ActionEvent e) {
+        ArrayDeque<ActionEvent> events = idx.get(key);
+        if (events == null) {
+            events = new ArrayDeque<ActionEvent>();
+            idx.put(key, events);
+        }
+        events.addLast(e);
+    }
+
+    // Events leave the log in the order they were added, so an evicted event
+    // is always the first one in its index entries.
+    private static <K> void unindex(HashMap<K,ArrayDeque<ActionEvent>> idx, K key) {
+        ArrayDeque<ActionEvent> events = idx.get(key);
+        if (events != null) {
+            events.pollFirst();
+            if (events.isEmpty()) {
+                idx.remove(key);
+            }
+        }
+    }
+
+    private void evict() {
+        ActionEvent e = ring[first];
+        ring[first] = null;
+        first = (first + 1) % ring.length;
+        size--;
+        unindex(byName, e.getState().getName().toLowerCase());
+        if (e.getGoal() != null) {
+            unindex(byGoal, e.getGoal().getGoalId());
+        }
+        if (log.isInfoEnabled()) {
+            log.info("event " + e.getTime() + " " + (e.getNegated() ? "not(" + e.getState() + ")" : e.getState())
+                    + (e.getSpec() != null ? " by " + e.getSpec() : "")
+                    + (e.getGoal() != null ? " for goal " + e.getGoal().getGoalId() : ""));
+        }
+    }
+
+    /**
+     * Change the number of events kept, dropping the oldest ones if there
+     * are more than that.
+     * @param capacity the number of events kept
+     */
+    synchronized void setCapacity(int capacity) {
+        capacity = Math.max(capacity, 1);
+        while (size > capacity) {
+            evict();
+        }
+        ActionEvent[] r = new ActionEvent[capacity];
+        for (int i = 0; i < size; i++) {
+            r[i] = ring[(first + i) % ring.length];
+        }
+        ring = r;
+        first = 0;
+    }
+
+    /**
+     * Get the number of events kept.
+     * @return the capacity
+     */
+    synchronized int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Get the number of events in the log.
+     * @return the number of events
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get the events in the log.
+     * @return a copy of the events, oldest first
+     */
+    synchronized List<ActionEvent> getEvents() {
+        ArrayList<ActionEvent> events = new ArrayList<ActionEvent>(size);
+        for (int i = 0; i < size; i++) {
+            events.add(ring[(first + i) % ring.length]);
+        }
+        return events;
+    }
+
+    /**
+     * Get the events in the log whose state has the given name.
+     * @param name the name of the state (e.g., "at")
+     * @return a copy of the events, oldest first
+     */
+    synchronized List<ActionEvent> getEvents(String name) {
+        ArrayDeque<ActionEvent> events = byName.get(name.toLowerCase());
+        if (events == null) {
+            return new ArrayList<ActionEvent>();
+        }
+        return new ArrayList<ActionEvent>(events);
+    }
+
+    /**
+     * Get the events in the log that satisfy the given goal.
+     * @param gid the id of the goal
+     * @return a copy of the events, oldest first
+     */
+    synchronized List<ActionEvent> getEvents(long gid) {
+        ArrayDeque<ActionEvent> events = byGoal.get(gid);
+        if (events == null) {
+            return new ArrayList<ActionEvent>();
+        }
+        return new ArrayList<ActionEvent>(events);
+    }
+
+    /**
+     * Start notifying a listener of new events.
+     * @param l the listener
+     */
+    void subscribe(Listener l) {
+        listeners.addIfAbsent(l);
+    }
+
+    /**
+     * Stop notifying a listener of new events.
+     * @param l the listener
+     */
+    void unsubscribe(Listener l) {
+        listeners.remove(l);
+    }
+}
+
+// vi:ai:smarttab:expandtab:ts=8 sw=4
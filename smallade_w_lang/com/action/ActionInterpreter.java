@@ -31,6 +31,8 @@ import java.awt.geom.Point2D;
 import java.io.*;
 import java.rmi.*;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.regex.*;
 
 import static java.lang.String.format;
@@ -54,7 +56,7 @@ public class ActionInterpreter extends Thread {
     private static boolean methodFail = false;
     private GoalManagerGoal goal = null;
     protected String description;
-    private double priority = 0;
+    private volatile double priority = 0;
     private double cost;
     private double benefit;
     private double maxUrgency = 1.0;
@@ -77,9 +79,29 @@ public class ActionInterpreter extends Thread {
     protected static String myID;
     protected static String agentname;
 
-    boolean started = false;
-    boolean shouldUpdate = false;
-    boolean shouldPause = false;
+    volatile boolean started = false;
+    volatile boolean shouldUpdate = false;
+    volatile boolean shouldPause = false;
+
+    // scheduling state; see step()
+    private static final long DONE = -1;
+    private static final long PARK = -2;
+    private static final int INIT = 0;
+    private static final int LOCKS = 1;
+    private static final int RUN = 2;
+    private int phase = INIT;
+    private boolean waitedForDefs = false;
+    private ActionDBEntry cycleAction = null;
+    private final Object stepLock = new Object();
+    private ScheduledFuture<?> resume = null;
+    private boolean parked = false;
+    private volatile Thread runner = null;
+    private final Runnable steps = new Runnable() {
+        @Override
+        public void run() {
+            step();
+        }
+    };
     int iters = 5;
 
     protected int descriptive;
@@ -3043,11 +3065,16 @@ public class ActionInterpreter extends Thread {
             }
         } else if (action.isA("playWav")) {
             String filename = (String)action.getArgument("?filename");
-            Process p;
+            final Process p;
             try {
                 p = Runtime.getRuntime().exec("./adeplay " + filename);
                 try {
-                    p.waitFor();
+                    ActionScheduler.block(new ActionScheduler.Blocker<Integer>() {
+                        @Override
+                        Integer call() throws InterruptedException {
+                            return p.waitFor();
+                        }
+                    });
                 } catch (Exception e) {
                 }
             } catch (IOException ioe) {
@@ -3433,17 +3460,17 @@ public class ActionInterpreter extends Thread {
             Object value = action.getArgument("?value");
             String type = action.getArgumentType("?target");
             //log.debug("set: " + type + " " + value);
-            if (ActionDBEntry.lookup(type).isA("double"))
+            if (ActionDBEntry.lookup(type).isA(ActionDBEntry.T_DOUBLE))
                 if (value  instanceof Double)
                     action.setArgument("?target", value);
                 else
                     action.setArgument("?target", new Double(value.toString()));
-            else if (ActionDBEntry.lookup(type).isA("long"))
+            else if (ActionDBEntry.lookup(type).isA(ActionDBEntry.T_LONG))
                 if (value  instanceof Long)
                     action.setArgument("?target", value);
                 else
                     action.setArgument("?target", new Long(value.toString()));
-            else if (ActionDBEntry.lookup(type).isA("integer"))
+            else if (ActionDBEntry.lookup(type).isA(ActionDBEntry.T_INTEGER))
                 if (value  instanceof Integer)
                     action.setArgument("?target", value);
                 else
@@ -4406,11 +4433,51 @@ public class ActionInterpreter extends Thread {
             log.debug("Calling updatePlannerState from " + e.getFileName() + ":" + e.getLineNumber());
         }
         */
-        return ami.callMethod(mn, args);
+        return remoteCall(-1, mn, args);
     }
 
     protected Object callMethod(int timeout, String mn, Object... args) throws ADEException, ADETimeoutException, ADEReferenceException {
-        return ami.callMethod(timeout, mn, args);
+        return remoteCall(timeout, mn, args);
+    }
+
+    /**
+     * Call a method through the goal manager, letting the
+     * <code>ActionScheduler</code> run other steps while waiting for the
+     * result.
+     * @param timeout the call timeout duration (0 for none), or a negative
+     * value for the default timeout
+     * @param mn method name
+     * @param args method arguments
+     * @return whatever the remote method returns
+     */
+    private Object remoteCall(final int timeout, final String mn, final Object... args) throws ADEException {
+        try {
+            return ActionScheduler.block(new ActionScheduler.Blocker<Object>() {
+                @Override
+                Object call() throws ADEException {
+                    if (timeout < 0) {
+                        return ami.callMethod(mn, args);
+                    }
+                    return ami.callMethod(timeout, mn, args);
+                }
+            });
+        } catch (ADEException ae) {
+            throw ae;
+        } catch (RuntimeException re) {
+            throw re;
+        } catch (Exception e) {
+            Thread.currentThread().interrupt();
+            throw new ADEException("Interrupted calling " + mn, e);
+        }
+    }
+
+    /**
+     * Sleep without holding up the other interpreters run by the
+     * <code>ActionScheduler</code>.
+     * @param millis the sleep duration
+     */
+    private static void Sleep(long millis) {
+        ActionScheduler.sleep(millis);
     }
 
     /**
@@ -4424,25 +4491,34 @@ public class ActionInterpreter extends Thread {
         if (action == null) {
             log.warn("Current action is null. Exiting...");
             halt();
-        } else if (action.isA("motionPrimitive")) {
-            doMotionPrimitive(action);
-        } else if (action.isA("visionPrimitive")) {
-            doVisionPrimitive(action);
-        } else if (action.isA("speechProdPrimitive")) {
-            doSpeechProdPrimitive(action);
-        } else if (action.isA("speechRecPrimitive")) {
-            doSpeechRecPrimitive(action);
-        } else if (action.isA("miscPrimitive")) {
-            doMiscPrimitive(action);
-        } else if (!action.isA("primitive")) {
-            if (checkMethod(action.getType(), action)) {
-                // POSSIBLE HACK!  what's "must've had to wait" mean?
+        } else {
+            switch (action.getCategory()) {
+            case MOTION:
+                doMotionPrimitive(action);
+                break;
+            case VISION:
+                doVisionPrimitive(action);
+                break;
+            case SPEECH_PROD:
+                doSpeechProdPrimitive(action);
+                break;
+            case SPEECH_REC:
+                doSpeechRecPrimitive(action);
+                break;
+            case MISC:
                 doMiscPrimitive(action);
-            } else {
-                //log.debug(action.getType() + ": not a primitive (must've had to wait)");
+                break;
+            case SCRIPT:
+                if (checkMethod(action.getType(), action)) {
+                    // POSSIBLE HACK!  what's "must've had to wait" mean?
+                    doMiscPrimitive(action);
+                } else {
+                    //log.debug(action.getType() + ": not a primitive (must've had to wait)");
+                }
+                break;
+            default:
+                log.warn("Unrecognized action: " + action.getType());
             }
-        } else {
-            log.warn("Unrecognized action: " + action.getType());
         }
         // PWS: should abort script when subscript fails; right now I'm only using
         //      eventStatus for most recent action (i.e., could be overwritten)
@@ -4456,6 +4532,56 @@ public class ActionInterpreter extends Thread {
         return action;
     }
 
+    private static final int ENDIF_ELSE_ELSEIF =
+            ActionDBEntry.opBit(ActionDBEntry.OP_ENDIF) |
+            ActionDBEntry.opBit(ActionDBEntry.OP_ELSE) |
+            ActionDBEntry.opBit(ActionDBEntry.OP_ELSEIF);
+
+    /**
+     * Copy the events of a condition (or argument) from the calling script
+     * to the statement, up to and including the event that evaluates it;
+     * the caller's pc is incremented, so it will not execute these events.
+     * @param action the calling script
+     * @param sub the statement
+     * @param closer the opcode of the evaluating event (e.g., OP_THEN)
+     * @return the spec of the evaluating event, or null if there is none
+     */
+    private ArrayList<String> copyEvents(ActionDBEntry action, ActionDBEntry sub, int closer) {
+        ArrayList<String> spec = action.getEventSpec();
+        while (spec != null && action.getEventOp() != closer) {
+            sub.addEventSpec(spec, action.getEventOp());
+            spec = action.getEventSpec();
+        }
+        if (spec == null) {
+            log.error("Syntax error: " + sub.getType() + " is not closed");
+        } else {
+            // Add the call to check the status once the condition has been
+            // executed.
+            sub.addEventSpec(spec, closer);
+        }
+        return spec;
+    }
+
+    /**
+     * Skip the rest of a short-circuited condition (of an IF, ELSEIF, WHILE,
+     * or NOT statement), up to the event that evaluates it.
+     * @param action the condition statement
+     * @return the spec of the evaluating event, or null
+     */
+    private ArrayList<String> skipCondition(ActionDBEntry action) {
+        ArrayList<String> spec = null;
+        if (action.isA("if") || action.isA("elseif")) {
+            spec = action.getEventSpec(ActionDBEntry.opBit(ActionDBEntry.OP_THEN));
+        } else if (action.isA("while")) {
+            spec = action.getEventSpec(ActionDBEntry.opBit(ActionDBEntry.OP_DO));
+        } else if (action.isA("not")) {
+            spec = action.getEventSpec(ActionDBEntry.opBit(ActionDBEntry.OP_ENDNOT));
+        }
+        // Have to undo the last get to evaluate exit status
+        action.ungetEventSpec();
+        return spec;
+    }
+
     /**
      * <code>getNextAction</code> selects the next action for execution by the
      * client.
@@ -4478,7 +4604,7 @@ public class ActionInterpreter extends Thread {
         action = ActionStack.pop();
         // While it's a script, if there's another event, push the script and
         // instantiate the sub event.
-        while (!action.isA("primitive")) {
+        while (!action.isA(ActionDBEntry.T_PRIMITIVE)) {
             currentAction = action;
             //log.debug("Ready to perform action: " + action.getType());
             // Check here for timeout
@@ -4512,7 +4638,10 @@ public class ActionInterpreter extends Thread {
                     ami.processStateUpdate(upd, true, tmpspec);
                 }
                 action = ActionStack.pop();
-            } else if (spec.get(0).equals("if")) {
+                continue;
+            }
+            switch (action.getEventOp()) {
+            case ActionDBEntry.OP_IF:
                 // add the IF statement to the calling script
                 sub = addTask(spec, action);
                 // inherit the caller's arguments
@@ -4520,19 +4649,13 @@ public class ActionInterpreter extends Thread {
                 // copy the condition's eventspecs to the IF statement; the
                 // caller's pc is incremented, so it will not execute these
                 // events--that's the responsibility of the IF statement now.
-                spec = action.getEventSpec();
                 // TODO: Check for empty condition (automatic failure?)
-                while (!spec.get(0).equals("then")) {
-                    sub.addEventSpec(spec);
-                    spec = action.getEventSpec();
-                }
-                // Add the call to check the status once the condition has
-                // been executed.
-                sub.addEventSpec(spec);
+                spec = copyEvents(action, sub, ActionDBEntry.OP_THEN);
                 // Push caller onto stack.
                 ActionStack.push(action);
                 action = sub;
-            } else if (spec.get(0).equals("then")) {
+                break;
+            case ActionDBEntry.OP_THEN:
                 exitStatus = action.getEventExitStatus();
                 // Then pop the parent of the IF statement
                 //log.debug("THEN: exitStatus is " + exitStatus);
@@ -4540,64 +4663,54 @@ public class ActionInterpreter extends Thread {
                 if (!exitStatus) {
                     // TODO: check for both IF and WHILE to make sure they're
                     // properly enclosed
-                    spec = action.getEventSpec("endif else elseif", "if",
-                            "endif");
+                    spec = action.getEventSpec(ENDIF_ELSE_ELSEIF,
+                            ActionDBEntry.OP_IF, ActionDBEntry.OP_ENDIF);
                     //log.debug("THEN: spec is " + spec);
                     if (spec == null) {
                         // Have to do something, or the system will crap out
                         log.error("Syntax error: expecting one of " +
                                 "\"endif else elseif\"");
-                    } else if (spec.get(0).equals("elseif")) {
+                    } else if (action.getEventOp() == ActionDBEntry.OP_ELSEIF) {
                         sub = addTask(spec, action);
                         // inherit the caller's arguments
                         sub.inheritArguments();
                         // copy the condition's eventspecs to the ELSEIF
-                        spec = action.getEventSpec();
                         // TODO: Check for empty condition (automatic failure?)
-                        while (!spec.get(0).equals("then")) {
-                            sub.addEventSpec(spec);
-                            spec = action.getEventSpec();
-                        }
-                        // Add the call to check the status once the condition
-                        // has been executed.
-                        sub.addEventSpec(spec);
+                        spec = copyEvents(action, sub, ActionDBEntry.OP_THEN);
                         // Push caller onto stack.
                         ActionStack.push(action);
                         action = sub;
                     }
                 } // else go ahead and execute consequent
-            } else if (spec.get(0).equals("else") ||
-                    spec.get(0).equals("elseif")) {
+                break;
+            case ActionDBEntry.OP_ELSE:
+            case ActionDBEntry.OP_ELSEIF:
                 // If I encounter an ELSE or an ELSEIF as part of a sequence,
                 // I'm executing a THEN so I should skip to the ENDIF.
                 // TODO: check for stray ELSEs and ELSEIFs, as below for ENDIFs
-                spec = action.getEventSpec("endif", "if", "endif");
-            } else if (spec.get(0).equals("endif")) {
+                spec = action.getEventSpec(ActionDBEntry.opBit(ActionDBEntry.OP_ENDIF),
+                        ActionDBEntry.OP_IF, ActionDBEntry.OP_ENDIF);
+                break;
+            case ActionDBEntry.OP_ENDIF:
                 // Ignore the ENDIF when encountered as part of a sequence
                 // TODO: this allows stray ENDIFs; can keep an IF statement
                 // counter that's incremented whenever an IF is entered and
                 // decremented whenever an ENDIF is encountered.  Then, if
                 // the counter <= 0, this is a stray ENDIF.
                 continue;
-            } else if (spec.get(0).equals("while")) {
+            case ActionDBEntry.OP_WHILE:
                 action.setJumpPC();
                 // add the WHILE statement to the calling script
                 sub = addTask(spec, action);
                 // inherit the caller's arguments
                 sub.inheritArguments();
                 // copy the condition's eventspecs to the WHILE statement
-                spec = action.getEventSpec();
                 // TODO: Check for null condition (automatic failure?)
-                while (!spec.get(0).equals("do")) {
-                    sub.addEventSpec(spec);
-                    spec = action.getEventSpec();
-                }
-                // Add the call to check the status once the condition has
-                // been executed.
-                sub.addEventSpec(spec);
+                spec = copyEvents(action, sub, ActionDBEntry.OP_DO);
                 ActionStack.push(action);
                 action = sub;
-            } else if (spec.get(0).equals("do")) {
+                break;
+            case ActionDBEntry.OP_DO:
                 exitStatus = action.getEventExitStatus();
                 // Then pop the parent of the WHILE statement
                 action = ActionStack.pop();
@@ -4607,15 +4720,16 @@ public class ActionInterpreter extends Thread {
                     // Won't need to jump back to the WHILE statement, so
                     // discard the jumppc
                     action.discardJumpPC();
-                    spec = action.getEventSpec("endwhile", "while",
-                            "endwhile");
+                    spec = action.getEventSpec(ActionDBEntry.opBit(ActionDBEntry.OP_ENDWHILE),
+                            ActionDBEntry.OP_WHILE, ActionDBEntry.OP_ENDWHILE);
                     if (spec == null) {
                         // Have to do something, or the system will crap out
                         log.error("Syntax error: expecting " +
                                 "\"endwhile\"");
                     }
                 }
-            } else if (spec.get(0).equals("endwhile")) {
+                break;
+            case ActionDBEntry.OP_ENDWHILE:
                 // Ignore the ENDWHILE when encountered as part of a sequence
                 // TODO: this allows stray ENDWHILEs; can keep a WHILE
                 // statement counter that's incremented whenever a WHILE is
@@ -4624,25 +4738,19 @@ public class ActionInterpreter extends Thread {
                 // ENDWHILE.
                 action.restoreJumpPC();
                 continue;
-            } else if (spec.get(0).equals("not")) {
+            case ActionDBEntry.OP_NOT:
                 // add the NOT statement to the calling script
                 sub = addTask(spec, action);
                 // inherit the caller's arguments
                 sub.inheritArguments();
                 // copy the argument's eventspecs to the NOT statement
-                spec = action.getEventSpec();
                 // TODO: Check for null condition (automatic failure?)
-                while (!spec.get(0).equals("endnot")) {
-                    sub.addEventSpec(spec);
-                    spec = action.getEventSpec();
-                }
-                // Add the call to check the status once the condition has
-                // been executed--in this case, the ENDNOT
-                sub.addEventSpec(spec);
+                spec = copyEvents(action, sub, ActionDBEntry.OP_ENDNOT);
                 // Push caller onto stack
                 ActionStack.push(action);
                 action = sub;
-            } else if (spec.get(0).equals("endnot")) {
+                break;
+            case ActionDBEntry.OP_ENDNOT:
                 exitStatus = action.getEventExitStatus();
                 if (exitStatus) {
                     action.setExitStatus(false);
@@ -4651,7 +4759,8 @@ public class ActionInterpreter extends Thread {
                 }
                 // Then pop the parent
                 action = ActionStack.pop();
-            } else if (spec.get(0).equals("with")) {
+                break;
+            case ActionDBEntry.OP_WITH:
                 // dlocal: with vision VisionComponentImpl22
                 log.warn("WARNING: dlocal not updated, reference not changing");
                 if (spec.get(1).equals("vision")) {
@@ -4669,7 +4778,8 @@ public class ActionInterpreter extends Thread {
                 } else {
                     log.error("Unrecognized server type: " + spec.get(1));
                 }
-            } else if (spec.get(0).equals("endwith")) {
+                break;
+            case ActionDBEntry.OP_ENDWITH:
                 // dlocal: endwith vision
                 log.warn("WARNING: dlocal not updated, reference not changing");
                 if (spec.get(1).equals("vision")) {
@@ -4681,11 +4791,14 @@ public class ActionInterpreter extends Thread {
                 } else {
                     log.error("Unrecognized server type: " + spec.get(1));
                 }
-            } else if (spec.get(0).equals("choose")) {
+                break;
+            case ActionDBEntry.OP_CHOOSE: {
                 ArrayList<String> tmpspec;
                 spec = action.getEventSpec();
                 // Look up the action to get the relevant cost, etc.
-                ActionDBEntry newAction = ActionDBEntry.lookup(spec.get(0).toLowerCase());
+                ActionDBEntry newAction = action.getEventRef();
+                if (newAction == null)
+                    newAction = ActionDBEntry.lookup(spec.get(0).toLowerCase());
                 double b = newAction.getBenefit();
                 double c = newAction.getCost();
                 double a = newAction.affectEval();
@@ -4694,8 +4807,10 @@ public class ActionInterpreter extends Thread {
                 double v;
                 tmpspec = action.getEventSpec();
                 // Step through the remaining choices to find the best
-                while (!tmpspec.get(0).equals("endchoose")) {
-                    newAction = ActionDBEntry.lookup(tmpspec.get(0).toLowerCase());
+                while (tmpspec != null && action.getEventOp() != ActionDBEntry.OP_ENDCHOOSE) {
+                    newAction = action.getEventRef();
+                    if (newAction == null)
+                        newAction = ActionDBEntry.lookup(tmpspec.get(0).toLowerCase());
                     b = newAction.getBenefit();
                     c = newAction.getCost();
                     a = newAction.affectEval();
@@ -4714,9 +4829,12 @@ public class ActionInterpreter extends Thread {
                 // Push caller onto stack
                 ActionStack.push(action);
                 action = sub;
-            } else if (spec.get(0).equals("endchoose")) {
+                break;
+            }
+            case ActionDBEntry.OP_ENDCHOOSE:
                 // Ignoring the ENDCHOOSE, but *should* check for syntax
-            } else if (spec.get(0).equals("achieve")) {
+                break;
+            case ActionDBEntry.OP_ACHIEVE:
                 // get the predicate, bind it, and find an action that will achieve it
                 Predicate ach = createPredicate(spec.get(1).toLowerCase());
                 ach = action.bindPredicate(ach);
@@ -4756,53 +4874,34 @@ public class ActionInterpreter extends Thread {
                     ActionStack.push(action);
                     action = sub;
                 }
-            } else if (spec.get(0).equals("and")) {
+                break;
+            case ActionDBEntry.OP_AND:
                 exitStatus = action.getEventExitStatus();
                 //log.debug("AND: exitStatus is " + exitStatus);
                 if (!exitStatus) {
-                    if (action.isA("if") || action.isA("elseif")) {
-                        spec = action.getEventSpec("then");
-                    } else if (action.isA("while")) {
-                        spec = action.getEventSpec("do");
-                    } else if (action.isA("not")) {
-                        spec = action.getEventSpec("endnot");
-                    }
-                    // Have to undo the last get to evaluate exit status
-                    action.ungetEventSpec();
+                    spec = skipCondition(action);
                     //log.debug("AND: spec is " + spec);
                 }
-            } else if (spec.get(0).equals("or")) {
+                break;
+            case ActionDBEntry.OP_OR:
                 exitStatus = action.getEventExitStatus();
                 if (exitStatus) {
-                    if (action.isA("if") || action.isA("elseif")) {
-                        spec = action.getEventSpec("then");
-                    } else if (action.isA("while")) {
-                        spec = action.getEventSpec("do");
-                    } else if (action.isA("not")) {
-                        spec = action.getEventSpec("endnot");
-                    }
-                    // Have to undo the last get to evaluate exit status
-                    action.ungetEventSpec();
+                    spec = skipCondition(action);
                 }
-            } else if (spec.get(0).equals("return")) {
+                break;
+            case ActionDBEntry.OP_RETURN:
                 // add the RETURN statement to the calling script
                 sub = addTask(spec, action);
                 // inherit the caller's arguments
                 sub.inheritArguments();
                 // copy the argument's eventspecs to the RETURN statement
-                spec = action.getEventSpec();
                 // TODO: Check for null condition (automatic failure?)
-                while (!spec.get(0).equals("endreturn")) {
-                    sub.addEventSpec(spec);
-                    spec = action.getEventSpec();
-                }
-                // Add the call to check the status once the condition has
-                // been executed--in this case, the ENDRETURN
-                sub.addEventSpec(spec);
+                spec = copyEvents(action, sub, ActionDBEntry.OP_ENDRETURN);
                 // Push caller onto stack
                 ActionStack.push(action);
                 action = sub;
-            } else if (spec.get(0).equals("endreturn")) {
+                break;
+            case ActionDBEntry.OP_ENDRETURN:
                 exitStatus = action.getEventExitStatus();
                 action.setExitStatus(exitStatus);
                 // Then pop the parent
@@ -4810,7 +4909,9 @@ public class ActionInterpreter extends Thread {
                 action.setExitStatus(exitStatus);
                 // Then pop the parent
                 action = ActionStack.pop();
-            } else {
+                break;
+            default:
+                ActionDBEntry proto = action.getEventRef();
                 String aName = spec.get(0);
                 if ((aName.charAt(0) == '?') || (aName.charAt(0) == '!')) {
                     // need to bind the action name
@@ -4818,8 +4919,9 @@ public class ActionInterpreter extends Thread {
                     aName = (String)action.getArgument(sName);
                     log.debug("Setting action " + sName + " to " + aName);
                     spec.set(0, aName);
+                    proto = null;
                 }
-                sub = addTask(spec, action);
+                sub = addTask(spec, action, proto);
                 //System.out.println("ActionInterpreter: adding Task: spec: "+spec+", action: "+action);
                 Predicate desc = sub.getPredDesc();
                 // check here for badaction, badstate
@@ -4955,12 +5057,25 @@ public class ActionInterpreter extends Thread {
      * @return the newly added task
      */
     protected ActionDBEntry addTask(ArrayList<String> taskspec, ActionDBEntry base) {
+        return addTask(taskspec, base, null);
+    }
+
+    /**
+     * Add a task whose DB entry has already been resolved (e.g., when the
+     * script was compiled).
+     * @param taskspec is an event specification
+     * @param base is the (instantiated) script that will call this task
+     * @param proto the DB entry of the task, or null to look it up by name
+     * @return the newly added task
+     */
+    protected ActionDBEntry addTask(ArrayList<String> taskspec, ActionDBEntry base,
+            ActionDBEntry proto) {
         // Acquire the task prototype
         // PWS: Ought to be smarter about this, not reconstruct the event
         // every time (e.g., when the locks aren't acquired).  That will
         // also make startTime more accurate..
         // System.out.print("THE TASKSPEC: "+taskspec);
-        ActionDBEntry newTask = base.addEvent(taskspec);
+        ActionDBEntry newTask = base.addEvent(taskspec, proto);
 
         if (newTask == null) {
             log.error("AGM: error adding task " + taskspec.get(0));
@@ -5034,6 +5149,15 @@ public class ActionInterpreter extends Thread {
         priority = newpri;
     }
 
+    /**
+     * Get the action's priority as of now, for lock arbitration and reports (see
+     * <code>GoalManagerImpl.currentPriority</code>).
+     * @return the priority
+     */
+    double getCurrentPriority() {
+        return ami.currentPriority(this);
+    }
+
     protected static String bindText(ActionDBEntry action, String inText) {
         StringBuilder outText = new StringBuilder();
         Matcher m = variable.matcher(inText);
@@ -5165,78 +5289,195 @@ public class ActionInterpreter extends Thread {
     }
 
     /**
-     * The main ActionInterpreter run method.
+     * Start the Action Interpreter.  Rather than getting its own thread, the
+     * interpreter is run step by step by the goal manager's
+     * <code>ActionScheduler</code>.
+     */
+    @Override
+    public void start() {
+        synchronized (stepLock) {
+            if (started) {
+                throw new IllegalThreadStateException(cmd + " already started");
+            }
+            started = true;
+            shouldUpdate = true;
+            schedule(0);
+        }
+    }
+
+    /**
+     * The main ActionInterpreter run method.  This runs the script in the
+     * calling thread; interpreters started with <code>start()</code> are
+     * instead run by the scheduler, one <code>step()</code> at a time.
      */
     @Override
     public void run() {
         started = true;
         shouldUpdate = true;
-        long start, elapsed, remaining;
-        ActionDBEntry action = null;
-        boolean gotvel = true;
-        synchronized (defLock) {
-            if (!gotDefs && !checkMethod("getDefaultVels")) {
-                //log.debug("waiting for default vels...");
-                gotvel = false;
-                Sleep(500);
-            }
-            if (!gotDefs && (gotvel || checkMethod("getDefaultVels"))) {
-                //log.debug("trying...");
-                try {
-                    double[] defVels = (double[])callMethod(0, "getDefaultVels");
-                    defTV = defVels[0];
-                    defRV = defVels[1];
-                    //log.debug(myID + ": got defvels");
-                    gotDefs = true;
-                } catch (ADEException ace) {
-                    log.error(myID + ": error getting default vels!");
-                }
+        long next;
+        while ((next = cycle()) != DONE) {
+            if (next == PARK) {
+                Sleep(ami.sliceTime);
+            } else if (next > 0) {
+                Sleep(next);
             }
         }
-        while (!initLocks && !currentAction.acquireLocks(this)) {
-            //log.error("Failed to acquire locks!  "
-            //	    + taskspec.get(0) + " waiting!");
-            currentAction.releaseLocks(this);
-            Sleep(ami.sliceTime);
+        //log.debug("Action: ActionInterpreter " + cmd + " out of update loop (i.e., exiting)");
+        ami.delAction(this);
+    }
+
+    /**
+     * Run one step of the script in a scheduler thread and queue the next
+     * one.
+     */
+    private void step() {
+        long next;
+        synchronized (stepLock) {
+            resume = null;
         }
-        describe(currentAction, "begin");
-        while (shouldUpdate) {
-            while (shouldPause) {
-                Sleep(ami.sliceTime);
+        runner = Thread.currentThread();
+        try {
+            next = cycle();
+        } catch (RuntimeException e) {
+            // as when the interpreter had its own thread, this ends it
+            log.error(cmd + ": uncaught exception running an action interpreter cycle", e);
+            return;
+        } finally {
+            runner = null;
+            Thread.interrupted();
+        }
+        if (next == DONE) {
+            //log.debug("Action: ActionInterpreter " + cmd + " out of update loop (i.e., exiting)");
+            ami.delAction(this);
+            return;
+        }
+        synchronized (stepLock) {
+            if (next == PARK && shouldPause && shouldUpdate) {
+                parked = true;
+            } else {
+                schedule(Math.max(next, 0));
             }
-            if (GoalManagerImpl.sleepAI) {
-                //log.debug(cmd + ": top of loop.");
-                try {
-                    start = System.currentTimeMillis();
-                    action = runCycle(action);
-                    elapsed = System.currentTimeMillis() - start;
-                    if ((remaining = ami.sliceTime - elapsed) > 0) {
-                        Sleep(remaining);
-                    } // else yield?
-                } catch (NullPointerException e) {
-                    e.printStackTrace();
-                    log.error("NullPointerException running an action interpreter cycle");
-                } catch (Exception e1) {
-                    e1.printStackTrace();
-                    log.error("Exception running an action interpreter cycle");
-                    // TODO: fix empty stack exception
-                    //log.error(myID +": got generic exception", e1);
-                }
-            } else {
-                action = runCycle(action);
-                // Need to Yield here?  Shouldn't be multiple AI threads if
-                // we're using this for RT captures.
+        }
+    }
+
+    /**
+     * Queue the next step.  Must hold <code>stepLock</code>.
+     * @param delay the delay in ms
+     */
+    private void schedule(long delay) {
+        try {
+            resume = ami.getScheduler().schedule(steps, delay);
+        } catch (RejectedExecutionException ree) {
+            log.debug(cmd + ": scheduler is shut down");
+        }
+    }
+
+    /**
+     * Run the next step right away if the interpreter is waiting for its
+     * next time slice or is paused (e.g., to notice that it has been halted).
+     */
+    void wake() {
+        synchronized (stepLock) {
+            if (parked) {
+                parked = false;
+                schedule(0);
+            } else if (resume != null && resume.cancel(false)) {
+                schedule(0);
             }
         }
-        //log.debug("Action: ActionInterpreter " + cmd + " out of update loop (i.e., exiting)");
-        ami.delAction(this);
+    }
+
+    /**
+     * Wake the interpreter, interrupting the scheduler thread if it is in
+     * the middle of a step.
+     */
+    @Override
+    public void interrupt() {
+        wake();
+        Thread r = runner;
+        if (r != null) {
+            r.interrupt();
+        }
+    }
+
+    /**
+     * One step of the interpreter: get the default velocities, acquire the
+     * initial locks, or run one cycle of the script.
+     * @return the time (in ms) until the next step, <code>PARK</code> if
+     * the interpreter is paused, or <code>DONE</code> if it has finished
+     */
+    private long cycle() {
+        if (!shouldUpdate) {
+            return DONE;
+        }
+        if (phase == INIT) {
+            synchronized (defLock) {
+                if (!gotDefs) {
+                    if (checkMethod("getDefaultVels")) {
+                        //log.debug("trying...");
+                        try {
+                            double[] defVels = (double[])callMethod(0, "getDefaultVels");
+                            defTV = defVels[0];
+                            defRV = defVels[1];
+                            //log.debug(myID + ": got defvels");
+                            gotDefs = true;
+                        } catch (ADEException ace) {
+                            log.error(myID + ": error getting default vels!");
+                        }
+                    } else if (!waitedForDefs) {
+                        //log.debug("waiting for default vels...");
+                        waitedForDefs = true;
+                        return 500;
+                    }
+                }
+            }
+            phase = LOCKS;
+        }
+        if (phase == LOCKS) {
+            if (!initLocks && !currentAction.acquireLocks(this)) {
+                //log.error("Failed to acquire locks!  "
+                //	    + taskspec.get(0) + " waiting!");
+                currentAction.releaseLocks(this);
+                return ami.sliceTime;
+            }
+            describe(currentAction, "begin");
+            phase = RUN;
+        }
+        if (shouldPause) {
+            return PARK;
+        }
+        if (!GoalManagerImpl.sleepAI) {
+            // Need to Yield here?  Shouldn't be multiple AI threads if
+            // we're using this for RT captures.
+            cycleAction = runCycle(cycleAction);
+            return 0;
+        }
+        //log.debug(cmd + ": top of loop.");
+        long start = System.currentTimeMillis();
+        try {
+            cycleAction = runCycle(cycleAction);
+        } catch (NullPointerException e) {
+            e.printStackTrace();
+            log.error("NullPointerException running an action interpreter cycle");
+        } catch (Exception e1) {
+            e1.printStackTrace();
+            log.error("Exception running an action interpreter cycle");
+            // TODO: fix empty stack exception
+            //log.error(myID +": got generic exception", e1);
+        }
+        return ami.sliceTime - (System.currentTimeMillis() - start);
     }
 
     /**
      * Pause/resume the Action Interpreter's script.
      */
     protected void pause(boolean p) {
-        shouldPause = p;
+        synchronized (stepLock) {
+            shouldPause = p;
+        }
+        if (!p) {
+            wake();
+        }
     }
 
     /**
@@ -5263,6 +5504,7 @@ public class ActionInterpreter extends Thread {
             return;
         }
         shouldUpdate = false;
+        wake();
         //log.debug("Action: thread halt called on ActionInterpreter " + cmd);
         if (rootAction.getEventExitStatus()) {
             rootStatus = ActionStatus.SUCCESS;
@@ -5290,7 +5532,7 @@ public class ActionInterpreter extends Thread {
         aii.currentAction = currentAction.getType();
         aii.status = rootStatus;
         aii.goalID = goal.getGoalId();
-        aii.priority = priority;
+        aii.priority = getCurrentPriority();
         aii.cost = cost;
         aii.benefit = benefit;
         aii.maxUrgency = maxUrgency;
@@ -16,6 +16,8 @@
 package com.action;
 
 import java.util.concurrent.locks.*;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Stack;
 
 /**
@@ -27,6 +29,11 @@ abstract class ActionResourceLock {
     protected Stack<ActionInterpreter> owner;
     final Lock lock = new ReentrantLock();
     final Condition released = lock.newCondition();
+    // interpreters whose non-blocking acquire failed, in the order they
+    // asked; the next one (see nextWaiter()) is woken when the lock is
+    // released, rather than waiting for its next time slice to try again.
+    // Guarded by lock.
+    protected final LinkedHashSet<ActionInterpreter> waiters = new LinkedHashSet<ActionInterpreter>();
 
     /**
      * Must be implemented by subclass.
@@ -66,6 +73,7 @@ abstract class ActionResourceLock {
     public void release(ActionInterpreter actionInt) {
         Stack<ActionInterpreter> uncover = new Stack<ActionInterpreter>();
         String cmd = actionInt.cmd;
+        ActionInterpreter next = null;
         lock.lock();
 
         try {
@@ -74,6 +82,7 @@ abstract class ActionResourceLock {
                 if(owner.empty()) {
                     //System.out.println(cmd + " released " + lockName);
                     released.signal();
+                    next = nextWaiter();
                 } else {
                     //System.out.println(cmd + " popped " + lockName);
                 }
@@ -97,6 +106,9 @@ abstract class ActionResourceLock {
         } finally {
             lock.unlock();
         }
+        if (next != null) {
+            next.wake();
+        }
     }
 
     /**
@@ -106,19 +118,43 @@ abstract class ActionResourceLock {
      * @param actionInt the ActionInterpreter releasing the lock
      */
     public void deepRelease(ActionInterpreter actionInt) {
+        ActionInterpreter next = null;
         lock.lock();
 
         try {
+            waiters.remove(actionInt);
             if (!owner.empty() && (owner.peek() == actionInt)) {
                 while (!owner.empty())
                     owner.pop();
                 //System.out.println(cmd + " (deeply) releasing " + lockName);
                 released.signal();
+                next = nextWaiter();
             } else {
             }
         } finally {
             lock.unlock();
         }
+        if (next != null) {
+            next.wake();
+        }
+    }
+
+    /**
+     * Remove and return the waiting interpreter that should get the next
+     * chance at the lock; here, the one that has been waiting longest.
+     * Must hold <code>lock</code>.
+     * @return the interpreter, or null if none is waiting
+     */
+    protected ActionInterpreter nextWaiter() {
+        Iterator<ActionInterpreter> i = waiters.iterator();
+        while (i.hasNext()) {
+            ActionInterpreter a = i.next();
+            i.remove();
+            if (a.shouldUpdate) {
+                return a;
+            }
+        }
+        return null;
     }
 
     /**
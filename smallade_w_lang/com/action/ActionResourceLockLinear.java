@@ -50,10 +50,12 @@ class ActionResourceLockLinear extends ActionResourceLock {
                 // enough to override and take the lock away.
                 if (owner.empty() || (owner.peek() == actionInt)) {
                     owner.push(actionInt);
+                    waiters.remove(actionInt);
                     //System.out.println(cmd + " acquired " + lockName);
                     retval = true;
                     break;
                 } else if (++i == count) {
+                    waiters.add(actionInt);
                     break;
                 }
                 try { 
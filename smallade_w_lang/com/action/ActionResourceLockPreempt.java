@@ -15,6 +15,8 @@
 
 package com.action;
 
+import java.util.Iterator;
+
 /** 
  * <code>ActionResourceLockPreempt</code> implements priority-based locks.
  * When a higher-priority AI requests the lock, it preempts the
@@ -52,19 +54,22 @@ class ActionResourceLockPreempt extends ActionResourceLock {
                 // lock?
                 if (owner.empty() || (owner.peek() == actionInt)) {
                     owner.push(actionInt);
+                    waiters.remove(actionInt);
                     //System.out.println(cmd + " acquired " + lockName);
                     retval = true;
                     break;
-                } else if (owner.peek().getActionPriority() < 
-                        actionInt.getActionPriority()) {
+                } else if (owner.peek().getCurrentPriority() < 
+                        actionInt.getCurrentPriority()) {
                     //System.out.println(cmd + " acquired " + lockName + 
                     //	    ", preempting " + owner.peek().cmd);
                     owner.push(actionInt);
+                    waiters.remove(actionInt);
                     retval = true;
                     break;
                 } else if (++i == count) {
                     //System.out.println(cmd + " !(acquired) " + lockName + 
                     //	    ", because of " + owner.peek().cmd);
+                    waiters.add(actionInt);
                     break;
                 }
                 // PWS: This might not be the best choice for nonblocking
@@ -83,6 +88,34 @@ class ActionResourceLockPreempt extends ActionResourceLock {
         return retval;
     }
 
+    /**
+     * Remove and return the waiting interpreter with the highest current
+     * priority.  Must hold <code>lock</code>.
+     * @return the interpreter, or null if none is waiting
+     */
+    @Override
+    protected ActionInterpreter nextWaiter() {
+        ActionInterpreter best = null;
+        double bestPriority = 0;
+        Iterator<ActionInterpreter> i = waiters.iterator();
+        while (i.hasNext()) {
+            ActionInterpreter a = i.next();
+            if (!a.shouldUpdate) {
+                i.remove();
+                continue;
+            }
+            double p = a.getCurrentPriority();
+            if (best == null || p > bestPriority) {
+                best = a;
+                bestPriority = p;
+            }
+        }
+        if (best != null) {
+            waiters.remove(best);
+        }
+        return best;
+    }
+
     /**
      * Constructor for a resource lock.
      * @param name the lock's name
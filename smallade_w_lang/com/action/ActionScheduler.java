@@ -0,0 +1,179 @@
+/**
+ * ADE 1.0
+ * Copyright 1997-2012 HRILab (http://hrilab.org/)
+ *
+ * All rights reserved.  Do not copy and use without permission.
+ * For questions contact Matthias Scheutz at mscheutz@cs.tufts.edu
+ *
+ * ActionScheduler.java
+ */
+
+package com.action;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>ActionScheduler</code> runs the <code>ActionInterpreter</code>s of a
+ * goal manager as resumable tasks on a small, fixed set of threads instead of
+ * one thread per goal.  Each step of an interpreter (one
+ * <code>runCycle</code>, or one attempt to get its locks) is a task on a
+ * work-stealing pool; between steps the interpreter holds no thread, and its
+ * next step is queued by a single timer thread when its time slice is up.
+ * Paused interpreters are not queued at all until they are resumed.  Steps
+ * that have to wait (sleeps, remote calls, external processes) do so
+ * through <code>block</code>, so that the pool can add a thread for the
+ * other steps in the meantime.
+ */
+final class ActionScheduler {
+    private static Log log = LogFactory.getLog(ActionScheduler.class);
+    private final ForkJoinPool workers;
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Create a scheduler.
+     * @param threads the number of worker threads (the number of processors
+     * if not positive)
+     */
+    ActionScheduler(int threads) {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        final AtomicInteger count = new AtomicInteger();
+        workers = new ForkJoinPool(threads,
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    @Override
+                    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        t.setName("ActionScheduler-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, null, true);
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ActionScheduler-timer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Run a step after a delay.
+     * @param step the step
+     * @param delay the delay in ms
+     * @return the pending delayed step (which can be cancelled), or
+     * <tt>null</tt> if the step was queued right away
+     */
+    ScheduledFuture<?> schedule(final Runnable step, long delay) {
+        if (delay <= 0) {
+            workers.execute(step);
+            return null;
+        }
+        return timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                workers.execute(step);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A wait in a step, run through <code>ForkJoinPool.managedBlock</code>.
+     * @param <T> the type of the result
+     */
+    abstract static class Blocker<T> implements ForkJoinPool.ManagedBlocker {
+        private boolean done = false;
+        private T result = null;
+        private Exception failure = null;
+
+        /**
+         * Wait for and return the result.
+         * @return the result
+         * @throws Exception if the wait fails
+         */
+        abstract T call() throws Exception;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                result = call();
+            } catch (InterruptedException ie) {
+                throw ie;
+            } catch (Exception e) {
+                failure = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    /**
+     * Run a wait.  In a worker thread, the pool keeps its parallelism by
+     * adding a thread while the wait lasts; elsewhere the wait is just run.
+     * @param <T> the type of the result
+     * @param b the wait
+     * @return the result of the wait
+     * @throws Exception if the wait fails or is interrupted
+     */
+    static <T> T block(Blocker<T> b) throws Exception {
+        ForkJoinPool.managedBlock(b);
+        if (b.failure != null) {
+            throw b.failure;
+        }
+        return b.result;
+    }
+
+    /**
+     * Sleep like <code>Util.Sleep</code>, without holding up other steps.
+     * @param millis the sleep duration
+     */
+    static void sleep(final long millis) {
+        if (millis < 0) {
+            return;
+        }
+        try {
+            block(new Blocker<Object>() {
+                @Override
+                Object call() throws InterruptedException {
+                    Thread.sleep(millis);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.info("Sleep interrupted!", e);
+        }
+    }
+
+    /**
+     * Get the number of worker threads.
+     * @return the number of worker threads
+     */
+    int getThreads() {
+        return workers.getParallelism();
+    }
+
+    /**
+     * Stop accepting steps.  Steps already queued still run.
+     */
+    void shutdown() {
+        timer.shutdown();
+        workers.shutdown();
+    }
+}
@@ -28,11 +28,13 @@ import com.vision.stm.MemoryObject;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.*;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.String.format;
 import static utilities.Util.*;
@@ -58,10 +60,16 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
     private ActionInterpreter plannerAI = null;
     private static String initState = null;
     protected static boolean sleepAI = true;
+    // number of threads running ActionInterpreters (0: one per processor)
+    protected static int aiThreads = 0;
+    // number of state update events kept in memory (older ones are logged)
+    protected static int eventLogSize = 10000;
     protected static boolean useLocalLogger = false;
 
     // active ActionInterpreter instances
     final ArrayList<ActionInterpreter> actions = new ArrayList<ActionInterpreter>();
+    // runs the ActionInterpreters
+    private ActionScheduler scheduler = null;
     // active planner goals
     final ArrayList<GoalManagerGoal> plannerGoals = new ArrayList<GoalManagerGoal>();
     // the global database
@@ -82,6 +90,10 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
     protected static String dbFilename = "com/action/db/actioncore.xml";
     // supplementary databases
     protected static ArrayList<String> dbFileSupp = new ArrayList<String>();
+    // binary snapshot of the loaded databases (see ActionDBSnapshot)
+    protected static String dbCache = null;
+    // periods (in ms) of updater stages, by name, if not the default
+    protected static HashMap<String,Long> stagePeriods = new HashMap<String,Long>();
     protected static boolean printAPI = false;
     private static String agentname = "self";
     protected static String Subject = null;
@@ -124,7 +136,7 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
     protected static ArrayList<ADEPercept> currentPercepts;
     // previously-perceived entities
     protected static HashMap<String, ADEPercept> pastPercepts;
-    protected static HashMap<Object, Object> nameIdMap;
+    protected static Map<Object, Object> nameIdMap;
     protected final static ArrayList<Predicate> stateUpdates = new ArrayList<Predicate>();
     protected static boolean stateUpdatesReplan = false;
     private int currentDoor = 0;
@@ -148,9 +160,9 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
 
     private boolean conversationState = false;
 
-    private static ArrayList<Predicate> proscribedActions = new ArrayList<Predicate>();
-    private static ArrayList<Predicate> proscribedStates = new ArrayList<Predicate>();
-    private static ArrayList<ActionEvent> events = new ArrayList<ActionEvent>();
+    private static final PredicateIndex<Predicate> proscribedActions = new PredicateIndex<Predicate>(true);
+    private static final PredicateIndex<Predicate> proscribedStates = new PredicateIndex<Predicate>(true);
+    private static final ActionEventLog events = new ActionEventLog(eventLogSize);
 
     private ActionLearningManager alm = new ActionLearningManager(this);
     private HashMap<String,String> typeInfo = new HashMap<String,String>();
@@ -969,6 +981,11 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
             }
         }
         log.debug("ActionInterpreters halted...");
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+        }
         log.debug("stopping thread...");
         u.halt();
         log.debug("thread stopped...");
@@ -1125,10 +1142,14 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
         //sb.append("  -discversion v      <request specified Discourse server>\n");
         //sb.append("  -nlpserver          <request NLP server>\n");
         //sb.append("  -nosleep            <disable sleep in AI loop>\n");
+        sb.append("  -aithreads n        <run goals on n threads (default: one per CPU)>\n");
+        sb.append("  -eventlog n         <keep the last n state update events (default: 10000)>\n");
+        sb.append("  -updateperiod s n   <run updater stage s (priorities, planner, spex, belief) every n ms>\n");
         sb.append("  -agentname name     <set agent name>\n");
         sb.append("  -subject name       <set subject name>\n");
         sb.append("  -script s [a]       <run init script s with args [a]>\n");
         sb.append("  -dbfilesupp f       <parse supplemental db file f>\n");
+        sb.append("  -dbcache f          <load db files from snapshot f if unchanged, else save it>\n");
         //sb.append("  -api                <print script api information>\n");
         //sb.append("  -aiverb n           <set AI verbosity to n>\n");
         //sb.append("  -logcpu             <log CPU usage>\n");
@@ -1151,10 +1172,10 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
             // Components
             } else if (args[i].equalsIgnoreCase("-badaction")) {
                 Predicate bad = createPredicate(args[++i]);
-                proscribedActions.add(bad);
+                proscribedActions.add(bad, bad);
             } else if (args[i].equalsIgnoreCase("-badstate")) {
                 Predicate bad = createPredicate(args[++i]);
-                proscribedStates.add(bad);
+                proscribedStates.add(bad, bad);
             } else if (args[i].equalsIgnoreCase("-fest") ||
                     args[i].equalsIgnoreCase("-festival")) {
                 i = addComponent("com.festival.FestivalComponent", args, i);
@@ -1261,11 +1282,41 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
                 spexTest = true;
             } else if (args[i].equalsIgnoreCase("-nosleep")) {
                 sleepAI = false;
+            } else if (args[i].equalsIgnoreCase("-aithreads")) {
+                try {
+                    aiThreads = Integer.parseInt(args[i + 1]);
+                    i++;
+                } catch (NumberFormatException nfe) {
+                    System.err.println(myID + ": aithreads " + args[i + 1]);
+                    System.err.println(myID + ": " + nfe);
+                    System.err.println(myID + ": default aithreads is one per processor");
+                }
+            } else if (args[i].equalsIgnoreCase("-updateperiod")) {
+                try {
+                    stagePeriods.put(args[i + 1].toLowerCase(), Long.parseLong(args[i + 2]));
+                    i += 2;
+                } catch (NumberFormatException nfe) {
+                    System.err.println(myID + ": updateperiod " + args[i + 1] + " " + args[i + 2]);
+                    System.err.println(myID + ": " + nfe);
+                    System.err.println(myID + ": default updateperiod is 200 ms");
+                    i += 2;
+                }
+            } else if (args[i].equalsIgnoreCase("-eventlog")) {
+                try {
+                    eventLogSize = Integer.parseInt(args[i + 1]);
+                    i++;
+                } catch (NumberFormatException nfe) {
+                    System.err.println(myID + ": eventlog " + args[i + 1]);
+                    System.err.println(myID + ": " + nfe);
+                    System.err.println(myID + ": default eventlog is " + eventLogSize);
+                }
             } else if (args[i].equalsIgnoreCase("-dbfile")) {
                 dbFilename = args[++i];
             } else if (args[i].equalsIgnoreCase("-dbfilesupp")) {
                 log.info(format("Adding action db file to be parsed: %s", args[i+1]));
                 dbFileSupp.add(args[++i]);
+            } else if (args[i].equalsIgnoreCase("-dbcache")) {
+                dbCache = args[++i];
             } else if (args[i].equalsIgnoreCase("-api")) {
                 printAPI = true;
             } else if (args[i].equalsIgnoreCase("-goal")) {
@@ -1323,6 +1374,18 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
      */
     abstract protected void updatePriorities();
 
+    /**
+     * Get the priority of an interpreter when it is needed to decide who
+     * gets a resource lock, or to report it.  Subclasses whose priorities change with time
+     * can compute them here instead of on every update cycle; by default,
+     * this is the priority last set by <code>updatePriorities</code>.
+     * @param a the interpreter
+     * @return its priority
+     */
+    protected double currentPriority(ActionInterpreter a) {
+        return a.getActionPriority();
+    }
+
     protected boolean checkMethod(String mn) {
         log.trace("enter checkMethod(String mn)");
         Object sref = getMethodRef(mn);
@@ -1904,7 +1967,7 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
     protected void printPriorities() {
         synchronized (actions) {
             for (ActionInterpreter ai : actions) {
-                System.out.println(ai.cmd + ": " + ai.getActionPriority());
+                System.out.println(ai.cmd + ": " + currentPriority(ai));
             }
         }
     }
@@ -2025,6 +2088,19 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
         }
     }
 
+    /**
+     * Get the scheduler that runs the ActionInterpreters, creating it the
+     * first time.
+     * @return the scheduler
+     */
+    synchronized ActionScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ActionScheduler(aiThreads);
+            log.debug("running ActionInterpreters on " + scheduler.getThreads() + " threads");
+        }
+        return scheduler;
+    }
+
     /**
      * Get a resource lock.
      * @param lockName the name of the lock to get
@@ -3328,7 +3404,7 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
         }
     }
 
-    private ArrayList<ActionEvent> getEvents() {
+    private ActionEventLog getEvents() {
         log.trace("enter getEvents()");
         return events;
     }
@@ -3726,22 +3802,36 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
         pastPercepts = new HashMap<String, ADEPercept>();
         //ADEPercept o = new ADEPercept("hall_end", "landmark", Math.toRadians(0), 15.25, 15.25, -0.0, 15.25, -0.0, 1.0, 1.0);
         //pastPercepts.put("HALL_END", o);
-        nameIdMap = new HashMap<Object, Object>();
+        // updated by the spex and planner updater stages concurrently
+        nameIdMap = Collections.synchronizedMap(new HashMap<Object, Object>());
 
         log.info("Using database: " + dbFilename);
-        adb = new ActionDBEntry(dbFilename, printAPI);
-
-        for (String name : dbFileSupp) {
-            log.debug(format("Merging %s into action database", name));
-            adb.mergeDB(name, printAPI);
+        ArrayList<String> dbFiles = new ArrayList<String>();
+        dbFiles.add(dbFilename);
+        dbFiles.addAll(dbFileSupp);
+        adb = null;
+        if (dbCache != null && !printAPI) {
+            adb = ActionDBSnapshot.load(dbCache, dbFiles);
+        }
+        if (adb == null) {
+            ActionDBParser.preload(dbFiles);
+            adb = new ActionDBEntry(dbFilename, printAPI);
+
+            for (String name : dbFileSupp) {
+                log.debug(format("Merging %s into action database", name));
+                adb.mergeDB(name, printAPI);
+            }
+            if (dbCache != null) {
+                ActionDBSnapshot.save(dbCache, dbFiles, adb);
+            }
         }
         // add all adb forbidden actions
         for (Predicate e : adb.getBadActions()) {
-            proscribedActions.add(e);
+            proscribedActions.add(e, e);
         }
         // add all adb forbidden states
         for (Predicate e : adb.getBadStates()) {
-            proscribedStates.add(e);
+            proscribedStates.add(e, e);
         }
         // now create tasks for all adb execs
         for (String e : adb.getExecs()) {
@@ -3796,32 +3886,28 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
     // need to call predicateMatch on state description
     protected static boolean badState(Predicate desc) {
         log.trace("enter badState(Predicate desc)");
-        boolean bad = false;
-
-        for (Predicate nono:proscribedStates) {
-            if (ActionDBEntry.predicateMatch(desc, nono)) {
-                bad = true;
-                break;
-            }
-        }
-        return bad;
+        return proscribedStates.matchesAny(desc);
     }
 
     // need to extract argument types from the action, construct a new predicate, and call predicateMatch on that
     protected static boolean badAction(ActionDBEntry action) {
-        boolean bad = false;
         Predicate desc = action.getPredDesc();
+        boolean bad = proscribedActions.matchesAny(desc);
 
-        for (Predicate nono:proscribedActions) {
-            if (ActionDBEntry.predicateMatch(desc, nono)) {
-                bad = true;
-                break;
-            }
-        }
-        log.trace(format("[badAction] :: Action '%s' bad? %s", action, String.valueOf(bad)));
+        if (log.isTraceEnabled())
+            log.trace(format("[badAction] :: Action '%s' bad? %s", action, String.valueOf(bad)));
         return bad;
     }
 
+    /**
+     * Get the version of the proscribed actions and states, which changes
+     * whenever one is added (see ActionDBEntry.isProscribed()).
+     * @return the version
+     */
+    static int getProscriptionVersion() {
+        return proscribedActions.getVersion() + proscribedStates.getVersion();
+    }
+
     /**
      * Say some text, if possible.
      * @param text text to speak
@@ -3878,7 +3964,9 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
      */
     private class Updater extends Thread {
         int sleepTime; // Add cycleTime
-        boolean shouldUpdate;
+        volatile boolean shouldUpdate;
+        private final ArrayList<UpdaterStage> stages = new ArrayList<UpdaterStage>();
+        private ScheduledThreadPoolExecutor stageRunner = null;
 
         public Updater(int st) {
             log.trace("enter Updater constructor");
@@ -3886,12 +3974,8 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
             shouldUpdate = true;
         }
 
-        BufferedReader procstat = null;
-        String ps = null;
-        StringTokenizer tps = null;
-        long current = 0L, past = 0L, elapsed = 0L;
         double userp = 0.0;
-        double ptotal = 0.0, pidle = 0.0, ctotal = 0.0, cidle = 0.0;
+        ADEProcSampler.Sample lastCPU = null;
 
         @Override
         public void run() {
@@ -4026,83 +4110,96 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
                 }.start();
             }
 
-            while (shouldUpdate) {
-                //myDetectNearestDoor();
-                try {
-                    past = System.currentTimeMillis();
+            startStages();
+            log.trace(myID + ": Exiting Updater thread ...");
+        }
+
+        private void CPUStat() {
+            log.trace("enter CPUStat()");
+            try {
+                // the shared sampler keeps /proc/stat open
+                ADEProcSampler.Sample cpu = ADEProcSampler.getInstance().sample();
+                if (lastCPU != null) {
+                    userp = cpu.cpuLoad(lastCPU);
+                    canLogIt("CPU " + userp);
+                    log.debug(myID + ": CPU " + userp);
+                }
+                lastCPU = cpu;
+            } catch (IOException ioe) {
+                log.error("Error reading CPU times: ", ioe);
+            }
+        }
+
+        /**
+         * Start the periodic stages.  Each has a thread of its own, so a
+         * stage waiting on a slow component does not delay the others;
+         * their results meet in the state updates passed on to the planner.
+         */
+        private synchronized void startStages() {
+            if (!shouldUpdate) {
+                return;
+            }
+            stages.add(stage("priorities", new Runnable() {
+                @Override
+                public void run() {
                     updatePriorities();
                     updateAffect();
+                }
+            }));
+            stages.add(stage("planner", new Runnable() {
+                @Override
+                public void run() {
                     if (checkReference("com.sapa.SapaComponent") ||
                         checkReference("com.prolog.FODDComponent") ||
                         checkReference("com.interfaces.PlannerComponent")) {
                         updatePlanner();
                     }
+                }
+            }));
+            stages.add(stage("spex", new Runnable() {
+                @Override
+                public void run() {
                     if (checkReference("com.spex.SpexComponent")) {
                         updateSpex();
                     }
+                }
+            }));
+            stages.add(stage("belief", new Runnable() {
+                @Override
+                public void run() {
                     if (checkReference("com.dialogue.belief.BeliefComponent")) {
                         updateBelief();
                     }
-                    current = System.currentTimeMillis();
-                    elapsed = current - past;
-                    if ((elapsed < sleepTime) && (elapsed >= 0))
-                        Sleep(sleepTime-elapsed);
-                } catch (Exception e1) {
-                    log.error(myID + ": got generic exception", e1);
                 }
+            }));
+            final AtomicInteger count = new AtomicInteger();
+            stageRunner = new ScheduledThreadPoolExecutor(stages.size(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Updater-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            for (UpdaterStage s : stages) {
+                stageRunner.scheduleAtFixedRate(s, 0, s.getPeriod(), TimeUnit.MILLISECONDS);
             }
-            log.trace(myID + ": Exiting Updater thread ...");
         }
 
-        private void CPUStat() {
-            log.trace("enter CPUStat()");
-            try {
-                procstat = new BufferedReader(new FileReader("/proc/stat"));
-                ps = procstat.readLine();
-                procstat.close();
-                tps = new StringTokenizer(ps);
-                // get rid of "cpu" tag
-                tps.nextToken();
-                // new values
-                ctotal = Double.parseDouble(tps.nextToken());
-                ctotal += Double.parseDouble(tps.nextToken());
-                ctotal += Double.parseDouble(tps.nextToken());
-                cidle = Double.parseDouble(tps.nextToken());
-                ctotal += cidle;
-                ctotal += Double.parseDouble(tps.nextToken());
-                ctotal += Double.parseDouble(tps.nextToken());
-
-                ptotal = ctotal - ptotal;
-                pidle = cidle - pidle;
-                pidle = pidle / ptotal;
-                userp = 1 - pidle;
-                canLogIt("CPU " + userp);
-                log.debug(myID + ": CPU " + userp);
-                ptotal = ctotal;
-                pidle = cidle;
-                /*
-                procstat = new BufferedReader(new FileReader("/proc/uptime"));
-                ps = procstat.readLine();
-                procstat.close();
-                tps = new StringTokenizer(ps);
-                ctotal = Double.parseDouble(tps.nextToken());
-                cidle = Double.parseDouble(tps.nextToken());
-                ptotal = ctotal - ptotal;
-                pidle = cidle - pidle;
-                pidle = pidle / ptotal;
-                userp = 1 - pidle;
-                canLogIt("CPU " + userp);
-                System.out.println("CPU " + userp);
-                ptotal = ctotal;
-                pidle = cidle;
-                 */
-            } catch (IOException ioe) {
-                log.error("Error reading CPU times: ", ioe);
-            }
+        private UpdaterStage stage(String name, Runnable task) {
+            Long p = stagePeriods.get(name);
+            long period = (p != null && p > 0) ? p : sleepTime;
+            return new UpdaterStage(name, period, period, task);
         }
 
-        public void halt() {
+        public synchronized void halt() {
             shouldUpdate = false;
+            if (stageRunner != null) {
+                stageRunner.shutdown();
+                for (UpdaterStage s : stages) {
+                    log.info(myID + ": updater stage " + s);
+                }
+            }
         }
     }
 
@@ -4235,7 +4332,7 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
         }
 
         log.debug("[GoalManager::populateGlobalFields] received new action: " + currEntry.type);
-        adb.actionDB.put(currEntry.type, currEntry); // add to action DB
+        ActionDBEntry.register(currEntry.type, currEntry); // add to action DB
 
         // add postcondition-adbe pairs to postconds database
         for (Pair<Predicate, ActionDBEntry> tp : currEntry.transferPostconds) {
@@ -4309,6 +4406,7 @@ abstract public class GoalManagerImpl extends ADEComponentImpl implements GoalMa
         log.trace("enter GoalManagerImpl constructor");
         u = new Updater(200);
         rangen = new Random();
+        events.setCapacity(eventLogSize);
 
         /* KRAMER: shouldn't need the thread with the addition of the
          * startExecution() method...
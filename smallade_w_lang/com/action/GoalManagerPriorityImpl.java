@@ -26,31 +26,45 @@ public class GoalManagerPriorityImpl extends GoalManagerImpl implements GoalMana
     /** 
      * <code>updatePriorities</code> is called periodically to perform whatever
      * reprioritization of goals is necessary (e.g., because of changes in
-     * affective states).
+     * affective states).  Priorities here depend only on the time elapsed,
+     * so they are computed when they are needed instead, for a contended
+     * lock or a report (see <code>currentPriority</code>).
      */
     @Override
     public void updatePriorities() {
+    }
+
+    /** 
+     * Compute the priority of an interpreter from its utility and its
+     * urgency, which grows from the minimum to the maximum urgency over the
+     * time allowed the action.  Past that time, the urgency stays at the
+     * maximum.
+     * @param a the interpreter
+     * @return its priority
+     */
+    @Override
+    protected double currentPriority(ActionInterpreter a) {
         long elapsedTime, allowedTime;
         double urgency, utility, minUrg, maxUrg;
-        synchronized (actions) {
-            for (ActionInterpreter a : actions) {
-                elapsedTime = System.currentTimeMillis() - a.getActionStartTime();
-                allowedTime = a.getActionMaxTime();
-                //System.out.println(a.cmd + " elapsed " + elapsedTime);
-                if (elapsedTime <= allowedTime) {
-                    minUrg = a.getActionMinUrg();
-                    maxUrg = a.getActionMaxUrg();
-                    urgency = (double)elapsedTime / (double)allowedTime;
-                    urgency = urgency * (maxUrg - minUrg) + minUrg;
-                    // PWS: Seems OK if B < C, it'll just get very low P
-                    utility = a.getActionBenefit() - a.getActionCost();
-                    a.setActionPriority(urgency * utility);
-                    //System.out.println(a.cmd + " PRIORITY " + urgency * utility);
-                    logItASL(a.cmd + " PRIORITY " + urgency * utility);
-                    logItASL(a.cmd + " URGENCY " + urgency);
-                }
-            }
+        elapsedTime = System.currentTimeMillis() - a.getActionStartTime();
+        allowedTime = a.getActionMaxTime();
+        //System.out.println(a.cmd + " elapsed " + elapsedTime);
+        minUrg = a.getActionMinUrg();
+        maxUrg = a.getActionMaxUrg();
+        if (elapsedTime >= allowedTime) {
+            urgency = maxUrg;
+        } else {
+            urgency = (double)elapsedTime / (double)allowedTime;
+            urgency = urgency * (maxUrg - minUrg) + minUrg;
+        }
+        // PWS: Seems OK if B < C, it'll just get very low P
+        utility = a.getActionBenefit() - a.getActionCost();
+        a.setActionPriority(urgency * utility);
+        //System.out.println(a.cmd + " PRIORITY " + urgency * utility);
+        if (log.isTraceEnabled()) {
+            log.trace(a.cmd + " PRIORITY " + urgency * utility + " URGENCY " + urgency);
         }
+        return a.getActionPriority();
     }
 
     /** 
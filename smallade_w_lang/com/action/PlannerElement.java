@@ -21,13 +21,15 @@ import com.google.common.base.Joiner;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 import static java.lang.String.format;
 import static utilities.Util.createPredicate;
 
 /** Stores the information needed to instantiate elements of the Sapa planner domain and problem. */
-class PlannerElement {
+class PlannerElement implements Serializable {
+    private static final long serialVersionUID = 1L;
     private static Log log = LogFactory.getLog(PlannerElement.class);
     public static final int TYPE = 0;
     public static final int ACTION = 1;
@@ -0,0 +1,168 @@
+/**
+ * ADE 1.0
+ * Copyright 1997-2012 HRILab (http://hrilab.org/)
+ *
+ * All rights reserved.  Do not copy and use without permission.
+ * For questions contact Matthias Scheutz at mscheutz@cs.tufts.edu
+ *
+ * PredicateIndex.java
+ */
+
+package com.action;
+
+import com.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>PredicateIndex</code> holds template predicates (e.g., postconditions
+ * or proscriptions), each with an associated value, indexed by name and
+ * number of arguments.  Since <code>ActionDBEntry.predicateMatch</code> only
+ * matches predicates with the same name and arity, the candidates for a test
+ * predicate can be retrieved without scanning the others.  Lists are replaced
+ * rather than modified, so lookups need no lock.
+ */
+final class PredicateIndex<V> {
+    private final ConcurrentHashMap<String,ConcurrentHashMap<Integer,List<Pair<Predicate,V>>>> index =
+            new ConcurrentHashMap<String,ConcurrentHashMap<Integer,List<Pair<Predicate,V>>>>();
+    private final boolean ignoreCase;
+    private volatile int version = 0;
+
+    /**
+     * Create an index.
+     * @param ignoreCase whether predicate names are compared ignoring case
+     */
+    PredicateIndex(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    private String key(Predicate p) {
+        return ignoreCase ? p.getName().toLowerCase() : p.getName();
+    }
+
+    /**
+     * Add a template.
+     * @param template the template predicate
+     * @param value the associated value
+     */
+    synchronized void add(Predicate template, V value) {
+        String name = key(template);
+        ConcurrentHashMap<Integer,List<Pair<Predicate,V>>> byArity = index.get(name);
+        if (byArity == null) {
+            byArity = new ConcurrentHashMap<Integer,List<Pair<Predicate,V>>>();
+            index.put(name, byArity);
+        }
+        List<Pair<Predicate,V>> old = byArity.get(template.size());
+        ArrayList<Pair<Predicate,V>> entries;
+        if (old == null) {
+            entries = new ArrayList<Pair<Predicate,V>>(1);
+        } else {
+            entries = new ArrayList<Pair<Predicate,V>>(old.size() + 1);
+            entries.addAll(old);
+        }
+        entries.add(new Pair<Predicate,V>(template, value));
+        byArity.put(template.size(), Collections.unmodifiableList(entries));
+        version++;
+    }
+
+    /**
+     * Add a template and its value.
+     * @param p the template and value
+     */
+    void add(Pair<Predicate,V> p) {
+        add(p.car(), p.cdr());
+    }
+
+    /**
+     * Remove all templates that the test predicate matches.
+     * @param test the test predicate
+     */
+    synchronized void removeMatching(Predicate test) {
+        ConcurrentHashMap<Integer,List<Pair<Predicate,V>>> byArity = index.get(key(test));
+        if (byArity == null) {
+            return;
+        }
+        List<Pair<Predicate,V>> old = byArity.get(test.size());
+        if (old == null) {
+            return;
+        }
+        ArrayList<Pair<Predicate,V>> entries = new ArrayList<Pair<Predicate,V>>(old.size());
+        for (Pair<Predicate,V> p : old) {
+            if (!ActionDBEntry.predicateMatch(test, p.car())) {
+                entries.add(p);
+            }
+        }
+        if (entries.size() < old.size()) {
+            byArity.put(test.size(), Collections.unmodifiableList(entries));
+            version++;
+        }
+    }
+
+    /**
+     * Get the templates that the test predicate might match (i.e., those with
+     * the same name and arity).
+     * @param test the test predicate
+     * @return the candidates (in the order they were added), or null if no
+     * template has the name of the test predicate
+     */
+    List<Pair<Predicate,V>> candidates(Predicate test) {
+        ConcurrentHashMap<Integer,List<Pair<Predicate,V>>> byArity = index.get(key(test));
+        if (byArity == null) {
+            return null;
+        }
+        List<Pair<Predicate,V>> entries = byArity.get(test.size());
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        return entries;
+    }
+
+    /**
+     * Check whether the test predicate matches any template.
+     * @param test the test predicate
+     * @return true if it does
+     */
+    boolean matchesAny(Predicate test) {
+        ConcurrentHashMap<Integer,List<Pair<Predicate,V>>> byArity = index.get(key(test));
+        if (byArity == null) {
+            return false;
+        }
+        List<Pair<Predicate,V>> entries = byArity.get(test.size());
+        if (entries == null) {
+            return false;
+        }
+        for (Pair<Predicate,V> p : entries) {
+            if (ActionDBEntry.predicateMatch(test, p.car())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get all templates and their values.
+     * @return a copy of the entries, in the order they were added for each
+     * name and arity
+     */
+    synchronized List<Pair<Predicate,V>> entries() {
+        ArrayList<Pair<Predicate,V>> entries = new ArrayList<Pair<Predicate,V>>();
+        for (ConcurrentHashMap<Integer,List<Pair<Predicate,V>>> byArity : index.values()) {
+            for (List<Pair<Predicate,V>> l : byArity.values()) {
+                entries.addAll(l);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the version of the index, which changes whenever a template is
+     * added or removed.
+     * @return the version
+     */
+    int getVersion() {
+        return version;
+    }
+}
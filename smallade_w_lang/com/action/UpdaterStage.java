@@ -0,0 +1,123 @@
+/**
+ * ADE 1.0
+ * Copyright 1997-2012 HRILab (http://hrilab.org/)
+ *
+ * All rights reserved.  Do not copy and use without permission.
+ * For questions contact Matthias Scheutz at mscheutz@cs.tufts.edu
+ *
+ * UpdaterStage.java
+ */
+
+package com.action;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <code>UpdaterStage</code> is one of the periodic tasks of the goal
+ * manager's updater (e.g., sending state updates to the planner).  Each stage
+ * runs at its own rate in its own thread, so that a slow call to one
+ * component does not hold up the others.  A stage keeps count of how often it
+ * took longer than its deadline.
+ */
+final class UpdaterStage implements Runnable {
+    private static Log log = LogFactory.getLog(UpdaterStage.class);
+
+    private final String name;
+    private final long period;
+    private final long deadline;
+    private final Runnable task;
+    // written only by the stage's thread
+    private volatile long runs = 0;
+    private volatile long overruns = 0;
+    private volatile long totalTime = 0;
+    private volatile long maxTime = 0;
+
+    /**
+     * Create a stage.
+     * @param name the name of the stage
+     * @param period the time (in ms) from the start of one run to the next
+     * @param deadline the time (in ms) a run should take at most
+     * @param task the work done in each run
+     */
+    UpdaterStage(String name, long period, long deadline, Runnable task) {
+        this.name = name;
+        this.period = period;
+        this.deadline = deadline;
+        this.task = task;
+    }
+
+    /**
+     * Do one run of the stage.
+     */
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        try {
+            task.run();
+        } catch (Throwable t) {
+            // anything thrown, errors included, would silently cancel the
+            // periodic runs
+            log.error(name + ": got " + t.getClass().getName(), t);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        runs++;
+        totalTime += elapsed;
+        if (elapsed > maxTime) {
+            maxTime = elapsed;
+        }
+        if (elapsed > deadline) {
+            overruns++;
+            log.debug(name + " took " + elapsed + " ms (deadline " + deadline + " ms)");
+        }
+    }
+
+    /**
+     * Get the name of the stage.
+     * @return the name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the period of the stage.
+     * @return the period (in ms)
+     */
+    long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Get the number of runs so far.
+     * @return the number of runs
+     */
+    long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Get the number of runs that took longer than the deadline.
+     * @return the number of overruns
+     */
+    long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Get the longest run so far.
+     * @return the time (in ms)
+     */
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    @Override
+    public String toString() {
+        long n = runs;
+        return name + ": " + n + " runs, " + overruns + " over " + deadline + " ms, average "
+                + (n > 0 ? totalTime / n : 0) + " ms, max " + maxTime + " ms";
+    }
+}
+
+// vi:ai:smarttab:expandtab:ts=8 sw=4
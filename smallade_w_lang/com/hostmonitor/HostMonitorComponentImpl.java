@@ -591,7 +591,8 @@ public class HostMonitorComponentImpl extends ADEComponentImpl
         }
         hosts.put(host.hostip, ahs);
         if (dbg > 4 || verbose) {
-            System.out.println(prg + ": added host " + host);
+            System.out.println(prg + ": added host " + host
+                    + (ahs.isLocal() ? " (sampled in-process)" : ""));
         }
         return true;
     }
@@ -15,6 +15,7 @@
 package com.interfaces;
 
 import ade.ADEComponent;
+import ade.ADEMethodConditions;
 import com.LaserScan;
 import com.lrf.feature.Door;
 
@@ -26,6 +27,12 @@ import java.util.List;
  */
 public interface LaserComponent extends ADEComponent {
 
+    /**
+     * The data channel on which implementations publish the safe and open spaces of every scan, as
+     * <tt>{getSafeSpaces(), getOpenSpaces()}</tt> (a <tt>boolean[][]</tt>).
+     */
+    public static final String SPACES_CHANNEL = "spaces";
+
     /**
      * Get the distance (in meters) that robot takes to be the distance at which obstacle avoidance should engage.
      *
@@ -145,6 +152,7 @@ public interface LaserComponent extends ADEComponent {
      * @return the current laser scan
      * @throws RemoteException
      */
+    @ADEMethodConditions(Idempotent = true, CacheTTL = 50)
     public LaserScan getLaserScan() throws RemoteException;
 }
 
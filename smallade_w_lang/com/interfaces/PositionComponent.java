@@ -15,6 +15,7 @@
 package com.interfaces;
 
 import ade.ADEComponent;
+import ade.ADEMethodConditions;
 import java.rmi.*;
 
 /**
@@ -28,6 +29,7 @@ public interface PositionComponent extends ADEComponent {
      * @return the current location, as indicated by the Player localizer or
      * the GPS server; the pose is x,y (in meters) and theta (in radians)
      */
+    @ADEMethodConditions(Idempotent = true, CacheTTL = 50)
     public double[] getPoseGlobal() throws RemoteException;
 }
 // vi:ai:smarttab:expandtab:ts=8 sw=4
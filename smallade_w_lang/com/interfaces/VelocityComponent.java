@@ -15,6 +15,7 @@
 package com.interfaces;
 
 import ade.ADEComponent;
+import ade.ADEMethodConditions;
 import java.rmi.*;
 
 /**
@@ -44,6 +45,7 @@ public interface VelocityComponent extends ADEComponent {
      * Get the default velocities used by VelocityComponent functions.
      * @return the default velocities (m/sec and rad/sec).
      */
+    @ADEMethodConditions(Idempotent = true, CacheTTL = 5000)
     public double[] getDefaultVels() throws RemoteException;
 
     /**
@@ -634,19 +634,19 @@ new Thread("starter") {
 	//	System.out.println("DBG: update call");
 	scanID++;
 	// MS: added logging here -- there is some overhead computing the string every time that can be eliminated
-	StringBuffer result = new StringBuffer();
-	if (readings.length > 0) {
+	if(publishReadings)
+	    for (int i=0; i<readings.length; i++)
+		readingsF[i]=(float)readings[i];
+	// the scan string is only built when local logging is on
+	if (isLocalLogging() && readings.length > 0) {
+	    StringBuilder result = new StringBuilder(readings.length * 8);
 	    result.append(readings[0]);
-	    if(publishReadings)
-		readingsF[0]=(float)readings[0];
 	    for (int i=1; i<readings.length; i++) {
 		result.append(",");
 		result.append(readings[i]);
-		if(publishReadings)
-		    readingsF[i]=(float)readings[i];
 	    }
+	    canLogIt(result);
 	}
-	canLogIt(result);
 
 	if (coordinatesRead)
 	    calculateDistancesToBot(right_beg, right_end, front_beg, front_end, left_beg, left_end, back_beg, back_end, 0.0);
@@ -779,6 +779,10 @@ new Thread("starter") {
 		//if (obstacle)
 		//    System.out.println("safeFront: " + safeFront);
 	    }
+	// push the new spaces to subscribers instead of having them poll
+	publish(SPACES_CHANNEL, new boolean[][]{
+		    {safeRight, safeFront, safeLeft, safeBack},
+		    {openRight, openFront, openLeft, openBack}});
         if(debugGetLaserScan)
             try{
 		        System.out.println(this.getLaserScan().ranges[100]);
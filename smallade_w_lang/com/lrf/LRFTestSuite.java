@@ -16,7 +16,9 @@ import org.junit.runners.Suite;
         LineExtractorTest.class,
         PointExtractorTest.class,
         RightAngleExtractorTest.class,
-        FeatureModelTest.class
+        FeatureModelTest.class,
+        // Wire format
+        LaserScanWireTest.class
 })
 
 
@@ -0,0 +1,85 @@
+package com.lrf;
+
+import com.LaserScan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Compares the hand-written wire format of {@link LaserScan} with default
+ * Java serialization (which RMI uses for arguments and return values) for a
+ * 1081-beam UTM scan.  Each iteration serializes and deserializes one scan
+ * through a fresh object stream, as RMI does per call; the result is
+ * reported as the fraction of a 40 Hz (25 ms) scan period.
+ *
+ * <pre>java -cp build:jars/* com.lrf.LaserScanWireBenchmark [iterations]</pre>
+ */
+public class LaserScanWireBenchmark {
+
+    private static final int BEAMS = 1081;
+    private static final double PERIOD_MS = 1000.0 / 40.0;
+
+    /** The same fields as LaserScan, using default serialization. */
+    private static class DefaultLaserScan implements Serializable {
+        private static final long serialVersionUID = 1L;
+        double angleMin;
+        double angleMax;
+        double angleIncrement;
+        double rangeMin;
+        double rangeMax;
+        double[] ranges;
+    }
+
+    private static int bytes;
+
+    private static Object roundTrip(Object o) throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(16384);
+        ObjectOutputStream out = new ObjectOutputStream(buf);
+        out.writeObject(o);
+        out.close();
+        bytes = buf.size();
+        return new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray())).readObject();
+    }
+
+    private static double run(Object scan, int iterations) throws Exception {
+        for (int i = 0; i < iterations / 10; i++) {
+            roundTrip(scan); // warm-up
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            roundTrip(scan);
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+
+        LaserScan codec = new LaserScan();
+        DefaultLaserScan plain = new DefaultLaserScan();
+        codec.angleMin = plain.angleMin = Math.toRadians(-135);
+        codec.angleMax = plain.angleMax = Math.toRadians(135);
+        codec.angleIncrement = plain.angleIncrement = Math.toRadians(0.25);
+        codec.rangeMin = plain.rangeMin = 0.02;
+        codec.rangeMax = plain.rangeMax = 30.0;
+        codec.ranges = new double[BEAMS];
+        for (int i = 0; i < BEAMS; i++) {
+            codec.ranges[i] = 1.0 + (i % 100) * 0.05;
+        }
+        plain.ranges = codec.ranges.clone();
+
+        double tDefault = run(plain, iterations);
+        int bDefault = bytes;
+        double tCodec = run(codec, iterations);
+        int bCodec = bytes;
+
+        System.out.printf("%d beams, %d iterations%n", BEAMS, iterations);
+        System.out.printf("default : %8.4f ms/scan  %6d bytes  %5.2f%% of a 40 Hz period%n",
+                tDefault, bDefault, 100 * tDefault / PERIOD_MS);
+        System.out.printf("codec   : %8.4f ms/scan  %6d bytes  %5.2f%% of a 40 Hz period%n",
+                tCodec, bCodec, 100 * tCodec / PERIOD_MS);
+    }
+}
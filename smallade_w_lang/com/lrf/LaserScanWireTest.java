@@ -0,0 +1,76 @@
+package com.lrf;
+
+import com.LaserScan;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Round-trips the hand-written wire formats of the laser scan types.
+ */
+public class LaserScanWireTest {
+
+    private static Object roundTrip(Object o) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.close();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void testLaserScan() throws Exception {
+        LaserScan scan = new LaserScan();
+        scan.angleMin = -2.35;
+        scan.angleMax = 2.35;
+        scan.angleIncrement = 0.0043;
+        scan.rangeMin = 0.02;
+        scan.rangeMax = 30.0;
+        scan.ranges = new double[1081];
+        for (int i = 0; i < scan.ranges.length; i++) {
+            scan.ranges[i] = i * 0.01;
+        }
+
+        LaserScan copy = (LaserScan) roundTrip(scan);
+        assertEquals(scan.angleMin, copy.angleMin, 0.0);
+        assertEquals(scan.angleMax, copy.angleMax, 0.0);
+        assertEquals(scan.angleIncrement, copy.angleIncrement, 0.0);
+        assertEquals(scan.rangeMin, copy.rangeMin, 0.0);
+        assertEquals(scan.rangeMax, copy.rangeMax, 0.0);
+        assertArrayEquals(scan.ranges, copy.ranges, 0.0);
+
+        scan.ranges = null;
+        assertNull(((LaserScan) roundTrip(scan)).ranges);
+    }
+
+    @Test
+    public void testPolarLaserScan() throws Exception {
+        polar_laser_scan scan = new polar_laser_scan();
+        scan.type = 1;
+        scan.scanID = 42;
+        scan.startAngle = -1.57f;
+        scan.angularResolution = 0.5f;
+        scan.numRanges = 3;
+        scan.ranges = new float[]{1.0f, 2.0f, 3.0f};
+        scan.intensities = new short[]{7, 8, 9};
+        scan.maxRange = 8.0f;
+        scan.offset_t = 0.1f;
+
+        polar_laser_scan copy = (polar_laser_scan) roundTrip(scan);
+        assertEquals(scan.type, copy.type);
+        assertEquals(scan.timestamp, copy.timestamp);
+        assertEquals(scan.scanID, copy.scanID);
+        assertEquals(scan.startAngle, copy.startAngle, 0.0f);
+        assertEquals(scan.numRanges, copy.numRanges);
+        assertArrayEquals(scan.ranges, copy.ranges, 0.0f);
+        assertArrayEquals(scan.intensities, copy.intensities);
+        assertEquals(scan.offset_t, copy.offset_t, 0.0f);
+    }
+}
@@ -1,8 +1,14 @@
 package com.lrf;
-import java.io.Serializable;
+import ade.ADEWire;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.lang.Cloneable;
 
-public class polar_laser_scan implements Serializable, Cloneable{
+// sent at sensor rate, so it writes its own compact wire format (see ade.ADEWire)
+public class polar_laser_scan implements Externalizable, Cloneable{
+    private static final long serialVersionUID = 2L;
     public int type = 0; //1 = sick laser
     public long timestamp;
     public int scanID;
@@ -29,6 +35,36 @@ public class polar_laser_scan implements Serializable, Cloneable{
 	}
     }
 
+    public void writeExternal(ObjectOutput out) throws IOException {
+	out.writeInt(type);
+	out.writeLong(timestamp);
+	out.writeInt(scanID);
+	out.writeFloat(startAngle);
+	out.writeFloat(angularResolution);
+	ADEWire.writeFloats(out, ranges);
+	out.writeShort(numRanges);
+	ADEWire.writeShorts(out, intensities);
+	out.writeFloat(maxRange);
+	out.writeFloat(offset_x);
+	out.writeFloat(offset_y);
+	out.writeFloat(offset_t);
+    }
+
+    public void readExternal(ObjectInput in) throws IOException {
+	type = in.readInt();
+	timestamp = in.readLong();
+	scanID = in.readInt();
+	startAngle = in.readFloat();
+	angularResolution = in.readFloat();
+	ranges = ADEWire.readFloats(in);
+	numRanges = in.readShort();
+	intensities = ADEWire.readShorts(in);
+	maxRange = in.readFloat();
+	offset_x = in.readFloat();
+	offset_y = in.readFloat();
+	offset_t = in.readFloat();
+    }
+
     public void print(){
 	System.out.println("timestamp:        "+timestamp);
 	System.out.println("scanID:           "+scanID);
@@ -18,6 +18,7 @@ import ade.Connection;
 import ade.SuperADEComponentImpl;
 import com.ActionStatus;
 import com.Predicate;
+import com.interfaces.LaserComponent;
 import com.vision.stm.MemoryObject;
 
 import java.awt.*;
@@ -143,6 +144,9 @@ public class MotionComponentImpl extends SuperADEComponentImpl implements Motion
     public static boolean useLrf = true;
     public static String lrfType = "com.interfaces.LaserComponent";
     public static String lrfName = null;
+    // the laser's spaces are pushed on a channel; poll if they are older than this (ms)
+    private static final long LRF_CHANNEL_MAXAGE = 500;
+    private long lrfSubscribeTime = 0;
 
     Connection visionComponent;
     public static String visionVersion = "com.vision.VisionComponent";
@@ -806,6 +810,7 @@ public class MotionComponentImpl extends SuperADEComponentImpl implements Motion
     public void setDefaultVels(double tv, double rv) throws RemoteException {
         defTV = tv;
         defRV = rv;
+        invalidateCachedCalls();
     }
 
     /**
@@ -2008,8 +2013,21 @@ public class MotionComponentImpl extends SuperADEComponentImpl implements Motion
         double newRV = nominal[RV];
         boolean safety = false;
 
-        safes = laserComponent.call("getSafeSpaces", boolean[].class);
-        opens = laserComponent.call("getOpenSpaces", boolean[].class);
+        // use the spaces pushed by the laser while they are fresh; otherwise
+        // poll, and (re)subscribe every few seconds
+        boolean[][] spaces = laserComponent.latest(LaserComponent.SPACES_CHANNEL, boolean[][].class, LRF_CHANNEL_MAXAGE);
+        if (spaces != null) {
+            safes = spaces[0];
+            opens = spaces[1];
+        } else {
+            long now = System.currentTimeMillis();
+            if (now - lrfSubscribeTime > 10 * LRF_CHANNEL_MAXAGE) {
+                lrfSubscribeTime = now;
+                laserComponent.subscribe(LaserComponent.SPACES_CHANNEL, 1);
+            }
+            safes = laserComponent.call("getSafeSpaces", boolean[].class);
+            opens = laserComponent.call("getOpenSpaces", boolean[].class);
+        }
         if (safes == null || opens == null) return;
 
         safeRight = safes[0];